@@ -28,6 +28,7 @@ import javax.swing.JOptionPane;
 
 import edu.umd.cs.findbugs.BugCollection;
 import edu.umd.cs.findbugs.Project;
+import edu.umd.cs.findbugs.SortedBugCollection;
 import edu.umd.cs.findbugs.charsets.UTF8;
 
 /**
@@ -51,7 +52,11 @@ public class BugSaver {
 
     public static void saveBugs(File out, BugCollection data, Project p) {
         try {
-            saveBugs(UTF8.fileWriter(out), data, p);
+            if (SortedBugCollection.isBinaryXMLFileName(out.getName())) {
+                data.writeXML(out.getPath());
+            } else {
+                saveBugs(UTF8.fileWriter(out), data, p);
+            }
             lastPlaceSaved = out.getAbsolutePath();
         } catch (IOException e) {
             JOptionPane.showMessageDialog(null, "An error has occured in saving your file");
@@ -19,16 +19,20 @@
 
 package edu.umd.cs.findbugs.gui2;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 
+import javax.annotation.CheckForNull;
+
 import edu.umd.cs.findbugs.BugCollection;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.SourceLineAnnotation;
@@ -46,7 +50,11 @@ import edu.umd.cs.findbugs.gui2.BugAspects.SortableValue;
  * <designation,unclassified> and you will get out a new BugSet containing all
  * of the bugs that are both high priority and unclassified. Also, after the
  * first time a query is made, the results will come back instantly on future
- * calls because the old queries are cached. Note that this caching can also
+ * calls because the old queries are cached. Queries are answered from
+ * inverted indexes kept by the set the queries start from: for each Sortables,
+ * the ids of the bugs having each value. A queried set is just the sorted ids of
+ * its bugs, and shares the bugs and the indexes with the set it was queried from.
+ * Note that this caching can also
  * lead to issues, problems with the BugTreeModel and the JTree getting out of
  * sync, if there comes a time when the model and tree are out of sync but come
  * back into sync if the tree is rebuilt, say by sorting the column headers, it
@@ -58,16 +66,99 @@ import edu.umd.cs.findbugs.gui2.BugAspects.SortableValue;
  */
 public class BugSet implements Iterable<BugLeafNode> {
 
+    private static final int[] EMPTY_IDS = new int[0];
+
+    /**
+     * The set this one was queried from, or this set if it was created from a
+     * list of bugs
+     */
+    private final BugSet root;
+
+    /** All the bugs of a root set; the id of a bug is its index in this list */
     private ArrayList<BugLeafNode> mainList;
 
+    /** The ids of the bugs in this set, in increasing order */
+    private int[] ids;
+
     private final HashMap<SortableValue, BugSet> doneMap;
 
-    private final HashMap<SortableValue, Boolean> doneContainsMap;
+    /** The inverted index of each Sortables, kept by the root set */
+    private final EnumMap<Sortables, ValueIndex> valueIndexes;
+
+    /** The id of each bug, kept by the root set */
+    private HashMap<BugLeafNode, Integer> idMap;
+
+    /** The suppressed bugs, kept by the root set */
+    private BitSet suppressed;
+
+    /**
+     * Matches the bugs to suppress, or null to suppress those the MainFrame
+     * doesn't display; kept by the root set
+     */
+    private Matcher suppressionMatcher;
+
+    /**
+     * Incremented by the root set when the filters change, so that the sets
+     * queried from it know their filtered caches are out of date
+     */
+    private int filterGeneration;
+
+    private int cachedGeneration = -1;
+
+    private int[] visibleIds;
+
+    private EnumMap<Sortables, BitSet> presentValues;
 
     private HashMap<Sortables, String[]> sortablesToStrings;
 
     private static BugSet mainBugSet = null;
 
+    /**
+     * The values of one Sortables for all bugs of a root set. Values are
+     * numbered in the order they are first seen; for each value we keep the
+     * ids of the bugs having it in increasing order, so that the bugs of a
+     * query come out sorted the same way as the root set.
+     */
+    private static class ValueIndex {
+        final ArrayList<String> values = new ArrayList<String>();
+
+        final HashMap<String, Integer> ordinals = new HashMap<String, Integer>();
+
+        /** The value ordinal of each bug */
+        final int[] ordinalOf;
+
+        /** The ids of the bugs having each value */
+        final int[][] bugs;
+
+        ValueIndex(Sortables key, List<BugLeafNode> list) {
+            ordinalOf = new int[list.size()];
+            int[] counts = new int[16];
+            for (int id = 0; id < ordinalOf.length; id++) {
+                String value = key.getFrom(list.get(id).getBug());
+                Integer ordinal = ordinals.get(value);
+                if (ordinal == null) {
+                    ordinal = values.size();
+                    ordinals.put(value, ordinal);
+                    values.add(value);
+                    if (ordinal == counts.length) {
+                        counts = Arrays.copyOf(counts, 2 * counts.length);
+                    }
+                }
+                ordinalOf[id] = ordinal;
+                counts[ordinal]++;
+            }
+            bugs = new int[values.size()][];
+            for (int ordinal = 0; ordinal < bugs.length; ordinal++) {
+                bugs[ordinal] = new int[counts[ordinal]];
+                counts[ordinal] = 0;
+            }
+            for (int id = 0; id < ordinalOf.length; id++) {
+                int ordinal = ordinalOf[id];
+                bugs[ordinal][counts[ordinal]++] = id;
+            }
+        }
+    }
+
     /**
      * mainBugSet should probably always be the same as the data field in the
      * current BugTreeModel we haven't run into any issues where it isn't, but
@@ -100,18 +191,103 @@ public class BugSet implements Iterable<BugLeafNode> {
      * @param filteredSet
      */
     BugSet(Collection<? extends BugLeafNode> filteredSet) {
+        this.root = this;
         this.mainList = new ArrayList<BugLeafNode>(filteredSet);
         doneMap = new HashMap<SortableValue, BugSet>();
-        doneContainsMap = new HashMap<SortableValue, Boolean>();
-        cacheSortables();
+        valueIndexes = new EnumMap<Sortables, ValueIndex>(Sortables.class);
+        resetIndexes();
     }
 
     BugSet(BugCollection bugCollection) {
-        this(Collections.<BugLeafNode> emptyList());
+        this(leafNodes(bugCollection));
+    }
+
+    /**
+     * Copy constructor, also used to make sure things are recalculated
+     *
+     * @param copySet
+     */
+    // Note: THIS CLEARS THE CACHES OF DONE SETS!
+    BugSet(BugSet copySet) {
+        this.root = this;
+        this.mainList = copySet.isRoot() ? copySet.mainList : new ArrayList<BugLeafNode>(copySet.asList());
+        doneMap = new HashMap<SortableValue, BugSet>();
+        valueIndexes = new EnumMap<Sortables, ValueIndex>(Sortables.class);
+        resetIndexes();
+    }
+
+    /**
+     * Creates the result of a query on a root set
+     */
+    private BugSet(BugSet root, int[] ids) {
+        this.root = root;
+        this.ids = ids;
+        doneMap = new HashMap<SortableValue, BugSet>();
+        valueIndexes = null;
+    }
+
+    private static List<BugLeafNode> leafNodes(BugCollection bugCollection) {
+        ArrayList<BugLeafNode> result = new ArrayList<BugLeafNode>(bugCollection.getCollection().size());
         for (Iterator<BugInstance> i = bugCollection.iterator(); i.hasNext();) {
-            mainList.add(new BugLeafNode(i.next()));
+            result.add(new BugLeafNode(i.next()));
+        }
+        return result;
+    }
+
+    private boolean isRoot() {
+        return root == this;
+    }
+
+    /**
+     * Forget everything computed from the order of mainList
+     */
+    private void resetIndexes() {
+        ids = new int[mainList.size()];
+        for (int id = 0; id < ids.length; id++) {
+            ids[id] = id;
+        }
+        valueIndexes.clear();
+        idMap = null;
+        doneMap.clear();
+        filtersChanged();
+    }
+
+    private void filtersChanged() {
+        suppressed = null;
+        filterGeneration++;
+    }
+
+    private ValueIndex getValueIndex(Sortables key) {
+        ValueIndex result = valueIndexes.get(key);
+        if (result == null) {
+            result = new ValueIndex(key, mainList);
+            valueIndexes.put(key, result);
         }
+        return result;
+    }
+
+    private int getId(BugLeafNode p) {
+        if (idMap == null) {
+            idMap = new HashMap<BugLeafNode, Integer>(2 * mainList.size());
+            for (int id = 0; id < mainList.size(); id++) {
+                idMap.put(mainList.get(id), id);
+            }
+        }
+        Integer id = idMap.get(p);
+        return id == null ? -1 : id;
+    }
 
+    private BitSet getSuppressed() {
+        if (suppressed == null) {
+            suppressed = new BitSet(mainList.size());
+            for (int id = 0; id < mainList.size(); id++) {
+                BugLeafNode p = mainList.get(id);
+                if (suppressionMatcher != null ? suppressionMatcher.match(p.getBug()) : suppress(p)) {
+                    suppressed.set(id);
+                }
+            }
+        }
+        return suppressed;
     }
 
     /**
@@ -126,6 +302,18 @@ public class BugSet implements Iterable<BugLeafNode> {
         bs.cacheSortables();
     }
 
+    /**
+     * Suppress the bugs matched by the given matcher instead of those the
+     * MainFrame doesn't display
+     *
+     * @param matcher
+     *            the matcher, or null to go back to asking the MainFrame
+     */
+    void setSuppressionMatcher(@CheckForNull Matcher matcher) {
+        root.suppressionMatcher = matcher;
+        clearCache();
+    }
+
     static boolean suppress(BugLeafNode p) {
         return !MainFrame.getInstance().shouldDisplayIssue(p.getBug());
     }
@@ -137,10 +325,61 @@ public class BugSet implements Iterable<BugLeafNode> {
      * the results.
      */
     void cacheSortables() {
-        sortablesToStrings = new HashMap<Sortables, String[]>();
+        cachedGeneration = -1;
+    }
+
+    /**
+     * Drop the caches which depend on which bugs are suppressed if the filters
+     * have changed since they were computed
+     */
+    private void checkFilteredCaches() {
+        if (cachedGeneration != root.filterGeneration) {
+            cachedGeneration = root.filterGeneration;
+            visibleIds = null;
+            presentValues = new EnumMap<Sortables, BitSet>(Sortables.class);
+            sortablesToStrings = new HashMap<Sortables, String[]>();
+        }
+    }
+
+    private int[] getVisibleIds() {
+        checkFilteredCaches();
+        if (visibleIds == null) {
+            BitSet rootSuppressed = root.getSuppressed();
+            int[] result = new int[ids.length];
+            int n = 0;
+            for (int id : ids) {
+                if (!rootSuppressed.get(id)) {
+                    result[n++] = id;
+                }
+            }
+            visibleIds = n == result.length ? result : Arrays.copyOf(result, n);
+        }
+        return visibleIds;
+    }
+
+    /**
+     * Get the ordinals of the values of key which occur among the bugs of
+     * this set that aren't suppressed
+     */
+    private BitSet getPresentValues(Sortables key) {
+        checkFilteredCaches();
+        BitSet result = presentValues.get(key);
+        if (result == null) {
+            int[] ordinalOf = root.getValueIndex(key).ordinalOf;
+            result = new BitSet();
+            for (int id : getVisibleIds()) {
+                result.set(ordinalOf[id]);
+            }
+            presentValues.put(key, result);
+        }
+        return result;
     }
 
     String[] getDistinctValues(Sortables key) {
+        if (key == Sortables.DIVIDER) {
+            return EMPTY_STRING_ARRAY;
+        }
+        checkFilteredCaches();
         String[] list = sortablesToStrings.get(key);
         if (list == null) {
             list = computeDistinctValues(key);
@@ -157,20 +396,14 @@ public class BugSet implements Iterable<BugLeafNode> {
             return EMPTY_STRING_ARRAY;
         }
 
-        Collection<String> list = new HashSet<String>();
-
-        for (BugLeafNode p : mainList) {
-            if (suppress(p)) {
-                continue;
-            }
-            BugInstance bug = p.getBug();
-
-            String value = key.getFrom(bug);
-            list.add(value);
-
+        BitSet present = getPresentValues(key);
+        List<String> values = root.getValueIndex(key).values;
+        String result[] = new String[present.cardinality()];
+        int n = 0;
+        for (int ordinal = present.nextSetBit(0); ordinal >= 0; ordinal = present.nextSetBit(ordinal + 1)) {
+            result[n++] = values.get(ordinal);
         }
-        String result[] = list.toArray(new String[list.size()]);
-        Collections.sort(Arrays.asList(result), new SortableStringComparator(key));
+        Arrays.sort(result, new SortableStringComparator(key));
         return result;
 
     }
@@ -181,7 +414,7 @@ public class BugSet implements Iterable<BugLeafNode> {
      */
     static int countFilteredBugs() {
         int result = 0;
-        for (BugLeafNode bug : getMainBugSet().mainList) {
+        for (BugLeafNode bug : getMainBugSet()) {
             if (suppress(bug)) {
                 result++;
             }
@@ -190,19 +423,6 @@ public class BugSet implements Iterable<BugLeafNode> {
         return result;
     }
 
-    /**
-     * Copy constructor, also used to make sure things are recalculated
-     *
-     * @param copySet
-     */
-    // Note: THIS CLEARS THE CACHES OF DONE SETS!
-    BugSet(BugSet copySet) {
-        this.mainList = copySet.mainList;
-        doneMap = new HashMap<SortableValue, BugSet>();
-        doneContainsMap = new HashMap<SortableValue, Boolean>();
-        cacheSortables();
-    }
-
     /**
      * A String pair has a key and a value. The key is the general category ie:
      * Type The value is the value ie: Malicious Code.
@@ -216,27 +436,62 @@ public class BugSet implements Iterable<BugLeafNode> {
      * is used again.
      */
     BugSet query(SortableValue keyValuePair) {
-        if (doneMap.containsKey(keyValuePair)) {
-            return doneMap.get(keyValuePair);
+        BugSet result = doneMap.get(keyValuePair);
+        if (result != null) {
+            return result;
+        }
+        ValueIndex index = root.getValueIndex(keyValuePair.key);
+        Integer ordinal = index.ordinals.get(keyValuePair.value);
+        int[] matching;
+        if (ordinal == null) {
+            matching = EMPTY_IDS;
+        } else if (isRoot()) {
+            matching = index.bugs[ordinal];
+        } else {
+            matching = intersect(ids, index.bugs[ordinal]);
         }
-        ArrayList<BugLeafNode> bugs = new ArrayList<BugLeafNode>();
+        result = new BugSet(root, matching);
+        doneMap.put(keyValuePair, result);
+        return result;
+    }
 
-        for (BugLeafNode b : mainList) {
-            if (b.matches(keyValuePair)) {
-                bugs.add(b);
+    /**
+     * Intersect two increasing arrays of ids, looking up the ids of the
+     * shorter one in the longer one.
+     */
+    static int[] intersect(int[] a, int[] b) {
+        if (a.length > b.length) {
+            int[] tmp = a;
+            a = b;
+            b = tmp;
+        }
+        int[] result = new int[a.length];
+        int n = 0;
+        int low = 0;
+        for (int id : a) {
+            if (low >= b.length) {
+                break;
+            }
+            int i = Arrays.binarySearch(b, low, b.length, id);
+            if (i >= 0) {
+                result[n++] = id;
+                low = i + 1;
+            } else {
+                low = -i - 1;
             }
         }
-
-        BugSet temp = new BugSet(bugs);
-        doneMap.put(keyValuePair, temp);
-        return temp;
+        return n == result.length ? result : Arrays.copyOf(result, n);
     }
 
     /*
      * Sort the contents of the list by the Sortables in the order after the
-     * divider, if any.
+     * divider, if any. Sets queried from another set are always in the order
+     * of that set, so this only sorts root sets.
      */
     void sortList() {
+        if (!isRoot()) {
+            return;
+        }
 
         final List<Sortables> order = MainFrame.getInstance().getSorter().getOrderAfterDivider();
 
@@ -294,6 +549,7 @@ public class BugSet implements Iterable<BugLeafNode> {
         ArrayList<BugLeafNode> copy = new ArrayList<BugLeafNode>(mainList);
         Collections.sort(copy, comparator);
         mainList = copy;
+        resetIndexes();
 
         if (SystemProperties.ASSERTIONS_ENABLED) {
             for(int i = 0; i < mainList.size(); i++) {
@@ -321,18 +577,8 @@ public class BugSet implements Iterable<BugLeafNode> {
      * @return true if a bug leaf from filterNoCache() matches the pair
      */
     public boolean contains(SortableValue keyValuePair) {
-        if (doneContainsMap.containsKey(keyValuePair)) {
-            return doneContainsMap.get(keyValuePair);
-        }
-
-        for (BugLeafNode p : filteredBugsCached().mainList) {
-            if (p.matches(keyValuePair)) {
-                doneContainsMap.put(keyValuePair, true);
-                return true;
-            }
-        }
-        doneContainsMap.put(keyValuePair, false);
-        return false;
+        Integer ordinal = root.getValueIndex(keyValuePair.key).ordinals.get(keyValuePair.value);
+        return ordinal != null && getPresentValues(keyValuePair.key).get(ordinal);
     }
 
     /**
@@ -348,76 +594,73 @@ public class BugSet implements Iterable<BugLeafNode> {
     }
 
     public int sizeUnfiltered() {
-        return mainList.size();
+        return ids.length;
     }
 
     public int indexOfUnfiltered(BugLeafNode p) {
-        return mainList.indexOf(p);
+        return indexOf(ids, root.getId(p));
     }
 
     public BugLeafNode getUnfiltered(int index) {
-        return mainList.get(index);
-    }
-
-    @Override
-    public Iterator<BugLeafNode> iterator() {
-        return mainList.iterator();
+        return root.mainList.get(ids[index]);
     }
 
-    // //////Filtered API
-
-    BugSet(ArrayList<BugLeafNode> filteredSet, boolean cacheSortables) {
-        this.mainList = new ArrayList<BugLeafNode>(filteredSet);
-        doneMap = new HashMap<SortableValue, BugSet>();
-        doneContainsMap = new HashMap<SortableValue, Boolean>();
-        if (cacheSortables) {
-            cacheSortables();
+    private static int indexOf(int[] ids, int id) {
+        if (id < 0) {
+            return -1;
         }
+        int index = Arrays.binarySearch(ids, id);
+        return index >= 0 ? index : -1;
     }
 
-    private BugSet filteredBugsNoCache() {
+    private List<BugLeafNode> asList() {
+        return new AbstractList<BugLeafNode>() {
+            @Override
+            public BugLeafNode get(int index) {
+                return getUnfiltered(index);
+            }
 
-        ArrayList<BugLeafNode> people = new ArrayList<BugLeafNode>();
-        for (BugLeafNode p : mainList) {
-            if (!suppress(p)) {
-                people.add(p);
+            @Override
+            public int size() {
+                return sizeUnfiltered();
             }
-        }
-        return new BugSet(people, false);
+        };
     }
 
-    BugSet cache = null;
-
-    public void clearCache() {
-        cache = null;
+    @Override
+    public Iterator<BugLeafNode> iterator() {
+        return asList().iterator();
     }
 
-    private BugSet filteredBugsCached() {
-        if (cache == null) {
-            cache = filteredBugsNoCache();
-        }
-        return cache;
+    // //////Filtered API
+
+    /**
+     * Called when the filters have changed. Only which bugs are suppressed is
+     * recomputed; the indexes and the queries made on this set remain valid.
+     */
+    public void clearCache() {
+        root.filtersChanged();
     }
 
     public BugSet getBugsMatchingFilter(Matcher m) {
         ArrayList<BugLeafNode> people = new ArrayList<BugLeafNode>();
-        for (BugLeafNode p : mainList) {
+        for (BugLeafNode p : this) {
             if (!(m.match(p.getBug()))) {
                 people.add(p);
             }
         }
-        return new BugSet(people, false);
+        return new BugSet(people);
     }
 
     public int size() {
-        return filteredBugsCached().sizeUnfiltered();
+        return getVisibleIds().length;
     }
 
     public int indexOf(BugLeafNode p) {
-        return filteredBugsCached().indexOfUnfiltered(p);
+        return indexOf(getVisibleIds(), root.getId(p));
     }
 
     public BugLeafNode get(int index) {
-        return filteredBugsCached().getUnfiltered(index);
+        return root.mainList.get(getVisibleIds()[index]);
     }
 }
@@ -21,6 +21,7 @@ package edu.umd.cs.findbugs.gui2;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Enumeration;
 import java.util.List;
 
 import javax.annotation.Nonnull;
@@ -477,18 +478,56 @@ public class BugTreeModel implements TreeModel, TableColumnModelListener, TreeEx
             if (TRACE) {
                 System.out.println("clearing cache in bug tree model");
             }
-            resetData();
-            BugSet.setAsRootAndCache(bugSet);// FIXME: Should this be in
-            // resetData? Does this allow our
-            // main list to not be the same as
-            // the data in our tree?
+            // Filtering doesn't change the bugs or their values, so keep the
+            // indexes and just recompute which bugs are suppressed
+            bugSet.clearCache();
+            if (BugSet.getMainBugSet() != bugSet) {
+                BugSet.setAsRootAndCache(bugSet);// FIXME: Should this be in
+                // resetData? Does this allow our
+                // main list to not be the same as
+                // the data in our tree?
+            }
             root.setCount(bugSet.size());
 
-            rebuild();
+            filtersChanged();
         }
 
     }
 
+    /**
+     * Updates the tree in place after the filters changed, keeping the
+     * expanded branches and selected bugs which are still shown, rather than
+     * swapping in a new model and JTree.
+     */
+    private void filtersChanged() {
+        NewFilterFromBug.closeAll();
+        setOldSelectedBugs();
+        TreePath rootPath = new TreePath(root);
+        Enumeration<TreePath> expanded = tree.getExpandedDescendants(rootPath);
+        List<TreePath> expandedPaths = expanded == null ? Collections.<TreePath> emptyList() : Collections.list(expanded);
+
+        TreeModelEvent event = new TreeModelEvent(this, rootPath);
+        for (TreeModelListener l : listeners) {
+            l.treeStructureChanged(event);
+        }
+        for (TreePath path : expandedPaths) {
+            if (isShown(path)) {
+                tree.expandPath(path);
+            }
+        }
+        openPreviouslySelected(new ArrayList<BugLeafNode>(selectedBugLeafNodes));
+    }
+
+    private boolean isShown(TreePath path) {
+        Object[] nodes = path.getPath();
+        for (int i = 1; i < nodes.length; i++) {
+            if (getIndexOfChild(nodes[i - 1], nodes[i]) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     void treeNodeChanged(TreePath path) {
         Debug.println("Tree Node Changed: " + path);
         if (path.getParentPath() == null) {
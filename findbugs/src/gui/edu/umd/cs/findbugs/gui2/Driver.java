@@ -25,6 +25,7 @@ import java.util.Locale;
 import javax.swing.JOptionPane;
 
 import edu.umd.cs.findbugs.Plugin;
+import edu.umd.cs.findbugs.SortedBugCollection;
 import edu.umd.cs.findbugs.StartTime;
 import edu.umd.cs.findbugs.SystemProperties;
 import edu.umd.cs.findbugs.Version;
@@ -77,7 +78,8 @@ public class Driver {
                 if (argLowerCase.endsWith(".fbp") || argLowerCase.endsWith(".fb")) {
                     // Project file specified
                     commandLine.loadProject(arg);
-                } else if (argLowerCase.endsWith(".xml") || argLowerCase.endsWith(".xml.gz") || argLowerCase.endsWith(".fba")) {
+                } else if (argLowerCase.endsWith(".xml") || argLowerCase.endsWith(".xml.gz") || argLowerCase.endsWith(".fba")
+                        || SortedBugCollection.isBinaryXMLFileName(argLowerCase)) {
                     // Saved analysis results specified
                     commandLine.setSaveFile(new File(arg));
                 } else {
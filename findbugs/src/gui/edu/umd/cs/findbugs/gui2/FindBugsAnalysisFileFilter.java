@@ -21,18 +21,21 @@ package edu.umd.cs.findbugs.gui2;
 
 import java.io.File;
 
+import edu.umd.cs.findbugs.SortedBugCollection;
+
 public final class FindBugsAnalysisFileFilter extends FindBugsFileFilter {
 
     public static final FindBugsAnalysisFileFilter INSTANCE = new FindBugsAnalysisFileFilter();
 
     @Override
     public boolean accept(File arg0) {
-        return arg0.getName().endsWith(".xml") || arg0.getName().endsWith(".xml.gz") || arg0.isDirectory();
+        return arg0.getName().endsWith(".xml") || arg0.getName().endsWith(".xml.gz")
+                || SortedBugCollection.isBinaryXMLFileName(arg0.getName()) || arg0.isDirectory();
     }
 
     @Override
     public String getDescription() {
-        return "FindBugs analysis results (.xml, *.xml.gz)";
+        return "FindBugs analysis results (.xml, *.xml.gz, *.fbb)";
     }
 
     @Override
@@ -19,6 +19,7 @@ import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.HTMLBugReporter;
 import edu.umd.cs.findbugs.L10N;
 import edu.umd.cs.findbugs.Project;
+import edu.umd.cs.findbugs.SortedBugCollection;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.charsets.UTF8;
 import edu.umd.cs.findbugs.filter.Filter;
@@ -126,7 +127,7 @@ public class MainFrameLoadSaveHelper implements Serializable {
 
             switch (fileType) {
             case XML_ANALYSIS:
-                if (!f.getName().endsWith(".xml")) {
+                if (!f.getName().endsWith(".xml") && !SortedBugCollection.isBinaryXMLFileName(f.getName())) {
                     JOptionPane.showMessageDialog(saveOpenFileChooser,
                             L10N.getLocalString("dlg.not_xml_data_lbl", "This is not a saved bug XML data file."));
                     loading = true;
@@ -21,6 +21,7 @@ package edu.umd.cs.findbugs.gui2;
 
 import java.io.File;
 
+import edu.umd.cs.findbugs.SortedBugCollection;
 import edu.umd.cs.findbugs.util.Util;
 
 enum SaveType {
@@ -86,6 +87,9 @@ enum SaveType {
         if (f.getName().toLowerCase().endsWith("xml.gz")) {
             return XML_ANALYSIS;
         }
+        if (SortedBugCollection.isBinaryXMLFileName(f.getName().toLowerCase())) {
+            return XML_ANALYSIS;
+        }
         return NOT_KNOWN;
     }
 }
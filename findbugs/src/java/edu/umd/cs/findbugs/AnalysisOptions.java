@@ -76,6 +76,28 @@ public class AnalysisOptions {
      */
     public boolean noClassOk;
 
+    /**
+     * Number of threads used to apply detectors to classes
+     */
+    public int numThreads = 1;
+
+    /**
+     * Directory of the persistent store of per-class analysis results, or
+     * null if results are not stored
+     */
+    public String resultCacheDirectory;
+
+    /**
+     * Directory of the persistent store of library class summaries, or null
+     * if library classes are always analyzed
+     */
+    public String librarySummaryDirectory;
+
+    /**
+     * Incremental analysis to perform, or null to analyze all classes
+     */
+    public IncrementalAnalysis incrementalAnalysis;
+
     String releaseName;
 
     String projectName;
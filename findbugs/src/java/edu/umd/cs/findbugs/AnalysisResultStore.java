@@ -0,0 +1,636 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.ba.XClass;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IErrorLogger;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+import edu.umd.cs.findbugs.classfile.analysis.ClassData;
+import edu.umd.cs.findbugs.io.IO;
+import edu.umd.cs.findbugs.util.Util;
+
+/**
+ * A persistent store of what the detectors learn from and report about
+ * application classes, used to avoid re-analyzing classes which have not
+ * changed since an earlier run.
+ * <p>
+ * The store is a directory of files, two per analyzed class: one with the
+ * bugs reported by the per-class detectors of the last pass, and one with
+ * what the first-pass detectors learned from the class (see
+ * {@link LibrarySummaryDetector}) and the bugs they reported. Each file is
+ * named by a hash of everything its contents depend on: the analysis
+ * configuration (FindBugs and plugin versions, enabled detectors, analysis
+ * features), the bytes of the class itself, and the bytes of all its
+ * supertypes and of the classes it calls. A class whose key changed is
+ * analyzed again; the results of the other classes are replayed, and the
+ * facts learned from them in the first pass are added to the databases as if
+ * the class had been visited.
+ * <p>
+ * So changing a class invalidates its own results and those of the classes
+ * which extend or call it. What the interprocedural databases record about
+ * classes further away, e.g. about the callees of a called method, is
+ * assumed not to change the results of a class.
+ * <p>
+ * Errors, missing classes and skipped analyses reported while a detector
+ * analyzes a class are stored with its bugs and reported again when the
+ * results are replayed, if they went through the {@link ProblemRecorder}
+ * passed to the constructor.
+ *
+ * @see FindBugs2
+ */
+public class AnalysisResultStore {
+
+    private static final int FORMAT_VERSION = 3;
+
+    private static final String SUFFIX = ".ser";
+
+    private final File directory;
+
+    private final byte[] configurationDigest;
+
+    private final @CheckForNull ProblemRecorder problemRecorder;
+
+    private final Map<ClassDescriptor, byte[]> classDigestMap = new ConcurrentHashMap<ClassDescriptor, byte[]>();
+
+    private final AtomicInteger hits = new AtomicInteger();
+
+    private final AtomicInteger misses = new AtomicInteger();
+
+    private final Set<ClassDescriptor> analyzedClasses = Collections.newSetFromMap(new ConcurrentHashMap<ClassDescriptor, Boolean>());
+
+    /**
+     * Constructor.
+     *
+     * @param directory
+     *            directory in which results are stored; created if it does
+     *            not exist
+     * @param configuration
+     *            description of the analysis configuration; results stored
+     *            with another configuration are never used
+     * @param problemRecorder
+     *            the error logger of the analysis cache, which records the
+     *            problems reported while the results are recorded, or null
+     *            if problems are not stored
+     */
+    public AnalysisResultStore(File directory, String configuration, @CheckForNull ProblemRecorder problemRecorder) {
+        this.directory = directory;
+        this.configurationDigest = digest(FORMAT_VERSION + "\n" + configuration);
+        this.problemRecorder = problemRecorder;
+    }
+
+    /**
+     * A BugReporter which records the errors, missing classes and skipped
+     * analyses reported by the current thread while a detector's results are
+     * being recorded, and passes all reports on to its delegate. It must be
+     * the error logger of the analysis cache, so that it sees the problems
+     * reported through the {@link AnalysisContext}.
+     */
+    public static class ProblemRecorder extends DelegatingBugReporter {
+
+        private final ThreadLocal<List<Problem>> recording = new ThreadLocal<List<Problem>>();
+
+        public ProblemRecorder(BugReporter delegate) {
+            super(delegate);
+        }
+
+        void startRecording() {
+            recording.set(new ArrayList<Problem>());
+        }
+
+        List<Problem> stopRecording() {
+            List<Problem> problems = recording.get();
+            recording.remove();
+            if (problems == null) {
+                return Collections.emptyList();
+            }
+            return problems;
+        }
+
+        private void record(Problem problem) {
+            List<Problem> problems = recording.get();
+            if (problems != null) {
+                problems.add(problem);
+            }
+        }
+
+        @Override
+        public void logError(String message) {
+            record(new Problem(Problem.ERROR, message, null, null));
+            super.logError(message);
+        }
+
+        @Override
+        public void logError(String message, Throwable e) {
+            record(new Problem(Problem.ERROR, message, e, null));
+            super.logError(message, e);
+        }
+
+        @Override
+        public void reportMissingClass(ClassNotFoundException ex) {
+            record(new Problem(Problem.MISSING_CLASS, null, ex, null));
+            super.reportMissingClass(ex);
+        }
+
+        @Override
+        public void reportMissingClass(ClassDescriptor classDescriptor) {
+            record(new Problem(Problem.MISSING_CLASS, classDescriptor.getClassName(), null, null));
+            super.reportMissingClass(classDescriptor);
+        }
+
+        @Override
+        public void reportSkippedAnalysis(MethodDescriptor method) {
+            record(new Problem(Problem.SKIPPED_ANALYSIS, method.getSlashedClassName(), null, new String[] { method.getName(),
+                    method.getSignature(), Boolean.toString(method.isStatic()) }));
+            super.reportSkippedAnalysis(method);
+        }
+    }
+
+    /**
+     * An error, missing class or skipped analysis reported while analyzing a
+     * class.
+     */
+    static class Problem implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        static final int ERROR = 0;
+
+        static final int MISSING_CLASS = 1;
+
+        static final int SKIPPED_ANALYSIS = 2;
+
+        private final int kind;
+
+        /** the error message, or the slashed name of a class */
+        private final @CheckForNull String name;
+
+        private final @CheckForNull Throwable exception;
+
+        /** name, signature and staticness of a skipped method */
+        private final @CheckForNull String[] method;
+
+        Problem(int kind, @CheckForNull String name, @CheckForNull Throwable exception, @CheckForNull String[] method) {
+            this.kind = kind;
+            this.name = name;
+            this.exception = exception;
+            this.method = method;
+        }
+
+        void report(IErrorLogger errorLogger) {
+            switch (kind) {
+            case ERROR:
+                if (exception != null) {
+                    errorLogger.logError(name, exception);
+                } else {
+                    errorLogger.logError(name);
+                }
+                break;
+            case MISSING_CLASS:
+                if (exception instanceof ClassNotFoundException) {
+                    errorLogger.reportMissingClass((ClassNotFoundException) exception);
+                } else {
+                    errorLogger.reportMissingClass(DescriptorFactory.createClassDescriptor(name));
+                }
+                break;
+            case SKIPPED_ANALYSIS:
+                errorLogger.reportSkippedAnalysis(DescriptorFactory.instance().getMethodDescriptor(name, method[0], method[1],
+                        Boolean.parseBoolean(method[2])));
+                break;
+            default:
+                throw new IllegalStateException("Unknown kind of problem " + kind);
+            }
+        }
+    }
+
+    /**
+     * Stored or to-be-stored results of the per-class detectors, or of the
+     * first-pass detectors, for one class.
+     */
+    public class ClassResult {
+        private final String key;
+
+        private final @CheckForNull Map<String, List<BugInstance>> storedBugs;
+
+        private final @CheckForNull Map<String, List<Problem>> storedProblems;
+
+        private final @CheckForNull Map<String, byte[]> storedSummaries;
+
+        private ByteArrayOutputStream bytes;
+
+        private ObjectOutputStream out;
+
+        private boolean failed;
+
+        ClassResult(String key, @CheckForNull Map<String, List<BugInstance>> storedBugs,
+                @CheckForNull Map<String, List<Problem>> storedProblems, @CheckForNull Map<String, byte[]> storedSummaries) {
+            this.key = key;
+            this.storedBugs = storedBugs;
+            this.storedProblems = storedProblems;
+            this.storedSummaries = storedSummaries;
+        }
+
+        /**
+         * @return true if the results were stored by an earlier run, so the
+         *         detectors need not be applied to the class
+         */
+        public boolean isStored() {
+            return storedBugs != null;
+        }
+
+        /**
+         * Get the stored bugs reported by a detector.
+         *
+         * @param detectorClassName
+         *            class name of the detector
+         * @return the stored bugs
+         */
+        public @Nonnull List<BugInstance> getStoredBugs(String detectorClassName) {
+            List<BugInstance> bugs = storedBugs != null ? storedBugs.get(detectorClassName) : null;
+            if (bugs == null) {
+                return Collections.emptyList();
+            }
+            return bugs;
+        }
+
+        /**
+         * Get the stored summary of what a first-pass detector learned from
+         * the class.
+         *
+         * @param detectorClassName
+         *            class name of the detector (or other recorder)
+         * @return the summary, or null if none was recorded
+         */
+        public @CheckForNull LibrarySummaryInput getStoredSummary(String detectorClassName) {
+            byte[] data = storedSummaries != null ? storedSummaries.get(detectorClassName) : null;
+            if (data == null) {
+                return null;
+            }
+            return new LibrarySummaryInput(data);
+        }
+
+        /**
+         * Report the stored errors, missing classes and skipped analyses
+         * reported by a detector to the error logger of the analysis cache.
+         *
+         * @param detectorClassName
+         *            class name of the detector
+         */
+        public void reportStoredProblems(String detectorClassName) {
+            List<Problem> problems = storedProblems != null ? storedProblems.get(detectorClassName) : null;
+            if (problems == null) {
+                return;
+            }
+            IErrorLogger errorLogger = Global.getAnalysisCache().getErrorLogger();
+            for (Problem problem : problems) {
+                problem.report(errorLogger);
+            }
+        }
+
+        /**
+         * Start recording the problems reported by the current thread, until
+         * the results of the detector are recorded.
+         */
+        public void startRecording() {
+            if (!isStored() && problemRecorder != null) {
+                problemRecorder.startRecording();
+            }
+        }
+
+        /**
+         * Record the bugs reported by a detector, and the problems reported
+         * since {@link #startRecording()}. The bugs are serialized right away,
+         * so they may be modified afterwards.
+         *
+         * @param detectorClassName
+         *            class name of the detector
+         * @param bugs
+         *            the bugs reported by the detector
+         */
+        public void record(String detectorClassName, List<BugInstance> bugs) {
+            record(detectorClassName, bugs, null);
+        }
+
+        /**
+         * Record the bugs reported by a first-pass detector, the problems
+         * reported since {@link #startRecording()}, and the summary of what
+         * the detector learned from the class.
+         *
+         * @param detectorClassName
+         *            class name of the detector (or other recorder)
+         * @param bugs
+         *            the bugs reported by the detector
+         * @param summary
+         *            the summary recorded by the detector, or null if none
+         */
+        public void record(String detectorClassName, List<BugInstance> bugs, @CheckForNull LibrarySummaryOutput summary) {
+            List<Problem> problems = problemRecorder != null ? problemRecorder.stopRecording() : Collections.<Problem> emptyList();
+            if (isStored() || failed) {
+                return;
+            }
+            if (summary != null && summary.isFailed()) {
+                fail();
+                return;
+            }
+            try {
+                if (out == null) {
+                    bytes = new ByteArrayOutputStream();
+                    out = new ObjectOutputStream(bytes);
+                }
+                out.writeBoolean(true);
+                out.writeUTF(detectorClassName);
+                out.writeObject(new ArrayList<BugInstance>(bugs));
+                out.writeObject(new ArrayList<Problem>(problems));
+                out.writeObject(summary != null ? summary.toByteArray() : null);
+            } catch (IOException e) {
+                AnalysisContext.logError("Couldn't record results for " + detectorClassName, e);
+                fail();
+            }
+        }
+
+        /**
+         * Don't store the results of the class, e.g. because a summary is
+         * incomplete.
+         */
+        public void fail() {
+            failed = true;
+            out = null;
+            bytes = null;
+        }
+
+        /**
+         * Write the recorded results to the store.
+         */
+        public void commit() {
+            if (isStored() || out == null) {
+                return;
+            }
+            try {
+                out.writeBoolean(false);
+                out.close();
+                write(key, bytes.toByteArray());
+            } catch (IOException e) {
+                AnalysisContext.logError("Couldn't store analysis results in " + directory, e);
+            } finally {
+                out = null;
+                bytes = null;
+            }
+        }
+    }
+
+    /**
+     * Look up the stored results of the detectors of an analysis pass for a
+     * class. In the first of several passes, these are the bugs reported by
+     * the first-pass detectors and the summaries of what they learned from
+     * the class; in the other passes, the bugs reported by the per-class
+     * detectors.
+     *
+     * @param classDescriptor
+     *            the class
+     * @param pass
+     *            number of the analysis pass
+     * @return the results, which may or may not have been stored by an
+     *         earlier run; null if the class data is not available
+     */
+    public @CheckForNull ClassResult lookup(ClassDescriptor classDescriptor, int pass) {
+        String key = getKey(classDescriptor, pass);
+        if (key == null) {
+            return null;
+        }
+        Map<String, List<BugInstance>> storedBugs = new HashMap<String, List<BugInstance>>();
+        Map<String, List<Problem>> storedProblems = new HashMap<String, List<Problem>>();
+        Map<String, byte[]> storedSummaries = new HashMap<String, byte[]>();
+        if (read(key, storedBugs, storedProblems, storedSummaries)) {
+            hits.incrementAndGet();
+            return new ClassResult(key, storedBugs, storedProblems, storedSummaries);
+        }
+        misses.incrementAndGet();
+        analyzedClasses.add(classDescriptor);
+        return new ClassResult(key, null, null, null);
+    }
+
+    /**
+     * @return the classes whose results were not found in the store in at
+     *         least one pass, so that detectors were applied to them
+     */
+    public Set<ClassDescriptor> getAnalyzedClasses() {
+        return Collections.unmodifiableSet(analyzedClasses);
+    }
+
+    /**
+     * @return number of lookups whose results were found in the store
+     */
+    public int getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of lookups whose results were not found in the store
+     */
+    public int getMissCount() {
+        return misses.get();
+    }
+
+    private @CheckForNull String getKey(ClassDescriptor classDescriptor, int pass) {
+        byte[] classDigest = getClassDigest(classDescriptor);
+        if (classDigest == null) {
+            return null;
+        }
+        XClass xclass;
+        try {
+            xclass = Global.getAnalysisCache().getClassAnalysis(XClass.class, classDescriptor);
+        } catch (CheckedAnalysisException e) {
+            return null;
+        }
+        Map<String, ClassDescriptor> referenced = new TreeMap<String, ClassDescriptor>();
+        addSupertypes(xclass, referenced);
+        for (ClassDescriptor c : xclass.getCalledClassDescriptors()) {
+            referenced.put(c.getClassName(), c);
+        }
+        referenced.remove(classDescriptor.getClassName());
+
+        MessageDigest digest = Util.getMD5Digest();
+        digest.update(configurationDigest);
+        digest.update(utf8("pass " + pass));
+        digest.update(classDigest);
+        for (Map.Entry<String, ClassDescriptor> e : referenced.entrySet()) {
+            digest.update(utf8(e.getKey()));
+            byte[] referencedDigest = getClassDigest(e.getValue());
+            if (referencedDigest != null) {
+                digest.update(referencedDigest);
+            }
+        }
+        return String.format("%032x", new BigInteger(1, digest.digest()));
+    }
+
+    /**
+     * Add all supertypes of a class to a map of class names to classes.
+     * Missing supertypes are added, but not searched further.
+     */
+    private static void addSupertypes(XClass xclass, Map<String, ClassDescriptor> supertypes) {
+        LinkedList<XClass> workList = new LinkedList<XClass>();
+        workList.add(xclass);
+        while (!workList.isEmpty()) {
+            XClass x = workList.removeFirst();
+            List<ClassDescriptor> direct = new ArrayList<ClassDescriptor>(Arrays.asList(x.getInterfaceDescriptorList()));
+            if (x.getSuperclassDescriptor() != null) {
+                direct.add(x.getSuperclassDescriptor());
+            }
+            for (ClassDescriptor d : direct) {
+                if (supertypes.put(d.getClassName(), d) != null) {
+                    continue;
+                }
+                try {
+                    workList.add(Global.getAnalysisCache().getClassAnalysis(XClass.class, d));
+                } catch (CheckedAnalysisException e) {
+                    // A missing class changes the key by its missing digest
+                }
+            }
+        }
+    }
+
+    private @CheckForNull byte[] getClassDigest(ClassDescriptor classDescriptor) {
+        byte[] result = classDigestMap.get(classDescriptor);
+        if (result == null) {
+            try {
+                ClassData classData = Global.getAnalysisCache().getClassAnalysis(ClassData.class, classDescriptor);
+                result = Util.getMD5Digest().digest(classData.getData());
+            } catch (CheckedAnalysisException e) {
+                return null;
+            }
+            classDigestMap.put(classDescriptor, result);
+        }
+        return result;
+    }
+
+    private File getFile(String key) {
+        return new File(new File(directory, key.substring(0, 2)), key.substring(2) + SUFFIX);
+    }
+
+    /**
+     * Read a stored entry.
+     *
+     * @return true if the entry was read, false if there is no entry or it
+     *         couldn't be read
+     */
+    private boolean read(String key, Map<String, List<BugInstance>> bugs, Map<String, List<Problem>> problems,
+            Map<String, byte[]> summaries) {
+        File file = getFile(key);
+        if (!file.isFile()) {
+            return false;
+        }
+        ObjectInputStream in = null;
+        try {
+            in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+            while (in.readBoolean()) {
+                String detectorClassName = in.readUTF();
+                @SuppressWarnings("unchecked")
+                List<BugInstance> detectorBugs = (List<BugInstance>) in.readObject();
+                @SuppressWarnings("unchecked")
+                List<Problem> detectorProblems = (List<Problem>) in.readObject();
+                byte[] detectorSummary = (byte[]) in.readObject();
+                bugs.put(detectorClassName, detectorBugs);
+                if (!detectorProblems.isEmpty()) {
+                    problems.put(detectorClassName, detectorProblems);
+                }
+                if (detectorSummary != null) {
+                    summaries.put(detectorClassName, detectorSummary);
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            // Ignore and overwrite damaged or incompatible entries
+            return false;
+        } catch (ClassNotFoundException e) {
+            return false;
+        } catch (ClassCastException e) {
+            return false;
+        } finally {
+            IO.close(in);
+        }
+    }
+
+    private void write(String key, byte[] data) throws IOException {
+        File file = getFile(key);
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Couldn't create directory " + dir);
+        }
+        // Write to a temporary file first, so that concurrent or interrupted
+        // runs never see a partially written entry
+        File tmp = File.createTempFile(key.substring(2), ".tmp", dir);
+        OutputStream out = new FileOutputStream(tmp);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                throw new IOException("Couldn't rename " + tmp + " to " + file);
+            }
+        }
+    }
+
+    private static byte[] digest(String s) {
+        return Util.getMD5Digest().digest(utf8(s));
+    }
+
+    private static byte[] utf8(String s) {
+        try {
+            return s.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
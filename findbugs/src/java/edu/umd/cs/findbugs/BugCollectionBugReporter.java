@@ -52,7 +52,7 @@ public class BugCollectionBugReporter extends TextUIBugReporter implements Debug
 
     @Override
     public @Nonnull
-    BugCollection getBugCollection() {
+    SortedBugCollection getBugCollection() {
         return bugCollection;
     }
 
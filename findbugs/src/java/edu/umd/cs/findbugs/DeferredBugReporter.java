@@ -0,0 +1,78 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * A BugReporter which can hold back reported bug instances, so that bugs found
+ * by detectors running on several analysis threads can be passed on to the
+ * real BugReporter in the same order as in a single-threaded analysis.
+ * <p>
+ * Each analysis thread must use its own instance. While a buffer is set,
+ * reported bugs are added to it; otherwise they are passed on to the delegate
+ * immediately. All other BugReporter methods are always delegated.
+ *
+ * @see FindBugs2
+ */
+public class DeferredBugReporter extends DelegatingBugReporter {
+
+    private @CheckForNull List<BugInstance> buffer;
+
+    /**
+     * Constructor.
+     *
+     * @param delegate
+     *            the BugReporter deferred bugs are eventually reported to
+     */
+    public DeferredBugReporter(BugReporter delegate) {
+        super(delegate);
+    }
+
+    /**
+     * Start collecting reported bugs in given list.
+     *
+     * @param buffer
+     *            list to collect reported bugs in
+     */
+    public void startDeferring(@Nonnull List<BugInstance> buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Stop collecting reported bugs: bugs reported from now on are passed on
+     * to the delegate.
+     */
+    public void stopDeferring() {
+        this.buffer = null;
+    }
+
+    @Override
+    public void reportBug(@Nonnull BugInstance bugInstance) {
+        if (buffer != null) {
+            buffer.add(bugInstance);
+        } else {
+            super.reportBug(bugInstance);
+        }
+    }
+}
@@ -233,6 +233,22 @@ public class DetectorFactory {
     }
 
 
+    /**
+     * Return whether or not the detectors created by this factory only keep
+     * state about the class being visited, so that several instances may be
+     * applied to the classes of one analysis pass concurrently. Detectors opt
+     * in to this by implementing {@link StatelessDetector}; detectors which
+     * don't report warnings (and so typically collect interprocedural
+     * information) are never considered to be per-class detectors.
+     *
+     * @return true if the created detectors keep only per-class state, false
+     *         if not
+     */
+    public boolean isPerClassDetector() {
+        return isReportingDetector() && !isDetectorClassSubtypeOf(NonReportingDetector.class)
+                && isDetectorClassSubtypeOf(StatelessDetector.class);
+    }
+
     /**
      * Check to see if we are running on a recent-enough JRE for this detector
      * to be enabled.
@@ -21,13 +21,21 @@ package edu.umd.cs.findbugs;
 import java.util.HashSet;
 import java.util.Set;
 
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+
 /**
  * A delegating bug reporter which counts reported bug instances, missing
  * classes, and serious analysis errors.
+ * <p>
+ * Errors may be reported by several analysis threads at once, so error
+ * reporting is synchronized on this object.
  */
 public class ErrorCountingBugReporter extends DelegatingBugReporter {
     private int bugCount;
 
+    private int reportCount;
+
     private final HashSet<String> errors = new HashSet<String>();
 
     private final Set<String> missingClassSet = new HashSet<String>();
@@ -59,15 +67,25 @@ public class ErrorCountingBugReporter extends DelegatingBugReporter {
         return errors.size();
     }
 
+    /**
+     * @return number of errors, missing classes and skipped analyses
+     *         reported so far, including repeated reports
+     */
+    public synchronized int getReportCount() {
+        return reportCount;
+    }
+
     @Override
-    public void logError(String message) {
+    public synchronized void logError(String message) {
+        reportCount++;
         if (errors.add(message)) {
             super.logError(message);
         }
     }
 
     @Override
-    public void reportMissingClass(ClassNotFoundException ex) {
+    public synchronized void reportMissingClass(ClassNotFoundException ex) {
+        reportCount++;
         String missing = AbstractBugReporter.getMissingClassName(ex);
         if (missing == null || missing.startsWith("[") || "java.lang.Synthetic".equals(missing)) {
             return;
@@ -76,4 +94,22 @@ public class ErrorCountingBugReporter extends DelegatingBugReporter {
             super.reportMissingClass(ex);
         }
     }
+
+    @Override
+    public synchronized void logError(String message, Throwable e) {
+        reportCount++;
+        super.logError(message, e);
+    }
+
+    @Override
+    public synchronized void reportMissingClass(ClassDescriptor classDescriptor) {
+        reportCount++;
+        super.reportMissingClass(classDescriptor);
+    }
+
+    @Override
+    public synchronized void reportSkippedAnalysis(MethodDescriptor method) {
+        reportCount++;
+        super.reportSkippedAnalysis(method);
+    }
 }
@@ -19,6 +19,7 @@
 
 package edu.umd.cs.findbugs;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -32,6 +33,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -62,8 +69,10 @@ import edu.umd.cs.findbugs.classfile.IClassPath;
 import edu.umd.cs.findbugs.classfile.IClassPathBuilder;
 import edu.umd.cs.findbugs.classfile.ICodeBase;
 import edu.umd.cs.findbugs.classfile.ICodeBaseEntry;
+import edu.umd.cs.findbugs.classfile.IErrorLogger;
 import edu.umd.cs.findbugs.classfile.MissingClassException;
 import edu.umd.cs.findbugs.classfile.impl.ClassFactory;
+import edu.umd.cs.findbugs.classfile.impl.ConcurrentAnalysisCache;
 import edu.umd.cs.findbugs.config.AnalysisFeatureSetting;
 import edu.umd.cs.findbugs.config.UserPreferences;
 import edu.umd.cs.findbugs.detect.NoteSuppressedWarnings;
@@ -93,6 +102,8 @@ public class FindBugs2 implements IFindBugsEngine {
 
     private static final boolean SCREEN_FIRST_PASS_CLASSES = SystemProperties.getBoolean("findbugs.screenFirstPass");
 
+    private static final boolean REPORT_CACHE_STATISTICS = SystemProperties.getBoolean("findbugs.analysiscache.stats");
+
     public static final String PROP_FINDBUGS_HOST_APP = "findbugs.hostApp";
     public static final String PROP_FINDBUGS_HOST_APP_VERSION = "findbugs.hostAppVersion";
 
@@ -128,6 +139,8 @@ public class FindBugs2 implements IFindBugsEngine {
 
     private final AnalysisOptions analysisOptions = new AnalysisOptions(true);
 
+    private AnalysisResultStore resultStore;
+
     /**
      * Constructor.
      */
@@ -263,6 +276,10 @@ public class FindBugs2 implements IFindBugsEngine {
                     };
                 }
 
+                if (analysisOptions.incrementalAnalysis != null) {
+                    bugReporter = analysisOptions.incrementalAnalysis.createBugReporter(bugReporter);
+                }
+
                 if (executionPlan.isActive(NoteSuppressedWarnings.class)) {
                     SuppressionMatcher m = AnalysisContext.currentAnalysisContext().getSuppressionMatcher();
                     bugReporter = new FilterBugReporter(bugReporter, m, false);
@@ -298,6 +315,13 @@ public class FindBugs2 implements IFindBugsEngine {
                 }
                 throw e;
             } finally {
+                if (REPORT_CACHE_STATISTICS && Global.getAnalysisCache() != null) {
+                    ClassFactory.reportStatistics(Global.getAnalysisCache(), System.err);
+                }
+                if (REPORT_CACHE_STATISTICS && resultStore != null) {
+                    System.err.printf("Stored results reused %d times, not found %d times%n", resultStore.getHitCount(),
+                            resultStore.getMissCount());
+                }
                 clearCaches();
                 profiler.end(this.getClass());
                 profiler.report();
@@ -343,6 +367,7 @@ public class FindBugs2 implements IFindBugsEngine {
             referencedClassSet.clear();
         }
         analysisOptions.analysisFeatureSettingList = null;
+        resultStore = null;
         bugReporter = null;
         classFactory = null;
         classPath = null;
@@ -575,17 +600,91 @@ public class FindBugs2 implements IFindBugsEngine {
         this.analysisOptions.noClassOk = noClassOk;
     }
 
+    /**
+     * Set the number of threads used to apply detectors to classes. With more
+     * than one thread, per-class detectors are applied to several classes
+     * concurrently; the reported warnings are the same as with a single
+     * thread.
+     *
+     * @param numThreads
+     *            number of analysis threads, at least 1
+     */
+    public void setNumThreads(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Number of analysis threads must be positive: " + numThreads);
+        }
+        this.analysisOptions.numThreads = numThreads;
+    }
+
+    /**
+     * Set the directory in which the results of per-class detectors are
+     * stored, so that classes which have not changed since an earlier
+     * analysis using the same directory need not be analyzed again.
+     *
+     * @param resultCacheDirectory
+     *            the directory, or null to analyze all classes
+     */
+    public void setResultCacheDirectory(@CheckForNull String resultCacheDirectory) {
+        this.analysisOptions.resultCacheDirectory = resultCacheDirectory;
+    }
+
+    /**
+     * @return the result store used by the last analysis, or null if no
+     *         result cache directory was set
+     */
+    @CheckForNull
+    AnalysisResultStore getResultStore() {
+        return resultStore;
+    }
+
+    /**
+     * Set the directory in which summaries of the library classes analyzed
+     * in the first pass are stored, so that later analyses using the same
+     * directory and library jars need not analyze those classes again.
+     *
+     * @param librarySummaryDirectory
+     *            the directory, or null to always analyze library classes
+     */
+    public void setLibrarySummaryDirectory(@CheckForNull String librarySummaryDirectory) {
+        this.analysisOptions.librarySummaryDirectory = librarySummaryDirectory;
+    }
+
+    /**
+     * Set up an incremental analysis, which re-analyzes only the classes
+     * affected by a set of changed classes and carries over the bugs in all
+     * other classes from an earlier analysis.
+     *
+     * @param incrementalAnalysis
+     *            the incremental analysis, or null to analyze all classes
+     */
+    public void setIncrementalAnalysis(@CheckForNull IncrementalAnalysis incrementalAnalysis) {
+        this.analysisOptions.incrementalAnalysis = incrementalAnalysis;
+    }
+
     /**
      * Create the analysis cache object and register it for current execution thread.
      * <p>
      * This method is protected to allow clients override it and possibly reuse
-     * some previous analysis data (for Eclipse interactive re-build)
+     * some previous analysis data (for Eclipse interactive re-build). Classes
+     * are analyzed by several threads only if the cache is a
+     * {@link ConcurrentAnalysisCache}.
      *
      * @throws IOException
      *             if error occurs registering analysis engines in a plugin
      */
     protected IAnalysisCache createAnalysisCache() throws IOException {
-        IAnalysisCache analysisCache = ClassFactory.instance().createAnalysisCache(classPath, bugReporter);
+        // Problems reported while analyzing a class are stored with its
+        // results, see AnalysisResultStore
+        BugReporter errorLogger = bugReporter;
+        if (analysisOptions.resultCacheDirectory != null) {
+            errorLogger = new AnalysisResultStore.ProblemRecorder(bugReporter);
+        }
+        IAnalysisCache analysisCache;
+        if (analysisOptions.numThreads > 1) {
+            analysisCache = ClassFactory.instance().createConcurrentAnalysisCache(classPath, errorLogger);
+        } else {
+            analysisCache = ClassFactory.instance().createAnalysisCache(classPath, errorLogger);
+        }
 
         // Register the "built-in" analysis engines
         registerBuiltInAnalysisEngines(analysisCache);
@@ -955,12 +1054,6 @@ public class FindBugs2 implements IFindBugsEngine {
             if (executionPlan.getNumPasses() == 0) {
                 throw new AssertionError("no analysis passes");
             }
-            int[] classesPerPass = new int[executionPlan.getNumPasses()];
-            classesPerPass[0] = referencedClassSet.size();
-            for (int i = 0; i < classesPerPass.length; i++) {
-                classesPerPass[i] = i == 0 ? referencedClassSet.size() : appClassList.size();
-            }
-            progress.predictPassCount(classesPerPass);
             XFactory factory = AnalysisContext.currentXFactory();
             Collection<ClassDescriptor> badClasses = new LinkedList<ClassDescriptor>();
             for (ClassDescriptor desc : referencedClassSet) {
@@ -980,8 +1073,34 @@ public class FindBugs2 implements IFindBugsEngine {
                 referencedClassSet.removeAll(badClasses);
             }
 
+            // In an incremental analysis, the per-class detectors of the
+            // reporting passes only analyze the classes affected by the
+            // changed classes. The other detectors, which may report at the
+            // end of the pass, still see all application classes.
+            Set<ClassDescriptor> invalidatedClasses = null;
+            IncrementalAnalysis incrementalAnalysis = analysisOptions.incrementalAnalysis;
+            if (incrementalAnalysis != null) {
+                invalidatedClasses = incrementalAnalysis.computeInvalidatedClasses(appClassList);
+                if (PROGRESS) {
+                    System.out.printf("Incremental analysis: reanalyzing %d of %d classes%n", invalidatedClasses.size(),
+                            appClassList.size());
+                }
+            }
+
+            int[] classesPerPass = new int[executionPlan.getNumPasses()];
+            for (int i = 0; i < classesPerPass.length; i++) {
+                classesPerPass[i] = i == 0 && multiplePasses ? referencedClassSet.size() : appClassList.size();
+            }
+            progress.predictPassCount(classesPerPass);
+
             long startTime = System.currentTimeMillis();
             bugReporter.getProjectStats().setReferencedClasses(referencedClassSet.size());
+
+            // What the detectors learn from and report about unchanged
+            // application classes is stored, and replayed by later runs
+            if (analysisOptions.resultCacheDirectory != null) {
+                resultStore = createResultStore(executionPlan);
+            }
             for (Iterator<AnalysisPass> passIterator = executionPlan.passIterator(); passIterator.hasNext();) {
                 AnalysisPass pass = passIterator.next();
                 yourkitController.advanceGeneration("Pass " + passCount);
@@ -989,8 +1108,29 @@ public class FindBugs2 implements IFindBugsEngine {
                 // gathers information about referenced classes.
                 boolean isNonReportingFirstPass = multiplePasses && passCount == 0;
 
-                // Instantiate the detectors
-                Detector2[] detectorList = pass.instantiateDetector2sInPass(bugReporter);
+                // What the first pass learns from library classes is
+                // summarized, and replayed for unchanged library jars
+                LibrarySummaryStore librarySummaryStore = null;
+                if (isNonReportingFirstPass && analysisOptions.librarySummaryDirectory != null) {
+                    librarySummaryStore = createLibrarySummaryStore(pass);
+                }
+
+                // Instantiate the detectors. If the pass is analyzed by
+                // several threads, the per-class detectors are instantiated
+                // by each analysis thread, and only the remaining detectors
+                // are instantiated here.
+                boolean analyzeConcurrently = canAnalyzeConcurrently(pass);
+                DeferredBugReporter deferredBugReporter = null;
+                Detector2[] detectorList;
+                if (analyzeConcurrently) {
+                    deferredBugReporter = new DeferredBugReporter(bugReporter);
+                    detectorList = instantiateDetector2s(pass, deferredBugReporter, false);
+                } else if (resultStore != null) {
+                    deferredBugReporter = new DeferredBugReporter(bugReporter);
+                    detectorList = pass.instantiateDetector2sInPass(deferredBugReporter);
+                } else {
+                    detectorList = pass.instantiateDetector2sInPass(bugReporter);
+                }
 
                 // If there are multiple passes, then on the first pass,
                 // we apply detectors to all classes referenced by the
@@ -998,6 +1138,7 @@ public class FindBugs2 implements IFindBugsEngine {
                 // On subsequent passes, we apply detector only to application
                 // classes.
                 Collection<ClassDescriptor> classCollection = (isNonReportingFirstPass) ? referencedClassSet : appClassList;
+                Set<ClassDescriptor> perClassDetectorClasses = isNonReportingFirstPass ? null : invalidatedClasses;
                 AnalysisContext.currentXFactory().canonicalizeAll();
                 if (PROGRESS || LIST_ORDER) {
                     System.out.printf("%6d : Pass %d: %d classes%n", (System.currentTimeMillis() - startTime)/1000, passCount,  classCollection.size());
@@ -1033,98 +1174,174 @@ public class FindBugs2 implements IFindBugsEngine {
                 currentAnalysisContext.updateDatabases(passCount);
 
                 progress.startAnalysis(classCollection.size());
-                int count = 0;
                 Global.getAnalysisCache().purgeAllMethodAnalysis();
                 Global.getAnalysisCache().purgeClassAnalysis(FBClassReader.class);
-                for (ClassDescriptor classDescriptor : classCollection) {
-                    long classStartNanoTime = 0;
-                    if (PROGRESS) {
-                        classStartNanoTime = System.nanoTime();
-                        System.out.printf("%6d %d/%d  %d/%d %s%n", (System.currentTimeMillis() - startTime)/1000,
-                                passCount, executionPlan.getNumPasses(), count,
-                                classCollection.size(), classDescriptor);
-                    }
-                    count++;
-                    if (!isNonReportingFirstPass && count % 1000 == 0) {
-                        yourkitController.advanceGeneration(String.format("Pass %d.%02d", passCount, count/1000));
+                if (analyzeConcurrently) {
+                    analyzeClassesConcurrently(pass, passCount, isNonReportingFirstPass, classCollection,
+                            perClassDetectorClasses, detectorList, deferredBugReporter, resultStore, startTime);
+                } else {
+                    boolean[] perClassDetectors = getPerClassDetectors(pass);
+                    boolean hasPerClassDetectors = false;
+                    for (boolean b : perClassDetectors) {
+                        hasPerClassDetectors |= b;
                     }
+                    int count = 0;
+                    for (ClassDescriptor classDescriptor : classCollection) {
+                        long classStartNanoTime = 0;
+                        if (PROGRESS) {
+                            classStartNanoTime = System.nanoTime();
+                            System.out.printf("%6d %d/%d  %d/%d %s%n", (System.currentTimeMillis() - startTime)/1000,
+                                    passCount, executionPlan.getNumPasses(), count,
+                                    classCollection.size(), classDescriptor);
+                        }
+                        count++;
+                        if (!isNonReportingFirstPass && count % 1000 == 0) {
+                            yourkitController.advanceGeneration(String.format("Pass %d.%02d", passCount, count/1000));
+                        }
 
 
-                    // Check to see if class is excluded by the class screener.
-                    // In general, we do not want to screen classes from the
-                    // first pass, even if they would otherwise be excluded.
-                    if ((SCREEN_FIRST_PASS_CLASSES || !isNonReportingFirstPass)
-                            && !classScreener.matches(classDescriptor.toResourceName())) {
-                        if (DEBUG) {
-                            System.out.println("*** Excluded by class screener");
-                        }
-                        continue;
-                    }
-                    boolean isHuge = currentAnalysisContext.isTooBig(classDescriptor);
-                    if (isHuge && currentAnalysisContext.isApplicationClass(classDescriptor)) {
-                        bugReporter.reportBug(new BugInstance("SKIPPED_CLASS_TOO_BIG", Priorities.NORMAL_PRIORITY)
-                        .addClass(classDescriptor));
-                    }
-                    currentClassName = ClassName.toDottedClassName(classDescriptor.getClassName());
-                    notifyClassObservers(classDescriptor);
-                    profiler.startContext(currentClassName);
-                    currentAnalysisContext.setClassBeingAnalyzed(classDescriptor);
-
-                    try {
-                        for (Detector2 detector : detectorList) {
-                            if (Thread.interrupted()) {
-                                throw new InterruptedException();
+                        // Check to see if class is excluded by the class screener.
+                        // In general, we do not want to screen classes from the
+                        // first pass, even if they would otherwise be excluded.
+                        if ((SCREEN_FIRST_PASS_CLASSES || !isNonReportingFirstPass)
+                                && !classScreener.matches(classDescriptor.toResourceName())) {
+                            if (DEBUG) {
+                                System.out.println("*** Excluded by class screener");
                             }
-                            if (isHuge && !FirstPassDetector.class.isAssignableFrom(detector.getClass())) {
-                                continue;
+                            continue;
+                        }
+                        boolean isHuge = currentAnalysisContext.isTooBig(classDescriptor);
+                        if (isHuge && currentAnalysisContext.isApplicationClass(classDescriptor)) {
+                            bugReporter.reportBug(new BugInstance("SKIPPED_CLASS_TOO_BIG", Priorities.NORMAL_PRIORITY)
+                            .addClass(classDescriptor));
+                        }
+                        currentClassName = ClassName.toDottedClassName(classDescriptor.getClassName());
+                        notifyClassObservers(classDescriptor);
+                        profiler.startContext(currentClassName);
+                        currentAnalysisContext.setClassBeingAnalyzed(classDescriptor);
+
+                        try {
+                            boolean skipPerClassDetectors = perClassDetectorClasses != null
+                                    && !perClassDetectorClasses.contains(classDescriptor);
+                            AnalysisResultStore.ClassResult classResult = null;
+                            if (resultStore != null && !isHuge && !skipPerClassDetectors
+                                    && (isNonReportingFirstPass ? currentAnalysisContext.isApplicationClass(classDescriptor)
+                                            : hasPerClassDetectors)) {
+                                classResult = resultStore.lookup(classDescriptor, passCount);
                             }
-                            if (DEBUG) {
-                                System.out.println("Applying " + detector.getDetectorClassName() + " to " + classDescriptor);
-                                // System.out.println("foo: " +
-                                // NonReportingDetector.class.isAssignableFrom(detector.getClass())
-                                // + ", bar: " + detector.getClass().getName());
+                            boolean isFirstPassResult = classResult != null && isNonReportingFirstPass;
+                            LibrarySummaryStore.ClassSummary classSummary = librarySummaryStore != null && !isHuge
+                                    && !currentAnalysisContext.isApplicationClass(classDescriptor) ? librarySummaryStore
+                                            .lookup(classDescriptor) : null;
+                            int problemCount = getProblemCount();
+                            Set<TypeQualifierValue<?>> knownTypeQualifiers = null;
+                            if (classSummary != null && classSummary.isStored()) {
+                                replayTypeQualifierValues(classDescriptor,
+                                        classSummary.getInput(TypeQualifierValue.class.getName()));
+                            } else if (isFirstPassResult && classResult.isStored()) {
+                                replayTypeQualifierValues(classDescriptor,
+                                        classResult.getStoredSummary(TypeQualifierValue.class.getName()));
+                            } else if (classSummary != null || isFirstPassResult) {
+                                knownTypeQualifiers = new HashSet<TypeQualifierValue<?>>(
+                                        TypeQualifierValue.getAllKnownTypeQualifiers());
                             }
-                            try {
-                                profiler.start(detector.getClass());
-                                detector.visitClass(classDescriptor);
-                            } catch (ClassFormatException e) {
-                                logRecoverableException(classDescriptor, detector, e);
-                            } catch (MissingClassException e) {
-                                Global.getAnalysisCache().getErrorLogger().reportMissingClass(e.getClassDescriptor());
-                            } catch (CheckedAnalysisException e) {
-                                logRecoverableException(classDescriptor, detector, e);
-                            } catch (RuntimeException e) {
-                                logRecoverableException(classDescriptor, detector, e);
-                            } finally {
-                                profiler.end(detector.getClass());
+                            for (int j = 0; j < detectorList.length; j++) {
+                                Detector2 detector = detectorList[j];
+                                if (Thread.interrupted()) {
+                                    throw new InterruptedException();
+                                }
+                                if (isHuge && !FirstPassDetector.class.isAssignableFrom(detector.getClass())) {
+                                    continue;
+                                }
+                                if (skipPerClassDetectors && perClassDetectors[j]) {
+                                    continue;
+                                }
+                                if (DEBUG) {
+                                    System.out.println("Applying " + detector.getDetectorClassName() + " to " + classDescriptor);
+                                    // System.out.println("foo: " +
+                                    // NonReportingDetector.class.isAssignableFrom(detector.getClass())
+                                    // + ", bar: " + detector.getClass().getName());
+                                }
+                                LibrarySummaryDetector summaryDetector = classSummary != null || isFirstPassResult
+                                        ? getLibrarySummaryDetector(detector) : null;
+                                if (classResult != null && perClassDetectors[j]) {
+                                    for (BugInstance bug : applyDetectorCollectingBugs(detector, classDescriptor,
+                                            deferredBugReporter, classResult, profiler)) {
+                                        bugReporter.reportBug(bug);
+                                    }
+                                } else if (isFirstPassResult && summaryDetector != null) {
+                                    for (BugInstance bug : applyDetectorWithResult(detector, summaryDetector, classDescriptor,
+                                            deferredBugReporter, classResult, profiler)) {
+                                        bugReporter.reportBug(bug);
+                                    }
+                                } else if (summaryDetector != null) {
+                                    applyDetectorWithSummary(detector, summaryDetector, classDescriptor, classSummary, profiler);
+                                } else {
+                                    applyDetector(detector, classDescriptor, profiler);
+                                }
                             }
-                        }
-                    } finally {
-
-                        progress.finishClass();
-                        profiler.endContext(currentClassName);
-                        currentAnalysisContext.clearClassBeingAnalyzed();
-                        if (PROGRESS) {
-                            long usecs = (System.nanoTime() - classStartNanoTime)/1000;
-                            if (usecs > 15000) {
-                                int classSize = currentAnalysisContext.getClassSize(classDescriptor);
-                                long speed = usecs /classSize;
-                                if (speed > 15) {
-                                    System.out.printf("  %6d usecs/byte  %6d msec  %6d bytes  %d pass %s%n", speed, usecs/1000, classSize, passCount,
-                                            classDescriptor);
+                            if (knownTypeQualifiers != null) {
+                                // Type qualifier values are interned
+                                // globally, and some analyses depend on
+                                // which values exist
+                                LibrarySummaryOutput out = classSummary != null ? classSummary.record(TypeQualifierValue.class
+                                        .getName()) : new LibrarySummaryOutput();
+                                for (TypeQualifierValue<?> tqv : TypeQualifierValue.getAllKnownTypeQualifiers()) {
+                                    if (!knownTypeQualifiers.contains(tqv)) {
+                                        out.writeBoolean(true);
+                                        out.writeTypeQualifierValue(tqv);
+                                    }
                                 }
+                                out.writeBoolean(false);
+                                if (classSummary != null) {
+                                    if (getProblemCount() != problemCount) {
+                                        classSummary.fail();
+                                    }
+                                    classSummary.commit();
+                                } else {
+                                    classResult.record(TypeQualifierValue.class.getName(),
+                                            Collections.<BugInstance> emptyList(), out);
+                                }
+                            }
+                            if (classResult != null) {
+                                classResult.commit();
                             }
+                        } finally {
+
+                            progress.finishClass();
+                            profiler.endContext(currentClassName);
+                            currentAnalysisContext.clearClassBeingAnalyzed();
+                            if (PROGRESS) {
+                                long usecs = (System.nanoTime() - classStartNanoTime)/1000;
+                                if (usecs > 15000) {
+                                    int classSize = currentAnalysisContext.getClassSize(classDescriptor);
+                                    long speed = usecs /classSize;
+                                    if (speed > 15) {
+                                        System.out.printf("  %6d usecs/byte  %6d msec  %6d bytes  %d pass %s%n", speed, usecs/1000, classSize, passCount,
+                                                classDescriptor);
+                                    }
+                                }
 
+                            }
                         }
                     }
                 }
 
+                if (librarySummaryStore != null) {
+                    librarySummaryStore.flush();
+                    if (REPORT_CACHE_STATISTICS) {
+                        System.err.printf("Summaries of %d library classes reused, %d library classes analyzed%n",
+                                librarySummaryStore.getHitCount(), librarySummaryStore.getMissCount());
+                    }
+                }
                 if (!passIterator.hasNext()) {
                     yourkitController.captureMemorySnapshot();
                 }
                 // Call finishPass on each detector
                 for (Detector2 detector : detectorList) {
-                    detector.finishPass();
+                    if (detector != null) {
+                        detector.finishPass();
+                    }
                 }
 
                 progress.finishPerClassAnalysis();
@@ -1132,6 +1349,10 @@ public class FindBugs2 implements IFindBugsEngine {
                 passCount++;
             }
 
+            if (incrementalAnalysis != null) {
+                incrementalAnalysis.reportCarriedOverBugs();
+            }
+
 
         } finally {
 
@@ -1145,6 +1366,630 @@ public class FindBugs2 implements IFindBugsEngine {
 
     }
 
+    /**
+     * Apply a detector to a class, logging any recoverable exceptions.
+     *
+     * @param detector
+     *            the detector
+     * @param classDescriptor
+     *            the class to apply the detector to
+     * @param profiler
+     *            the profiler to record the time spent in the detector
+     */
+    private void applyDetector(Detector2 detector, ClassDescriptor classDescriptor, Profiler profiler) {
+        try {
+            profiler.start(detector.getClass());
+            detector.visitClass(classDescriptor);
+        } catch (ClassFormatException e) {
+            logRecoverableException(classDescriptor, detector, e);
+        } catch (MissingClassException e) {
+            Global.getAnalysisCache().getErrorLogger().reportMissingClass(e.getClassDescriptor());
+        } catch (CheckedAnalysisException e) {
+            logRecoverableException(classDescriptor, detector, e);
+        } catch (RuntimeException e) {
+            logRecoverableException(classDescriptor, detector, e);
+        } finally {
+            profiler.end(detector.getClass());
+        }
+    }
+
+    /**
+     * Apply a first-pass detector to a library class. If the summary of the
+     * class is in the library summary store, the detector replays it instead
+     * of visiting the class; otherwise what the detector learns from the
+     * class is recorded in the summary.
+     *
+     * @param detector
+     *            the detector
+     * @param summaryDetector
+     *            the detector, or the Detector it adapts
+     * @param classDescriptor
+     *            the class to apply the detector to
+     * @param classSummary
+     *            stored or to-be-stored summary of the class
+     * @param profiler
+     *            the profiler to record the time spent in the detector
+     */
+    private void applyDetectorWithSummary(Detector2 detector, LibrarySummaryDetector summaryDetector,
+            ClassDescriptor classDescriptor, LibrarySummaryStore.ClassSummary classSummary, Profiler profiler) {
+        String name = detector.getDetectorClassName();
+        if (!classSummary.isStored()) {
+            summaryDetector.setSummaryOutput(classSummary.record(name));
+            try {
+                applyDetector(detector, classDescriptor, profiler);
+            } finally {
+                summaryDetector.setSummaryOutput(null);
+            }
+            return;
+        }
+        LibrarySummaryInput in = classSummary.getInput(name);
+        if (in == null) {
+            // Recorded by a different set of detectors
+            applyDetector(detector, classDescriptor, profiler);
+            return;
+        }
+        replaySummary(detector, summaryDetector, classDescriptor, in, profiler);
+    }
+
+    /**
+     * Apply a first-pass detector to an application class, collecting the
+     * bugs it reports and recording what it learns from the class in the
+     * result store. If the results of the class are in the result store, the
+     * detector is not applied; the stored summary is replayed, and the stored
+     * bugs are returned instead.
+     *
+     * @param detector
+     *            the detector
+     * @param summaryDetector
+     *            the detector, or the Detector it adapts
+     * @param classDescriptor
+     *            the class to apply the detector to
+     * @param reporter
+     *            the reporter the detector reports to
+     * @param classResult
+     *            stored or to-be-stored results of the class
+     * @param profiler
+     *            the profiler to record the time spent in the detector
+     * @return the bugs reported by the detector
+     */
+    private List<BugInstance> applyDetectorWithResult(Detector2 detector, LibrarySummaryDetector summaryDetector,
+            ClassDescriptor classDescriptor, DeferredBugReporter reporter, AnalysisResultStore.ClassResult classResult,
+            Profiler profiler) {
+        String name = detector.getDetectorClassName();
+        if (classResult.isStored()) {
+            LibrarySummaryInput in = classResult.getStoredSummary(name);
+            if (in != null) {
+                classResult.reportStoredProblems(name);
+                replaySummary(detector, summaryDetector, classDescriptor, in, profiler);
+                return classResult.getStoredBugs(name);
+            }
+            // Recorded by a different set of detectors
+        }
+        List<BugInstance> bugs = new ArrayList<BugInstance>();
+        LibrarySummaryOutput out = new LibrarySummaryOutput();
+        classResult.startRecording();
+        reporter.startDeferring(bugs);
+        summaryDetector.setSummaryOutput(out);
+        try {
+            applyDetector(detector, classDescriptor, profiler);
+        } finally {
+            summaryDetector.setSummaryOutput(null);
+            reporter.stopDeferring();
+        }
+        classResult.record(name, bugs, out);
+        return bugs;
+    }
+
+    private void replaySummary(Detector2 detector, LibrarySummaryDetector summaryDetector, ClassDescriptor classDescriptor,
+            LibrarySummaryInput in, Profiler profiler) {
+        String name = detector.getDetectorClassName();
+        try {
+            profiler.start(summaryDetector.getClass());
+            summaryDetector.replaySummary(classDescriptor, in);
+            if (!in.atEnd()) {
+                throw new IOException("Unread data");
+            }
+        } catch (IOException e) {
+            AnalysisContext.logError("Couldn't replay summary of " + classDescriptor + " for " + name, e);
+        } catch (RuntimeException e) {
+            logRecoverableException(classDescriptor, detector, e);
+        } finally {
+            profiler.end(summaryDetector.getClass());
+        }
+    }
+
+    /**
+     * Intern the type qualifier values which were created while the summary
+     * of a class was recorded.
+     */
+    private void replayTypeQualifierValues(ClassDescriptor classDescriptor, @CheckForNull LibrarySummaryInput in) {
+        if (in == null) {
+            return;
+        }
+        try {
+            while (in.readBoolean()) {
+                in.readTypeQualifierValue();
+            }
+        } catch (IOException e) {
+            AnalysisContext.logError("Couldn't replay summary of " + classDescriptor, e);
+        } catch (RuntimeException e) {
+            AnalysisContext.logError("Couldn't replay summary of " + classDescriptor, e);
+        }
+    }
+
+    private static @CheckForNull LibrarySummaryDetector getLibrarySummaryDetector(Detector2 detector) {
+        if (detector instanceof LibrarySummaryDetector) {
+            return (LibrarySummaryDetector) detector;
+        }
+        if (detector instanceof DetectorToDetector2Adapter
+                && ((DetectorToDetector2Adapter) detector).getDetector() instanceof LibrarySummaryDetector) {
+            return (LibrarySummaryDetector) ((DetectorToDetector2Adapter) detector).getDetector();
+        }
+        return null;
+    }
+
+    /**
+     * @return number of errors and missing classes reported so far,
+     *         including missing classes ignored while analyzing library
+     *         classes
+     */
+    private int getProblemCount() {
+        return errorCountingBugReporter.getReportCount()
+                + AnalysisContext.currentAnalysisContext().getIgnoredMissingClassCount();
+    }
+
+    /**
+     * Apply a detector to a class, collecting the bugs it reports instead of
+     * passing them on to the bug reporter. If the results of the class are in
+     * the result store, the detector is not applied, and the stored bugs are
+     * returned instead.
+     *
+     * @param detector
+     *            the detector
+     * @param classDescriptor
+     *            the class to apply the detector to
+     * @param reporter
+     *            the reporter the detector reports to
+     * @param classResult
+     *            stored results of the class, in which the collected bugs
+     *            are recorded; null if results are not stored
+     * @param profiler
+     *            the profiler to record the time spent in the detector
+     * @return the bugs reported by the detector
+     */
+    private List<BugInstance> applyDetectorCollectingBugs(Detector2 detector, ClassDescriptor classDescriptor,
+            DeferredBugReporter reporter, @CheckForNull AnalysisResultStore.ClassResult classResult, Profiler profiler) {
+        if (classResult != null && classResult.isStored()) {
+            classResult.reportStoredProblems(detector.getDetectorClassName());
+            return classResult.getStoredBugs(detector.getDetectorClassName());
+        }
+        List<BugInstance> bugs = new ArrayList<BugInstance>();
+        if (classResult != null) {
+            classResult.startRecording();
+        }
+        reporter.startDeferring(bugs);
+        try {
+            applyDetector(detector, classDescriptor, profiler);
+        } finally {
+            reporter.stopDeferring();
+        }
+        if (classResult != null) {
+            classResult.record(detector.getDetectorClassName(), bugs);
+        }
+        return bugs;
+    }
+
+    /**
+     * Create the store of the results of the detectors in the given execution
+     * plan. Results stored with a different FindBugs or plugin version, or
+     * with different detectors or analysis features, are not used.
+     *
+     * @param executionPlan
+     *            the execution plan
+     * @return the result store, or null if the analysis cache (created by a
+     *         subclass) doesn't let the store record reported problems
+     */
+    private @CheckForNull AnalysisResultStore createResultStore(ExecutionPlan executionPlan) {
+        IErrorLogger errorLogger = Global.getAnalysisCache().getErrorLogger();
+        if (!(errorLogger instanceof AnalysisResultStore.ProblemRecorder)) {
+            return null;
+        }
+        StringBuilder configuration = new StringBuilder();
+        configuration.append(Version.RELEASE).append('\n');
+        configuration.append("relaxed=").append(analysisOptions.relaxedReportingMode).append('\n');
+        AnalysisContext analysisContext = AnalysisContext.currentAnalysisContext();
+        for (int i = 0; i < AnalysisFeatures.NUM_BOOLEAN_ANALYSIS_PROPERTIES; i++) {
+            if (analysisContext.getBoolProperty(i)) {
+                configuration.append(i).append(' ');
+            }
+        }
+        configuration.append('\n');
+        for (Iterator<AnalysisPass> p = executionPlan.passIterator(); p.hasNext();) {
+            for (Iterator<DetectorFactory> i = p.next().iterator(); i.hasNext();) {
+                DetectorFactory factory = i.next();
+                Plugin plugin = factory.getPlugin();
+                configuration.append(factory.getFullName()).append(' ').append(factory.getPriorityAdjustment()).append(' ')
+                .append(plugin.getPluginId()).append(' ').append(plugin.getVersion()).append('\n');
+            }
+            configuration.append('\n');
+        }
+        return new AnalysisResultStore(new File(analysisOptions.resultCacheDirectory), configuration.toString(),
+                (AnalysisResultStore.ProblemRecorder) errorLogger);
+    }
+
+    /**
+     * Create the store of library class summaries recorded by the detectors
+     * in the given (first) pass. Summaries stored with a different FindBugs
+     * or plugin version, or with different detectors or analysis features,
+     * are not used.
+     *
+     * @param pass
+     *            the analysis pass
+     * @return the library summary store
+     */
+    private LibrarySummaryStore createLibrarySummaryStore(AnalysisPass pass) {
+        StringBuilder configuration = new StringBuilder();
+        configuration.append(Version.RELEASE).append('\n');
+        AnalysisContext analysisContext = AnalysisContext.currentAnalysisContext();
+        for (int i = 0; i < AnalysisFeatures.NUM_BOOLEAN_ANALYSIS_PROPERTIES; i++) {
+            if (analysisContext.getBoolProperty(i)) {
+                configuration.append(i).append(' ');
+            }
+        }
+        configuration.append('\n');
+        for (Iterator<DetectorFactory> i = pass.iterator(); i.hasNext();) {
+            DetectorFactory factory = i.next();
+            Plugin plugin = factory.getPlugin();
+            configuration.append(factory.getFullName()).append(' ').append(plugin.getPluginId()).append(' ')
+            .append(plugin.getVersion()).append('\n');
+        }
+        return new LibrarySummaryStore(new File(analysisOptions.librarySummaryDirectory), configuration.toString());
+    }
+
+    /**
+     * Determine which detectors of an analysis pass are per-class detectors.
+     *
+     * @param pass
+     *            the analysis pass
+     * @return array with one element for each detector in the pass (in pass
+     *         order), true for per-class detectors
+     */
+    private static boolean[] getPerClassDetectors(AnalysisPass pass) {
+        List<DetectorFactory> factories = new ArrayList<DetectorFactory>();
+        for (Iterator<DetectorFactory> i = pass.iterator(); i.hasNext();) {
+            factories.add(i.next());
+        }
+        boolean[] result = new boolean[factories.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = factories.get(i).isPerClassDetector();
+        }
+        return result;
+    }
+
+    /**
+     * Determine whether the classes of given analysis pass can be analyzed by
+     * several threads. This requires that more than one analysis thread is
+     * requested, that the analysis cache can be shared by several threads
+     * (see {@link #createAnalysisCache()}), that the pass contains per-class
+     * detectors, and that every
+     * detector in the pass which collects information used by other detectors
+     * comes before all per-class detectors. Per-class detectors are applied to
+     * a class only after the other detectors are done with it, so they see the
+     * same information as in a single-threaded analysis.
+     *
+     * @param pass
+     *            the analysis pass
+     * @return true if the classes of the pass can be analyzed concurrently
+     */
+    private boolean canAnalyzeConcurrently(AnalysisPass pass) {
+        if (analysisOptions.numThreads <= 1 || !(Global.getAnalysisCache() instanceof ConcurrentAnalysisCache)) {
+            return false;
+        }
+        boolean foundPerClassDetector = false;
+        for (Iterator<DetectorFactory> i = pass.iterator(); i.hasNext();) {
+            DetectorFactory factory = i.next();
+            if (factory.isPerClassDetector()) {
+                foundPerClassDetector = true;
+            } else if (foundPerClassDetector
+                    && (!factory.isReportingDetector() || factory.isDetectorClassSubtypeOf(NonReportingDetector.class))) {
+                return false;
+            }
+        }
+        return foundPerClassDetector;
+    }
+
+    /**
+     * Instantiate either the per-class detectors or the remaining detectors of
+     * an analysis pass. The returned array has one slot for each detector in
+     * the pass (in pass order); slots of detectors which are not instantiated
+     * are null.
+     *
+     * @param pass
+     *            the analysis pass
+     * @param reporter
+     *            BugReporter the detectors report to
+     * @param perClass
+     *            true to instantiate per-class detectors, false to instantiate
+     *            all other detectors
+     * @return array of detectors
+     */
+    private static Detector2[] instantiateDetector2s(AnalysisPass pass, BugReporter reporter, boolean perClass) {
+        List<Detector2> detectorList = new ArrayList<Detector2>();
+        for (Iterator<DetectorFactory> i = pass.iterator(); i.hasNext();) {
+            DetectorFactory factory = i.next();
+            detectorList.add(factory.isPerClassDetector() == perClass ? factory.createDetector2(reporter) : null);
+        }
+        return detectorList.toArray(new Detector2[detectorList.size()]);
+    }
+
+    /**
+     * Detectors used by one analysis thread, along with the bug reporter they
+     * report to.
+     */
+    private static class DetectorSet {
+        final DeferredBugReporter reporter;
+
+        final Detector2[] detectors;
+
+        final boolean perClass;
+
+        DetectorSet(DeferredBugReporter reporter, Detector2[] detectors, boolean perClass) {
+            this.reporter = reporter;
+            this.detectors = detectors;
+            this.perClass = perClass;
+        }
+    }
+
+    /**
+     * Apply the detectors in a detector set to a class. Bugs reported by each
+     * detector are collected in the slot of the detector in the returned list.
+     *
+     * @param detectorSet
+     *            the detectors to apply
+     * @param classDescriptor
+     *            the class to apply the detectors to
+     * @param isHuge
+     *            true if the class is too big to be analyzed by detectors
+     *            other than first pass detectors
+     * @param classResult
+     *            stored results of the per-class detectors for the class, or
+     *            null if results are not stored
+     * @return bugs reported by the detectors, by detector slot
+     * @throws InterruptedException
+     *             if the analysis thread is interrupted
+     */
+    private List<List<BugInstance>> applyDetectors(DetectorSet detectorSet, ClassDescriptor classDescriptor, boolean isHuge,
+            @CheckForNull AnalysisResultStore.ClassResult classResult) throws InterruptedException {
+        Profiler profiler = bugReporter.getProjectStats().getProfiler();
+        AnalysisContext currentAnalysisContext = AnalysisContext.currentAnalysisContext();
+        String className = ClassName.toDottedClassName(classDescriptor.getClassName());
+        List<List<BugInstance>> bugs = new ArrayList<List<BugInstance>>(detectorSet.detectors.length);
+        profiler.startContext(className);
+        currentAnalysisContext.setClassBeingAnalyzed(classDescriptor);
+        try {
+            for (Detector2 detector : detectorSet.detectors) {
+                if (detector == null || isHuge && !FirstPassDetector.class.isAssignableFrom(detector.getClass())) {
+                    bugs.add(null);
+                    continue;
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                bugs.add(applyDetectorCollectingBugs(detector, classDescriptor, detectorSet.reporter,
+                        detectorSet.perClass ? classResult : null, profiler));
+            }
+            if (detectorSet.perClass && classResult != null) {
+                classResult.commit();
+            }
+        } finally {
+            profiler.endContext(className);
+            currentAnalysisContext.clearClassBeingAnalyzed();
+        }
+        return bugs;
+    }
+
+    /**
+     * Apply the detectors of an analysis pass to the given classes using
+     * several analysis threads.
+     * <p>
+     * The detectors which are not per-class detectors are applied by the
+     * current thread, to all classes in the given order, as in a
+     * single-threaded analysis. Once they are done with a class, the class is
+     * handed to the analysis threads, each of which has its own instances of
+     * the per-class detectors and applies them to one class at a time. The
+     * current thread stays at most one class per analysis thread ahead of the
+     * oldest class still being analyzed, so that the analysis results for
+     * classes in progress are likely to still be cached.
+     * <p>
+     * The bugs reported while analyzing a class are held back until all
+     * detectors are done with the class, and then passed on to the bug
+     * reporter in detector order. So bug reporters see the same sequence of
+     * bugs as in a single-threaded analysis.
+     *
+     * @param pass
+     *            the analysis pass
+     * @param passCount
+     *            number of the analysis pass
+     * @param isNonReportingFirstPass
+     *            true if this is the first of several passes, whose classes
+     *            are not screened unless findbugs.screenFirstPass is set
+     * @param classCollection
+     *            classes to analyze, in analysis order
+     * @param perClassDetectorClasses
+     *            classes to which the per-class detectors are applied, or null
+     *            to apply them to all classes
+     * @param detectorList
+     *            instances of detectors which are not per-class detectors
+     * @param deferredBugReporter
+     *            the reporter the detectors in detectorList report to
+     * @param resultStore
+     *            store of the results of per-class detectors, or null
+     * @param startTime
+     *            start time of the analysis, for progress output
+     * @throws InterruptedException
+     *             if the analysis is interrupted
+     */
+    private void analyzeClassesConcurrently(final AnalysisPass pass, final int passCount, boolean isNonReportingFirstPass,
+            Collection<ClassDescriptor> classCollection, @CheckForNull Set<ClassDescriptor> perClassDetectorClasses,
+            Detector2[] detectorList, DeferredBugReporter deferredBugReporter,
+            @CheckForNull final AnalysisResultStore resultStore, long startTime) throws InterruptedException {
+        final AnalysisContext currentAnalysisContext = AnalysisContext.currentAnalysisContext();
+        final IAnalysisCache analysisCache = Global.getAnalysisCache();
+        final List<DetectorSet> perClassDetectorSets = Collections.synchronizedList(new ArrayList<DetectorSet>());
+        final ThreadLocal<DetectorSet> perClassDetectors = new ThreadLocal<DetectorSet>() {
+            @Override
+            protected DetectorSet initialValue() {
+                DeferredBugReporter reporter = new DeferredBugReporter(bugReporter);
+                DetectorSet detectorSet = new DetectorSet(reporter, instantiateDetector2s(pass, reporter, true), true);
+                perClassDetectorSets.add(detectorSet);
+                return detectorSet;
+            }
+        };
+        // The analysis context is inherited by the analysis threads, since
+        // they are created by this thread
+        final DescriptorFactory descriptorFactory = DescriptorFactory.instance();
+        ExecutorService executor = Executors.newFixedThreadPool(analysisOptions.numThreads, new ThreadFactory() {
+            private int threadCount;
+
+            @Override
+            public Thread newThread(final Runnable r) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Global.setAnalysisCacheForCurrentThread(analysisCache);
+                        DescriptorFactory.setInstanceForCurrentThread(descriptorFactory);
+                        r.run();
+                    }
+                }, "FindBugs analysis thread " + (++threadCount));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        DetectorSet detectorSet = new DetectorSet(deferredBugReporter, detectorList, false);
+        try {
+            List<ClassDescriptor> classes = new ArrayList<ClassDescriptor>(classCollection.size());
+            List<Boolean> hugeClasses = new ArrayList<Boolean>(classCollection.size());
+            List<List<List<BugInstance>>> classBugs = new ArrayList<List<List<BugInstance>>>(classCollection.size());
+            List<Future<List<List<BugInstance>>>> perClassBugs = new ArrayList<Future<List<List<BugInstance>>>>(
+                    classCollection.size());
+            int reported = 0;
+            for (final ClassDescriptor classDescriptor : classCollection) {
+                if (PROGRESS) {
+                    System.out.printf("%6d %d/%d  %d/%d %s%n", (System.currentTimeMillis() - startTime)/1000,
+                            passCount, executionPlan.getNumPasses(), classes.size(), classCollection.size(), classDescriptor);
+                }
+                // As in a single-threaded analysis, classes of the first pass
+                // are not screened by default
+                if ((SCREEN_FIRST_PASS_CLASSES || !isNonReportingFirstPass)
+                        && !classScreener.matches(classDescriptor.toResourceName())) {
+                    if (DEBUG) {
+                        System.out.println("*** Excluded by class screener");
+                    }
+                    continue;
+                }
+                final boolean isHuge = currentAnalysisContext.isTooBig(classDescriptor);
+                currentClassName = ClassName.toDottedClassName(classDescriptor.getClassName());
+                classes.add(classDescriptor);
+                hugeClasses.add(isHuge);
+                classBugs.add(applyDetectors(detectorSet, classDescriptor, isHuge, null));
+                if (perClassDetectorClasses != null && !perClassDetectorClasses.contains(classDescriptor)) {
+                    perClassBugs.add(null);
+                } else {
+                    perClassBugs.add(executor.submit(new Callable<List<List<BugInstance>>>() {
+                        @Override
+                        public List<List<BugInstance>> call() throws InterruptedException {
+                            AnalysisResultStore.ClassResult classResult = resultStore != null && !isHuge ? resultStore
+                                    .lookup(classDescriptor, passCount) : null;
+                            return applyDetectors(perClassDetectors.get(), classDescriptor, isHuge, classResult);
+                        }
+                    }));
+                }
+                if (classes.size() - reported > analysisOptions.numThreads) {
+                    reportClassBugs(classes.get(reported), hugeClasses.get(reported), classBugs, perClassBugs, reported);
+                    reported++;
+                }
+            }
+            for (; reported < classes.size(); reported++) {
+                reportClassBugs(classes.get(reported), hugeClasses.get(reported), classBugs, perClassBugs, reported);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Per-class detectors don't report anything at the end of the pass,
+        // but call finishPass on them anyway
+        for (DetectorSet perClassDetectorSet : perClassDetectorSets) {
+            for (Detector2 detector : perClassDetectorSet.detectors) {
+                if (detector != null) {
+                    detector.finishPass();
+                }
+            }
+        }
+    }
+
+    /**
+     * Wait until all detectors are done with a class, then pass the bugs
+     * found in it on to the bug reporter in detector order.
+     *
+     * @param classDescriptor
+     *            the class
+     * @param isHuge
+     *            true if the class is too big to be analyzed
+     * @param classBugs
+     *            bugs reported by detectors applied by the current thread, by
+     *            class index
+     * @param perClassBugs
+     *            bugs reported by per-class detectors, by class index; null
+     *            for classes to which they were not applied
+     * @param index
+     *            index of the class
+     * @throws InterruptedException
+     *             if the analysis is interrupted
+     */
+    private void reportClassBugs(ClassDescriptor classDescriptor, boolean isHuge, List<List<List<BugInstance>>> classBugs,
+            List<Future<List<List<BugInstance>>>> perClassBugs, int index) throws InterruptedException {
+        Future<List<List<BugInstance>>> perClassResult = perClassBugs.get(index);
+        List<List<BugInstance>> otherBugs = perClassResult != null ? getResult(perClassResult) : null;
+        List<List<BugInstance>> bugs = classBugs.get(index);
+        perClassBugs.set(index, null);
+        classBugs.set(index, null);
+
+        if (isHuge && AnalysisContext.currentAnalysisContext().isApplicationClass(classDescriptor)) {
+            bugReporter.reportBug(new BugInstance("SKIPPED_CLASS_TOO_BIG", Priorities.NORMAL_PRIORITY)
+            .addClass(classDescriptor));
+        }
+        notifyClassObservers(classDescriptor);
+        for (int j = 0; j < bugs.size(); j++) {
+            List<BugInstance> detectorBugs = bugs.get(j) != null ? bugs.get(j) : otherBugs != null ? otherBugs.get(j) : null;
+            if (detectorBugs != null) {
+                for (BugInstance bug : detectorBugs) {
+                    bugReporter.reportBug(bug);
+                }
+            }
+        }
+        progress.finishClass();
+    }
+
+    /**
+     * Wait for the result of an analysis task, rethrowing any unchecked
+     * exception or error thrown by the task.
+     */
+    private static <T> T getResult(Future<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Unexpected exception analyzing class", cause);
+        }
+    }
+
     /**
      * Notify all IClassObservers that we are visiting given class.
      *
@@ -1169,7 +2014,7 @@ public class FindBugs2 implements IFindBugsEngine {
      *            the exception
      */
     private void logRecoverableException(ClassDescriptor classDescriptor, Detector2 detector, Throwable e) {
-        bugReporter.logError(
+        Global.getAnalysisCache().getErrorLogger().logError(
                 "Exception analyzing " + classDescriptor.toDottedClassName() + " using detector "
                         + detector.getDetectorClassName(), e);
     }
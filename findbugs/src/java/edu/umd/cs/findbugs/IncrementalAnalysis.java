@@ -0,0 +1,309 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.ba.XClass;
+import edu.umd.cs.findbugs.ba.ch.Subtypes2;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.util.MultiMap;
+
+/**
+ * Incremental analysis: re-analyze only the application classes which may be
+ * affected by a set of changed classes, and carry over the bugs of all other
+ * classes from the results of an earlier analysis.
+ * <p>
+ * The changed classes are given by the caller; application classes which
+ * are not in the class statistics of the earlier results, such as new
+ * classes, are treated as changed too. (So results written without class
+ * statistics, e.g. as minimal XML, lead to a full analysis.)
+ * <p>
+ * The affected classes are the changed classes, their supertypes and
+ * subtypes, and the classes calling any of those (in the reverse call graph
+ * given by {@link XClass#getCalledClassDescriptors()}, following callers of
+ * callers up to the depth set by the findbugs.incremental.callerDepth system
+ * property, 1 by default). Earlier, non-reporting passes still analyze all
+ * classes, so interprocedural databases are complete. In the reporting passes,
+ * only the per-class detectors (see {@link DetectorFactory#isPerClassDetector()})
+ * are restricted to the affected classes; detectors which collect information
+ * across classes, or report warnings at the end of a pass (such as unread
+ * fields), still see all application classes.
+ * <p>
+ * Warnings reported in the reporting passes are only kept for the affected
+ * classes. The warnings of the other classes are carried over: the bug
+ * instances of the earlier analysis are reported again, with their history
+ * and user designations. A warning in an affected class which was also
+ * reported by the earlier analysis gets the history and user designation of
+ * the earlier instance. If the results are collected in a BugCollection, it
+ * gets the version history of the earlier results.
+ * <p>
+ * A change in a class may still affect warnings in classes which are not
+ * re-analyzed, so an incremental analysis may differ from a full analysis;
+ * run a full analysis from time to time.
+ *
+ * @see FindBugs2
+ */
+public class IncrementalAnalysis {
+
+    private static final int CALLER_DEPTH = SystemProperties.getInt("findbugs.incremental.callerDepth", 1);
+
+    private final BugCollection previousResults;
+
+    private final Collection<String> changedClasses;
+
+    private final Set<ClassDescriptor> appClasses = new HashSet<ClassDescriptor>();
+
+    private final Set<ClassDescriptor> invalidated = new HashSet<ClassDescriptor>();
+
+    /** Earlier live bug instances in invalidated classes, by instance hash */
+    private final Map<String, BugInstance> previousBugs = new HashMap<String, BugInstance>();
+
+    private BugReporter carriedOverBugReporter;
+
+    /**
+     * Constructor.
+     *
+     * @param previousResults
+     *            results of the earlier analysis
+     * @param changedClasses
+     *            the classes which changed since the earlier analysis, as
+     *            class names (dotted or slashed) or paths of class files
+     */
+    public IncrementalAnalysis(BugCollection previousResults, Collection<String> changedClasses) {
+        this.previousResults = previousResults;
+        this.changedClasses = changedClasses;
+    }
+
+    /**
+     * Create the bug reporter the detectors report to. It ignores bugs in
+     * classes which are not re-analyzed, and gives bugs which were reported
+     * by the earlier analysis the history of the earlier instance.
+     *
+     * @param bugReporter
+     *            the bug reporter to which both bugs in re-analyzed classes
+     *            and carried over bugs are reported
+     * @return the bug reporter
+     */
+    public BugReporter createBugReporter(BugReporter bugReporter) {
+        carriedOverBugReporter = bugReporter;
+        BugCollection bugCollection = bugReporter.getBugCollection();
+        if (bugCollection != null && !bugCollection.appVersionIterator().hasNext()) {
+            // Carried over bugs refer to the versions of the earlier results
+            for (Iterator<AppVersion> i = previousResults.appVersionIterator(); i.hasNext();) {
+                bugCollection.addAppVersion((AppVersion) i.next().clone());
+            }
+            bugCollection.setSequenceNumber(previousResults.getSequenceNumber());
+        }
+        return new DelegatingBugReporter(bugReporter) {
+            @Override
+            public void reportBug(@Nonnull BugInstance bugInstance) {
+                ClassDescriptor classDescriptor = getPrimaryClass(bugInstance);
+                if (classDescriptor == null || invalidated.contains(classDescriptor)) {
+                    copyHistory(bugInstance);
+                    getDelegate().reportBug(bugInstance);
+                }
+            }
+        };
+    }
+
+    /**
+     * Compute the application classes which must be re-analyzed.
+     *
+     * @param appClassList
+     *            the application classes
+     * @return the classes to re-analyze
+     */
+    public Set<ClassDescriptor> computeInvalidatedClasses(Collection<ClassDescriptor> appClassList) {
+        appClasses.addAll(appClassList);
+        Map<String, ClassDescriptor> appClassesByResourceName = new HashMap<String, ClassDescriptor>();
+        MultiMap<ClassDescriptor, ClassDescriptor> callers = new MultiMap<ClassDescriptor, ClassDescriptor>(HashSet.class);
+        for (ClassDescriptor classDescriptor : appClassList) {
+            appClassesByResourceName.put(classDescriptor.toResourceName(), classDescriptor);
+            XClass xclass = getXClass(classDescriptor);
+            if (xclass != null) {
+                for (ClassDescriptor called : xclass.getCalledClassDescriptors()) {
+                    callers.add(called, classDescriptor);
+                }
+            }
+        }
+
+        Set<ClassDescriptor> changed = new LinkedHashSet<ClassDescriptor>();
+        for (String name : changedClasses) {
+            ClassDescriptor classDescriptor = resolve(name, appClassesByResourceName);
+            if (classDescriptor != null) {
+                changed.add(classDescriptor);
+            }
+        }
+
+        // Classes which the earlier analysis didn't analyze, e.g. new ones
+        Set<String> previousClasses = new HashSet<String>();
+        for (PackageStats packageStats : previousResults.getProjectStats().getPackageStats()) {
+            for (PackageStats.ClassStats classStats : packageStats.getClassStats()) {
+                previousClasses.add(classStats.getName());
+            }
+        }
+        for (ClassDescriptor classDescriptor : appClassList) {
+            if (!previousClasses.contains(classDescriptor.toDottedClassName())) {
+                changed.add(classDescriptor);
+            }
+        }
+
+        // Changed classes and their supertypes and subtypes
+        Subtypes2 subtypes2 = AnalysisContext.currentAnalysisContext().getSubtypes2();
+        for (ClassDescriptor classDescriptor : changed) {
+            invalidated.add(classDescriptor);
+            addSupertypes(classDescriptor, invalidated);
+            try {
+                invalidated.addAll(subtypes2.getSubtypes(classDescriptor));
+            } catch (ClassNotFoundException e) {
+                // Deleted or unknown class: only its callers are affected
+            }
+        }
+
+        // Callers of those classes
+        Collection<ClassDescriptor> frontier = new ArrayList<ClassDescriptor>(invalidated);
+        for (int depth = 0; depth < CALLER_DEPTH && !frontier.isEmpty(); depth++) {
+            List<ClassDescriptor> next = new ArrayList<ClassDescriptor>();
+            for (ClassDescriptor classDescriptor : frontier) {
+                for (ClassDescriptor caller : callers.get(classDescriptor)) {
+                    if (invalidated.add(caller)) {
+                        next.add(caller);
+                    }
+                }
+            }
+            frontier = next;
+        }
+
+        invalidated.retainAll(appClasses);
+
+        for (BugInstance bug : previousResults.getCollection()) {
+            ClassDescriptor classDescriptor = getPrimaryClass(bug);
+            if (classDescriptor != null && invalidated.contains(classDescriptor) && !bug.isDead()) {
+                BugInstance other = previousBugs.get(bug.getInstanceHash());
+                if (other == null || bug.getFirstVersion() < other.getFirstVersion()) {
+                    previousBugs.put(bug.getInstanceHash(), bug);
+                }
+            }
+        }
+        return Collections.unmodifiableSet(invalidated);
+    }
+
+    /**
+     * Give a bug reported in a re-analyzed class the history and user
+     * designation of the live bug of the earlier analysis with the same
+     * instance hash, if any. If there are several, the oldest one is used.
+     */
+    private void copyHistory(BugInstance bug) {
+        BugInstance previous = previousBugs.get(bug.getInstanceHash());
+        if (previous == null) {
+            return;
+        }
+        bug.setHistory(previous);
+        if (previous.getUserDesignation() != null) {
+            bug.setUserDesignation(previous.getUserDesignation());
+        }
+    }
+
+    /**
+     * Report the bugs of the earlier analysis in classes which were not
+     * re-analyzed and are still application classes, and the bugs which were
+     * already dead in the earlier results. The earlier bug instances
+     * themselves are reported, so they keep their history.
+     */
+    public void reportCarriedOverBugs() {
+        for (BugInstance bug : previousResults.getCollection()) {
+            ClassDescriptor classDescriptor = getPrimaryClass(bug);
+            if (classDescriptor != null && appClasses.contains(classDescriptor)
+                    && (!invalidated.contains(classDescriptor) || bug.isDead())) {
+                carriedOverBugReporter.reportBug(bug);
+            }
+        }
+    }
+
+    private static @CheckForNull ClassDescriptor getPrimaryClass(BugInstance bug) {
+        ClassAnnotation primaryClass = bug.getPrimaryClass();
+        if (primaryClass == null) {
+            return null;
+        }
+        return DescriptorFactory.createClassDescriptorFromDottedClassName(primaryClass.getClassName());
+    }
+
+    private static @CheckForNull ClassDescriptor resolve(String name, Map<String, ClassDescriptor> appClassesByResourceName) {
+        name = name.trim().replace('\\', '/');
+        if (!name.endsWith(".class")) {
+            return DescriptorFactory.createClassDescriptor(name.replace('.', '/'));
+        }
+        // Path of a class file: find the application class whose resource
+        // name is the longest suffix of the path
+        String path = name;
+        while (true) {
+            ClassDescriptor classDescriptor = appClassesByResourceName.get(path);
+            if (classDescriptor != null) {
+                return classDescriptor;
+            }
+            int slash = path.indexOf('/');
+            if (slash < 0) {
+                return null;
+            }
+            path = path.substring(slash + 1);
+        }
+    }
+
+    private static void addSupertypes(ClassDescriptor classDescriptor, Set<ClassDescriptor> result) {
+        XClass xclass = getXClass(classDescriptor);
+        if (xclass == null) {
+            return;
+        }
+        ClassDescriptor superclass = xclass.getSuperclassDescriptor();
+        if (superclass != null && result.add(superclass)) {
+            addSupertypes(superclass, result);
+        }
+        for (ClassDescriptor i : xclass.getInterfaceDescriptorList()) {
+            if (result.add(i)) {
+                addSupertypes(i, result);
+            }
+        }
+    }
+
+    private static @CheckForNull XClass getXClass(ClassDescriptor classDescriptor) {
+        try {
+            return Global.getAnalysisCache().getClassAnalysis(XClass.class, classDescriptor);
+        } catch (CheckedAnalysisException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs;
+
+import java.io.IOException;
+
+import javax.annotation.CheckForNull;
+
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+
+/**
+ * A first-pass detector which can summarize what it learns from a library
+ * class, so that later runs can replay the summary instead of analyzing the
+ * class again.
+ * <p>
+ * While a summary output is set, the detector records everything it stores
+ * about the visited class, e.g. in an analysis database. Facts which depend
+ * on the application being analyzed, such as whether a called method is an
+ * application method, should be recorded raw and re-evaluated on replay.
+ *
+ * @see LibrarySummaryStore
+ */
+public interface LibrarySummaryDetector extends FirstPassDetector {
+
+    /**
+     * Set the output recording what the detector learns about the next
+     * visited class.
+     *
+     * @param out
+     *            the output, or null to stop recording
+     */
+    public void setSummaryOutput(@CheckForNull LibrarySummaryOutput out);
+
+    /**
+     * Replay a recorded summary instead of visiting a class.
+     *
+     * @param classDescriptor
+     *            the class the summary was recorded for
+     * @param in
+     *            the recorded summary
+     * @throws IOException
+     *             if the summary is damaged
+     */
+    public void replaySummary(ClassDescriptor classDescriptor, LibrarySummaryInput in) throws IOException;
+}
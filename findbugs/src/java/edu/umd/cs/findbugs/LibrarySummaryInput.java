@@ -0,0 +1,173 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+import javax.annotation.CheckForNull;
+
+import org.objectweb.asm.Type;
+
+import edu.umd.cs.findbugs.ba.XFactory;
+import edu.umd.cs.findbugs.ba.XField;
+import edu.umd.cs.findbugs.ba.XMethod;
+import edu.umd.cs.findbugs.ba.jsr305.TypeQualifierValue;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.FieldDescriptor;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+import edu.umd.cs.findbugs.classfile.analysis.EnumValue;
+
+/**
+ * Reads back what a {@link LibrarySummaryOutput} recorded about a library
+ * class.
+ *
+ * @see LibrarySummaryStore
+ */
+public class LibrarySummaryInput {
+
+    private final DataInputStream in;
+
+    public LibrarySummaryInput(byte[] data) {
+        in = new DataInputStream(new ByteArrayInputStream(data));
+    }
+
+    /**
+     * @return true if everything recorded has been read
+     */
+    public boolean atEnd() throws IOException {
+        return in.available() == 0;
+    }
+
+    public int readByte() throws IOException {
+        return in.readByte();
+    }
+
+    public boolean readBoolean() throws IOException {
+        return in.readByte() != 0;
+    }
+
+    public int readInt() throws IOException {
+        return in.readInt();
+    }
+
+    public long readLong() throws IOException {
+        return in.readLong();
+    }
+
+    public @CheckForNull String readString() throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = in.readChar();
+        }
+        return new String(chars);
+    }
+
+    private String readNonnullString() throws IOException {
+        String s = readString();
+        if (s == null) {
+            throw new IOException("Unexpected null string in library summary");
+        }
+        return s;
+    }
+
+    public ClassDescriptor readClassDescriptor() throws IOException {
+        return DescriptorFactory.createClassDescriptor(readNonnullString());
+    }
+
+    public MethodDescriptor readMethodDescriptor() throws IOException {
+        String className = readNonnullString();
+        String name = readNonnullString();
+        String signature = readNonnullString();
+        return DescriptorFactory.instance().getMethodDescriptor(className, name, signature, readBoolean());
+    }
+
+    public FieldDescriptor readFieldDescriptor() throws IOException {
+        String className = readNonnullString();
+        String name = readNonnullString();
+        String signature = readNonnullString();
+        return DescriptorFactory.instance().getFieldDescriptor(className, name, signature, readBoolean());
+    }
+
+    public XMethod readXMethod() throws IOException {
+        return XFactory.createXMethod(readMethodDescriptor());
+    }
+
+    public XField readXField() throws IOException {
+        return XFactory.createXField(readFieldDescriptor());
+    }
+
+    public TypeQualifierValue<?> readTypeQualifierValue() throws IOException {
+        ClassDescriptor typeQualifier = readClassDescriptor();
+        Object value;
+        switch (readByte()) {
+        case 0:
+            value = null;
+            break;
+        case 1:
+            value = readString();
+            break;
+        case 2:
+            value = Integer.valueOf(readInt());
+            break;
+        case 3:
+            value = Long.valueOf(readLong());
+            break;
+        case 4:
+            value = Boolean.valueOf(readBoolean());
+            break;
+        case 5:
+            value = Character.valueOf((char) readInt());
+            break;
+        case 6:
+            value = Short.valueOf((short) readInt());
+            break;
+        case 7:
+            value = Byte.valueOf((byte) readInt());
+            break;
+        case 8:
+            value = Float.valueOf(Float.intBitsToFloat(readInt()));
+            break;
+        case 9:
+            value = Double.valueOf(Double.longBitsToDouble(readLong()));
+            break;
+        case 10:
+            value = new EnumValue(readClassDescriptor().getSignature(), readNonnullString());
+            break;
+        case 11:
+            value = Type.getType(readNonnullString());
+            break;
+        default:
+            throw new IOException("Bad type qualifier value in library summary");
+        }
+        return TypeQualifierValue.getValue(typeQualifier, value);
+    }
+
+    public OpcodeStack.Item readItem() throws IOException {
+        return OpcodeStack.Item.readFrom(this);
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import javax.annotation.CheckForNull;
+
+import org.objectweb.asm.Type;
+
+import edu.umd.cs.findbugs.ba.XField;
+import edu.umd.cs.findbugs.ba.XMethod;
+import edu.umd.cs.findbugs.ba.jsr305.TypeQualifierValue;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.FieldDescriptor;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+import edu.umd.cs.findbugs.classfile.analysis.EnumValue;
+
+/**
+ * Records what a {@link LibrarySummaryDetector} learned about one library
+ * class, so that a later run can replay it with a
+ * {@link LibrarySummaryInput} instead of analyzing the class again.
+ * <p>
+ * Writing never throws; a detector which comes across something it cannot
+ * record calls {@link #fail()}, and the class is not summarized.
+ *
+ * @see LibrarySummaryStore
+ */
+public class LibrarySummaryOutput {
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    private final DataOutputStream out = new DataOutputStream(bytes);
+
+    private boolean failed;
+
+    /**
+     * Mark the summary as incomplete, so that it is not stored.
+     */
+    public void fail() {
+        failed = true;
+    }
+
+    /**
+     * @return true if {@link #fail()} was called
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    public void writeByte(int b) {
+        try {
+            out.writeByte(b);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void writeBoolean(boolean b) {
+        writeByte(b ? 1 : 0);
+    }
+
+    public void writeInt(int i) {
+        try {
+            out.writeInt(i);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void writeLong(long l) {
+        try {
+            out.writeLong(l);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Write a string, which may be null. Unlike
+     * {@link DataOutputStream#writeUTF(String)}, there is no limit on the
+     * length of the string.
+     */
+    public void writeString(@CheckForNull String s) {
+        if (s == null) {
+            writeInt(-1);
+            return;
+        }
+        writeInt(s.length());
+        try {
+            out.writeChars(s);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void writeClassDescriptor(ClassDescriptor c) {
+        writeString(c.getClassName());
+    }
+
+    public void writeMethodDescriptor(MethodDescriptor m) {
+        writeString(m.getClassDescriptor().getClassName());
+        writeString(m.getName());
+        writeString(m.getSignature());
+        writeBoolean(m.isStatic());
+    }
+
+    public void writeFieldDescriptor(FieldDescriptor f) {
+        writeString(f.getClassDescriptor().getClassName());
+        writeString(f.getName());
+        writeString(f.getSignature());
+        writeBoolean(f.isStatic());
+    }
+
+    /**
+     * Write a method. It is read back by looking up its descriptor in the
+     * XFactory.
+     */
+    public void writeXMethod(XMethod m) {
+        writeMethodDescriptor(m.getMethodDescriptor());
+    }
+
+    /**
+     * Write a field. It is read back by looking up its descriptor in the
+     * XFactory.
+     */
+    public void writeXField(XField f) {
+        writeFieldDescriptor(f.getFieldDescriptor());
+    }
+
+    /**
+     * Write a stack value. Values which cannot be written (e.g., ones with a
+     * user value set by a detector) make the summary fail.
+     */
+    public void writeItem(OpcodeStack.Item item) {
+        item.writeTo(this);
+    }
+
+    /**
+     * Write a type qualifier value. Values of a type which cannot be written
+     * make the summary fail.
+     */
+    public void writeTypeQualifierValue(TypeQualifierValue<?> tqv) {
+        writeClassDescriptor(tqv.typeQualifier);
+        Object value = tqv.value;
+        if (value == null) {
+            writeByte(0);
+        } else if (value instanceof String) {
+            writeByte(1);
+            writeString((String) value);
+        } else if (value instanceof Integer) {
+            writeByte(2);
+            writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            writeByte(3);
+            writeLong((Long) value);
+        } else if (value instanceof Boolean) {
+            writeByte(4);
+            writeBoolean((Boolean) value);
+        } else if (value instanceof Character) {
+            writeByte(5);
+            writeInt((Character) value);
+        } else if (value instanceof Short) {
+            writeByte(6);
+            writeInt((Short) value);
+        } else if (value instanceof Byte) {
+            writeByte(7);
+            writeInt((Byte) value);
+        } else if (value instanceof Float) {
+            writeByte(8);
+            writeInt(Float.floatToRawIntBits((Float) value));
+        } else if (value instanceof Double) {
+            writeByte(9);
+            writeLong(Double.doubleToRawLongBits((Double) value));
+        } else if (value instanceof EnumValue) {
+            writeByte(10);
+            writeClassDescriptor(((EnumValue) value).desc);
+            writeString(((EnumValue) value).value);
+        } else if (value instanceof Type) {
+            writeByte(11);
+            writeString(((Type) value).getDescriptor());
+        } else {
+            writeByte(0);
+            fail();
+        }
+    }
+
+    /**
+     * @return the bytes written so far
+     */
+    public byte[] toByteArray() {
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,488 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.CheckForNull;
+
+import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.ICodeBase;
+import edu.umd.cs.findbugs.classfile.ICodeBaseEntry;
+import edu.umd.cs.findbugs.classfile.ResourceNotFoundException;
+import edu.umd.cs.findbugs.io.IO;
+import edu.umd.cs.findbugs.util.Util;
+
+/**
+ * A persistent store of what the first-pass detectors learn from the classes
+ * of library jars, used to avoid re-analyzing those classes in every run.
+ * This generalizes the precomputed databases of the JDK
+ * (<code>jdkBaseNonnullReturn.db</code> etc.) to any jar on the auxiliary
+ * classpath.
+ * <p>
+ * The store is a directory with one file per library jar, named by a hash of
+ * the contents of the jar, of the analysis configuration (FindBugs and plugin
+ * versions, first-pass detectors, analysis features), and of the contents of
+ * all auxiliary classpath entries in classpath order, since what is learned
+ * from a class depends on the classes it references. For each summarized
+ * class, the file holds what each {@link LibrarySummaryDetector} recorded
+ * while visiting the class. Summaries are added as more classes of a jar are
+ * referenced by the analyzed applications.
+ * <p>
+ * So a change in any library jar invalidates the summaries of all jars. The
+ * application classes are not part of the key: library classes are assumed
+ * not to depend on them. If an auxiliary classpath entry is neither a file
+ * nor a directory, no summaries are used. Classes whose analysis reported
+ * errors or missing classes are not summarized.
+ * <p>
+ * The store is only used by the single-threaded first pass.
+ *
+ * @see LibrarySummaryDetector
+ * @see FindBugs2
+ */
+public class LibrarySummaryStore {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String SUFFIX = ".summaries.gz";
+
+    private final File directory;
+
+    private final byte[] configurationDigest;
+
+    private final Map<ICodeBase, CodeBaseSummaries> codeBaseMap = new HashMap<ICodeBase, CodeBaseSummaries>();
+
+    /**
+     * Digest of the auxiliary classpath entries and their digests; null if
+     * not computed yet, empty if they can't be digested
+     */
+    private @CheckForNull byte[] classPathDigest;
+
+    private final Map<ICodeBase, byte[]> codeBaseDigestMap = new HashMap<ICodeBase, byte[]>();
+
+    private int hits;
+
+    private int misses;
+
+    /**
+     * Constructor.
+     *
+     * @param directory
+     *            directory in which summaries are stored; created if it does
+     *            not exist
+     * @param configuration
+     *            description of the analysis configuration; summaries stored
+     *            with another configuration are never used
+     */
+    public LibrarySummaryStore(File directory, String configuration) {
+        this.directory = directory;
+        this.configurationDigest = Util.getMD5Digest().digest(utf8(FORMAT_VERSION + "\n" + configuration));
+    }
+
+    /**
+     * The stored and added summaries of the classes of one library jar.
+     */
+    private class CodeBaseSummaries {
+        private final File file;
+
+        private @CheckForNull Map<String, byte[]> stored;
+
+        private final Map<String, byte[]> added = new TreeMap<String, byte[]>();
+
+        CodeBaseSummaries(File file) {
+            this.file = file;
+        }
+
+        @CheckForNull byte[] get(String className) {
+            if (stored == null) {
+                stored = read(file);
+            }
+            return stored.get(className);
+        }
+    }
+
+    /**
+     * Stored or to-be-stored summary of one library class.
+     */
+    public class ClassSummary {
+        private final CodeBaseSummaries owner;
+
+        private final String className;
+
+        private final @CheckForNull Map<String, byte[]> storedSummaries;
+
+        private final Map<String, LibrarySummaryOutput> outputs = new LinkedHashMap<String, LibrarySummaryOutput>();
+
+        private boolean failed;
+
+        ClassSummary(CodeBaseSummaries owner, String className, @CheckForNull Map<String, byte[]> storedSummaries) {
+            this.owner = owner;
+            this.className = className;
+            this.storedSummaries = storedSummaries;
+        }
+
+        /**
+         * @return true if the summary was stored by an earlier run, so the
+         *         first-pass detectors need not visit the class
+         */
+        public boolean isStored() {
+            return storedSummaries != null;
+        }
+
+        /**
+         * Get the stored summary recorded by a detector.
+         *
+         * @param name
+         *            name of the detector (or other recorder)
+         * @return the summary, or null if the detector recorded nothing
+         */
+        public @CheckForNull LibrarySummaryInput getInput(String name) {
+            byte[] data = storedSummaries != null ? storedSummaries.get(name) : null;
+            if (data == null) {
+                return null;
+            }
+            return new LibrarySummaryInput(data);
+        }
+
+        /**
+         * Start recording the summary of a detector.
+         *
+         * @param name
+         *            name of the detector (or other recorder)
+         * @return the output to record the summary in
+         */
+        public LibrarySummaryOutput record(String name) {
+            LibrarySummaryOutput out = new LibrarySummaryOutput();
+            outputs.put(name, out);
+            return out;
+        }
+
+        /**
+         * Mark the summary as incomplete, so that it is not stored.
+         */
+        public void fail() {
+            failed = true;
+        }
+
+        /**
+         * Add the recorded summary to the store. It is written by
+         * {@link LibrarySummaryStore#flush()}.
+         */
+        public void commit() {
+            if (isStored() || failed) {
+                return;
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                out.writeInt(outputs.size());
+                for (Map.Entry<String, LibrarySummaryOutput> e : outputs.entrySet()) {
+                    if (e.getValue().isFailed()) {
+                        return;
+                    }
+                    byte[] data = e.getValue().toByteArray();
+                    out.writeUTF(e.getKey());
+                    out.writeInt(data.length);
+                    out.write(data);
+                }
+                out.close();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            owner.added.put(className, bytes.toByteArray());
+        }
+    }
+
+    /**
+     * Look up the stored summary of a class.
+     *
+     * @param classDescriptor
+     *            a class which is not an application class
+     * @return the summary, which may or may not have been stored by an
+     *         earlier run; null if the class is not from a library jar
+     */
+    public @CheckForNull ClassSummary lookup(ClassDescriptor classDescriptor) {
+        ICodeBase codeBase;
+        try {
+            ICodeBaseEntry entry = Global.getAnalysisCache().getClassPath().lookupResource(classDescriptor.toResourceName());
+            codeBase = entry.getCodeBase();
+        } catch (ResourceNotFoundException e) {
+            return null;
+        }
+        CodeBaseSummaries summaries = getCodeBaseSummaries(codeBase);
+        if (summaries == null) {
+            return null;
+        }
+        String className = classDescriptor.getClassName();
+        Map<String, byte[]> storedSummaries = null;
+        byte[] data = summaries.get(className);
+        if (data != null) {
+            storedSummaries = parse(data);
+        }
+        if (storedSummaries != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return new ClassSummary(summaries, className, storedSummaries);
+    }
+
+    /**
+     * Write the summaries added in this run to the store.
+     */
+    public void flush() {
+        for (CodeBaseSummaries summaries : codeBaseMap.values()) {
+            if (summaries == null || summaries.added.isEmpty()) {
+                continue;
+            }
+            Map<String, byte[]> all = new TreeMap<String, byte[]>();
+            if (summaries.stored != null) {
+                all.putAll(summaries.stored);
+            }
+            all.putAll(summaries.added);
+            try {
+                write(summaries.file, all);
+                summaries.stored = all;
+                summaries.added.clear();
+            } catch (IOException e) {
+                AnalysisContext.logError("Couldn't store library summaries in " + directory, e);
+            }
+        }
+    }
+
+    /**
+     * @return number of classes whose summaries were found in the store
+     */
+    public int getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return number of library classes whose summaries were not found in
+     *         the store
+     */
+    public int getMissCount() {
+        return misses;
+    }
+
+    private @CheckForNull CodeBaseSummaries getCodeBaseSummaries(ICodeBase codeBase) {
+        if (codeBaseMap.containsKey(codeBase)) {
+            return codeBaseMap.get(codeBase);
+        }
+        CodeBaseSummaries result = null;
+        String pathName = codeBase.getPathName();
+        if (!codeBase.isApplicationCodeBase() && pathName != null && new File(pathName).isFile()) {
+            byte[] codeBaseDigest = getCodeBaseDigest(codeBase);
+            byte[] auxDigest = getClassPathDigest();
+            if (codeBaseDigest != null && auxDigest.length > 0) {
+                MessageDigest digest = Util.getMD5Digest();
+                digest.update(configurationDigest);
+                digest.update(auxDigest);
+                digest.update(codeBaseDigest);
+                String key = String.format("%032x", new BigInteger(1, digest.digest()));
+                result = new CodeBaseSummaries(new File(directory, key + SUFFIX));
+            }
+        }
+        codeBaseMap.put(codeBase, result);
+        return result;
+    }
+
+    /**
+     * @return digest of the auxiliary classpath entries, or an empty array if
+     *         one of them can't be digested
+     */
+    private byte[] getClassPathDigest() {
+        if (classPathDigest == null) {
+            MessageDigest digest = Util.getMD5Digest();
+            for (Iterator<? extends ICodeBase> i = Global.getAnalysisCache().getClassPath().auxCodeBaseIterator(); i.hasNext();) {
+                byte[] codeBaseDigest = getCodeBaseDigest(i.next());
+                if (codeBaseDigest == null) {
+                    classPathDigest = new byte[0];
+                    return classPathDigest;
+                }
+                digest.update(codeBaseDigest);
+            }
+            classPathDigest = digest.digest();
+        }
+        return classPathDigest;
+    }
+
+    /**
+     * @return digest of the contents of a jar file or directory, or null if
+     *         the code base is neither or can't be read
+     */
+    private @CheckForNull byte[] getCodeBaseDigest(ICodeBase codeBase) {
+        if (codeBaseDigestMap.containsKey(codeBase)) {
+            return codeBaseDigestMap.get(codeBase);
+        }
+        byte[] result = null;
+        String pathName = codeBase.getPathName();
+        if (pathName != null) {
+            File file = new File(pathName);
+            try {
+                if (file.isFile()) {
+                    result = digestFile(file);
+                } else if (file.isDirectory()) {
+                    MessageDigest digest = Util.getMD5Digest();
+                    digestDirectory(file, "", digest);
+                    result = digest.digest();
+                }
+            } catch (IOException e) {
+                AnalysisContext.logError("Couldn't read " + pathName, e);
+            }
+        }
+        codeBaseDigestMap.put(codeBase, result);
+        return result;
+    }
+
+    private static void digestDirectory(File dir, String prefix, MessageDigest digest) throws IOException {
+        String[] names = dir.list();
+        if (names == null) {
+            throw new IOException("Couldn't list " + dir);
+        }
+        Arrays.sort(names);
+        for (String name : names) {
+            File file = new File(dir, name);
+            if (file.isDirectory()) {
+                digestDirectory(file, prefix + name + "/", digest);
+            } else {
+                digest.update(utf8(prefix + name));
+                digest.update(digestFile(file));
+            }
+        }
+    }
+
+    private static byte[] digestFile(File file) throws IOException {
+        MessageDigest digest = Util.getMD5Digest();
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buf = new byte[65536];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                digest.update(buf, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        return digest.digest();
+    }
+
+    private static @CheckForNull Map<String, byte[]> parse(byte[] data) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        try {
+            int count = in.readInt();
+            Map<String, byte[]> result = new HashMap<String, byte[]>();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                byte[] summary = new byte[in.readInt()];
+                in.readFully(summary);
+                result.put(name, summary);
+            }
+            return result;
+        } catch (IOException e) {
+            // Ignore and overwrite damaged entries
+            return null;
+        }
+    }
+
+    private static Map<String, byte[]> read(File file) {
+        Map<String, byte[]> result = new HashMap<String, byte[]>();
+        if (!file.isFile()) {
+            return result;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String className = in.readUTF();
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                result.put(className, data);
+            }
+            return result;
+        } catch (IOException e) {
+            // Ignore and overwrite damaged files
+            result.clear();
+            return result;
+        } finally {
+            IO.close(in);
+        }
+    }
+
+    private void write(File file, Map<String, byte[]> summaries) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("Couldn't create directory " + directory);
+        }
+        // Write to a temporary file first, so that concurrent or interrupted
+        // runs never see a partially written file
+        File tmp = File.createTempFile(file.getName(), ".tmp", directory);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp))));
+        try {
+            out.writeInt(summaries.size());
+            for (Map.Entry<String, byte[]> e : summaries.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeInt(e.getValue().length);
+                out.write(e.getValue());
+            }
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                throw new IOException("Couldn't rename " + tmp + " to " + file);
+            }
+        }
+    }
+
+    private static byte[] utf8(String s) {
+        try {
+            return s.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2005, University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.util.Comparator;
+
+/**
+ * A BugInstance comparator which can compute a hash key for BugInstances,
+ * so that matching BugInstances can be found by hashing instead of sorting.
+ * BugInstances which compare as equal must have equal keys; BugInstances
+ * with equal keys need not compare as equal, so the key may be computed from
+ * just some of the information the comparator looks at.
+ */
+public interface MatchKeyComparator extends Comparator<BugInstance> {
+
+    /**
+     * Get the match key of a BugInstance.
+     *
+     * @param bugInstance
+     *            the BugInstance
+     * @return the key, which must have equals() and hashCode() methods
+     *         consistent with this comparator
+     */
+    public Object getMatchKey(BugInstance bugInstance);
+}
@@ -20,14 +20,17 @@
 
 package edu.umd.cs.findbugs;
 
+import java.io.IOException;
 import java.lang.annotation.Documented;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -161,11 +164,18 @@ public class OpcodeStack implements Constants2 {
 
     private boolean jumpInfoChangedByNewTarget;
 
-    private Map<Integer, List<Item>> jumpEntries = new HashMap<Integer, List<Item>>();
+    /**
+     * Jump information computed before scanning the method; shared with other
+     * stacks, so it is never modified. Entries which change during the scan
+     * are copied into the maps below.
+     */
+    private @CheckForNull JumpInfo learnedJumpInfo;
 
-    private Map<Integer, List<Item>> jumpStackEntries = new HashMap<Integer, List<Item>>();
+    private final Map<Integer, List<Item>> jumpEntries = new HashMap<Integer, List<Item>>();
 
-    private BitSet jumpEntryLocations = new BitSet();
+    private final Map<Integer, List<Item>> jumpStackEntries = new HashMap<Integer, List<Item>>();
+
+    private final BitSet jumpEntryLocations = new BitSet();
 
     int convertJumpToOneZeroState = 0;
 
@@ -755,6 +765,137 @@ public class OpcodeStack implements Constants2 {
             return item;
         }
 
+        /**
+         * Write this item to a library summary. Items with a user value
+         * cannot be written, and make the summary fail.
+         */
+        void writeTo(LibrarySummaryOutput out) {
+            if (userValue != null) {
+                out.fail();
+                return;
+            }
+            out.writeInt(specialKind);
+            out.writeString(signature);
+            if (constValue == null) {
+                out.writeByte(0);
+            } else if (constValue instanceof Integer) {
+                out.writeByte(1);
+                out.writeInt((Integer) constValue);
+            } else if (constValue instanceof Long) {
+                out.writeByte(2);
+                out.writeLong((Long) constValue);
+            } else if (constValue instanceof Float) {
+                out.writeByte(3);
+                out.writeInt(Float.floatToRawIntBits((Float) constValue));
+            } else if (constValue instanceof Double) {
+                out.writeByte(4);
+                out.writeLong(Double.doubleToRawLongBits((Double) constValue));
+            } else if (constValue instanceof String) {
+                out.writeByte(5);
+                out.writeString((String) constValue);
+            } else if (constValue instanceof Character) {
+                out.writeByte(6);
+                out.writeInt((Character) constValue);
+            } else if (constValue instanceof Short) {
+                out.writeByte(7);
+                out.writeInt((Short) constValue);
+            } else if (constValue instanceof Byte) {
+                out.writeByte(8);
+                out.writeInt((Byte) constValue);
+            } else if (constValue instanceof Boolean) {
+                out.writeByte(9);
+                out.writeBoolean((Boolean) constValue);
+            } else {
+                out.fail();
+                return;
+            }
+            if (source == null) {
+                out.writeByte(0);
+            } else if (source instanceof XMethod) {
+                out.writeByte(1);
+                out.writeXMethod((XMethod) source);
+            } else if (source instanceof XField) {
+                out.writeByte(2);
+                out.writeXField((XField) source);
+            } else {
+                out.fail();
+                return;
+            }
+            out.writeInt(pc);
+            out.writeInt(flags);
+            out.writeInt(registerNumber);
+            out.writeInt(fieldLoadedFromRegister);
+            out.writeBoolean(injection != null);
+            if (injection != null) {
+                out.writeString(injection.parameterName);
+                out.writeInt(injection.pc);
+            }
+        }
+
+        /**
+         * Read an item written by {@link #writeTo(LibrarySummaryOutput)}.
+         */
+        static Item readFrom(LibrarySummaryInput in) throws IOException {
+            Item item = new Item();
+            item.specialKind = asSpecialKind(in.readInt());
+            item.signature = DescriptorFactory.canonicalizeString(in.readString());
+            switch (in.readByte()) {
+            case 0:
+                item.constValue = null;
+                break;
+            case 1:
+                item.constValue = Integer.valueOf(in.readInt());
+                break;
+            case 2:
+                item.constValue = Long.valueOf(in.readLong());
+                break;
+            case 3:
+                item.constValue = Float.valueOf(Float.intBitsToFloat(in.readInt()));
+                break;
+            case 4:
+                item.constValue = Double.valueOf(Double.longBitsToDouble(in.readLong()));
+                break;
+            case 5:
+                item.constValue = in.readString();
+                break;
+            case 6:
+                item.constValue = Character.valueOf((char) in.readInt());
+                break;
+            case 7:
+                item.constValue = Short.valueOf((short) in.readInt());
+                break;
+            case 8:
+                item.constValue = Byte.valueOf((byte) in.readInt());
+                break;
+            case 9:
+                item.constValue = Boolean.valueOf(in.readBoolean());
+                break;
+            default:
+                throw new IOException("Bad constant value in library summary");
+            }
+            switch (in.readByte()) {
+            case 0:
+                item.source = null;
+                break;
+            case 1:
+                item.source = in.readXMethod();
+                break;
+            case 2:
+                item.source = in.readXField();
+                break;
+            default:
+                throw new IOException("Bad item source in library summary");
+            }
+            item.pc = in.readInt();
+            item.flags = in.readInt();
+            item.registerNumber = in.readInt();
+            item.fieldLoadedFromRegister = in.readInt();
+            if (in.readBoolean()) {
+                item.injection = new HttpParameterInjection(in.readString(), in.readInt());
+            }
+            return item;
+        }
+
         /** Returns null for primitive and arrays */
         public @CheckForNull
         JavaClass getJavaClass() throws ClassNotFoundException {
@@ -1085,10 +1226,28 @@ public class OpcodeStack implements Constants2 {
     }
 
     public boolean hasIncomingBranches(int pc) {
-        return jumpEntryLocations.get(pc) && jumpEntries.get(pc) != null;
+        return getJumpEntry(pc) != null;
 
     }
 
+    private @CheckForNull List<Item> getJumpEntry(int pc) {
+        List<Item> result = null;
+        if (jumpEntryLocations.get(pc)) {
+            result = jumpEntries.get(Integer.valueOf(pc));
+        }
+        if (result == null && learnedJumpInfo != null) {
+            result = learnedJumpInfo.getJumpEntry(pc);
+        }
+        return result;
+    }
+
+    private @CheckForNull List<Item> getJumpStackEntry(int pc) {
+        if (learnedJumpInfo == null || jumpEntries.containsKey(Integer.valueOf(pc))) {
+            return jumpStackEntries.get(Integer.valueOf(pc));
+        }
+        return learnedJumpInfo.getJumpStackEntry(pc);
+    }
+
     public static String getExceptionSig(DismantleBytecode dbc, CodeException e) {
         if (e.getCatchType() == 0) {
             return "Ljava/lang/Throwable;";
@@ -1136,14 +1295,11 @@ public class OpcodeStack implements Constants2 {
             stackUpdated = true;
         }
 
-        List<Item> jumpEntry = null;
-        if (jumpEntryLocations.get(dbc.getPC())) {
-            jumpEntry = jumpEntries.get(Integer.valueOf(dbc.getPC()));
-        }
+        List<Item> jumpEntry = getJumpEntry(dbc.getPC());
         boolean wasReachOnlyByBranch = isReachOnlyByBranch();
         if (jumpEntry != null) {
             setReachOnlyByBranch(false);
-            List<Item> jumpStackEntry = jumpStackEntries.get(Integer.valueOf(dbc.getPC()));
+            List<Item> jumpStackEntry = getJumpStackEntry(dbc.getPC());
 
             if (DEBUG2) {
                 if (wasReachOnlyByBranch) {
@@ -2697,6 +2853,21 @@ public class OpcodeStack implements Constants2 {
         pushBySignature(new SignatureParser(signature).getReturnTypeSignature(), dbc);
     }
 
+    /**
+     * Would merging mergeFrom into mergeInto change it?
+     */
+    private static boolean mergeChanges(List<Item> mergeInto, List<Item> mergeFrom) {
+        int common = Math.min(mergeInto.size(), mergeFrom.size());
+        for (int i = 0; i < common; i++) {
+            Item oldValue = mergeInto.get(i);
+            Item merged = Item.merge(oldValue, mergeFrom.get(i));
+            if (merged != null && !merged.equals(oldValue)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private boolean mergeLists(List<Item> mergeInto, List<Item> mergeFrom, boolean errorIfSizesDoNotMatch) {
         // merge stacks
         int intoSize = mergeInto.size();
@@ -2756,9 +2927,15 @@ public class OpcodeStack implements Constants2 {
     }
 
     public void printJumpEntries() {
-        for(int i=jumpEntryLocations.nextSetBit(0); i>=0; i=jumpEntryLocations.nextSetBit(i+1)) {
-            List<Item> stack = jumpStackEntries.get(i);
-            List<Item> locals = jumpEntries.get(i);
+        BitSet locations = (BitSet) jumpEntryLocations.clone();
+        if (learnedJumpInfo != null) {
+            for (int pc : learnedJumpInfo.pcs) {
+                locations.set(pc);
+            }
+        }
+        for(int i=locations.nextSetBit(0); i>=0; i=locations.nextSetBit(i+1)) {
+            List<Item> stack = getJumpStackEntry(i);
+            List<Item> locals = getJumpEntry(i);
             if (stack != null) {
                 System.out.printf("%4d: %s::%s%n", i, stack, locals);
             } else {
@@ -2767,21 +2944,129 @@ public class OpcodeStack implements Constants2 {
         }
     }
 
+    /**
+     * The values of the locals and the stack at each jump target of a method.
+     * A JumpInfo is cached and shared by all the OpcodeStacks scanning the
+     * method, so it is immutable: the entries are kept in arrays indexed by
+     * the position of the target in the sorted array of target pcs, and entry
+     * lists holding the same items are shared.
+     */
     public static class JumpInfo {
-        final Map<Integer, List<Item>> jumpEntries;
+        /** The jump targets, in increasing order */
+        final int[] pcs;
 
-        final Map<Integer, List<Item>> jumpStackEntries;
+        final List<Item>[] jumpEntries;
 
-        final BitSet jumpEntryLocations;
+        /** The stack at each target, null where the stack is empty */
+        final List<Item>[] jumpStackEntries;
 
         JumpInfo(Map<Integer, List<Item>> jumpEntries, Map<Integer, List<Item>> jumpStackEntries, BitSet jumpEntryLocations) {
-            this.jumpEntries = jumpEntries;
-            this.jumpStackEntries = jumpStackEntries;
-            this.jumpEntryLocations = jumpEntryLocations;
+            int count = 0;
+            for (int pc = jumpEntryLocations.nextSetBit(0); pc >= 0; pc = jumpEntryLocations.nextSetBit(pc + 1)) {
+                if (jumpEntries.containsKey(Integer.valueOf(pc))) {
+                    count++;
+                }
+            }
+            pcs = new int[count];
+            this.jumpEntries = newListArray(count);
+            this.jumpStackEntries = newListArray(count);
+            Map<ItemsKey, List<Item>> shared = new HashMap<ItemsKey, List<Item>>();
+            int i = 0;
+            for (int pc = jumpEntryLocations.nextSetBit(0); pc >= 0; pc = jumpEntryLocations.nextSetBit(pc + 1)) {
+                List<Item> locals = jumpEntries.get(Integer.valueOf(pc));
+                if (locals == null) {
+                    continue;
+                }
+                pcs[i] = pc;
+                this.jumpEntries[i] = share(shared, locals);
+                List<Item> stack = jumpStackEntries.get(Integer.valueOf(pc));
+                if (stack != null) {
+                    this.jumpStackEntries[i] = share(shared, stack);
+                }
+                i++;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static List<Item>[] newListArray(int size) {
+            return new List[size];
+        }
+
+        /**
+         * Get an unmodifiable copy of a list of items, shared with the
+         * previous lists holding the very same items.
+         */
+        private static List<Item> share(Map<ItemsKey, List<Item>> shared, List<Item> items) {
+            ItemsKey key = new ItemsKey(items.toArray(new Item[items.size()]));
+            List<Item> result = shared.get(key);
+            if (result == null) {
+                result = Collections.unmodifiableList(Arrays.asList(key.items));
+                shared.put(key, result);
+            }
+            return result;
+        }
+
+        /**
+         * Items are mutable and their equals() ignores the pc, so lists are only
+         * shared when they hold the same Item objects.
+         */
+        private static class ItemsKey {
+            final Item[] items;
+
+            final int hashCode;
+
+            ItemsKey(Item[] items) {
+                this.items = items;
+                int h = items.length;
+                for (Item item : items) {
+                    h = 31 * h + (item == null ? 0 : item.hashCode());
+                }
+                hashCode = h;
+            }
+
+            @Override
+            public int hashCode() {
+                return hashCode;
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (!(o instanceof ItemsKey)) {
+                    return false;
+                }
+                Item[] other = ((ItemsKey) o).items;
+                if (other.length != items.length) {
+                    return false;
+                }
+                for (int i = 0; i < items.length; i++) {
+                    if (other[i] != items[i]) {
+                        return false;
+                    }
+                }
+                return true;
+            }
         }
 
         public int getNextJump(int pc) {
-            return jumpEntryLocations.nextSetBit(pc);
+            int i = Arrays.binarySearch(pcs, pc);
+            if (i < 0) {
+                i = -i - 1;
+            }
+            return i < pcs.length ? pcs[i] : -1;
+        }
+
+        boolean isJumpTarget(int pc) {
+            return Arrays.binarySearch(pcs, pc) >= 0;
+        }
+
+        @CheckForNull List<Item> getJumpEntry(int pc) {
+            int i = Arrays.binarySearch(pcs, pc);
+            return i >= 0 ? jumpEntries[i] : null;
+        }
+
+        @CheckForNull List<Item> getJumpStackEntry(int pc) {
+            int i = Arrays.binarySearch(pcs, pc);
+            return i >= 0 ? jumpStackEntries[i] : null;
         }
     }
 
@@ -2900,7 +3185,7 @@ public class OpcodeStack implements Constants2 {
     }
 
     public boolean isJumpTarget(int pc) {
-        return jumpEntryLocations.get(pc);
+        return jumpEntryLocations.get(pc) || learnedJumpInfo != null && learnedJumpInfo.isJumpTarget(pc);
     }
 
     private void addJumpValue(int from, int target) {
@@ -2912,6 +3197,23 @@ public class OpcodeStack implements Constants2 {
             backwardsBranch = true;
         }
         List<Item> atTarget = jumpEntries.get(Integer.valueOf(target));
+        if (atTarget == null && learnedJumpInfo != null) {
+            List<Item> learned = learnedJumpInfo.getJumpEntry(target);
+            if (learned != null) {
+                List<Item> learnedStack = learnedJumpInfo.getJumpStackEntry(target);
+                if (!mergeChanges(learned, lvValues)
+                        && (stack.size() == 0 || learnedStack == null || !mergeChanges(learnedStack, stack))) {
+                    return;
+                }
+                // Copy the shared entry before merging into it
+                atTarget = new ArrayList<Item>(learned);
+                jumpEntries.put(Integer.valueOf(target), atTarget);
+                jumpEntryLocations.set(target);
+                if (learnedStack != null) {
+                    jumpStackEntries.put(Integer.valueOf(target), new ArrayList<Item>(learnedStack));
+                }
+            }
+        }
         if (atTarget == null) {
             setJumpInfoChangedByBackwardBranch("new target", from, target);
             setJumpInfoChangedByNewTarget();
@@ -2942,13 +3244,15 @@ public class OpcodeStack implements Constants2 {
         if (info == null) {
             return;
         }
-        jumpEntries = new HashMap<Integer, List<Item>>(info.jumpEntries);
-        jumpStackEntries = new HashMap<Integer, List<Item>>(info.jumpStackEntries);
-        jumpEntryLocations = (BitSet) info.jumpEntryLocations.clone();
+        learnedJumpInfo = info;
+        jumpEntries.clear();
+        jumpStackEntries.clear();
+        jumpEntryLocations.clear();
     }
 
     public void initialize() {
         setTop(false);
+        learnedJumpInfo = null;
         jumpEntries.clear();
         jumpStackEntries.clear();
         jumpEntryLocations.clear();
@@ -27,6 +27,11 @@ public class ProgramPoint {
         pc = v.getPC();
     }
 
+    public ProgramPoint(XMethod method, int pc) {
+        this.method = method;
+        this.pc = pc;
+    }
+
     public final XMethod method;
 
     /*
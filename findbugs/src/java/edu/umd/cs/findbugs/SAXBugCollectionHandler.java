@@ -28,9 +28,15 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
@@ -38,6 +44,7 @@ import javax.annotation.CheckForNull;
 
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
 import org.xml.sax.helpers.DefaultHandler;
 
 import edu.umd.cs.findbugs.filter.AndMatcher;
@@ -117,6 +124,35 @@ public class SAXBugCollectionHandler extends DefaultHandler {
 
     private String cloudPropertyKey;
 
+    /**
+     * Maximum number of BugInstances being built by the executor. Once it is
+     * reached, the parsing thread waits for the oldest one, so the recorded
+     * elements of a large document are not all kept in memory.
+     */
+    private static final int MAX_BUG_INSTANCES_IN_PROGRESS = 1000;
+
+    /**
+     * BugInstances read so far, added to a SortedBugCollection in bulk at the
+     * end of the document. They would be kept by the BugCollection anyway;
+     * holding them here only costs a reference each, and lets the
+     * BugCollection sort them once instead of inserting them one at a time.
+     */
+    private final ArrayList<BugInstance> bugInstances = new ArrayList<BugInstance>();
+
+    /**
+     * BugInstances being built by the executor, in document order.
+     */
+    private final LinkedList<Future<BugInstance>> bugInstancesInProgress = new LinkedList<Future<BugInstance>>();
+
+    private @CheckForNull ExecutorService executor;
+
+    private @CheckForNull ThreadLocal<SAXBugCollectionHandler> workerHandler;
+
+    /**
+     * The BugInstance element being recorded, to be built by the executor.
+     */
+    private @CheckForNull RecordedBugInstance recordedBugInstance;
+
     private SAXBugCollectionHandler(String topLevelName, @CheckForNull BugCollection bugCollection,
             @CheckForNull Project project, @CheckForNull File base) {
         this.topLevelName = topLevelName;
@@ -148,6 +184,31 @@ public class SAXBugCollectionHandler extends DefaultHandler {
         pushCompoundMatcher(filter);
     }
 
+    /**
+     * Build the BugInstances of the document on the given executor. The
+     * parsing thread only records the contents of each BugInstance element,
+     * and the BugInstances are added to the BugCollection in document order
+     * when the end of the document is reached. This is only supported when
+     * reading into a SortedBugCollection.
+     *
+     * @param executor
+     *            the executor, which should not be shut down before the end
+     *            of the document is reached
+     */
+    public void setBugInstanceExecutor(ExecutorService executor) {
+        if (!(bugCollection instanceof SortedBugCollection)) {
+            throw new IllegalStateException("BugInstances can only be built in parallel for a SortedBugCollection");
+        }
+        this.executor = executor;
+        final File base = this.base;
+        workerHandler = new ThreadLocal<SAXBugCollectionHandler>() {
+            @Override
+            protected SAXBugCollectionHandler initialValue() {
+                return new SAXBugCollectionHandler(BUG_COLLECTION, null, null, base);
+            }
+        };
+    }
+
     Pattern ignoredElement = Pattern.compile("Message|ShortMessage|LongMessage");
 
     public boolean discardedElement(String qName) {
@@ -182,6 +243,8 @@ public class SAXBugCollectionHandler extends DefaultHandler {
             nestingOfIgnoredElements++;
         } else if (nestingOfIgnoredElements > 0) {
             // ignore it
+        } else if (recordedBugInstance != null) {
+            recordedBugInstance.startElement(qName, attributes);
         } else {
             // We should be parsing the outer BugCollection element.
             if (elementStack.isEmpty() && !qName.equals(topLevelName)) {
@@ -239,7 +302,10 @@ public class SAXBugCollectionHandler extends DefaultHandler {
                 if (BUG_COLLECTION.equals(outerElement)) {
 
                     // Parsing a top-level element of the BugCollection
-                    if ("BugInstance".equals(qName)) {
+                    if ("BugInstance".equals(qName) && executor != null) {
+                        recordedBugInstance = new RecordedBugInstance();
+                        recordedBugInstance.startElement(qName, attributes);
+                    } else if ("BugInstance".equals(qName)) {
                         // BugInstance element - get required type and priority
                         // attributes
                         String type = getRequiredAttribute(attributes, "type", qName);
@@ -739,6 +805,13 @@ public class SAXBugCollectionHandler extends DefaultHandler {
             nestingOfIgnoredElements--;
         } else if (nestingOfIgnoredElements > 0) {
             // ignore it
+        } else if (recordedBugInstance != null) {
+            if ("BugInstance".equals(qName)) {
+                buildRecordedBugInstance(recordedBugInstance);
+                recordedBugInstance = null;
+            } else {
+                recordedBugInstance.endElement(qName);
+            }
         } else if ("Project".equals(qName)) {
             // noop
         } else if (elementStack.size() > 1) {
@@ -754,7 +827,11 @@ public class SAXBugCollectionHandler extends DefaultHandler {
                 BugCollection bugCollection = this.bugCollection;
                 assert bugCollection != null;
                 if ("BugInstance".equals(qName)) {
-                    bugCollection.add(bugInstance, false);
+                    if (bugCollection instanceof SortedBugCollection) {
+                        bugInstances.add(bugInstance);
+                    } else {
+                        bugCollection.add(bugInstance, false);
+                    }
                 }
             } else if (PROJECT.equals(outerElement)) {
                 Project project = this.project;
@@ -833,7 +910,128 @@ public class SAXBugCollectionHandler extends DefaultHandler {
 
     @Override
     public void characters(char[] ch, int start, int length) {
-        textBuffer.append(ch, start, length);
+        if (recordedBugInstance != null && nestingOfIgnoredElements == 0) {
+            recordedBugInstance.characters(ch, start, length);
+        } else {
+            textBuffer.append(ch, start, length);
+        }
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        for (Future<BugInstance> future : bugInstancesInProgress) {
+            bugInstances.add(getBuiltBugInstance(future));
+        }
+        bugInstancesInProgress.clear();
+        if (!bugInstances.isEmpty()) {
+            BugCollection bugCollection = this.bugCollection;
+            assert bugCollection != null;
+            ((SortedBugCollection) bugCollection).addAll(bugInstances, false);
+            bugInstances.clear();
+        }
+    }
+
+    private void buildRecordedBugInstance(final RecordedBugInstance recorded) throws SAXException {
+        final ThreadLocal<SAXBugCollectionHandler> workerHandler = this.workerHandler;
+        ExecutorService executor = this.executor;
+        assert workerHandler != null && executor != null;
+        bugInstancesInProgress.add(executor.submit(new Callable<BugInstance>() {
+            @Override
+            public BugInstance call() throws SAXException {
+                return workerHandler.get().replay(recorded);
+            }
+        }));
+        if (bugInstancesInProgress.size() > MAX_BUG_INSTANCES_IN_PROGRESS) {
+            bugInstances.add(getBuiltBugInstance(bugInstancesInProgress.removeFirst()));
+        }
+    }
+
+    private static BugInstance getBuiltBugInstance(Future<BugInstance> future) throws SAXException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SAXException("Interrupted while reading BugInstances", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SAXException) {
+                throw (SAXException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new SAXException("Error reading BugInstance", e);
+        }
+    }
+
+    /**
+     * Build a BugInstance from its recorded element, as if the element had
+     * been read directly by this handler.
+     */
+    private BugInstance replay(RecordedBugInstance recorded) throws SAXException {
+        elementStack.clear();
+        elementStack.add(BUG_COLLECTION);
+        // The end of the BugInstance element itself is not recorded: a
+        // handler without a BugCollection would have nothing to do for it
+        for (Object event : recorded.events) {
+            if (event instanceof StartElement) {
+                StartElement start = (StartElement) event;
+                startElement("", start.qName, start.qName, start.attributes);
+            } else if (event instanceof String) {
+                endElement("", (String) event, (String) event);
+            } else {
+                char[] text = (char[]) event;
+                characters(text, 0, text.length);
+            }
+        }
+        BugInstance result = bugInstance;
+        bugInstance = null;
+        bugAnnotationWithSourceLines = null;
+        return result;
+    }
+
+    private static class StartElement {
+        final String qName;
+
+        final Attributes attributes;
+
+        StartElement(String qName, Attributes attributes) {
+            this.qName = qName;
+            this.attributes = attributes;
+        }
+    }
+
+    /**
+     * The contents of a BugInstance element: StartElements, the names of
+     * ended elements, and the text (as a char[]) before the end of an
+     * element. Text before the start of an element is not recorded, since
+     * the text buffer is cleared at that point anyway.
+     */
+    private static class RecordedBugInstance {
+        final List<Object> events = new ArrayList<Object>();
+
+        private final StringBuilder text = new StringBuilder();
+
+        void startElement(String qName, Attributes attributes) {
+            text.setLength(0);
+            // The parser reuses its Attributes object
+            events.add(new StartElement(qName, new AttributesImpl(attributes)));
+        }
+
+        void characters(char[] ch, int start, int length) {
+            text.append(ch, start, length);
+        }
+
+        void endElement(String qName) {
+            if (text.length() > 0) {
+                char[] chars = new char[text.length()];
+                text.getChars(0, chars.length, chars, 0);
+                events.add(chars);
+                text.setLength(0);
+            }
+            events.add(qName);
+        }
     }
 
     private String getRequiredAttribute(Attributes attributes, String attrName, String elementName) throws SAXException {
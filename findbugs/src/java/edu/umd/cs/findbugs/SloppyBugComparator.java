@@ -19,6 +19,8 @@
 
 package edu.umd.cs.findbugs;
 
+import java.util.Arrays;
+
 import edu.umd.cs.findbugs.model.ClassNameRewriter;
 import edu.umd.cs.findbugs.model.ClassNameRewriterUtil;
 import edu.umd.cs.findbugs.model.IdentityClassNameRewriter;
@@ -29,7 +31,7 @@ import edu.umd.cs.findbugs.model.IdentityClassNameRewriter;
  *
  * @author David Hovemeyer
  */
-public class SloppyBugComparator implements WarningComparator {
+public class SloppyBugComparator implements WarningComparator, MatchKeyComparator {
 
     private static final boolean DEBUG = SystemProperties.getBoolean("sloppyComparator.debug");
 
@@ -158,6 +160,26 @@ public class SloppyBugComparator implements WarningComparator {
         return 0;
     }
 
+    /**
+     * The key is made up of the bug abbrev and the rewritten names of the
+     * primary class, and of the primary method or, if there is none, the
+     * primary field.
+     */
+    @Override
+    public Object getMatchKey(BugInstance bugInstance) {
+        PackageMemberAnnotation member = bugInstance.getPrimaryMethod();
+        String memberName = null;
+        if (member != null) {
+            memberName = ((MethodAnnotation) member).getMethodName();
+        } else if ((member = bugInstance.getPrimaryField()) != null) {
+            memberName = ((FieldAnnotation) member).getFieldName();
+        }
+        ClassAnnotation primaryClass = bugInstance.getPrimaryClass();
+        return Arrays.asList(bugInstance.getBugPattern().getAbbrev(),
+                primaryClass != null ? classNameRewriter.rewriteClassName(primaryClass.getClassName()) : null,
+                member != null ? classNameRewriter.rewriteClassName(member.getClassName()) : null, memberName);
+    }
+
     /*
     private static String getAbbrevFromBugType(String type) {
         int bar = type.indexOf('_');
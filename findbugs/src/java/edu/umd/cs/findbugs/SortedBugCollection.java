@@ -20,6 +20,7 @@
 package edu.umd.cs.findbugs;
 
 import java.awt.GraphicsEnvironment;
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.File;
@@ -33,6 +34,8 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -43,10 +46,14 @@ import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.GZIPInputStream;
@@ -70,11 +77,14 @@ import org.xml.sax.helpers.XMLReaderFactory;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.MissingClassException;
 import edu.umd.cs.findbugs.charsets.UTF8;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
 import edu.umd.cs.findbugs.cloud.Cloud;
 import edu.umd.cs.findbugs.cloud.CloudFactory;
 import edu.umd.cs.findbugs.log.Profiler;
 import edu.umd.cs.findbugs.model.ClassFeatureSet;
 import edu.umd.cs.findbugs.util.Util;
+import edu.umd.cs.findbugs.xml.BinaryXMLOutput;
+import edu.umd.cs.findbugs.xml.BinaryXMLReader;
 import edu.umd.cs.findbugs.xml.Dom4JXMLOutput;
 import edu.umd.cs.findbugs.xml.OutputStreamXMLOutput;
 import edu.umd.cs.findbugs.xml.XMLAttributeList;
@@ -95,6 +105,14 @@ public class SortedBugCollection implements BugCollection {
 
     private static final boolean REPORT_SUMMARY_HTML = SystemProperties.getBoolean("findbugs.report.SummaryHTML");
 
+    /**
+     * Property giving the number of threads building BugInstances while
+     * reading a bug collection, besides the thread parsing it. With none, the
+     * parsing thread builds them. By default, up to 4 threads are used, and
+     * none on a single processor.
+     */
+    static final String LOAD_THREADS_PROPERTY = "findbugs.load.threads";
+
     long analysisTimestamp = System.currentTimeMillis();
 
     String analysisVersion = Version.RELEASE;
@@ -140,6 +158,22 @@ public class SortedBugCollection implements BugCollection {
 
     private boolean preciseHashOccurrenceNumbersAvailable = false;
 
+    /**
+     * True while BugInstances are streamed to XML output rather than added
+     * to the collection.
+     */
+    private boolean streamingXML;
+
+    /**
+     * Bug types, categories and codes of the BugInstances which were
+     * streamed to XML output.
+     */
+    private final Set<String> streamedBugTypes = new HashSet<String>();
+
+    private final Set<String> streamedBugCategories = new HashSet<String>();
+
+    private final Set<String> streamedBugCodes = new HashSet<String>();
+
     /**
      * Sequence number of the most-recently analyzed version of the code.
      */
@@ -248,7 +282,11 @@ public class SortedBugCollection implements BugCollection {
     }
 
     /**
-     * Add a Collection of BugInstances to this BugCollection object.
+     * Add a Collection of BugInstances to this BugCollection object. If the
+     * BugCollection is empty, the BugInstances are sorted once and the
+     * BugCollection is built from the sorted BugInstances, rather than
+     * inserting them one at a time. As with add(BugInstance, boolean), if
+     * several matching BugInstances are added, the first one is kept.
      *
      * @param collection
      *            the Collection of BugInstances to add
@@ -257,8 +295,131 @@ public class SortedBugCollection implements BugCollection {
      *            match collection: false if not
      */
     public void addAll(Collection<BugInstance> collection, boolean updateActiveTime) {
-        for (BugInstance warning : collection) {
-            add(warning, updateActiveTime);
+        if (!bugSet.isEmpty() || collection.size() < 2) {
+            for (BugInstance warning : collection) {
+                add(warning, updateActiveTime);
+            }
+            return;
+        }
+        BugInstance[] sorted = collection.toArray(new BugInstance[collection.size()]);
+        for (BugInstance warning : sorted) {
+            prepareToAdd(warning, updateActiveTime);
+        }
+        // The sort is stable, so the first of several matching BugInstances
+        // stays in front of the others
+        Arrays.sort(sorted, comparator);
+        int numUnique = 0;
+        for (BugInstance warning : sorted) {
+            if (numUnique == 0 || comparator.compare(sorted[numUnique - 1], warning) != 0) {
+                sorted[numUnique++] = warning;
+            }
+        }
+        // TreeSet builds itself in linear time from a SortedSet with the same
+        // comparator
+        bugSet.addAll(new SortedArraySet(sorted, 0, numUnique, comparator));
+    }
+
+    /**
+     * Read-only SortedSet view of a range of a sorted array of distinct
+     * elements, used to add sorted BugInstances to the bugSet in bulk.
+     */
+    static class SortedArraySet extends AbstractSet<BugInstance> implements SortedSet<BugInstance> {
+        private final BugInstance[] elements;
+
+        private final int from, to;
+
+        private final Comparator<? super BugInstance> comparator;
+
+        /**
+         * @param elements
+         *            array sorted by the comparator, without duplicates in
+         *            the range
+         * @param from
+         *            index of the first element of the set
+         * @param to
+         *            index after the last element of the set
+         * @param comparator
+         *            the comparator
+         */
+        SortedArraySet(BugInstance[] elements, int from, int to, Comparator<? super BugInstance> comparator) {
+            this.elements = elements;
+            this.from = from;
+            this.to = to;
+            this.comparator = comparator;
+        }
+
+        @Override
+        public Iterator<BugInstance> iterator() {
+            return Collections.unmodifiableList(Arrays.asList(elements).subList(from, to)).iterator();
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            int i = indexOf((BugInstance) o);
+            return i < to && comparator.compare(elements[i], (BugInstance) o) == 0;
+        }
+
+        @Override
+        public Comparator<? super BugInstance> comparator() {
+            return comparator;
+        }
+
+        @Override
+        public BugInstance first() {
+            if (from == to) {
+                throw new NoSuchElementException();
+            }
+            return elements[from];
+        }
+
+        @Override
+        public BugInstance last() {
+            if (from == to) {
+                throw new NoSuchElementException();
+            }
+            return elements[to - 1];
+        }
+
+        @Override
+        public SortedSet<BugInstance> subSet(BugInstance fromElement, BugInstance toElement) {
+            if (comparator.compare(fromElement, toElement) > 0) {
+                throw new IllegalArgumentException("fromElement > toElement");
+            }
+            return new SortedArraySet(elements, indexOf(fromElement), indexOf(toElement), comparator);
+        }
+
+        @Override
+        public SortedSet<BugInstance> headSet(BugInstance toElement) {
+            return new SortedArraySet(elements, from, indexOf(toElement), comparator);
+        }
+
+        @Override
+        public SortedSet<BugInstance> tailSet(BugInstance fromElement) {
+            return new SortedArraySet(elements, indexOf(fromElement), to, comparator);
+        }
+
+        /**
+         * @return the index of the first element of the range which is not
+         *         less than the given one, or the end of the range if there
+         *         is none
+         */
+        private int indexOf(BugInstance element) {
+            int low = from;
+            int high = to;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (comparator.compare(elements[mid], element) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
         }
     }
 
@@ -379,6 +540,12 @@ public class SortedBugCollection implements BugCollection {
 
     private void doReadXML(@WillClose InputStream in, @CheckForNull File base) throws IOException, DocumentException {
         try {
+            BufferedInputStream bufferedIn = new BufferedInputStream(in);
+            if (BinaryXMLReader.isBinaryXML(bufferedIn)) {
+                doReadBinaryXML(bufferedIn, base);
+                return;
+            }
+            in = bufferedIn;
             checkInputStream(in);
             Reader reader = Util.getReader(in);
             doReadXML(reader, base);
@@ -395,6 +562,7 @@ public class SortedBugCollection implements BugCollection {
         timeStartedLoading = System.currentTimeMillis();
 
         SAXBugCollectionHandler handler = new SAXBugCollectionHandler(this, base);
+        ExecutorService executor = createLoadExecutor(handler);
         Profiler profiler = getProjectStats().getProfiler();
         profiler.start(handler.getClass());
         try {
@@ -424,6 +592,9 @@ public class SortedBugCollection implements BugCollection {
             throw new DocumentException("Sax error ", e);
         } finally {
             Util.closeSilently(reader);
+            if (executor != null) {
+                executor.shutdownNow();
+            }
             profiler.end(handler.getClass());
         }
         timeFinishedLoading = System.currentTimeMillis();
@@ -432,6 +603,96 @@ public class SortedBugCollection implements BugCollection {
         project.setModified(false);
     }
 
+    private void doReadBinaryXML(@WillClose InputStream in, @CheckForNull File base) throws IOException, DocumentException {
+        timeStartedLoading = System.currentTimeMillis();
+
+        SAXBugCollectionHandler handler = new SAXBugCollectionHandler(this, base);
+        ExecutorService executor = createLoadExecutor(handler);
+        Profiler profiler = getProjectStats().getProfiler();
+        profiler.start(handler.getClass());
+        try {
+            new BinaryXMLReader(in).parse(handler);
+        } catch (SAXException e) {
+            if (base != null) {
+                throw new DocumentException("Sax error while reading " + base, e);
+            }
+            throw new DocumentException("Sax error ", e);
+        } finally {
+            Util.closeSilently(in);
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            profiler.end(handler.getClass());
+        }
+        timeFinishedLoading = System.currentTimeMillis();
+        bugsPopulated();
+        // Presumably, project is now up-to-date
+        project.setModified(false);
+    }
+
+    /**
+     * Create the executor building the BugInstances read by the given
+     * handler, if BugInstances are built in parallel.
+     *
+     * @return the executor, which must be shut down after reading, or null
+     *         if the handler builds the BugInstances itself
+     */
+    private static @CheckForNull ExecutorService createLoadExecutor(SAXBugCollectionHandler handler) {
+        int loadThreads = SystemProperties.getInt(LOAD_THREADS_PROPERTY,
+                Math.min(Runtime.getRuntime().availableProcessors() - 1, 4));
+        if (loadThreads < 1) {
+            return null;
+        }
+        // Class names are canonicalized by the DescriptorFactory of this
+        // thread
+        final DescriptorFactory descriptorFactory = DescriptorFactory.instance();
+        ExecutorService executor = Executors.newFixedThreadPool(loadThreads, new ThreadFactory() {
+            private int threadCount;
+
+            @Override
+            public Thread newThread(final Runnable r) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        DescriptorFactory.setInstanceForCurrentThread(descriptorFactory);
+                        r.run();
+                    }
+                }, "FindBugs bug collection loading thread " + (++threadCount));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        handler.setBugInstanceExecutor(executor);
+        return executor;
+    }
+
+    /**
+     * Is the given file name the name of a file containing a BugCollection
+     * in binary format, written by writeBinaryXML()?
+     *
+     * @param fileName
+     *            the file name
+     * @return true if the file name ends with .fbb or .fbb.gz
+     */
+    public static boolean isBinaryXMLFileName(String fileName) {
+        return fileName.endsWith(".fbb") || fileName.endsWith(".fbb.gz");
+    }
+
+    /**
+     * Write this BugCollection to given output stream in the compact binary
+     * format of BinaryXMLOutput. It contains the same information as the XML
+     * format, and is read transparently by the readXML() methods. The output
+     * stream will be closed, even if an exception is thrown.
+     *
+     * @param out
+     *            the OutputStream to write to
+     */
+    public void writeBinaryXML(@WillClose OutputStream out) throws IOException {
+        assert project != null;
+        bugsPopulated();
+        writeXML(new BinaryXMLOutput(out));
+    }
+
 
     @Override
     public void writeXML(OutputStream out) throws IOException {
@@ -450,7 +711,11 @@ public class SortedBugCollection implements BugCollection {
         if (fileName.endsWith(".gz")) {
             out = new GZIPOutputStream(out);
         }
-        writeXML(out);
+        if (isBinaryXMLFileName(fileName)) {
+            writeBinaryXML(out);
+        } else {
+            writeXML(out);
+        }
     }
 
     /**
@@ -464,7 +729,11 @@ public class SortedBugCollection implements BugCollection {
         if (file.getName().endsWith(".gz")) {
             out = new GZIPOutputStream(out);
         }
-        writeXML(out);
+        if (isBinaryXMLFileName(file.getName())) {
+            writeBinaryXML(out);
+        } else {
+            writeXML(out);
+        }
     }
 
     /**
@@ -539,9 +808,14 @@ public class SortedBugCollection implements BugCollection {
             return;
         }
         invalidateHashes();
+        computeBugHashes(getCollection());
+        preciseHashOccurrenceNumbersAvailable = true;
+    }
+
+    private static void computeBugHashes(Collection<BugInstance> bugs) {
         HashMap<String, Integer> seen = new HashMap<String, Integer>();
 
-        for (BugInstance bugInstance : getCollection()) {
+        for (BugInstance bugInstance : bugs) {
             String hash = bugInstance.getInstanceHash();
 
             Integer count = seen.get(hash);
@@ -553,10 +827,9 @@ public class SortedBugCollection implements BugCollection {
                 seen.put(hash, count + 1);
             }
         }
-        for (BugInstance bugInstance : getCollection()) {
+        for (BugInstance bugInstance : bugs) {
             bugInstance.setInstanceOccurrenceMax(seen.get(bugInstance.getInstanceHash()));
         }
-        preciseHashOccurrenceNumbersAvailable = true;
     }
 
     /**
@@ -579,24 +852,7 @@ public class SortedBugCollection implements BugCollection {
             if (withMessages) {
                 computeBugHashes();
                 getProjectStats().computeFileStats(this);
-                String commonBase = null;
-                for (String s : project.getSourceDirList()) {
-                    if (commonBase == null) {
-                        commonBase = s;
-                    } else {
-                        commonBase = commonBase.substring(0, commonPrefix(commonBase, s));
-                    }
-
-                }
-                if (commonBase != null && commonBase.length() > 0) {
-                    if (commonBase.indexOf("/./") > 0) {
-                        commonBase = commonBase.substring(0, commonBase.indexOf("/."));
-                    }
-                    File base = new File(commonBase);
-                    if (base.exists() && base.isDirectory() && base.canRead()) {
-                        SourceLineAnnotation.generateRelativeSource(base, project);
-                    }
-                }
+                generateRelativeSource();
             }
             if (earlyStats && !minimalXML) {
                 getProjectStats().writeXML(xmlOutput, withMessages);
@@ -617,6 +873,98 @@ public class SortedBugCollection implements BugCollection {
         }
     }
 
+    private void generateRelativeSource() {
+        String commonBase = null;
+        for (String s : project.getSourceDirList()) {
+            if (commonBase == null) {
+                commonBase = s;
+            } else {
+                commonBase = commonBase.substring(0, commonPrefix(commonBase, s));
+            }
+
+        }
+        if (commonBase != null && commonBase.length() > 0) {
+            if (commonBase.indexOf("/./") > 0) {
+                commonBase = commonBase.substring(0, commonBase.indexOf("/."));
+            }
+            File base = new File(commonBase);
+            if (base.exists() && base.isDirectory() && base.canRead()) {
+                SourceLineAnnotation.generateRelativeSource(base, project);
+            }
+        }
+    }
+
+    /**
+     * Start writing the BugCollection to an XMLOutput object, with
+     * BugInstances streamed in by writeStreamedBugs() as they are found
+     * rather than taken from the collection. finishStreamingXML() must be
+     * called to write the rest of the document.
+     * <p>
+     * Since the BugInstances are not known in advance, the summary is always
+     * written at the end, without per-file statistics.
+     * </p>
+     *
+     * @param xmlOutput
+     *            the XMLOutput object
+     */
+    public void startStreamingXML(XMLOutput xmlOutput) throws IOException {
+        assert project != null;
+        streamingXML = true;
+        writePrologue(xmlOutput);
+        if (withMessages) {
+            generateRelativeSource();
+        }
+    }
+
+    /**
+     * Write BugInstances to an XMLOutput object on which startStreamingXML()
+     * was called. The BugInstances are not added to the collection.
+     * Occurrence numbers of instance hashes are computed among the given
+     * BugInstances only: since the instance hash includes the class name,
+     * passing all the BugInstances of a class at once gives the same
+     * numbers as for the whole collection.
+     *
+     * @param xmlOutput
+     *            the XMLOutput object
+     * @param bugs
+     *            the BugInstances, in the order they should be written
+     */
+    public void writeStreamedBugs(XMLOutput xmlOutput, Collection<BugInstance> bugs) throws IOException {
+        if (withMessages) {
+            computeBugHashes(bugs);
+        }
+        for (BugInstance bugInstance : bugs) {
+            if (!applySuppressions || !project.getSuppressionFilter().match(bugInstance)) {
+                bugInstance.writeXML(xmlOutput, this, withMessages);
+                BugPattern bugPattern = bugInstance.getBugPattern();
+                streamedBugTypes.add(bugPattern.getType());
+                streamedBugCategories.add(bugPattern.getCategory());
+                String bugCode = bugInstance.getAbbrev();
+                if (bugCode != null) {
+                    streamedBugCodes.add(bugCode);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finish writing the BugCollection to an XMLOutput object on which
+     * startStreamingXML() was called. The finish() method of the XMLOutput
+     * object is guaranteed to be called.
+     *
+     * @param xmlOutput
+     *            the XMLOutput object
+     */
+    public void finishStreamingXML(@WillClose XMLOutput xmlOutput) throws IOException {
+        try {
+            writeEpilogue(xmlOutput);
+        } finally {
+            streamingXML = false;
+            xmlOutput.finish();
+            SourceLineAnnotation.clearGenerateRelativeSource();
+        }
+    }
+
     int commonPrefix(String s1, String s2) {
         int pos = 0;
         while (pos < s1.length() && pos < s2.length() && s1.charAt(pos) == s2.charAt(pos)) {
@@ -637,7 +985,7 @@ public class SortedBugCollection implements BugCollection {
             emitErrors(xmlOutput);
         }
 
-        if (!earlyStats && !minimalXML) {
+        if ((!earlyStats || streamingXML) && !minimalXML) {
             // Statistics
             getProjectStats().writeXML(xmlOutput, withMessages);
         }
@@ -686,6 +1034,7 @@ public class SortedBugCollection implements BugCollection {
             BugPattern bugPattern = bugInstance.getBugPattern();
             bugTypeSet.add(bugPattern.getType());
         }
+        bugTypeSet.addAll(streamedBugTypes);
         // Emit element describing each reported bug pattern
         for (String bugType : bugTypeSet) {
             BugPattern bugPattern = DetectorFactoryCollection.instance().lookupBugPattern(bugType);
@@ -724,6 +1073,7 @@ public class SortedBugCollection implements BugCollection {
                 bugCodeSet.add(bugCode);
             }
         }
+        bugCodeSet.addAll(streamedBugCodes);
         // Emit element describing each reported bug code
         for (String bugCodeAbbrev : bugCodeSet) {
             BugCode bugCode = DetectorFactoryCollection.instance().getBugCode(bugCodeAbbrev);
@@ -755,6 +1105,7 @@ public class SortedBugCollection implements BugCollection {
             BugPattern bugPattern = bugInstance.getBugPattern();
             bugCatSet.add(bugPattern.getCategory());
         }
+        bugCatSet.addAll(streamedBugCategories);
         // Emit element describing each reported bug code
         for (String bugCat : bugCatSet) {
             String bugCatDescription = I18N.instance().getBugCategoryDescription(bugCat);
@@ -890,11 +1241,22 @@ public class SortedBugCollection implements BugCollection {
         }
     }
 
-    public static class BugInstanceComparator implements Comparator<BugInstance> {
+    public static class BugInstanceComparator implements MatchKeyComparator {
 
         private BugInstanceComparator() {
         }
 
+        /**
+         * The key is made up of the primary class name, the bug type and the
+         * priority, which are compared first.
+         */
+        @Override
+        public Object getMatchKey(BugInstance bugInstance) {
+            ClassAnnotation primaryClass = bugInstance.getPrimaryClass();
+            return Arrays.asList(primaryClass != null ? primaryClass.getClassName() : null, bugInstance.getType(),
+                    bugInstance.getPriority());
+        }
+
         @Override
         public int compare(BugInstance lhs, BugInstance rhs) {
             ClassAnnotation lca = lhs.getPrimaryClass();
@@ -1005,6 +1367,11 @@ public class SortedBugCollection implements BugCollection {
 
     @Override
     public boolean add(BugInstance bugInstance, boolean updateActiveTime) {
+        prepareToAdd(bugInstance, updateActiveTime);
+        return bugSet.add(bugInstance);
+    }
+
+    private void prepareToAdd(BugInstance bugInstance, boolean updateActiveTime) {
         assert !bugsPopulated;
 
         if (bugsPopulated) {
@@ -1021,7 +1388,6 @@ public class SortedBugCollection implements BugCollection {
         if (!bugInstance.isDead()) {
             projectStats.addBug(bugInstance);
         }
-        return bugSet.add(bugInstance);
     }
 
     private void invalidateHashes() {
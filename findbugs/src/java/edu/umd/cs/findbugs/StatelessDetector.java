@@ -24,13 +24,14 @@ package edu.umd.cs.findbugs;
  * is a marker interface for detectors that don't save state from one class file
  * to the next.
  *
- * If a detector implements this interface, a clone will be generated for each
- * element it is applied to.
- *
- * The idea of using this interface is questionable. Better for people writing
- * stateless detectors to just not keep around state they don't need, rather
- * than depending on cloning and garbage collection.
+ * When FindBugs2 analyzes classes on several threads, each thread applies its
+ * own instance of such a detector, so the classes of an analysis pass may be
+ * visited concurrently and in any order. A detector should only implement
+ * this interface if it reports all of its warnings while visiting a class,
+ * and if nothing it remembers from one class changes what it reports for
+ * another.
  *
+ * @see DetectorFactory#isPerClassDetector()
  */
 
 public interface StatelessDetector extends Cloneable {
@@ -27,9 +27,11 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
@@ -96,6 +98,8 @@ public class TextUICommandLine extends FindBugsCommandLine {
 
     private boolean xmlWithAbridgedMessages = false;
 
+    private boolean xmlStreaming = false;
+
     private String stylesheet = null;
 
     private boolean quiet = false;
@@ -136,6 +140,18 @@ public class TextUICommandLine extends FindBugsCommandLine {
 
     private boolean scanNestedArchives = true;
 
+    private int numThreads = 1;
+
+    private String resultCacheDirectory;
+
+    private String librarySummaryDirectory;
+
+    private String incrementalBaseFile;
+
+    private final List<String> changedClasses = new ArrayList<String>();
+
+    private boolean changedClassesSet;
+
     private boolean applySuppression;
 
     private boolean printConfiguration;
@@ -169,6 +185,7 @@ public class TextUICommandLine extends FindBugsCommandLine {
 
         addSwitch("-sortByClass", "sort warnings by class");
         addSwitchWithOptionalExtraPart("-xml", "withMessages", "XML output (optionally with messages)");
+        addSwitch("-streamingXml", "write XML output as classes are analyzed, keeping only one class's warnings in memory");
         addSwitch("-xdocs", "xdoc XML output to use with Apache Maven");
         addSwitchWithOptionalExtraPart("-html", "stylesheet", "Generate HTML output (default stylesheet is default.xsl)");
         addSwitch("-emacs", "Use emacs reporting format");
@@ -180,6 +197,8 @@ public class TextUICommandLine extends FindBugsCommandLine {
         addOption("-projectName", "project name", "Descriptive name of project");
 
         addOption("-reanalyze", "filename", "redo analysis in provided file");
+        addOption("-incremental", "filename", "reanalyze only classes affected by -changedClasses, keeping other results from file");
+        addOption("-changedClasses", "filename", "file listing changed class names or class files, one per line");
 
         addOption("-outputFile", "filename", "Save output in named file");
         addOption("-output", "filename", "Save output in named file");
@@ -201,6 +220,9 @@ public class TextUICommandLine extends FindBugsCommandLine {
         addOption("-chooseVisitors", "+v1,-v2,...", "selectively enable/disable detectors");
         addOption("-choosePlugins", "+p1,-p2,...", "selectively enable/disable plugins");
         addOption("-adjustPriority", "v1=(raise|lower)[,...]", "raise/lower priority of warnings for given visitor(s)");
+        addOption("-threads", "count", "number of threads used to apply detectors to classes (default=1)");
+        addOption("-resultCache", "directory", "reuse results of unchanged classes stored in directory");
+        addOption("-librarySummaries", "directory", "reuse summaries of library classes stored in directory");
 
         startOptionGroup("Project configuration options:");
         addOption("-auxclasspath", "classpath", "set aux classpath for analysis");
@@ -320,6 +342,9 @@ public class TextUICommandLine extends FindBugsCommandLine {
                     throw new IllegalArgumentException("Unknown option: -xml:" + optionExtraPart);
                 }
             }
+        } else if ("-streamingXml".equals(option)) {
+            bugReporterType = XML_REPORTER;
+            xmlStreaming = true;
         } else if ("-emacs".equals(option)) {
             bugReporterType = EMACS_REPORTER;
         } else if ("-relaxed".equals(option)) {
@@ -432,6 +457,20 @@ public class TextUICommandLine extends FindBugsCommandLine {
 
         } else if ("-maxRank".equals(option)) {
             this.rankThreshold = Integer.parseInt(argument);
+        } else if ("-threads".equals(option)) {
+            this.numThreads = Integer.parseInt(argument);
+            if (numThreads < 1) {
+                throw new IllegalArgumentException("-threads requires a positive thread count: " + argument);
+            }
+        } else if ("-incremental".equals(option)) {
+            incrementalBaseFile = argument;
+        } else if ("-changedClasses".equals(option)) {
+            handleChangedClassesFromFile(argument);
+            changedClassesSet = true;
+        } else if ("-resultCache".equals(option)) {
+            this.resultCacheDirectory = argument;
+        } else if ("-librarySummaries".equals(option)) {
+            this.librarySummaryDirectory = argument;
         } else if ("-projectName".equals(option)) {
             this.projectName = argument;
         } else if ("-release".equals(option)) {
@@ -627,6 +666,20 @@ public class TextUICommandLine extends FindBugsCommandLine {
             }
             project = bugs.getProject().duplicate();
         }
+        if (incrementalBaseFile != null) {
+            if (!changedClassesSet) {
+                throw new IllegalArgumentException("-incremental requires -changedClasses");
+            }
+            SortedBugCollection bugs = new SortedBugCollection();
+            try {
+                bugs.readXML(incrementalBaseFile);
+            } catch (DocumentException e) {
+                IOException ioe = new IOException("Unable to parse " + incrementalBaseFile);
+                ioe.initCause(e);
+                throw ioe;
+            }
+            getFindBugs2(findBugs, "-incremental").setIncrementalAnalysis(new IncrementalAnalysis(bugs, changedClasses));
+        }
         TextUIBugReporter textuiBugReporter;
         switch (bugReporterType) {
         case PRINTING_REPORTER:
@@ -639,6 +692,7 @@ public class TextUICommandLine extends FindBugsCommandLine {
             XMLBugReporter xmlBugReporter = new XMLBugReporter(project);
             xmlBugReporter.setAddMessages(xmlWithMessages);
             xmlBugReporter.setMinimalXML(xmlMinimal);
+            xmlBugReporter.setStreaming(xmlStreaming);
 
             textuiBugReporter = xmlBugReporter;
         }
@@ -707,6 +761,15 @@ public class TextUICommandLine extends FindBugsCommandLine {
 
         findBugs.setScanNestedArchives(scanNestedArchives);
         findBugs.setNoClassOk(noClassOk);
+        if (numThreads > 1) {
+            getFindBugs2(findBugs, "-threads").setNumThreads(numThreads);
+        }
+        if (resultCacheDirectory != null) {
+            getFindBugs2(findBugs, "-resultCache").setResultCacheDirectory(resultCacheDirectory);
+        }
+        if (librarySummaryDirectory != null) {
+            getFindBugs2(findBugs, "-librarySummaries").setLibrarySummaryDirectory(librarySummaryDirectory);
+        }
 
         findBugs.setBugReporterDecorators(enabledBugReporterDecorators, disabledBugReporterDecorators);
         if (applySuppression) {
@@ -716,6 +779,25 @@ public class TextUICommandLine extends FindBugsCommandLine {
         findBugs.finishSettings();
     }
 
+    /**
+     * Get the engine as a FindBugs2, for options which only FindBugs2
+     * supports.
+     *
+     * @param findBugs
+     *            the engine
+     * @param option
+     *            the command line option
+     * @return the engine
+     * @throws IllegalArgumentException
+     *             if the engine is not a FindBugs2
+     */
+    private static FindBugs2 getFindBugs2(IFindBugsEngine findBugs, String option) {
+        if (!(findBugs instanceof FindBugs2)) {
+            throw new IllegalArgumentException(option + " is not supported by " + findBugs.getClass().getName());
+        }
+        return (FindBugs2) findBugs;
+    }
+
     /**
      * Handle -xargs command line option by reading jar file names from standard
      * input and adding them to the project.
@@ -781,6 +863,23 @@ public class TextUICommandLine extends FindBugsCommandLine {
         }
     }
 
+    private void handleChangedClassesFromFile(String filePath) throws IOException {
+        BufferedReader in = new BufferedReader(UTF8.fileReader(filePath));
+        try {
+            while (true) {
+                String s = in.readLine();
+                if (s == null) {
+                    break;
+                }
+                if (s.trim().length() > 0) {
+                    changedClasses.add(s.trim());
+                }
+            }
+        } finally {
+            Util.closeSilently(in);
+        }
+    }
+
     /**
      * @return Returns the userPreferences.
      */
@@ -19,7 +19,9 @@
 
 package edu.umd.cs.findbugs;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import edu.umd.cs.findbugs.model.ClassNameRewriter;
@@ -30,7 +32,7 @@ import edu.umd.cs.findbugs.model.IdentityClassNameRewriter;
  * Compare bug instances by only those criteria which we would expect to remain
  * constant between versions.
  */
-public class VersionInsensitiveBugComparator implements WarningComparator {
+public class VersionInsensitiveBugComparator implements WarningComparator, MatchKeyComparator {
 
     private ClassNameRewriter classNameRewriter = IdentityClassNameRewriter.instance();
 
@@ -262,6 +264,44 @@ public class VersionInsensitiveBugComparator implements WarningComparator {
         }
     }
 
+    /**
+     * The key is made up of the bug abbrev, the bug type and priority if they
+     * are compared, and the significant annotations other than local
+     * variables: compare() only finds BugInstances equal if these match
+     * pairwise, in the same order.
+     */
+    @Override
+    public Object getMatchKey(BugInstance bugInstance) {
+        BugPattern pattern = bugInstance.getBugPattern();
+        List<Object> key = new ArrayList<Object>();
+        key.add(pattern.getAbbrev());
+        if (isExactBugPatternMatch()) {
+            key.add(pattern.getType());
+        }
+        if (comparePriorities) {
+            key.add(bugInstance.getPriority());
+        }
+        for (Iterator<BugAnnotation> i = new FilteringAnnotationIterator(bugInstance.annotationIterator()); i.hasNext();) {
+            BugAnnotation annotation = i.next();
+            if (annotation instanceof LocalVariableAnnotation) {
+                // Unnamed local variables match any local variable, and
+                // insignificant ones may be skipped
+                continue;
+            }
+            key.add(annotation.getClass());
+            if (annotation instanceof PackageMemberAnnotation) {
+                // Class, method and field annotations, compared by their
+                // rewritten class names (among other things)
+                key.add(classNameRewriter.rewriteClassName(((PackageMemberAnnotation) annotation).getClassName()));
+            } else if (annotation instanceof StringAnnotation) {
+                key.add(((StringAnnotation) annotation).getValue());
+            } else if (annotation instanceof IntAnnotation) {
+                key.add(((IntAnnotation) annotation).getValue());
+            }
+        }
+        return key;
+    }
+
     private boolean interestingNext(Iterator<BugAnnotation> i) {
         while (i.hasNext()) {
             BugAnnotation a = i.next();
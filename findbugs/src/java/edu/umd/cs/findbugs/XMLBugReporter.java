@@ -19,15 +19,42 @@
 
 package edu.umd.cs.findbugs;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.TreeSet;
+
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.util.Util;
+import edu.umd.cs.findbugs.xml.OutputStreamXMLOutput;
+import edu.umd.cs.findbugs.xml.XMLOutput;
 
 /**
  * Report warnings as an XML document.
+ * <p>
+ * By default, the warnings are collected in a SortedBugCollection and written
+ * when the analysis is finished. In streaming mode, the warnings reported
+ * while analyzing a class are written, sorted, as soon as the analysis of the
+ * next class starts, so only the warnings of one class are kept in memory.
+ * Duplicate warnings reported while analyzing different classes are still
+ * written once, since a digest of each warning written is kept.
+ * </p>
  *
  * @author David Hovemeyer
  */
 public class XMLBugReporter extends BugCollectionBugReporter {
 
+    private boolean streaming;
+
+    private XMLOutput xmlOutput;
+
+    private final TreeSet<BugInstance> classBugs = new TreeSet<BugInstance>(
+            SortedBugCollection.MultiversionBugInstanceComparator.instance);
+
+    /** digests of the XML of the bugs reported so far in streaming mode */
+    private final HashSet<BigInteger> reportedBugDigests = new HashSet<BigInteger>();
+
     public XMLBugReporter(Project project) {
         super(project);
     }
@@ -36,6 +63,84 @@ public class XMLBugReporter extends BugCollectionBugReporter {
         getBugCollection().setWithMessages(enable);
     }
 
+    /**
+     * Set whether bugs are written as the analysis goes, rather than all at
+     * once when the analysis is finished. In streaming mode, bugs are only
+     * sorted within the class being analyzed when they were reported, and no
+     * per-file statistics are written. Duplicate bugs are only written once,
+     * as in the default mode.
+     *
+     * @param streaming
+     *            true if bugs should be written as the analysis goes
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    @Override
+    public void observeClass(ClassDescriptor classDescriptor) {
+        super.observeClass(classDescriptor);
+        if (streaming) {
+            try {
+                writeClassBugs();
+            } catch (IOException e) {
+                throw new FatalException("Error writing XML output: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public void doReportBug(BugInstance bugInstance) {
+        if (!streaming) {
+            super.doReportBug(bugInstance);
+            return;
+        }
+        if (VERIFY_INTEGRITY) {
+            checkBugInstance(bugInstance);
+        }
+        bugInstance.setFirstVersion(getBugCollection().getSequenceNumber());
+        if (classBugs.contains(bugInstance)) {
+            return;
+        }
+        try {
+            if (!reportedBugDigests.add(digest(bugInstance))) {
+                // Already written while analyzing another class
+                return;
+            }
+        } catch (IOException e) {
+            throw new FatalException("Error writing XML output: " + e.getMessage(), e);
+        }
+        if (classBugs.add(bugInstance)) {
+            if (!bugInstance.isDead()) {
+                getProjectStats().addBug(bugInstance);
+            }
+            notifyObservers(bugInstance);
+        }
+    }
+
+    /**
+     * Compute a digest of the XML of a bug, without messages, which is the
+     * same for duplicate bugs.
+     */
+    private static BigInteger digest(BugInstance bugInstance) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        XMLOutput out = new OutputStreamXMLOutput(bytes);
+        bugInstance.writeXML(out);
+        out.finish();
+        return new BigInteger(1, Util.getMD5Digest().digest(bytes.toByteArray()));
+    }
+
+    private void writeClassBugs() throws IOException {
+        if (xmlOutput == null) {
+            xmlOutput = new OutputStreamXMLOutput(outputStream);
+            getBugCollection().startStreamingXML(xmlOutput);
+        }
+        if (!classBugs.isEmpty()) {
+            getBugCollection().writeStreamedBugs(xmlOutput, classBugs);
+            classBugs.clear();
+        }
+    }
+
     @Override
     public void finish() {
         try {
@@ -44,7 +149,12 @@ public class XMLBugReporter extends BugCollectionBugReporter {
                 throw new NullPointerException("No project");
             }
             getBugCollection().bugsPopulated();
-            getBugCollection().writeXML(outputStream);
+            if (streaming) {
+                writeClassBugs();
+                getBugCollection().finishStreamingXML(xmlOutput);
+            } else {
+                getBugCollection().writeXML(outputStream);
+            }
             outputStream.close();
 
         } catch (IOException e) {
@@ -61,4 +171,3 @@ public class XMLBugReporter extends BugCollectionBugReporter {
     }
 
 }
-
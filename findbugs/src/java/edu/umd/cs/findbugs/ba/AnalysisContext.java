@@ -30,6 +30,7 @@ import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -146,9 +147,18 @@ public class AnalysisContext {
 
     boolean missingClassWarningsSuppressed;
 
+    /**
+     * Number of missing classes not reported because no application class
+     * was being analyzed
+     */
+    private final AtomicInteger ignoredMissingClassCount = new AtomicInteger();
+
     private ClassSummary classSummary;
 
-    private ClassDescriptor classBeingAnalyzed;
+    /**
+     * Class being analyzed by each analysis thread
+     */
+    private final ThreadLocal<ClassDescriptor> classBeingAnalyzed = new ThreadLocal<ClassDescriptor>();
 
     private FieldSummary fieldSummary;
 
@@ -204,15 +214,15 @@ public class AnalysisContext {
     }
 
     public ClassDescriptor getClassBeingAnalyzed() {
-        return classBeingAnalyzed;
+        return classBeingAnalyzed.get();
     }
 
     public void setClassBeingAnalyzed(@Nonnull ClassDescriptor classBeingAnalyzed) {
-        this.classBeingAnalyzed = classBeingAnalyzed;
+        this.classBeingAnalyzed.set(classBeingAnalyzed);
     }
 
     public void clearClassBeingAnalyzed() {
-        this.classBeingAnalyzed = null;
+        this.classBeingAnalyzed.remove();
     }
 
     public ClassSummary getClassSummary() {
@@ -298,6 +308,7 @@ public class AnalysisContext {
             return;
         }
         if (!analyzingApplicationClass()) {
+            noteIgnoredMissingClass();
             return;
         }
 
@@ -312,6 +323,21 @@ public class AnalysisContext {
         reportMissingClass(e.getClassDescriptor());
     }
 
+    private static void noteIgnoredMissingClass() {
+        AnalysisContext context = AnalysisContext.currentAnalysisContext();
+        if (context != null) {
+            context.ignoredMissingClassCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return number of missing classes which were not reported because they
+     *         were looked up while analyzing a library class
+     */
+    public int getIgnoredMissingClassCount() {
+        return ignoredMissingClassCount.get();
+    }
+
     static public boolean analyzingApplicationClass() {
         AnalysisContext context = AnalysisContext.currentAnalysisContext();
         if (context == null) {
@@ -332,6 +358,7 @@ public class AnalysisContext {
     static public void reportMissingClass(ClassDescriptor c) {
         requireNonNull(c, "argument is null");
         if (!analyzingApplicationClass()) {
+            noteIgnoredMissingClass();
             return;
         }
         String missing = c.getDottedClassName();
@@ -19,6 +19,7 @@
 
 package edu.umd.cs.findbugs.ba;
 
+import java.util.Collections;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -100,9 +101,9 @@ public class AnnotationDatabase<AnnotationEnum extends AnnotationEnumeration<Ann
     }
 
     // TODO: Parameterize these values?
-    Map<Object, AnnotationEnum> cachedMinimal = new MapCache<Object, AnnotationEnum>(20000);
+    Map<Object, AnnotationEnum> cachedMinimal = Collections.synchronizedMap(new MapCache<Object, AnnotationEnum>(20000));
 
-    Map<Object, AnnotationEnum> cachedMaximal = new MapCache<Object, AnnotationEnum>(20000);
+    Map<Object, AnnotationEnum> cachedMaximal = Collections.synchronizedMap(new MapCache<Object, AnnotationEnum>(20000));
 
     @CheckForNull
     public AnnotationEnum getResolvedAnnotation(Object o, boolean getMinimal) {
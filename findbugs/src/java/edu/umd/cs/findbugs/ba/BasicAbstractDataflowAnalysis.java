@@ -19,9 +19,10 @@
 
 package edu.umd.cs.findbugs.ba;
 
+import java.util.ArrayList;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.List;
 
 import edu.umd.cs.findbugs.ba.deref.UnconditionalValueDerefAnalysis;
 import edu.umd.cs.findbugs.ba.deref.UnconditionalValueDerefSet;
@@ -38,16 +39,76 @@ import edu.umd.cs.findbugs.ba.deref.UnconditionalValueDerefSet;
  * @author David Hovemeyer
  */
 public abstract class BasicAbstractDataflowAnalysis<Fact> implements DataflowAnalysis<Fact> {
-    private final IdentityHashMap<BasicBlock, Fact> startFactMap;
+    /**
+     * Facts of basic blocks, stored in an array indexed by block label. The
+     * labels of the blocks of a CFG are dense ids, below
+     * {@link CFG#getNumVertexLabels()}. A block whose label is already used
+     * by another block (e.g., of a copy of the CFG) is kept in an overflow
+     * map.
+     */
+    private static class FactStore<Fact> {
+        private BasicBlock[] blocks = new BasicBlock[16];
+
+        private Object[] facts = new Object[16];
+
+        private IdentityHashMap<BasicBlock, Fact> overflowMap;
+
+        @SuppressWarnings("unchecked")
+        Fact get(BasicBlock block) {
+            int label = block.getLabel();
+            if (label < blocks.length && blocks[label] == block) {
+                return (Fact) facts[label];
+            }
+            return overflowMap != null ? overflowMap.get(block) : null;
+        }
+
+        void put(BasicBlock block, Fact fact) {
+            int label = block.getLabel();
+            if (label >= blocks.length) {
+                int length = Math.max(label + 1, 2 * blocks.length);
+                BasicBlock[] newBlocks = new BasicBlock[length];
+                System.arraycopy(blocks, 0, newBlocks, 0, blocks.length);
+                blocks = newBlocks;
+                Object[] newFacts = new Object[length];
+                System.arraycopy(facts, 0, newFacts, 0, facts.length);
+                facts = newFacts;
+            }
+            if (blocks[label] == null || blocks[label] == block) {
+                blocks[label] = block;
+                facts[label] = fact;
+            } else {
+                if (overflowMap == null) {
+                    overflowMap = new IdentityHashMap<BasicBlock, Fact>();
+                }
+                overflowMap.put(block, fact);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Fact> values() {
+            List<Fact> result = new ArrayList<Fact>();
+            for (int i = 0; i < blocks.length; i++) {
+                if (blocks[i] != null) {
+                    result.add((Fact) facts[i]);
+                }
+            }
+            if (overflowMap != null) {
+                result.addAll(overflowMap.values());
+            }
+            return result;
+        }
+    }
+
+    private final FactStore<Fact> startFactMap;
 
-    private final IdentityHashMap<BasicBlock, Fact> resultFactMap;
+    private final FactStore<Fact> resultFactMap;
 
     /**
      * Constructor.
      */
     public BasicAbstractDataflowAnalysis() {
-        this.startFactMap = new IdentityHashMap<BasicBlock, Fact>();
-        this.resultFactMap = new IdentityHashMap<BasicBlock, Fact>();
+        this.startFactMap = new FactStore<Fact>();
+        this.resultFactMap = new FactStore<Fact>();
     }
 
     /**
@@ -179,7 +240,7 @@ public abstract class BasicAbstractDataflowAnalysis<Fact> implements DataflowAna
         // Subclasses may override.
     }
 
-    private Fact lookupOrCreateFact(Map<BasicBlock, Fact> map, BasicBlock block) {
+    private Fact lookupOrCreateFact(FactStore<Fact> map, BasicBlock block) {
         Fact fact = map.get(block);
         if (fact == null) {
             fact = createFact();
@@ -124,7 +124,7 @@ public class ClassContext {
         }
     }
 
-    public Map<MethodDescriptor, Object> getObjectMap(Class<?> analysisClass) {
+    public synchronized Map<MethodDescriptor, Object> getObjectMap(Class<?> analysisClass) {
         Map<MethodDescriptor, Object> objectMap = methodAnalysisObjectMap.get(analysisClass);
         if (objectMap == null) {
             if (analysisClass == ValueNumberDataflow.class) {
@@ -150,7 +150,7 @@ public class ClassContext {
      * @param object
      *            the analysis object to cache
      */
-    public void putMethodAnalysis(Class<?> analysisClass, MethodDescriptor methodDescriptor, Object object) {
+    public synchronized void putMethodAnalysis(Class<?> analysisClass, MethodDescriptor methodDescriptor, Object object) {
         if (object == null) {
             throw new IllegalArgumentException();
         }
@@ -158,6 +158,47 @@ public class ClassContext {
         objectMap.put(methodDescriptor, object);
     }
 
+    /**
+     * Store a method analysis object, unless one is already stored.
+     *
+     * @param analysisClass
+     *            class the method analysis object belongs to
+     * @param methodDescriptor
+     *            method descriptor identifying the analyzed method
+     * @param object
+     *            the analysis object to cache
+     * @return the analysis object already stored, or null if object was
+     *         stored
+     */
+    public synchronized Object putMethodAnalysisIfAbsent(Class<?> analysisClass, MethodDescriptor methodDescriptor, Object object) {
+        if (object == null) {
+            throw new IllegalArgumentException();
+        }
+        Map<MethodDescriptor, Object> objectMap = getObjectMap(analysisClass);
+        Object existing = objectMap.get(methodDescriptor);
+        if (existing == null) {
+            objectMap.put(methodDescriptor, object);
+        }
+        return existing;
+    }
+
+    /**
+     * Remove a method analysis object, if it is the one currently stored.
+     *
+     * @param analysisClass
+     *            class the method analysis object belongs to
+     * @param methodDescriptor
+     *            method descriptor identifying the analyzed method
+     * @param object
+     *            the analysis object to remove
+     */
+    public synchronized void removeMethodAnalysis(Class<?> analysisClass, MethodDescriptor methodDescriptor, Object object) {
+        Map<MethodDescriptor, Object> objectMap = getObjectMap(analysisClass);
+        if (objectMap.get(methodDescriptor) == object) {
+            objectMap.remove(methodDescriptor);
+        }
+    }
+
     /**
      * Retrieve a method analysis object.
      *
@@ -167,12 +208,12 @@ public class ClassContext {
      *            method descriptor identifying the analyzed method
      * @return the analysis object
      */
-    public Object getMethodAnalysis(Class<?> analysisClass, MethodDescriptor methodDescriptor) {
+    public synchronized Object getMethodAnalysis(Class<?> analysisClass, MethodDescriptor methodDescriptor) {
         Map<MethodDescriptor, Object> objectMap = getObjectMap(analysisClass);
         return objectMap.get(methodDescriptor);
     }
 
-    public void purgeAllMethodAnalyses() {
+    public synchronized void purgeAllMethodAnalyses() {
         methodAnalysisObjectMap.clear();
     }
 
@@ -182,7 +223,7 @@ public class ClassContext {
      * @param methodDescriptor
      *            method descriptor identifying method to purge
      */
-    public void purgeMethodAnalyses(MethodDescriptor methodDescriptor) {
+    public synchronized void purgeMethodAnalyses(MethodDescriptor methodDescriptor) {
         Set<Map.Entry<Class<?>, Map<MethodDescriptor, Object>>> entrySet = methodAnalysisObjectMap.entrySet();
         for (Iterator<Map.Entry<Class<?>, Map<MethodDescriptor, Object>>> i = entrySet.iterator(); i.hasNext();) {
             Map.Entry<Class<?>, Map<MethodDescriptor, Object>> entry = i.next();
@@ -430,8 +471,11 @@ public class ClassContext {
     static public BitSet getBytecodeSet(JavaClass clazz, Method method) {
 
         XMethod xmethod = XFactory.createXMethod(clazz, method);
-        if (cachedBitsets().containsKey(xmethod)) {
-            return cachedBitsets().get(xmethod);
+        MapCache<XMethod, BitSet> cachedBitsets = cachedBitsets();
+        synchronized (cachedBitsets) {
+            if (cachedBitsets.containsKey(xmethod)) {
+                return cachedBitsets.get(xmethod);
+            }
         }
         Code code = method.getCode();
         if (code == null) {
@@ -452,7 +496,9 @@ public class ClassContext {
         if (unpackedCode != null) {
             result = unpackedCode.getBytecodeSet();
         }
-        cachedBitsets().put(xmethod, result);
+        synchronized (cachedBitsets) {
+            cachedBitsets.put(xmethod, result);
+        }
         return result;
     }
 
@@ -464,14 +510,17 @@ public class ClassContext {
     static public Set<Integer> getLoopExitBranches(Method method, MethodGen methodGen) {
 
         XMethod xmethod = XFactory.createXMethod(methodGen);
-        if (cachedLoopExits().containsKey(xmethod)) {
-            Set<Integer> result = cachedLoopExits().get(xmethod);
-            if (result == null) {
-                AnalysisContext.logError("Null cachedLoopExits for " + xmethod, new NullPointerException());
-                assert false;
-                return Collections.<Integer> emptySet();
+        MapCache<XMethod, Set<Integer>> cachedLoopExits = cachedLoopExits();
+        synchronized (cachedLoopExits) {
+            if (cachedLoopExits.containsKey(xmethod)) {
+                Set<Integer> result = cachedLoopExits.get(xmethod);
+                if (result == null) {
+                    AnalysisContext.logError("Null cachedLoopExits for " + xmethod, new NullPointerException());
+                    assert false;
+                    return Collections.<Integer> emptySet();
+                }
+                return result;
             }
-            return result;
         }
         Code code = method.getCode();
         if (code == null) {
@@ -491,7 +540,9 @@ public class ClassContext {
             result = Collections.<Integer> emptySet();
         }
 
-        cachedLoopExits().put(xmethod, result);
+        synchronized (cachedLoopExits) {
+            cachedLoopExits.put(xmethod, result);
+        }
         return result;
     }
 
@@ -20,9 +20,13 @@
 package edu.umd.cs.findbugs.ba;
 
 import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.bcel.generic.InstructionHandle;
 import org.apache.bcel.generic.MethodGen;
@@ -34,6 +38,8 @@ import edu.umd.cs.findbugs.ba.deref.UnconditionalValueDerefSet;
 import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
 import edu.umd.cs.findbugs.classfile.DescriptorFactory;
 import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.log.Profiler;
 
 /**
  * Perform dataflow analysis on a method using a control flow graph. Both
@@ -47,6 +53,14 @@ import edu.umd.cs.findbugs.classfile.Global;
  * The analysis's transfer function is applied to transform the meet of the
  * results of the block's logical predecessors (the block's start facts) into
  * the block's result facts.
+ * <p>
+ * Unless the analysis is configured to use a worklist solver (see
+ * {@link #setUseWorklistSolver(boolean)} and the dataflow.worklist property),
+ * the analysis sweeps over all blocks in the analysis's block order until no
+ * result changes. The worklist solver only recomputes
+ * blocks with a changed logical predecessor, lowest block order rank first.
+ * For analyses whose transfer and meet functions are monotone, both compute
+ * the same facts.
  *
  * @author David Hovemeyer
  * @see CFG
@@ -63,8 +77,25 @@ public class Dataflow<Fact, AnalysisType extends DataflowAnalysis<Fact>> {
 
     private int numIterations;
 
+    private boolean useWorklistSolver;
+
     public static boolean DEBUG = SystemProperties.getBoolean("dataflow.debug");
 
+    /**
+     * Analyses using the worklist solver by default: "true" for all
+     * analyses, "false" for none, or a comma separated list of simple class
+     * names of analyses. By default, only analyses with simple monotone
+     * transfer functions and no per-iteration state use it.
+     */
+    private static final String WORKLIST_ANALYSES = "," + SystemProperties.getProperty("dataflow.worklist",
+            "DominatorsAnalysis,PostDominatorsAnalysis,LiveLocalStoreAnalysis,ConstantAnalysis,LockAnalysis") + ",";
+
+    /**
+     * Names of the profiler counts of an analysis class: runs and blocks
+     * processed by the sweeps solver, then by the worklist solver.
+     */
+    private static final ConcurrentMap<Class<?>, String[]> statisticsNames = new ConcurrentHashMap<Class<?>, String[]>();
+
     /**
      * Constructor.
      *
@@ -79,6 +110,8 @@ public class Dataflow<Fact, AnalysisType extends DataflowAnalysis<Fact>> {
         blockOrder = analysis.getBlockOrder(cfg);
         isForwards = analysis.isForwards();
         numIterations = 0;
+        useWorklistSolver = ",true,".equals(WORKLIST_ANALYSES)
+                || WORKLIST_ANALYSES.contains("," + analysis.getClass().getSimpleName() + ",");
 
         // Initialize result facts
         Iterator<BasicBlock> i = cfg.blockIterator();
@@ -134,12 +167,28 @@ public class Dataflow<Fact, AnalysisType extends DataflowAnalysis<Fact>> {
 
     }
 
+    /**
+     * Set whether the worklist solver is used instead of sweeping over all
+     * blocks until nothing changes. Only analyses whose result does not
+     * depend on the order in which blocks are processed should use it.
+     *
+     * @param useWorklistSolver
+     *            true if the worklist solver should be used
+     */
+    public void setUseWorklistSolver(boolean useWorklistSolver) {
+        this.useWorklistSolver = useWorklistSolver;
+    }
+
     /**
      * Run the algorithm. Afterwards, caller can use the getStartFact() and
      * getResultFact() methods to to get dataflow facts at start and result
      * points of each block.
      */
     public void execute() throws DataflowAnalysisException {
+        if (useWorklistSolver) {
+            executeWorklist();
+            return;
+        }
         boolean change;
         boolean debugWas = DEBUG;
         if (DEBUG) {
@@ -147,6 +196,7 @@ public class Dataflow<Fact, AnalysisType extends DataflowAnalysis<Fact>> {
         }
 
         int timestamp = 0;
+        int numTransfers = 0;
         boolean firstTime = true;
         do {
             change = false;
@@ -374,6 +424,7 @@ public class Dataflow<Fact, AnalysisType extends DataflowAnalysis<Fact>> {
                 // Apply the transfer function.
 
                 analysis.transfer(block, null, start, result);
+                numTransfers++;
                 //                } else {
                 //                    analysis.copy(start, result);
                 //                }
@@ -437,6 +488,143 @@ public class Dataflow<Fact, AnalysisType extends DataflowAnalysis<Fact>> {
 
         }
         DEBUG = debugWas;
+        recordStatistics(false, numTransfers);
+    }
+
+    /**
+     * Worklist solver. Blocks are ranked by their position in the block
+     * order (reverse postorder for forward analyses), and the pending block
+     * of lowest rank is always processed next. Since the header of a loop
+     * precedes its body, a loop is iterated until its facts are stable
+     * before the blocks after the loop are processed.
+     */
+    private void executeWorklist() throws DataflowAnalysisException {
+        // Block labels are below getNumVertexLabels(), but need not be dense
+        // if blocks have been removed from the CFG
+        int numLabels = cfg.getNumVertexLabels();
+        int[] rank = new int[numLabels];
+        Arrays.fill(rank, -1);
+        BasicBlock[] blocksByRank = new BasicBlock[numLabels];
+        int numBlocks = 0;
+        for (Iterator<BasicBlock> i = blockOrder.blockIterator(); i.hasNext();) {
+            BasicBlock block = i.next();
+            rank[block.getLabel()] = numBlocks;
+            blocksByRank[numBlocks++] = block;
+        }
+
+        // Every block is processed at least once
+        BitSet pending = new BitSet(numBlocks);
+        pending.set(0, numBlocks);
+
+        // The sweeps solver gives up when it is about to start sweep number
+        // MAX_ITERS + 9, i.e. after processing every block MAX_ITERS + 8
+        // times. Allow the worklist solver as many block transfers.
+        int maxTransfers = (MAX_ITERS + 8) * numBlocks;
+        int timestamp = 0;
+        int numTransfers = 0;
+        analysis.startIteration();
+        for (int r = pending.nextSetBit(0); r >= 0; r = pending.nextSetBit(0)) {
+            pending.clear(r);
+            BasicBlock block = blocksByRank[r];
+            if (++numTransfers > maxTransfers) {
+                throw new DataflowAnalysisException("Too many iterations (" + (numTransfers / numBlocks)
+                        + ") in dataflow when analyzing " + getFullyQualifiedMethodName());
+            }
+
+            Fact start = analysis.getStartFact(block);
+            Fact result = analysis.getResultFact(block);
+            int originalResultTimestamp = analysis.getLastUpdateTimestamp(result);
+
+            // Meet the logical predecessor results (after applying the edge
+            // transfer functions) into the start fact
+            analysis.makeFactTop(start);
+            if (block == logicalEntryBlock()) {
+                analysis.initEntryFact(start);
+            } else {
+                int rawPredCount = 0;
+                for (Iterator<Edge> i = logicalPredecessorEdgeIterator(block); i.hasNext(); i.next()) {
+                    rawPredCount++;
+                }
+                for (Iterator<Edge> i = logicalPredecessorEdgeIterator(block); i.hasNext();) {
+                    Edge edge = i.next();
+                    BasicBlock logicalPred = isForwards ? edge.getSource() : edge.getTarget();
+                    Fact edgeFact = analysis.createFact();
+                    analysis.copy(analysis.getResultFact(logicalPred), edgeFact);
+                    analysis.edgeTransfer(edge, edgeFact);
+                    if (analysis instanceof UnconditionalValueDerefAnalysis) {
+                        ((UnconditionalValueDerefAnalysis) analysis).meetInto((UnconditionalValueDerefSet) edgeFact, edge,
+                                (UnconditionalValueDerefSet) start, rawPredCount == 1);
+                    } else {
+                        analysis.meetInto(edgeFact, edge, start);
+                    }
+                    analysis.setLastUpdateTimestamp(start, timestamp);
+                }
+            }
+
+            boolean resultWasTop = analysis.isTop(result);
+            Fact origResult = null;
+            if (!resultWasTop) {
+                origResult = analysis.createFact();
+                analysis.copy(result, origResult);
+            }
+
+            analysis.transfer(block, null, start, result);
+
+            boolean resultChanged = resultWasTop ? !analysis.isTop(result) : !analysis.same(result, origResult);
+            if (resultChanged) {
+                analysis.setLastUpdateTimestamp(result, ++timestamp);
+                // The logical successors must be recomputed
+                Iterator<Edge> i = isForwards ? cfg.outgoingEdgeIterator(block) : cfg.incomingEdgeIterator(block);
+                while (i.hasNext()) {
+                    Edge edge = i.next();
+                    BasicBlock logicalSucc = isForwards ? edge.getTarget() : edge.getSource();
+                    int succRank = rank[logicalSucc.getLabel()];
+                    // Like the sweeps solver, ignore blocks not in the block
+                    // order
+                    if (succRank >= 0) {
+                        pending.set(succRank);
+                    }
+                }
+            } else {
+                analysis.setLastUpdateTimestamp(result, originalResultTimestamp);
+            }
+        }
+        analysis.finishIteration();
+
+        numIterations = numBlocks == 0 ? 0 : (numTransfers + numBlocks - 1) / numBlocks;
+        recordStatistics(true, numTransfers);
+    }
+
+    /**
+     * Count the blocks processed by the analysis in the profiler, if the
+     * profile is reported.
+     */
+    private void recordStatistics(boolean worklist, int numTransfers) {
+        if (!Profiler.isReportEnabled()) {
+            return;
+        }
+        IAnalysisCache analysisCache = Global.getAnalysisCache();
+        if (analysisCache == null) {
+            return;
+        }
+        String[] names = getStatisticsNames(analysis.getClass());
+        int offset = worklist ? 2 : 0;
+        analysisCache.getProfiler().count(names[offset], 1);
+        analysisCache.getProfiler().count(names[offset + 1], numTransfers);
+    }
+
+    private static String[] getStatisticsNames(Class<?> analysisClass) {
+        String[] names = statisticsNames.get(analysisClass);
+        if (names == null) {
+            String name = "dataflow " + analysisClass.getSimpleName();
+            names = new String[] { name + " (sweeps) runs", name + " (sweeps) blocks processed", name + " (worklist) runs",
+                    name + " (worklist) blocks processed" };
+            String[] existing = statisticsNames.putIfAbsent(analysisClass, names);
+            if (existing != null) {
+                names = existing;
+            }
+        }
+        return names;
     }
 
     private void reportAnalysis(String msg) {
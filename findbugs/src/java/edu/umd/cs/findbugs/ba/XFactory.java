@@ -20,11 +20,12 @@
 package edu.umd.cs.findbugs.ba;
 
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -71,19 +72,19 @@ import edu.umd.cs.findbugs.visitclass.PreorderVisitor;
 public class XFactory {
     public static final boolean DEBUG_UNRESOLVED = SystemProperties.getBoolean("findbugs.xfactory.debugunresolved");
 
-    private final Set<ClassDescriptor> reflectiveClasses = new HashSet<ClassDescriptor>();
+    private final Set<ClassDescriptor> reflectiveClasses = Collections.synchronizedSet(new HashSet<ClassDescriptor>());
 
-    private final Map<MethodDescriptor, XMethod> methods = new HashMap<MethodDescriptor, XMethod>();
+    private final ConcurrentMap<MethodDescriptor, XMethod> methods = new ConcurrentHashMap<MethodDescriptor, XMethod>();
 
-    private final Map<FieldDescriptor, XField> fields = new HashMap<FieldDescriptor, XField>();
+    private final ConcurrentMap<FieldDescriptor, XField> fields = new ConcurrentHashMap<FieldDescriptor, XField>();
 
-    private final Set<XMethod> calledMethods = new HashSet<XMethod>();
+    private final Set<XMethod> calledMethods = Collections.synchronizedSet(new HashSet<XMethod>());
 
-    private final Set<XField> emptyArrays = new HashSet<XField>();
+    private final Set<XField> emptyArrays = Collections.synchronizedSet(new HashSet<XField>());
 
-    private final Set<String> calledMethodSignatures = new HashSet<String>();
+    private final Set<String> calledMethodSignatures = Collections.synchronizedSet(new HashSet<String>());
 
-    private final Set<MethodDescriptor> functionsThatMightBeMistakenForProcedures = new HashSet<MethodDescriptor>();
+    private final Set<MethodDescriptor> functionsThatMightBeMistakenForProcedures = Collections.synchronizedSet(new HashSet<MethodDescriptor>());
 
     public void canonicalizeAll() {
         DescriptorFactory descriptorFactory = DescriptorFactory.instance();
@@ -327,10 +328,16 @@ public class XFactory {
         }
         m = xFactory.resolveXMethod(desc);
         if (m instanceof MethodDescriptor) {
-            xFactory.methods.put((MethodDescriptor) m, m);
+            XMethod existing = xFactory.methods.putIfAbsent((MethodDescriptor) m, m);
+            if (existing != null) {
+                return existing;
+            }
             DescriptorFactory.instance().canonicalize((MethodDescriptor) m);
         } else {
-            xFactory.methods.put(desc, m);
+            XMethod existing = xFactory.methods.putIfAbsent(desc, m);
+            if (existing != null) {
+                return existing;
+            }
         }
         return m;
     }
@@ -556,7 +563,10 @@ public class XFactory {
             return m;
         }
         m = xFactory.resolveXField(desc);
-        xFactory.fields.put(desc, m);
+        XField existing = xFactory.fields.putIfAbsent(desc, m);
+        if (existing != null) {
+            return existing;
+        }
         return m;
     }
 
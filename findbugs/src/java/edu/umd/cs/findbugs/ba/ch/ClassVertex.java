@@ -19,6 +19,8 @@
 
 package edu.umd.cs.findbugs.ba.ch;
 
+import java.util.Arrays;
+
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 
@@ -39,6 +41,10 @@ class ClassVertex extends AbstractVertex<InheritanceEdge, ClassVertex> {
 
     private static final int INTERFACE = 4;
 
+    private static final int INDEXING_SUPERTYPES = 8;
+
+    private static final int MISSING_SUPERTYPES = 16;
+
     private final ClassDescriptor classDescriptor;
 
     private final @CheckForNull
@@ -48,6 +54,21 @@ class ClassVertex extends AbstractVertex<InheritanceEdge, ClassVertex> {
 
     private ClassVertex directSuperclass;
 
+    /**
+     * Superclasses from the root of the class tree down to this class, or
+     * null if the supertypes have not been indexed yet. Set last, so that a
+     * thread which sees it also sees the rest of the index.
+     */
+    private volatile ClassVertex[] superclassChain;
+
+    /**
+     * Interface ids of the other supertypes, sorted, or null if there are
+     * none
+     */
+    private int[] interfaceSupertypes;
+
+    private volatile int interfaceId = -1;
+
     @Override
     public String toString() {
         return classDescriptor.toString();
@@ -194,6 +215,101 @@ class ClassVertex extends AbstractVertex<InheritanceEdge, ClassVertex> {
         return directSuperclass;
     }
 
+    /**
+     * @return true if the supertypes of this class have been indexed
+     */
+    public boolean isSupertypeIndexed() {
+        return superclassChain != null;
+    }
+
+    /**
+     * Mark whether the supertypes of this class are being indexed, to detect
+     * cycles in the inheritance graph.
+     */
+    public void setIndexingSupertypes(boolean indexing) {
+        setFlag(INDEXING_SUPERTYPES, indexing);
+    }
+
+    public boolean isIndexingSupertypes() {
+        return isFlagSet(INDEXING_SUPERTYPES);
+    }
+
+    /**
+     * Set the supertype index of this class. Once the supertypes of a class
+     * are in the inheritance graph they don't change, so neither does the
+     * index.
+     *
+     * @param superclassChain
+     *            superclasses from the root of the class tree down to this
+     *            class
+     * @param interfaceSupertypes
+     *            interface ids of all supertypes not in the superclass chain,
+     *            sorted, or null if there are none; must not be modified
+     *            afterwards, since it may be shared with subclasses
+     * @param missingSupertypes
+     *            true if this class or any of its supertypes could not be
+     *            resolved
+     */
+    public void setSupertypeIndex(ClassVertex[] superclassChain, @CheckForNull int[] interfaceSupertypes,
+            boolean missingSupertypes) {
+        this.interfaceSupertypes = interfaceSupertypes;
+        setFlag(MISSING_SUPERTYPES, missingSupertypes);
+        this.superclassChain = superclassChain;
+    }
+
+    public ClassVertex[] getSuperclassChain() {
+        return superclassChain;
+    }
+
+    public @CheckForNull
+    int[] getInterfaceSupertypes() {
+        return interfaceSupertypes;
+    }
+
+    /**
+     * @return true if this class or any of its indexed supertypes could not be
+     *         resolved
+     */
+    public boolean hasMissingSupertypes() {
+        return isFlagSet(MISSING_SUPERTYPES);
+    }
+
+    /**
+     * @return the id of this class in the interface ids of its subtypes,
+     *         or -1 if it has none
+     */
+    public int getInterfaceId() {
+        return interfaceId;
+    }
+
+    public void setInterfaceId(int interfaceId) {
+        this.interfaceId = interfaceId;
+    }
+
+    /**
+     * Determine whether the given class is a supertype of this one (or this
+     * one itself), using the supertype index. The supertypes of this class
+     * must have been indexed.
+     *
+     * @param possibleSupertype
+     *            a ClassVertex
+     * @return true if it is a known supertype of this class
+     */
+    public boolean isSubtypeOf(ClassVertex possibleSupertype) {
+        ClassVertex[] ownChain = superclassChain;
+        ClassVertex[] chain = possibleSupertype.superclassChain;
+        if (chain == null) {
+            // All supertypes of an indexed class are indexed
+            return false;
+        }
+        int depth = chain.length - 1;
+        if (depth < ownChain.length && ownChain[depth] == possibleSupertype) {
+            return true;
+        }
+        return possibleSupertype.interfaceId >= 0 && interfaceSupertypes != null
+                && Arrays.binarySearch(interfaceSupertypes, possibleSupertype.interfaceId) >= 0;
+    }
+
     private void setFlag(int flag, boolean enable) {
         if (enable) {
             flags |= flag;
@@ -20,14 +20,15 @@
 package edu.umd.cs.findbugs.ba.ch;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.CheckForNull;
 
@@ -54,6 +55,13 @@ import edu.umd.cs.findbugs.util.MapCache;
 /**
  * Class for performing class hierarchy queries. Does <em>not</em> require
  * JavaClass objects to be in memory. Instead, uses XClass objects.
+ * <p>
+ * Several analysis threads may query the hierarchy. The inheritance graph is
+ * extended lazily, so adding classes to it, indexing their supertypes and
+ * traversing it are synchronized on this object. But once the supertypes of a
+ * class are indexed, the index never changes, so subtype and first common
+ * superclass queries about indexed classes are answered from the index
+ * without taking that lock.
  *
  * @author David Hovemeyer
  */
@@ -69,8 +77,6 @@ public class Subtypes2 {
 
     private final Map<ClassDescriptor, ClassVertex> classDescriptorToVertexMap;
 
-    private final Map<ClassDescriptor, SupertypeQueryResults> supertypeSetMap;
-
     private final Map<ClassDescriptor, Set<ClassDescriptor>> subtypeSetMap;
 
     private final Set<XClass> xclassSet;
@@ -81,42 +87,15 @@ public class Subtypes2 {
 
     private final ObjectType CLONEABLE;
 
-    /**
-     * Object to record the results of a supertype search.
-     */
-    private static class SupertypeQueryResults {
-        private final Set<ClassDescriptor> supertypeSet = new HashSet<ClassDescriptor>(4);
-
-        private boolean encounteredMissingClasses = false;
-
-        public void addSupertype(ClassDescriptor classDescriptor) {
-            supertypeSet.add(classDescriptor);
-        }
-
-        public void setEncounteredMissingClasses(boolean encounteredMissingClasses) {
-            this.encounteredMissingClasses = encounteredMissingClasses;
-        }
-
-        public boolean containsType(ClassDescriptor possibleSupertypeClassDescriptor) throws ClassNotFoundException {
-            if (supertypeSet.contains(possibleSupertypeClassDescriptor)) {
-                return true;
-            } else if (!encounteredMissingClasses) {
-                return false;
-            } else {
-                // We don't really know which class was missing.
-                // However, any missing classes will already have been reported.
-                throw new ClassNotFoundException();
-            }
-        }
-    }
+    /** Number of interface ids handed out by the supertype index */
+    private int interfaceIdCount;
 
     /**
      * Constructor.
      */
     public Subtypes2() {
         this.graph = new InheritanceGraph();
-        this.classDescriptorToVertexMap = new HashMap<ClassDescriptor, ClassVertex>();
-        this.supertypeSetMap = new MapCache<ClassDescriptor, SupertypeQueryResults>(500);
+        this.classDescriptorToVertexMap = new ConcurrentHashMap<ClassDescriptor, ClassVertex>();
         this.subtypeSetMap = new MapCache<ClassDescriptor, Set<ClassDescriptor>>(500);
         this.xclassSet = new HashSet<XClass>();
         this.SERIALIZABLE = ObjectTypeFactory.getInstance("java.io.Serializable");
@@ -220,7 +199,7 @@ public class Subtypes2 {
      * @param appXClass
      *            application XClass to add to the inheritance graph
      */
-    public void addApplicationClass(XClass appXClass) {
+    public synchronized void addApplicationClass(XClass appXClass) {
         for (XMethod m : appXClass.getXMethods()) {
             if (m.isStub()) {
                 return;
@@ -231,7 +210,7 @@ public class Subtypes2 {
 
     }
 
-    public boolean isApplicationClass(ClassDescriptor descriptor) {
+    public synchronized boolean isApplicationClass(ClassDescriptor descriptor) {
         assert descriptor != null;
         try {
             return resolveClassVertex(descriptor).isApplicationClass();
@@ -248,7 +227,7 @@ public class Subtypes2 {
      * @param xclass
      *            XClass to add to the inheritance graph
      */
-    public void addClass(XClass xclass) {
+    public synchronized void addClass(XClass xclass) {
         addClassAndGetClassVertex(xclass);
     }
 
@@ -397,17 +376,31 @@ public class Subtypes2 {
         // OK, we've exhausted the possibilities now
         return false;
     }
-    ClassDescriptor prevSubDesc, prevSuperDesc;
-    boolean prevResult;
+    /**
+     * The last subtype query and its answer.
+     */
+    private static class SubtypeQuery {
+        final ClassDescriptor subDesc, superDesc;
+
+        final boolean result;
+
+        SubtypeQuery(ClassDescriptor subDesc, ClassDescriptor superDesc, boolean result) {
+            this.subDesc = subDesc;
+            this.superDesc = superDesc;
+            this.result = result;
+        }
+    }
+
+    private volatile SubtypeQuery prevQuery;
 
     public boolean isSubtype(ClassDescriptor subDesc, ClassDescriptor superDesc) throws ClassNotFoundException {
-        if (subDesc == prevSubDesc && prevSuperDesc == superDesc) {
-            return prevResult;
+        SubtypeQuery prev = prevQuery;
+        if (prev != null && subDesc == prev.subDesc && prev.superDesc == superDesc) {
+            return prev.result;
         }
-        prevResult = isSubtype0(subDesc, superDesc);
-        prevSubDesc = subDesc;
-        prevSuperDesc = superDesc;
-        return prevResult;
+        boolean result = isSubtype0(subDesc, superDesc);
+        prevQuery = new SubtypeQuery(subDesc, superDesc, result);
+        return result;
     }
 
     public boolean isSubtype(ClassDescriptor subDesc, ClassDescriptor... superDesc) throws ClassNotFoundException {
@@ -425,9 +418,9 @@ public class Subtypes2 {
                 }
             }
         }
-        SupertypeQueryResults supertypeQueryResults = getSupertypeQueryResults(subDesc);
+        ClassVertex subVertex = getIndexedClassVertex(subDesc);
         for (ClassDescriptor s : superDesc) {
-            if (supertypeQueryResults.containsType(s)) {
+            if (containsSupertype(subVertex, s)) {
                 return true;
             }
         }
@@ -485,9 +478,9 @@ public class Subtypes2 {
             System.out.println("CHECK: " + subDesc + " " + superDesc);
         }
          */
-        SupertypeQueryResults supertypeQueryResults = getSupertypeQueryResults(subDesc);
+        ClassVertex subVertex = getIndexedClassVertex(subDesc);
         // XXX call below causes 88% of all ClassNotFoundException thrown (20000 on java* JDK7 classes)
-        return supertypeQueryResults.containsType(superDesc);
+        return containsSupertype(subVertex, superDesc);
     }
 
     /**
@@ -707,7 +700,7 @@ public class Subtypes2 {
         ObjectType firstCommonSupertype = (ObjectType) checkFirstCommonSuperclassQueryCache(a, b);
         if (firstCommonSupertype == null) {
             firstCommonSupertype = computeFirstCommonSuperclassOfObjectTypes(a, b);
-            firstCommonSuperclassQueryCache.put(a, b, firstCommonSupertype);
+            putFirstCommonSuperclassQueryCache(a, b, firstCommonSupertype);
         }
 
         return firstCommonSupertype;
@@ -718,43 +711,43 @@ public class Subtypes2 {
         ClassDescriptor aDesc = DescriptorFactory.getClassDescriptor(a);
         ClassDescriptor bDesc = DescriptorFactory.getClassDescriptor(b);
 
-        ClassVertex aVertex = resolveClassVertex(aDesc);
-        ClassVertex bVertex = resolveClassVertex(bDesc);
+        ClassVertex aVertex = getIndexedClassVertex(aDesc);
+        if (!aVertex.isResolved()) {
+            ClassDescriptor.throwClassNotFoundException(aDesc);
+        }
+        ClassVertex bVertex = getIndexedClassVertex(bDesc);
+        if (!bVertex.isResolved()) {
+            ClassDescriptor.throwClassNotFoundException(bDesc);
+        }
 
-        Set<ClassDescriptor> aSuperTypes = computeKnownSupertypes(aDesc);
-        Set<ClassDescriptor> bSuperTypes = computeKnownSupertypes(bDesc);
-        if (bSuperTypes.contains(aDesc)) {
+        if (bVertex.isSubtypeOf(aVertex)) {
             return a;
         }
-        if (aSuperTypes.contains(bDesc)) {
+        if (aVertex.isSubtypeOf(bVertex)) {
             return b;
         }
-        ArrayList<ClassVertex> aSuperList = getAllSuperclassVertices(aVertex);
-        ArrayList<ClassVertex> bSuperList = getAllSuperclassVertices(bVertex);
+        ClassVertex[] aSuperChain = getSuperclassChain(aVertex);
+        ClassVertex[] bSuperChain = getSuperclassChain(bVertex);
 
-        // Work backwards until the lists diverge.
-        // The last element common to both lists is the first
+        // Work down from the root until the chains diverge.
+        // The last element common to both chains is the first
         // common superclass.
-        int aIndex = aSuperList.size() - 1;
-        int bIndex = bSuperList.size() - 1;
-
-        ClassVertex lastCommonInBackwardsSearch = null;
-        while (aIndex >= 0 && bIndex >= 0) {
-            if (aSuperList.get(aIndex) != bSuperList.get(bIndex)) {
+        ClassVertex lastCommon = null;
+        for (int i = 0; i < aSuperChain.length && i < bSuperChain.length; i++) {
+            if (aSuperChain[i] != bSuperChain[i]) {
                 break;
             }
-            lastCommonInBackwardsSearch = aSuperList.get(aIndex);
-            aIndex--;
-            bIndex--;
+            lastCommon = aSuperChain[i];
         }
-        if (lastCommonInBackwardsSearch == null) {
+        if (lastCommon == null) {
             firstCommonSupertype = Type.OBJECT;
         } else {
-            firstCommonSupertype = ObjectTypeFactory.getInstance(lastCommonInBackwardsSearch.getClassDescriptor()
-                    .toDottedClassName());
+            firstCommonSupertype = ObjectTypeFactory.getInstance(lastCommon.getClassDescriptor().toDottedClassName());
         }
-        if (firstCommonSupertype.equals(Type.OBJECT)) {
+        if (firstCommonSupertype.equals(Type.OBJECT) && hasCommonSupertypeOtherThanObject(aVertex, bVertex)) {
             // see if we can't do better
+            Set<ClassDescriptor> aSuperTypes = computeKnownSupertypes(aDesc);
+            Set<ClassDescriptor> bSuperTypes = computeKnownSupertypes(bDesc);
             ClassDescriptor objDesc = DescriptorFactory.getClassDescriptor(Type.OBJECT);
             aSuperTypes.retainAll(bSuperTypes);
             aSuperTypes.remove(objDesc);
@@ -778,7 +771,9 @@ public class Subtypes2 {
             a = b;
             b = tmp;
         }
-        firstCommonSuperclassQueryCache.put(a, b, answer);
+        synchronized (firstCommonSuperclassQueryCache) {
+            firstCommonSuperclassQueryCache.put(a, b, answer);
+        }
     }
 
     private ReferenceType checkFirstCommonSuperclassQueryCache(ReferenceType a, ReferenceType b) {
@@ -787,29 +782,72 @@ public class Subtypes2 {
             a = b;
             b = tmp;
         }
-        return firstCommonSuperclassQueryCache.get(a, b);
+        synchronized (firstCommonSuperclassQueryCache) {
+            return firstCommonSuperclassQueryCache.get(a, b);
+        }
     }
 
     /**
-     * Get list of all superclasses of class represented by given class vertex,
-     * in order, including the class itself (which is trivially its own
-     * superclass as far as "first common superclass" queries are concerned.)
+     * Get all superclasses of the class represented by given indexed class
+     * vertex, from the root of the class tree down to the class itself (which
+     * is trivially its own superclass as far as "first common superclass"
+     * queries are concerned.)
      *
      * @param vertex
-     *            a ClassVertex
-     * @return list of all superclass vertices in order
+     *            a ClassVertex whose supertypes have been indexed
+     * @return all superclass vertices in order
+     * @throws ClassNotFoundException
+     *             if any of the superclasses is missing
      */
-    private ArrayList<ClassVertex> getAllSuperclassVertices(ClassVertex vertex) throws ClassNotFoundException {
-        ArrayList<ClassVertex> result = new ArrayList<ClassVertex>();
-        ClassVertex cur = vertex;
-        while (cur != null) {
-            if (!cur.isResolved()) {
-                ClassDescriptor.throwClassNotFoundException(cur.getClassDescriptor());
+    private ClassVertex[] getSuperclassChain(ClassVertex vertex) throws ClassNotFoundException {
+        ClassVertex[] chain = vertex.getSuperclassChain();
+        for (int i = chain.length - 1; i >= 0; i--) {
+            if (!chain[i].isResolved()) {
+                ClassDescriptor.throwClassNotFoundException(chain[i].getClassDescriptor());
             }
-            result.add(cur);
-            cur = cur.getDirectSuperclass();
         }
-        return result;
+        return chain;
+    }
+
+    /**
+     * Determine whether two indexed classes have a common supertype other
+     * than java.lang.Object.
+     */
+    private boolean hasCommonSupertypeOtherThanObject(ClassVertex a, ClassVertex b) {
+        int[] aInterfaces = a.getInterfaceSupertypes();
+        int[] bInterfaces = b.getInterfaceSupertypes();
+        if (aInterfaces != null && bInterfaces != null) {
+            ClassVertex objectVertex = classDescriptorToVertexMap.get(DescriptorFactory.getClassDescriptor(Type.OBJECT));
+            int objectId = objectVertex != null ? objectVertex.getInterfaceId() : -1;
+            int i = 0;
+            int j = 0;
+            while (i < aInterfaces.length && j < bInterfaces.length) {
+                if (aInterfaces[i] < bInterfaces[j]) {
+                    i++;
+                } else if (aInterfaces[i] > bInterfaces[j]) {
+                    j++;
+                } else if (aInterfaces[i] == objectId) {
+                    i++;
+                    j++;
+                } else {
+                    return true;
+                }
+            }
+        }
+        return hasSuperclassOtherThanObject(a, b) || hasSuperclassOtherThanObject(b, a);
+    }
+
+    /**
+     * Determine whether any superclass of a, other than java.lang.Object, is a
+     * supertype of b.
+     */
+    private boolean hasSuperclassOtherThanObject(ClassVertex a, ClassVertex b) {
+        for (ClassVertex superclass : a.getSuperclassChain()) {
+            if (b.isSubtypeOf(superclass) && !"java/lang/Object".equals(superclass.getClassDescriptor().getClassName())) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -821,7 +859,7 @@ public class Subtypes2 {
      * @return Set of ClassDescriptors which are the known subtypes of the class
      * @throws ClassNotFoundException
      */
-    public Set<ClassDescriptor> getSubtypes(ClassDescriptor classDescriptor) throws ClassNotFoundException {
+    public synchronized Set<ClassDescriptor> getSubtypes(ClassDescriptor classDescriptor) throws ClassNotFoundException {
         Set<ClassDescriptor> result = subtypeSetMap.get(classDescriptor);
         if (result == null) {
             result = computeKnownSubtypes(classDescriptor);
@@ -838,7 +876,7 @@ public class Subtypes2 {
      * @return true if the class has subtypes, false if it has no subtypes
      * @throws ClassNotFoundException
      */
-    public boolean hasSubtypes(ClassDescriptor classDescriptor) throws ClassNotFoundException {
+    public synchronized boolean hasSubtypes(ClassDescriptor classDescriptor) throws ClassNotFoundException {
         Set<ClassDescriptor> subtypes = getDirectSubtypes(classDescriptor);
         if (DEBUG) {
             System.out.println("Direct subtypes of " + classDescriptor + " are " + subtypes);
@@ -854,7 +892,7 @@ public class Subtypes2 {
      * @return Set of ClassDescriptors which are the known subtypes of the class
      * @throws ClassNotFoundException
      */
-    public Set<ClassDescriptor> getDirectSubtypes(ClassDescriptor classDescriptor) throws ClassNotFoundException {
+    public synchronized Set<ClassDescriptor> getDirectSubtypes(ClassDescriptor classDescriptor) throws ClassNotFoundException {
 
         ClassVertex startVertex = resolveClassVertex(classDescriptor);
 
@@ -878,7 +916,7 @@ public class Subtypes2 {
      * @return Set containing all common transitive subtypes of the two classes
      * @throws ClassNotFoundException
      */
-    public Set<ClassDescriptor> getTransitiveCommonSubtypes(ClassDescriptor classDescriptor1, ClassDescriptor classDescriptor2)
+    public synchronized Set<ClassDescriptor> getTransitiveCommonSubtypes(ClassDescriptor classDescriptor1, ClassDescriptor classDescriptor2)
             throws ClassNotFoundException {
         Set<ClassDescriptor> subtypes1 = getSubtypes(classDescriptor1);
         Set<ClassDescriptor> result = new HashSet<ClassDescriptor>(subtypes1);
@@ -890,11 +928,13 @@ public class Subtypes2 {
 
     /**
      * Get Collection of all XClass objects (resolved classes) seen so far.
+     * Since other threads may add classes while the caller iterates over the
+     * result, it is a copy.
      *
      * @return Collection of all XClass objects
      */
-    public Collection<XClass> getXClassCollection() {
-        return Collections.<XClass> unmodifiableCollection(xclassSet);
+    public synchronized Collection<XClass> getXClassCollection() {
+        return Collections.<XClass> unmodifiableCollection(new ArrayList<XClass>(xclassSet));
     }
 
     /**
@@ -955,7 +995,7 @@ public class Subtypes2 {
      * @throws ClassNotFoundException
      *             if the start vertex cannot be resolved
      */
-    public void traverseSupertypes(ClassDescriptor start, InheritanceGraphVisitor visitor) throws ClassNotFoundException {
+    public synchronized void traverseSupertypes(ClassDescriptor start, InheritanceGraphVisitor visitor) throws ClassNotFoundException {
         LinkedList<SupertypeTraversalPath> workList = new LinkedList<SupertypeTraversalPath>();
 
         ClassVertex startVertex = resolveClassVertex(start);
@@ -1006,7 +1046,7 @@ public class Subtypes2 {
      * @throws ClassNotFoundException
      *             if the start vertex cannot be resolved
      */
-    public void traverseSupertypesDepthFirst(ClassDescriptor start, SupertypeTraversalVisitor visitor) throws ClassNotFoundException {
+    public synchronized void traverseSupertypesDepthFirst(ClassDescriptor start, SupertypeTraversalVisitor visitor) throws ClassNotFoundException {
         this.traverseSupertypesDepthFirstHelper(start, visitor, new HashSet<ClassDescriptor>());
     }
 
@@ -1117,7 +1157,7 @@ public class Subtypes2 {
     }
 
 
-    public boolean hasKnownSubclasses(ClassDescriptor classDescriptor) throws ClassNotFoundException {
+    public synchronized boolean hasKnownSubclasses(ClassDescriptor classDescriptor) throws ClassNotFoundException {
 
         ClassVertex startVertex = resolveClassVertex(classDescriptor);
         if (!startVertex.isInterface()) {
@@ -1153,7 +1193,7 @@ public class Subtypes2 {
 
         return false;
     }
-    private Set<ClassDescriptor> computeKnownSupertypes(ClassDescriptor classDescriptor) throws ClassNotFoundException {
+    private synchronized Set<ClassDescriptor> computeKnownSupertypes(ClassDescriptor classDescriptor) throws ClassNotFoundException {
         LinkedList<ClassVertex> workList = new LinkedList<ClassVertex>();
 
         ClassVertex startVertex = resolveClassVertex(classDescriptor);
@@ -1184,70 +1224,163 @@ public class Subtypes2 {
     }
 
     /**
-     * Look up or compute the SupertypeQueryResults for class named by given
-     * ClassDescriptor.
+     * Look up the ClassVertex for the class named by given ClassDescriptor,
+     * resolving it if necessary, and make sure its supertypes are indexed.
      *
      * @param classDescriptor
      *            a ClassDescriptor
-     * @return SupertypeQueryResults for the class named by the ClassDescriptor
+     * @return the ClassVertex, which may represent a missing class
      */
-    public SupertypeQueryResults getSupertypeQueryResults(ClassDescriptor classDescriptor) {
-        SupertypeQueryResults supertypeQueryResults = supertypeSetMap.get(classDescriptor);
-        if (supertypeQueryResults == null) {
-            supertypeQueryResults = computeSupertypes(classDescriptor);
-            supertypeSetMap.put(classDescriptor, supertypeQueryResults);
+    private ClassVertex getIndexedClassVertex(ClassDescriptor classDescriptor) {
+        ClassVertex vertex = classDescriptorToVertexMap.get(classDescriptor);
+        if (vertex != null && vertex.isSupertypeIndexed()) {
+            return vertex;
+        }
+        synchronized (this) {
+            // Try to fully resolve the class and its superclasses/superinterfaces.
+            vertex = optionallyResolveClassVertex(classDescriptor);
+            indexSupertypes(vertex);
+            return vertex;
         }
-        return supertypeQueryResults;
     }
 
     /**
-     * Compute supertypes for class named by given ClassDescriptor.
+     * Determine whether the class named by given ClassDescriptor is a known
+     * supertype of the given indexed class.
      *
-     * @param classDescriptor
-     *            a ClassDescriptor
-     * @return SupertypeQueryResults containing known supertypes of the class
+     * @throws ClassNotFoundException
+     *             if it isn't, but a missing class prevents a definitive
+     *             answer
      */
-    private SupertypeQueryResults computeSupertypes(ClassDescriptor classDescriptor) // throws
-    // ClassNotFoundException
-    {
-        if (DEBUG_QUERIES) {
-            System.out.println("Computing supertypes for " + classDescriptor.toDottedClassName());
+    private boolean containsSupertype(ClassVertex vertex, ClassDescriptor possibleSupertypeClassDescriptor)
+            throws ClassNotFoundException {
+        ClassVertex possibleSupertype = classDescriptorToVertexMap.get(possibleSupertypeClassDescriptor);
+        if (possibleSupertype != null && vertex.isSubtypeOf(possibleSupertype)) {
+            return true;
+        } else if (!vertex.hasMissingSupertypes()) {
+            return false;
+        } else {
+            // We don't really know which class was missing.
+            // However, any missing classes will already have been reported.
+            throw new ClassNotFoundException();
         }
+    }
 
-        // Try to fully resolve the class and its superclasses/superinterfaces.
-        ClassVertex typeVertex = optionallyResolveClassVertex(classDescriptor);
-
-        // Create new empty SupertypeQueryResults.
-        SupertypeQueryResults supertypeSet = new SupertypeQueryResults();
+    /**
+     * Index the supertypes of given ClassVertex, and those of all its
+     * supertypes. The ClassVertexes for all of them should be in the
+     * InheritanceGraph by now.
+     * <p>
+     * Superclasses are recorded as the chain of superclasses from the root of
+     * the class tree, so a class C is a superclass of D exactly when C is at
+     * the position of its own depth in the chain of D. All other supertypes,
+     * i.e., interfaces and everything reached through them, get an interface
+     * id and are recorded in a sorted array, which is shared with the
+     * superclass when a class implements no interfaces of its own. So the
+     * index takes space proportional to the number of supertypes of the
+     * classes which implement interfaces, rather than to the number of
+     * classes times the number of interfaces.
+     *
+     * @param vertex
+     *            a ClassVertex
+     * @return false if the vertex is part of an inheritance cycle, and so
+     *         can't be indexed yet
+     */
+    private boolean indexSupertypes(ClassVertex vertex) {
+        if (vertex.isSupertypeIndexed()) {
+            return true;
+        }
+        if (vertex.isIndexingSupertypes()) {
+            return false;
+        }
+        if (DEBUG_QUERIES) {
+            System.out.println("Indexing supertypes of " + vertex.getClassDescriptor().toDottedClassName());
+        }
+        vertex.setIndexingSupertypes(true);
+        boolean missingSupertypes = !vertex.isResolved();
+
+        ClassVertex superclass = vertex.getDirectSuperclass();
+        ClassVertex[] chain;
+        int[] interfaces = null;
+        if (superclass != null && indexSupertypes(superclass)) {
+            ClassVertex[] superclassChain = superclass.getSuperclassChain();
+            chain = Arrays.copyOf(superclassChain, superclassChain.length + 1);
+            interfaces = superclass.getInterfaceSupertypes();
+            missingSupertypes |= superclass.hasMissingSupertypes();
+        } else {
+            chain = new ClassVertex[1];
+            missingSupertypes |= superclass != null;
+        }
+        chain[chain.length - 1] = vertex;
 
-        // Add all known superclasses/superinterfaces.
-        // The ClassVertexes for all of them should be in the
-        // InheritanceGraph by now.
-        LinkedList<ClassVertex> workList = new LinkedList<ClassVertex>();
-        workList.addLast(typeVertex);
-        while (!workList.isEmpty()) {
-            ClassVertex vertex = workList.removeFirst();
-            supertypeSet.addSupertype(vertex.getClassDescriptor());
-            if (vertex.isResolved()) {
-                if (DEBUG_QUERIES) {
-                    System.out.println("  Adding supertype " + vertex.getClassDescriptor().toDottedClassName());
-                }
-            } else {
-                if (DEBUG_QUERIES) {
-                    System.out.println("  Encountered unresolved class " + vertex.getClassDescriptor().toDottedClassName()
-                            + " in supertype query");
+        Iterator<InheritanceEdge> i = graph.outgoingEdgeIterator(vertex);
+        while (i.hasNext()) {
+            ClassVertex supertype = i.next().getTarget();
+            if (supertype == superclass) {
+                continue;
+            }
+            if (!indexSupertypes(supertype)) {
+                // Inheritance cycle: treat the supertype as missing
+                missingSupertypes = true;
+                continue;
+            }
+            missingSupertypes |= supertype.hasMissingSupertypes();
+            ClassVertex[] supertypeChain = supertype.getSuperclassChain();
+            int[] ids = new int[supertypeChain.length];
+            for (int j = 0; j < supertypeChain.length; j++) {
+                if (supertypeChain[j].getInterfaceId() < 0) {
+                    supertypeChain[j].setInterfaceId(interfaceIdCount++);
                 }
-                supertypeSet.setEncounteredMissingClasses(true);
+                ids[j] = supertypeChain[j].getInterfaceId();
             }
+            Arrays.sort(ids);
+            interfaces = union(union(interfaces, ids), supertype.getInterfaceSupertypes());
+        }
 
-            Iterator<InheritanceEdge> i = graph.outgoingEdgeIterator(vertex);
-            while (i.hasNext()) {
-                InheritanceEdge edge = i.next();
-                workList.addLast(edge.getTarget());
-            }
+        if (DEBUG_QUERIES && missingSupertypes) {
+            System.out.println("  Encountered unresolved class in supertypes of "
+                    + vertex.getClassDescriptor().toDottedClassName());
         }
+        vertex.setSupertypeIndex(chain, interfaces, missingSupertypes);
+        vertex.setIndexingSupertypes(false);
+        return true;
+    }
 
-        return supertypeSet;
+    /**
+     * Compute the union of two sorted arrays of interface ids.
+     *
+     * @return the union, which is one of the arguments if it contains the
+     *         other, or null if both are null
+     */
+    private static @CheckForNull
+    int[] union(@CheckForNull int[] a, @CheckForNull int[] b) {
+        if (b == null) {
+            return a;
+        }
+        if (a == null) {
+            return b;
+        }
+        int[] result = new int[a.length + b.length];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || i < a.length && a[i] < b[j]) {
+                result[n++] = a[i++];
+            } else if (i == a.length || a[i] > b[j]) {
+                result[n++] = b[j++];
+            } else {
+                result[n++] = a[i++];
+                j++;
+            }
+        }
+        if (n == a.length) {
+            return a;
+        }
+        if (n == b.length) {
+            return b;
+        }
+        return Arrays.copyOf(result, n);
     }
 
     /**
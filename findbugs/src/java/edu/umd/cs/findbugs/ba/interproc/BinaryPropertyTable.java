@@ -0,0 +1,499 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs.ba.interproc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.WillClose;
+
+import org.apache.bcel.Constants;
+
+import edu.umd.cs.findbugs.charsets.UTF8;
+import edu.umd.cs.findbugs.internalAnnotations.SlashedClassName;
+import edu.umd.cs.findbugs.util.ClassName;
+import edu.umd.cs.findbugs.util.Util;
+
+/**
+ * A read-only table of property database entries in the binary property
+ * database format. A key can be looked up by binary search directly in the
+ * (usually memory-mapped) table, without parsing the rest of it.
+ * <p>
+ * The format is:
+ *
+ * <pre>
+ * int magic, int version, int stringCount, int entryCount
+ * int[stringCount + 1]: offsets of the strings in the string data
+ * entryCount times: int className, int name, int signature, int accessFlags, int property
+ * string data, in UTF-8
+ * </pre>
+ *
+ * Every string is stored once. The strings are sorted by their UTF-8 bytes,
+ * and the entries by class name, name, signature and static flag, so
+ * entries can be compared by their string indices. The property is the
+ * string encoding of the text format, and is only decoded when the entry is
+ * used.
+ * <p>
+ * The first byte of the magic number is not valid UTF-8, so a binary table
+ * is never mistaken for a text database.
+ *
+ * @see PropertyDatabase
+ */
+public final class BinaryPropertyTable {
+
+    static final int MAGIC = 0xFBDBFBDB;
+
+    static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+
+    private static final int ENTRY_SIZE = 20;
+
+    private final ByteBuffer buffer;
+
+    private final int stringCount;
+
+    private final int entryCount;
+
+    private final int entriesStart;
+
+    private final int stringsStart;
+
+    private BinaryPropertyTable(ByteBuffer buffer) throws PropertyDatabaseFormatException {
+        this.buffer = buffer.slice();
+        if (this.buffer.limit() < HEADER_SIZE || this.buffer.getInt(0) != MAGIC) {
+            throw new PropertyDatabaseFormatException("Not a binary property database");
+        }
+        if (this.buffer.getInt(4) != VERSION) {
+            throw new PropertyDatabaseFormatException("Unsupported binary property database version " + this.buffer.getInt(4));
+        }
+        stringCount = this.buffer.getInt(8);
+        entryCount = this.buffer.getInt(12);
+        long entries = HEADER_SIZE + 4L * (stringCount + 1L);
+        long strings = entries + (long) ENTRY_SIZE * entryCount;
+        if (stringCount < 0 || entryCount < 0 || strings > this.buffer.limit()
+                || strings + this.buffer.getInt((int) entries - 4) != this.buffer.limit()) {
+            throw new PropertyDatabaseFormatException("Truncated binary property database");
+        }
+        entriesStart = (int) entries;
+        stringsStart = (int) strings;
+    }
+
+    /**
+     * Map a binary property database file into memory.
+     *
+     * @param file
+     *            the file
+     * @return the table
+     */
+    public static BinaryPropertyTable map(File file) throws IOException, PropertyDatabaseFormatException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new PropertyDatabaseFormatException("Property database " + file + " is too large to be mapped");
+            }
+            // The mapping stays valid after the channel is closed
+            return new BinaryPropertyTable(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Read a binary property database from an input stream, which is closed.
+     *
+     * @param in
+     *            the input stream
+     * @return the table
+     */
+    public static BinaryPropertyTable read(@WillClose InputStream in) throws IOException, PropertyDatabaseFormatException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                bytes.write(buf, 0, n);
+            }
+            return new BinaryPropertyTable(ByteBuffer.wrap(bytes.toByteArray()));
+        } finally {
+            Util.closeSilently(in);
+        }
+    }
+
+    /**
+     * @param file
+     *            a property database file
+     * @return true if the file is in the binary format
+     */
+    public static boolean isBinary(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return raf.length() >= 4 && raf.readInt() == MAGIC;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Check whether a stream holds a binary property database, without
+     * consuming any of it.
+     *
+     * @param in
+     *            an input stream which supports mark and reset
+     * @return true if the stream is in the binary format
+     */
+    public static boolean isBinary(InputStream in) throws IOException {
+        in.mark(4);
+        try {
+            int magic = 0;
+            for (int i = 0; i < 4; i++) {
+                int b = in.read();
+                if (b < 0) {
+                    return false;
+                }
+                magic = magic << 8 | b;
+            }
+            return magic == MAGIC;
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * Open a property database in either format for reading lines of the
+     * text format.
+     *
+     * @param in
+     *            the input stream, which is closed when the reader is
+     * @return the reader
+     */
+    public static BufferedReader getTextReader(@WillClose InputStream in) throws IOException {
+        InputStream bufferedIn = in.markSupported() ? in : new BufferedInputStream(in);
+        if (!isBinary(bufferedIn)) {
+            return new BufferedReader(Util.getReader(bufferedIn));
+        }
+        StringWriter text = new StringWriter();
+        try {
+            read(bufferedIn).writeText(text);
+        } catch (PropertyDatabaseFormatException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        return new BufferedReader(new StringReader(text.toString()));
+    }
+
+    /**
+     * @return number of entries
+     */
+    public int size() {
+        return entryCount;
+    }
+
+    /**
+     * Find the entry for a key.
+     *
+     * @return the index of the entry, or -1 if there is none
+     */
+    public int find(@SlashedClassName String className, String name, String signature, boolean isStatic) {
+        int classIndex = findString(className);
+        int nameIndex = classIndex < 0 ? -1 : findString(name);
+        int signatureIndex = nameIndex < 0 ? -1 : findString(signature);
+        if (signatureIndex < 0) {
+            return -1;
+        }
+        int low = 0;
+        int high = entryCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int pos = entriesStart + mid * ENTRY_SIZE;
+            int cmp = compare(buffer.getInt(pos), classIndex);
+            if (cmp == 0) {
+                cmp = compare(buffer.getInt(pos + 4), nameIndex);
+            }
+            if (cmp == 0) {
+                cmp = compare(buffer.getInt(pos + 8), signatureIndex);
+            }
+            if (cmp == 0) {
+                cmp = Boolean.compare(isStatic(mid), isStatic);
+            }
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    public @SlashedClassName String getClassName(int entry) {
+        return getString(buffer.getInt(entriesStart + entry * ENTRY_SIZE));
+    }
+
+    public String getName(int entry) {
+        return getString(buffer.getInt(entriesStart + entry * ENTRY_SIZE + 4));
+    }
+
+    public String getSignature(int entry) {
+        return getString(buffer.getInt(entriesStart + entry * ENTRY_SIZE + 8));
+    }
+
+    /**
+     * @return the low four access flag bits of the field or method, as in the
+     *         text format
+     */
+    public int getAccessFlags(int entry) {
+        return buffer.getInt(entriesStart + entry * ENTRY_SIZE + 12);
+    }
+
+    public boolean isStatic(int entry) {
+        return (getAccessFlags(entry) & Constants.ACC_STATIC) != 0;
+    }
+
+    /**
+     * @return the property of the entry, encoded as in the text format
+     */
+    public String getProperty(int entry) {
+        return getString(buffer.getInt(entriesStart + entry * ENTRY_SIZE + 16));
+    }
+
+    /**
+     * Write the entries in the text format.
+     *
+     * @param writer
+     *            the writer
+     */
+    public void writeText(Writer writer) throws IOException {
+        for (int i = 0; i < entryCount; i++) {
+            writer.write(ClassName.toDottedClassName(getClassName(i)));
+            writer.write(",");
+            writer.write(getName(i));
+            writer.write(",");
+            writer.write(getSignature(i));
+            writer.write(",");
+            writer.write(Integer.toString(getAccessFlags(i)));
+            writer.write("|");
+            writer.write(getProperty(i));
+            writer.write("\n");
+        }
+    }
+
+    private static int compare(int a, int b) {
+        return a < b ? -1 : (a == b ? 0 : 1);
+    }
+
+    private int getStringStart(int index) {
+        return stringsStart + buffer.getInt(HEADER_SIZE + 4 * index);
+    }
+
+    private String getString(int index) {
+        int start = getStringStart(index);
+        byte[] bytes = new byte[getStringStart(index + 1) - start];
+        ByteBuffer b = buffer.duplicate();
+        b.position(start);
+        b.get(bytes);
+        return new String(bytes, UTF8.charset);
+    }
+
+    private int findString(String s) {
+        byte[] bytes = s.getBytes(UTF8.charset);
+        int low = 0;
+        int high = stringCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int start = getStringStart(mid);
+            int length = getStringStart(mid + 1) - start;
+            int cmp = 0;
+            for (int i = 0; cmp == 0 && i < length && i < bytes.length; i++) {
+                cmp = (buffer.get(start + i) & 0xff) - (bytes[i] & 0xff);
+            }
+            if (cmp == 0) {
+                cmp = length - bytes.length;
+            }
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Collects entries and writes them as a binary property database. If a
+     * key is added more than once, the last entry wins, as when a text
+     * database is read.
+     */
+    public static class Builder {
+        private final List<String[]> entries = new ArrayList<String[]>();
+
+        private final List<Integer> accessFlags = new ArrayList<Integer>();
+
+        /**
+         * Add an entry.
+         *
+         * @param className
+         *            class of the field or method
+         * @param name
+         *            name of the field or method
+         * @param signature
+         *            signature of the field or method
+         * @param flags
+         *            low four access flag bits of the field or method
+         * @param property
+         *            the property, encoded as in the text format
+         */
+        public void add(@SlashedClassName String className, String name, String signature, int flags, String property) {
+            entries.add(new String[] { className, name, signature, property });
+            accessFlags.add(flags);
+        }
+
+        /**
+         * Add an entry given as a line of the text format.
+         *
+         * @param line
+         *            the line
+         */
+        public void addTextLine(String line) throws PropertyDatabaseFormatException {
+            int bar = line.indexOf('|');
+            if (bar < 0) {
+                throw new PropertyDatabaseFormatException("Invalid property database: missing separator");
+            }
+            String[] tuple = line.substring(0, bar).split(",");
+            if (tuple.length != 4) {
+                throw new PropertyDatabaseFormatException("Invalid key: " + line.substring(0, bar));
+            }
+            int flags;
+            try {
+                flags = Integer.parseInt(tuple[3]);
+            } catch (NumberFormatException e) {
+                throw new PropertyDatabaseFormatException("Invalid access flags: " + tuple[3]);
+            }
+            add(ClassName.toSlashedClassName(tuple[0]), tuple[1], tuple[2], flags, line.substring(bar + 1));
+        }
+
+        /**
+         * Write the table.
+         *
+         * @param out
+         *            the output stream, which is not closed
+         */
+        public void write(OutputStream out) throws IOException {
+            Map<String, byte[]> encoded = new HashMap<String, byte[]>();
+            for (String[] entry : entries) {
+                for (String s : entry) {
+                    if (!encoded.containsKey(s)) {
+                        encoded.put(s, s.getBytes(UTF8.charset));
+                    }
+                }
+            }
+            final List<byte[]> strings = new ArrayList<byte[]>(encoded.values());
+            Collections.sort(strings, new Comparator<byte[]>() {
+                @Override
+                public int compare(byte[] a, byte[] b) {
+                    for (int i = 0; i < a.length && i < b.length; i++) {
+                        int cmp = (a[i] & 0xff) - (b[i] & 0xff);
+                        if (cmp != 0) {
+                            return cmp;
+                        }
+                    }
+                    return a.length - b.length;
+                }
+            });
+            final Map<String, Integer> index = new HashMap<String, Integer>();
+            for (int i = 0; i < strings.size(); i++) {
+                index.put(new String(strings.get(i), UTF8.charset), i);
+            }
+
+            // Sort the entries by key, keeping the last one added for each key
+            final int[][] rows = new int[entries.size()][];
+            for (int i = 0; i < rows.length; i++) {
+                String[] entry = entries.get(i);
+                rows[i] = new int[] { index.get(entry[0]), index.get(entry[1]), index.get(entry[2]),
+                        accessFlags.get(i) & 0xf, index.get(entry[3]), i };
+            }
+            Arrays.sort(rows, new Comparator<int[]>() {
+                @Override
+                public int compare(int[] a, int[] b) {
+                    for (int i = 0; i < 3; i++) {
+                        if (a[i] != b[i]) {
+                            return BinaryPropertyTable.compare(a[i], b[i]);
+                        }
+                    }
+                    int cmp = BinaryPropertyTable.compare(a[3] & Constants.ACC_STATIC, b[3] & Constants.ACC_STATIC);
+                    return cmp != 0 ? cmp : BinaryPropertyTable.compare(a[5], b[5]);
+                }
+            });
+            List<int[]> unique = new ArrayList<int[]>(rows.length);
+            for (int i = 0; i < rows.length; i++) {
+                int[] next = i + 1 < rows.length ? rows[i + 1] : null;
+                if (next == null || next[0] != rows[i][0] || next[1] != rows[i][1] || next[2] != rows[i][2]
+                        || ((next[3] ^ rows[i][3]) & Constants.ACC_STATIC) != 0) {
+                    unique.add(rows[i]);
+                }
+            }
+
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeInt(strings.size());
+            data.writeInt(unique.size());
+            int offset = 0;
+            data.writeInt(offset);
+            for (byte[] s : strings) {
+                offset += s.length;
+                data.writeInt(offset);
+            }
+            for (int[] row : unique) {
+                for (int i = 0; i < 5; i++) {
+                    data.writeInt(row[i]);
+                }
+            }
+            for (byte[] s : strings) {
+                data.write(s);
+            }
+            data.flush();
+        }
+    }
+}
@@ -28,6 +28,7 @@ import edu.umd.cs.findbugs.ba.XFactory;
 import edu.umd.cs.findbugs.ba.XField;
 import edu.umd.cs.findbugs.classfile.DescriptorFactory;
 import edu.umd.cs.findbugs.classfile.FieldDescriptor;
+import edu.umd.cs.findbugs.internalAnnotations.SlashedClassName;
 import edu.umd.cs.findbugs.util.ClassName;
 
 /**
@@ -65,6 +66,12 @@ public abstract class FieldPropertyDatabase<Property> extends PropertyDatabase<F
                 (accessFlags & Constants.ACC_STATIC) != 0);
     }
 
+    @Override
+    protected FieldDescriptor createKey(@SlashedClassName String className, String name, String signature, boolean isStatic) {
+        return DescriptorFactory.instance().getFieldDescriptor(XFactory.canonicalizeString(className),
+                XFactory.canonicalizeString(name), XFactory.canonicalizeString(signature), isStatic);
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -27,6 +27,7 @@ import edu.umd.cs.findbugs.ba.XFactory;
 import edu.umd.cs.findbugs.ba.XMethod;
 import edu.umd.cs.findbugs.classfile.DescriptorFactory;
 import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+import edu.umd.cs.findbugs.internalAnnotations.SlashedClassName;
 import edu.umd.cs.findbugs.util.ClassName;
 
 /**
@@ -61,6 +62,12 @@ public abstract class MethodPropertyDatabase<Property> extends PropertyDatabase<
         }
     }
 
+    @Override
+    protected MethodDescriptor createKey(@SlashedClassName String className, String name, String signature, boolean isStatic) {
+        return DescriptorFactory.instance().getMethodDescriptor(XFactory.canonicalizeString(className),
+                XFactory.canonicalizeString(name), XFactory.canonicalizeString(signature), isStatic);
+    }
+
     @Override
     protected void writeKey(Writer writer, MethodDescriptor method) throws IOException {
         writer.write(method.getClassDescriptor().toDottedClassName());
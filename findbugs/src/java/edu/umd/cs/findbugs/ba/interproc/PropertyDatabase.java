@@ -19,8 +19,10 @@
 
 package edu.umd.cs.findbugs.ba.interproc;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -33,6 +35,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.WillClose;
@@ -40,10 +43,16 @@ import javax.annotation.WillClose;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.charsets.UTF8;
 import edu.umd.cs.findbugs.classfile.FieldOrMethodDescriptor;
+import edu.umd.cs.findbugs.internalAnnotations.SlashedClassName;
 import edu.umd.cs.findbugs.util.Util;
 
 /**
  * Property database for interprocedural analysis.
+ * <p>
+ * A database is read from a text file with one <code>key|property</code>
+ * line per entry, or from a {@link BinaryPropertyTable}. The entries of a
+ * binary table read into an empty database are not copied into the database;
+ * they are looked up in the table as needed.
  *
  * @param <KeyType>
  *            key type: either MethodDescriptor or FieldDescriptor
@@ -55,6 +64,17 @@ import edu.umd.cs.findbugs.util.Util;
 public abstract class PropertyDatabase<KeyType extends FieldOrMethodDescriptor, ValueType> {
     private final Map<KeyType, ValueType> propertyMap;
 
+    /**
+     * Binary table read into this database, whose entries are not in
+     * propertyMap yet. An entry in propertyMap overrides the table.
+     */
+    private volatile BinaryPropertyTable table;
+
+    /** Properties looked up in the table, or NOT_IN_TABLE */
+    private final ConcurrentHashMap<KeyType, Object> tableLookups = new ConcurrentHashMap<KeyType, Object>();
+
+    private static final Object NOT_IN_TABLE = new Object();
+
     /**
      * Constructor. Creates an empty property database.
      */
@@ -81,16 +101,33 @@ public abstract class PropertyDatabase<KeyType extends FieldOrMethodDescriptor,
      *            the key
      * @return the property, or null if no property is set for this key
      */
+    @SuppressWarnings("unchecked")
     public @CheckForNull
     ValueType getProperty(KeyType key) {
-        return propertyMap.get(key);
+        ValueType property = propertyMap.get(key);
+        BinaryPropertyTable t = table;
+        if (property != null || t == null) {
+            return property;
+        }
+        Object result = tableLookups.get(key);
+        if (result == null) {
+            int entry = t.find(key.getSlashedClassName(), key.getName(), key.getSignature(), key.isStatic());
+            result = entry >= 0 ? decodeProperty(t, entry) : null;
+            if (result == null) {
+                result = NOT_IN_TABLE;
+            }
+            tableLookups.putIfAbsent(key, result);
+        }
+        return result == NOT_IN_TABLE ? null : (ValueType) result;
     }
 
     public Set<KeyType> getKeys() {
+        copyTable();
         return propertyMap.keySet();
     }
 
     public Collection<Map.Entry<KeyType, ValueType>> entrySet() {
+        copyTable();
         return propertyMap.entrySet();
     }
 
@@ -100,7 +137,8 @@ public abstract class PropertyDatabase<KeyType extends FieldOrMethodDescriptor,
      * @return true if the database is empty, false it it has at least one entry
      */
     public boolean isEmpty() {
-        return propertyMap.isEmpty();
+        BinaryPropertyTable t = table;
+        return propertyMap.isEmpty() && (t == null || t.size() == 0);
     }
 
     /**
@@ -112,11 +150,13 @@ public abstract class PropertyDatabase<KeyType extends FieldOrMethodDescriptor,
      *         this key
      */
     public ValueType removeProperty(KeyType key) {
+        copyTable();
         return propertyMap.remove(key);
     }
 
     /**
-     * Read property database from given file.
+     * Read property database from given file. A binary database is mapped
+     * into memory.
      *
      * @param fileName
      *            name of the database file
@@ -124,7 +164,64 @@ public abstract class PropertyDatabase<KeyType extends FieldOrMethodDescriptor,
      * @throws PropertyDatabaseFormatException
      */
     public void readFromFile(String fileName) throws IOException, PropertyDatabaseFormatException {
-        read(new FileInputStream(fileName));
+        File file = new File(fileName);
+        if (BinaryPropertyTable.isBinary(file)) {
+            read(BinaryPropertyTable.map(file));
+        } else {
+            read(new FileInputStream(file));
+        }
+    }
+
+    /**
+     * Read the entries of a binary table into the database. As for a text
+     * database, they override the entries already in the database.
+     *
+     * @param t
+     *            the table
+     */
+    public void read(BinaryPropertyTable t) {
+        if (table == null && propertyMap.isEmpty()) {
+            table = t;
+            return;
+        }
+        copyTable();
+        for (int i = 0; i < t.size(); i++) {
+            ValueType property = decodeProperty(t, i);
+            if (property != null) {
+                propertyMap.put(createKey(t.getClassName(i), t.getName(i), t.getSignature(i), t.isStatic(i)), property);
+            }
+        }
+    }
+
+    /**
+     * Copy the entries of the binary table which are not overridden into
+     * propertyMap, and stop using the table.
+     */
+    private synchronized void copyTable() {
+        BinaryPropertyTable t = table;
+        if (t == null) {
+            return;
+        }
+        for (int i = 0; i < t.size(); i++) {
+            KeyType key = createKey(t.getClassName(i), t.getName(i), t.getSignature(i), t.isStatic(i));
+            if (!propertyMap.containsKey(key)) {
+                ValueType property = decodeProperty(t, i);
+                if (property != null) {
+                    propertyMap.put(key, property);
+                }
+            }
+        }
+        table = null;
+        tableLookups.clear();
+    }
+
+    private @CheckForNull ValueType decodeProperty(BinaryPropertyTable t, int entry) {
+        try {
+            return decodeProperty(t.getProperty(entry));
+        } catch (PropertyDatabaseFormatException e) {
+            AnalysisContext.logError("Invalid property of " + t.getClassName(entry) + "." + t.getName(entry), e);
+            return null;
+        }
     }
 
     /**
@@ -140,7 +237,12 @@ public abstract class PropertyDatabase<KeyType extends FieldOrMethodDescriptor,
         BufferedReader reader = null;
 
         try {
-            reader = new BufferedReader(Util.getReader(in));
+            BufferedInputStream bufferedIn = new BufferedInputStream(in);
+            if (BinaryPropertyTable.isBinary(bufferedIn)) {
+                read(BinaryPropertyTable.read(bufferedIn));
+                return;
+            }
+            reader = new BufferedReader(Util.getReader(bufferedIn));
             String line;
             while ((line = reader.readLine()) != null) {
                 line = line.trim();
@@ -205,6 +307,7 @@ public abstract class PropertyDatabase<KeyType extends FieldOrMethodDescriptor,
         boolean missingClassWarningsSuppressed = AnalysisContext.currentAnalysisContext().setMissingClassWarningsSuppressed(true);
 
         try {
+            copyTable();
             writer = new BufferedWriter(new OutputStreamWriter(out, UTF8.charset));
 
             TreeSet<KeyType> sortedMethodSet = new TreeSet<KeyType>();
@@ -243,6 +346,21 @@ public abstract class PropertyDatabase<KeyType extends FieldOrMethodDescriptor,
      */
     protected abstract KeyType parseKey(String s) throws PropertyDatabaseFormatException;
 
+    /**
+     * Create the key of an entry of a binary table.
+     *
+     * @param className
+     *            class of the field or method
+     * @param name
+     *            name of the field or method
+     * @param signature
+     *            signature of the field or method
+     * @param isStatic
+     *            true if the field or method is static
+     * @return the key
+     */
+    protected abstract KeyType createKey(@SlashedClassName String className, String name, String signature, boolean isStatic);
+
     /**
      * Write an encoded key to given Writer.
      *
@@ -27,6 +27,8 @@ import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.meta.When;
 
+import edu.umd.cs.findbugs.AnalysisLocal;
+import edu.umd.cs.findbugs.classfile.Global;
 import edu.umd.cs.findbugs.util.DualKeyHashMap;
 
 /**
@@ -57,7 +59,11 @@ public class TypeQualifierAnnotation {
     // TypeQualifierAnnotation> map = new DualKeyHashMap <TypeQualifierValue,
     // When, TypeQualifierAnnotation> ();
 
-    private static ThreadLocal<DualKeyHashMap<TypeQualifierValue<?>, When, TypeQualifierAnnotation>> instance = new ThreadLocal<DualKeyHashMap<TypeQualifierValue<?>, When, TypeQualifierAnnotation>>() {
+    /**
+     * Interned TypeQualifierAnnotations of the current analysis, shared by all
+     * of its threads. Guarded by the map.
+     */
+    private static final AnalysisLocal<DualKeyHashMap<TypeQualifierValue<?>, When, TypeQualifierAnnotation>> instance = new AnalysisLocal<DualKeyHashMap<TypeQualifierValue<?>, When, TypeQualifierAnnotation>>() {
         @Override
         protected DualKeyHashMap<TypeQualifierValue<?>, When, TypeQualifierAnnotation> initialValue() {
             return new DualKeyHashMap<TypeQualifierValue<?>, When, TypeQualifierAnnotation>();
@@ -65,7 +71,9 @@ public class TypeQualifierAnnotation {
     };
 
     public static void clearInstance() {
-        instance.remove();
+        if (Global.getAnalysisCache() != null) {
+            instance.remove();
+        }
     }
 
     // public static synchronized @NonNull TypeQualifierAnnotation
@@ -168,13 +176,15 @@ public class TypeQualifierAnnotation {
     public static @Nonnull
     TypeQualifierAnnotation getValue(TypeQualifierValue<?> desc, When when) {
         DualKeyHashMap<TypeQualifierValue<?>, When, TypeQualifierAnnotation> map = instance.get();
-        TypeQualifierAnnotation result = map.get(desc, when);
-        if (result != null) {
+        synchronized (map) {
+            TypeQualifierAnnotation result = map.get(desc, when);
+            if (result != null) {
+                return result;
+            }
+            result = new TypeQualifierAnnotation(desc, when);
+            map.put(desc, when, result);
             return result;
         }
-        result = new TypeQualifierAnnotation(desc, when);
-        map.put(desc, when, result);
-        return result;
     }
 
     @Override
@@ -26,6 +26,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.CheckReturnValue;
@@ -33,11 +35,13 @@ import javax.annotation.meta.When;
 
 import org.objectweb.asm.Type;
 
+import edu.umd.cs.findbugs.AnalysisLocal;
 import edu.umd.cs.findbugs.SystemProperties;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.InnerClassAccess;
 import edu.umd.cs.findbugs.ba.InnerClassAccessMap;
 import edu.umd.cs.findbugs.ba.XClass;
+import edu.umd.cs.findbugs.ba.XField;
 import edu.umd.cs.findbugs.ba.XMethod;
 import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
 import edu.umd.cs.findbugs.classfile.ClassDescriptor;
@@ -46,7 +50,7 @@ import edu.umd.cs.findbugs.classfile.Global;
 import edu.umd.cs.findbugs.classfile.analysis.AnnotatedObject;
 import edu.umd.cs.findbugs.classfile.analysis.AnnotationValue;
 import edu.umd.cs.findbugs.classfile.analysis.EnumValue;
-import edu.umd.cs.findbugs.util.DualKeyHashMap;
+import edu.umd.cs.findbugs.util.ConcurrentMapCache;
 
 /**
  * Figure out where and how type qualifier annotations are applied.
@@ -68,33 +72,129 @@ public class TypeQualifierApplications {
 
     static final boolean CHECK_EXHAUSTIVE = true; // SystemProperties.getBoolean("ctq.applications.checkexhaustive");
 
+    /**
+     * Maximum number of entries in each of the memo tables
+     */
+    static final int CACHE_SIZE = SystemProperties.getInt("ctq.applications.cacheSize", 100000);
+
+    /**
+     * A memoized value, stamped with the generation of the annotations it was
+     * computed from.
+     */
+    private static final class Memo<T> {
+        final @CheckForNull
+        T value;
+
+        final int generation;
+
+        Memo(@CheckForNull T value, int generation) {
+            this.value = value;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * Key of an effective TypeQualifierAnnotation: the TypeQualifierValue and
+     * the AnnotatedObject or method parameter.
+     */
+    private static final class EffectiveKey {
+        final TypeQualifierValue<?> typeQualifierValue;
+
+        final AnnotatedObject object;
+
+        /** parameter (0 == first parameter), or -1 for the object itself */
+        final int parameter;
+
+        EffectiveKey(TypeQualifierValue<?> typeQualifierValue, AnnotatedObject object, int parameter) {
+            this.typeQualifierValue = typeQualifierValue;
+            this.object = object;
+            this.parameter = parameter;
+        }
+
+        @Override
+        public int hashCode() {
+            return (typeQualifierValue.hashCode() * 37 + object.hashCode()) * 37 + parameter;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof EffectiveKey)) {
+                return false;
+            }
+            EffectiveKey other = (EffectiveKey) o;
+            return parameter == other.parameter && typeQualifierValue.equals(other.typeQualifierValue)
+                    && object.equals(other.object);
+        }
+    }
+
+    /**
+     * Memo tables of an analysis, shared by all of its threads and passes.
+     * The tables are bounded; evicted entries are simply computed again.
+     * Entries computed before the annotations they depend on were updated are
+     * ignored, see {@link #updateAnnotations(AnnotatedObject)}.
+     */
     static class Data {
 
         /**
          * Type qualifier annotations applied directly to
          * methods/fields/classes/etc.
          */
-        private final Map<AnnotatedObject, Collection<AnnotationValue>> directObjectAnnotations = new HashMap<AnnotatedObject, Collection<AnnotationValue>>();
+        private final ConcurrentMapCache<AnnotatedObject, Memo<Collection<AnnotationValue>>> directObjectAnnotations = new ConcurrentMapCache<AnnotatedObject, Memo<Collection<AnnotationValue>>>(
+                CACHE_SIZE);
 
         /** Type qualifier annotations applied directly to method parameters. */
-        private final HashMap<XMethod, Map<Integer, Collection<AnnotationValue>>> directParameterAnnotations = new HashMap<XMethod, Map<Integer, Collection<AnnotationValue>>>();
+        private final ConcurrentMapCache<XMethod, Memo<Map<Integer, Collection<AnnotationValue>>>> directParameterAnnotations = new ConcurrentMapCache<XMethod, Memo<Map<Integer, Collection<AnnotationValue>>>>(
+                CACHE_SIZE);
 
         /**
-         * Map of TypeQualifierValues to maps containing, for each
-         * AnnotatedObject, the effective TypeQualifierAnnotation (if any) for
-         * that AnnotatedObject.
+         * For each TypeQualifierValue and AnnotatedObject or method parameter,
+         * the effective TypeQualifierAnnotation (if any).
          */
-        private final Map<TypeQualifierValue<?>, Map<AnnotatedObject, TypeQualifierAnnotation>> effectiveObjectAnnotations = new HashMap<TypeQualifierValue<?>, Map<AnnotatedObject, TypeQualifierAnnotation>>();
+        private final ConcurrentMapCache<EffectiveKey, Memo<TypeQualifierAnnotation>> effectiveAnnotations = new ConcurrentMapCache<EffectiveKey, Memo<TypeQualifierAnnotation>>(
+                CACHE_SIZE);
+
+        /** Generation of the annotations on methods and fields, by name */
+        private final ConcurrentHashMap<String, AtomicInteger> nameGenerations = new ConcurrentHashMap<String, AtomicInteger>();
+
+        /** Generation of all annotations */
+        private final AtomicInteger generation = new AtomicInteger();
 
         /**
-         * Map of TypeQualifierValues to maps containing, for each
-         * XMethod/parameter, the effective TypeQualifierAnnotation (if any) for
-         * that XMethod/parameter.
+         * Get the generation of the annotations the type qualifier
+         * annotations of given object depend on. It increases whenever one of
+         * those annotations is updated.
          */
-        private final Map<TypeQualifierValue<?>, DualKeyHashMap<XMethod, Integer, TypeQualifierAnnotation>> effectiveParameterAnnotations = new HashMap<TypeQualifierValue<?>, DualKeyHashMap<XMethod, Integer, TypeQualifierAnnotation>>();
+        int getGeneration(AnnotatedObject o) {
+            int result = generation.get();
+            String name = getInvalidationName(o);
+            if (name != null) {
+                AtomicInteger nameGeneration = nameGenerations.get(name);
+                if (nameGeneration != null) {
+                    result += nameGeneration.get();
+                }
+            }
+            return result;
+        }
+
+        void update(AnnotatedObject o) {
+            String name = getInvalidationName(o);
+            if (name == null) {
+                generation.incrementAndGet();
+                return;
+            }
+            AtomicInteger nameGeneration = nameGenerations.get(name);
+            if (nameGeneration == null) {
+                nameGeneration = new AtomicInteger();
+                AtomicInteger existing = nameGenerations.putIfAbsent(name, nameGeneration);
+                if (existing != null) {
+                    nameGeneration = existing;
+                }
+            }
+            nameGeneration.incrementAndGet();
+        }
     }
 
-    private static ThreadLocal<Data> instance = new ThreadLocal<Data>() {
+    private static final AnalysisLocal<Data> instance = new AnalysisLocal<Data>() {
         @Override
         protected Data initialValue() {
             if (DEBUG) {
@@ -105,28 +205,46 @@ public class TypeQualifierApplications {
     };
 
     public static void clearInstance() {
-        instance.remove();
-    }
-
-    private static Map<TypeQualifierValue<?>, DualKeyHashMap<XMethod, Integer, TypeQualifierAnnotation>> getEffectiveParameterAnnotations() {
-        return instance.get().effectiveParameterAnnotations;
-    }
-
-    private static Map<TypeQualifierValue<?>, Map<AnnotatedObject, TypeQualifierAnnotation>> getEffectiveObjectAnnotations() {
-        return instance.get().effectiveObjectAnnotations;
-    }
-
-    private static HashMap<XMethod, Map<Integer, Collection<AnnotationValue>>> getDirectParameterAnnotations() {
-        return instance.get().directParameterAnnotations;
+        if (Global.getAnalysisCache() != null) {
+            instance.remove();
+        }
     }
 
-    private static Map<AnnotatedObject, Collection<AnnotationValue>> getDirectObjectAnnotations() {
-        return instance.get().directObjectAnnotations;
+    /**
+     * Get the name shared by all methods or fields whose type qualifier
+     * annotations may depend on the annotations of given object. An instance
+     * method inherits annotations from the methods it overrides and the
+     * method it bridges to, all of which have the same name.
+     *
+     * @return the name, or null if the type qualifier annotations of any
+     *         object may depend on the annotations of this one
+     */
+    private static @CheckForNull
+    String getInvalidationName(AnnotatedObject o) {
+        if (o instanceof XMethod) {
+            return ((XMethod) o).getName();
+        }
+        if (o instanceof XField) {
+            return ((XField) o).getName();
+        }
+        return null;
     }
 
+    /**
+     * Called when annotations are added to given object. Memoized type
+     * qualifier annotations which may depend on them are recomputed when
+     * next asked for: those of methods and fields with the same name, or all
+     * of them for other kinds of objects.
+     *
+     * @param object
+     *            an AnnotatedObject whose annotations changed
+     */
     public static void updateAnnotations(AnnotatedObject object) {
-        // TODO: Be smarter. Can we do something other than clear everything?
-        clearInstance();
+        if (Global.getAnalysisCache() == null) {
+            // Nothing is memoized outside of an analysis
+            return;
+        }
+        instance.get().update(object);
     }
 
     /**
@@ -146,18 +264,20 @@ public class TypeQualifierApplications {
      *         applied to this AnnotatedObject
      */
     private static Collection<AnnotationValue> getDirectAnnotation(AnnotatedObject m) {
-        Collection<AnnotationValue> result = getDirectObjectAnnotations().get(m);
-        if (result != null) {
-            return result;
+        Data data = instance.get();
+        int generation = data.getGeneration(m);
+        Memo<Collection<AnnotationValue>> memo = data.directObjectAnnotations.get(m);
+        if (memo != null && memo.generation == generation) {
+            return memo.value;
         }
         if (m.getAnnotationDescriptors().isEmpty()) {
             return Collections.<AnnotationValue> emptyList();
         }
-        result = TypeQualifierResolver.resolveTypeQualifiers(m.getAnnotations());
+        Collection<AnnotationValue> result = TypeQualifierResolver.resolveTypeQualifiers(m.getAnnotations());
         if (result.size() == 0) {
             result = Collections.<AnnotationValue> emptyList();
         }
-        getDirectObjectAnnotations().put(m, result);
+        data.directObjectAnnotations.put(m, new Memo<Collection<AnnotationValue>>(result, generation));
         return result;
     }
 
@@ -172,9 +292,13 @@ public class TypeQualifierApplications {
      *         applied to this parameter
      */
     private static Collection<AnnotationValue> getDirectAnnotation(XMethod m, int parameter) {
-        HashMap<XMethod, Map<Integer, Collection<AnnotationValue>>> directParameterAnnotations = getDirectParameterAnnotations();
-        Map<Integer, Collection<AnnotationValue>> map = directParameterAnnotations.get(m);
-        if (map == null) {
+        Data data = instance.get();
+        int generation = data.getGeneration(m);
+        Memo<Map<Integer, Collection<AnnotationValue>>> memo = data.directParameterAnnotations.get(m);
+        Map<Integer, Collection<AnnotationValue>> map;
+        if (memo != null && memo.generation == generation) {
+            map = memo.value;
+        } else {
             int n = m.getNumParams();
             if (m.isVarArgs())
             {
@@ -190,7 +314,7 @@ public class TypeQualifierApplications {
             if (map.isEmpty()) {
                 map = Collections.emptyMap();
             }
-            directParameterAnnotations.put(m, map);
+            data.directParameterAnnotations.put(m, new Memo<Map<Integer, Collection<AnnotationValue>>>(map, generation));
         }
 
         Collection<AnnotationValue> result = map.get(parameter);
@@ -596,17 +720,16 @@ public class TypeQualifierApplications {
     private static TypeQualifierAnnotation computeEffectiveTypeQualifierAnnotation(TypeQualifierValue<?> typeQualifierValue,
             AnnotatedObject o) {
 
-        Map<AnnotatedObject, TypeQualifierAnnotation> map = getEffectiveObjectAnnotations().get(typeQualifierValue);
-        if (map == null) {
-            map = new HashMap<AnnotatedObject, TypeQualifierAnnotation>();
-            getEffectiveObjectAnnotations().put(typeQualifierValue, map);
-        }
+        Data data = instance.get();
+        EffectiveKey key = new EffectiveKey(typeQualifierValue, o, -1);
+        int generation = data.getGeneration(o);
+        Memo<TypeQualifierAnnotation> memo = data.effectiveAnnotations.get(key);
 
         // Check cached answer
         TypeQualifierAnnotation result;
 
-        if (map.containsKey(o)) {
-            result = map.get(o);
+        if (memo != null && memo.generation == generation) {
+            result = memo.value;
         } else {
             if (DEBUG) {
                 System.out.println("Looking up application of " + typeQualifierValue + " on " + o);
@@ -636,7 +759,7 @@ public class TypeQualifierApplications {
 
             // Cache computed answer
             result = tqa;
-            map.put(o, result);
+            data.effectiveAnnotations.put(key, new Memo<TypeQualifierAnnotation>(result, generation));
             if (DEBUG && result != null) {
                 System.out.println("  => Answer: " + result.when + " on " + o);
             }
@@ -795,20 +918,15 @@ public class TypeQualifierApplications {
                         + typeQualifierValue.value.getClass().toString() + ")");
             }
         }
-        Map<TypeQualifierValue<?>, DualKeyHashMap<XMethod, Integer, TypeQualifierAnnotation>> effectiveParameterAnnotations = getEffectiveParameterAnnotations();
-        DualKeyHashMap<XMethod, Integer, TypeQualifierAnnotation> map = effectiveParameterAnnotations.get(typeQualifierValue);
-        if (map == null) {
-            if (DEBUG) {
-                System.out.println("computeEffectiveTypeQualifierAnnotation: Creating map for " + typeQualifierValue);
-            }
-            map = new DualKeyHashMap<XMethod, Integer, TypeQualifierAnnotation>();
-            effectiveParameterAnnotations.put(typeQualifierValue, map);
-        }
+        Data data = instance.get();
+        EffectiveKey key = new EffectiveKey(typeQualifierValue, xmethod, parameter);
+        int generation = data.getGeneration(xmethod);
+        Memo<TypeQualifierAnnotation> memo = data.effectiveAnnotations.get(key);
 
         // Check cached answer
         TypeQualifierAnnotation result;
-        if (map.containsKey(xmethod, parameter)) {
-            result = map.get(xmethod, parameter);
+        if (memo != null && memo.generation == generation) {
+            result = memo.value;
         } else {
             if (DEBUG) {
                 System.out.println("Looking up application of " + typeQualifierValue + " on " + xmethod + " parameter "
@@ -889,7 +1007,7 @@ public class TypeQualifierApplications {
 
             // Cache answer
             result = tqa;
-            map.put(xmethod, parameter, result);
+            data.effectiveAnnotations.put(key, new Memo<TypeQualifierAnnotation>(result, generation));
 
             if (DEBUG) {
                 if (result == null) {
@@ -900,10 +1018,6 @@ public class TypeQualifierApplications {
             }
         }
 
-        if (!map.containsKey(xmethod, parameter)) {
-            throw new IllegalStateException("Did not populate cache?");
-        }
-
         // Return cached answer
         return result;
     }
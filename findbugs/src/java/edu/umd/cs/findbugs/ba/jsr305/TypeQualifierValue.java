@@ -34,6 +34,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.meta.TypeQualifierValidator;
 import javax.annotation.meta.When;
 
+import edu.umd.cs.findbugs.AnalysisLocal;
 import edu.umd.cs.findbugs.SystemProperties;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.MissingClassException;
@@ -236,19 +237,24 @@ public class TypeQualifierValue<A extends Annotation> {
         ClassData data = Global.getAnalysisCache().getClassAnalysis(ClassData.class, d);
         return data.getData();
     }
+    /**
+     * The TypeQualifierValues of an analysis, shared by all of its threads.
+     */
     static class Data {
         /**
-         * Cache in which constructed TypeQualifierValues are interned.
+         * Cache in which constructed TypeQualifierValues are interned. Guarded
+         * by the Data object.
          */
-        DualKeyHashMap<ClassDescriptor, Object, TypeQualifierValue<?>> typeQualifierMap = new DualKeyHashMap<ClassDescriptor, Object, TypeQualifierValue<?>>();
+        final DualKeyHashMap<ClassDescriptor, Object, TypeQualifierValue<?>> typeQualifierMap = new DualKeyHashMap<ClassDescriptor, Object, TypeQualifierValue<?>>();
 
         /**
-         * Set of all known TypeQualifierValues.
+         * Set of all known TypeQualifierValues. Replaced rather than modified,
+         * so that it can be read without locking.
          */
-        Set<TypeQualifierValue<?>> allKnownTypeQualifiers = new HashSet<TypeQualifierValue<?>>();
+        volatile Set<TypeQualifierValue<?>> allKnownTypeQualifiers = Collections.emptySet();
     }
 
-    private static ThreadLocal<Data> instance = new ThreadLocal<Data>() {
+    private static final AnalysisLocal<Data> instance = new AnalysisLocal<Data>() {
         @Override
         protected Data initialValue() {
             return new Data();
@@ -256,7 +262,9 @@ public class TypeQualifierValue<A extends Annotation> {
     };
 
     public static void clearInstance() {
-        instance.remove();
+        if (Global.getAnalysisCache() != null) {
+            instance.remove();
+        }
     }
 
     public boolean canValidate(@CheckForNull Object constantValue) {
@@ -296,15 +304,28 @@ public class TypeQualifierValue<A extends Annotation> {
     @SuppressWarnings("rawtypes")
     public static @Nonnull
     TypeQualifierValue<?> getValue(ClassDescriptor desc, @CheckForNull  Object value) {
-        DualKeyHashMap<ClassDescriptor, Object, TypeQualifierValue<?>> map = instance.get().typeQualifierMap;
-        TypeQualifierValue<?> result = map.get(desc, value);
+        Data data = instance.get();
+        TypeQualifierValue<?> result;
+        synchronized (data) {
+            result = data.typeQualifierMap.get(desc, value);
+        }
         if (result != null) {
             return result;
         }
-        result = new TypeQualifierValue(desc, value);
-        map.put(desc, value, result);
-        instance.get().allKnownTypeQualifiers.add(result);
-        return result;
+        // Constructing the value may load classes, so don't hold the lock
+        TypeQualifierValue<?> created = new TypeQualifierValue(desc, value);
+        synchronized (data) {
+            result = data.typeQualifierMap.get(desc, value);
+            if (result != null) {
+                // Another thread got there first
+                return result;
+            }
+            data.typeQualifierMap.put(desc, value, created);
+            Set<TypeQualifierValue<?>> allKnownTypeQualifiers = new HashSet<TypeQualifierValue<?>>(data.allKnownTypeQualifiers);
+            allKnownTypeQualifiers.add(created);
+            data.allKnownTypeQualifiers = allKnownTypeQualifiers;
+        }
+        return created;
     }
     @SuppressWarnings("unchecked")
     public static @Nonnull <A extends Annotation>
@@ -634,8 +634,11 @@ IsNullValueAnalysisFeatures {
     @Override
     protected void mergeValues(IsNullValueFrame otherFrame, IsNullValueFrame resultFrame, int slot)
             throws DataflowAnalysisException {
-        IsNullValue value = IsNullValue.merge(resultFrame.getValue(slot), otherFrame.getValue(slot));
-        resultFrame.setValue(slot, value);
+        IsNullValue resultValue = resultFrame.getValue(slot);
+        IsNullValue value = IsNullValue.merge(resultValue, otherFrame.getValue(slot));
+        if (value != resultValue) {
+            resultFrame.setValue(slot, value);
+        }
     }
 
     /**
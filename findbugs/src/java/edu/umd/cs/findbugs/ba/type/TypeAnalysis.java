@@ -673,6 +673,13 @@ public class TypeAnalysis extends FrameDataflowAnalysis<Type, TypeFrame> impleme
 
         Type type2 = resultFrame.getValue(slot);
         Type type1 = otherFrame.getValue(slot);
+        if (type1 == type2) {
+            // Merging a type with itself leaves it unchanged
+            if (resultFrame.isExact(slot) && !otherFrame.isExact(slot)) {
+                resultFrame.setExact(slot, false);
+            }
+            return;
+        }
         Type value = typeMerger.mergeTypes(type2, type1);
         resultFrame.setValue(slot, value);
 
@@ -38,7 +38,7 @@ import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.FieldSummary;
 import edu.umd.cs.findbugs.ba.Frame;
 import edu.umd.cs.findbugs.ba.XField;
-import edu.umd.cs.findbugs.util.Util;
+import edu.umd.cs.findbugs.util.PersistentHashMap;
 
 /**
  * A dataflow value representing a Java stack frame with value number
@@ -52,50 +52,26 @@ public class ValueNumberFrame extends Frame<ValueNumber> implements ValueNumberA
 
     private ArrayList<ValueNumber> mergedValueList;
 
-    private Map<AvailableLoad, ValueNumber[]> availableLoadMap;
+    /**
+     * Persistent: copyFrom() shares the map, and updates copy only the path
+     * to the entries they change
+     */
+    private PersistentHashMap<AvailableLoad, ValueNumber[]> availableLoadMap;
 
     private Map<AvailableLoad, ValueNumber> mergedLoads;
 
-    private Map<ValueNumber, AvailableLoad> previouslyKnownAs;
+    private PersistentHashMap<ValueNumber, AvailableLoad> previouslyKnownAs;
 
     public boolean phiNodeForLoads;
 
     private static final boolean USE_WRITTEN_OUTSIDE_OF_CONSTRUCTOR = true;
 
-    static int constructedUnmodifiableMap;
-
-    static int reusedMap;
-
-    static int createdEmptyMap;
-
-    static int madeImmutableMutable;
-
-    static int reusedMutableMap;
-
-    static {
-        Util.runLogAtShutdown(new Runnable() {
-
-            @Override
-            public void run() {
-                System.err.println("Getting updatable previously known as:");
-                System.err.println("  " + createdEmptyMap + " created empty map");
-                System.err.println("  " + madeImmutableMutable + " made immutable map mutable");
-                System.err.println("  " + reusedMutableMap + " reused mutable map");
-                System.err.println("Copying map:");
-                System.err.println("  " + constructedUnmodifiableMap + " made mutable map unmodifiable");
-                System.err.println("  " + reusedMap + " reused immutable map");
-                System.err.println();
-
-            }
-        });
-    }
-
     public ValueNumberFrame(int numLocals) {
         super(numLocals);
         if (REDUNDANT_LOAD_ELIMINATION) {
-            setAvailableLoadMap(Collections.<AvailableLoad, ValueNumber[]> emptyMap());
+            setAvailableLoadMap(PersistentHashMap.<AvailableLoad, ValueNumber[]> empty());
             setMergedLoads(Collections.<AvailableLoad, ValueNumber> emptyMap());
-            setPreviouslyKnownAs(Collections.<ValueNumber, AvailableLoad> emptyMap());
+            setPreviouslyKnownAs(PersistentHashMap.<ValueNumber, AvailableLoad> empty());
         }
     }
 
@@ -153,10 +129,10 @@ public class ValueNumberFrame extends Frame<ValueNumber> implements ValueNumberA
      */
     public void addAvailableLoad(AvailableLoad availableLoad, @Nonnull ValueNumber[] value) {
         Objects.requireNonNull(value);
-        getUpdateableAvailableLoadMap().put(availableLoad, value);
+        setAvailableLoadMap(getAvailableLoadMap().plus(availableLoad, value));
 
         for (ValueNumber v : value) {
-            getUpdateablePreviouslyKnownAs().put(v, availableLoad);
+            setPreviouslyKnownAs(getPreviouslyKnownAs().plus(v, availableLoad));
             if (RLE_DEBUG) {
                 System.out.println("Adding available load of " + availableLoad + " for " + v + " to "
                         + System.identityHashCode(this));
@@ -164,12 +140,6 @@ public class ValueNumberFrame extends Frame<ValueNumber> implements ValueNumberA
         }
     }
 
-    private static <K, V> void removeAllKeys(Map<K, V> map, Iterable<K> removeMe) {
-        for (K k : removeMe) {
-            map.remove(k);
-        }
-    }
-
     /**
      * Kill all loads of given field.
      *
@@ -180,7 +150,7 @@ public class ValueNumberFrame extends Frame<ValueNumber> implements ValueNumberA
         if (!REDUNDANT_LOAD_ELIMINATION) {
             return;
         }
-        HashSet<AvailableLoad> killMe = new HashSet<AvailableLoad>();
+        ArrayList<AvailableLoad> killMe = new ArrayList<AvailableLoad>();
         for (AvailableLoad availableLoad : getAvailableLoadMap().keySet()) {
             if (availableLoad.getField().equals(field)) {
                 if (RLE_DEBUG) {
@@ -205,7 +175,7 @@ public class ValueNumberFrame extends Frame<ValueNumber> implements ValueNumberA
             return;
         }
         FieldSummary fieldSummary = AnalysisContext.currentAnalysisContext().getFieldSummary();
-        HashSet<AvailableLoad> killMe = new HashSet<AvailableLoad>();
+        ArrayList<AvailableLoad> killMe = new ArrayList<AvailableLoad>();
         for (AvailableLoad availableLoad : getAvailableLoadMap().keySet()) {
             XField field = availableLoad.getField();
             if ((!primitiveOnly || !field.isReferenceType()) && (field.isVolatile() || !field.isFinal()
@@ -225,7 +195,7 @@ public class ValueNumberFrame extends Frame<ValueNumber> implements ValueNumberA
             return;
         }
         AvailableLoad myLoad = getLoad(v);
-        HashSet<AvailableLoad> killMe = new HashSet<AvailableLoad>();
+        ArrayList<AvailableLoad> killMe = new ArrayList<AvailableLoad>();
         for (AvailableLoad availableLoad : getAvailableLoadMap().keySet()) {
             if (!availableLoad.getField().isFinal() && !availableLoad.equals(myLoad)) {
                 if (RLE_DEBUG) {
@@ -247,7 +217,7 @@ public class ValueNumberFrame extends Frame<ValueNumber> implements ValueNumberA
         }
         FieldSummary fieldSummary = AnalysisContext.currentAnalysisContext().getFieldSummary();
 
-        HashSet<AvailableLoad> killMe = new HashSet<AvailableLoad>();
+        ArrayList<AvailableLoad> killMe = new ArrayList<AvailableLoad>();
         for (AvailableLoad availableLoad : getAvailableLoadMap().keySet()) {
             if (availableLoad.getReference() != v) {
                 continue;
@@ -267,7 +237,7 @@ public class ValueNumberFrame extends Frame<ValueNumber> implements ValueNumberA
         if (!REDUNDANT_LOAD_ELIMINATION) {
             return;
         }
-        HashSet<AvailableLoad> killMe = new HashSet<AvailableLoad>();
+        ArrayList<AvailableLoad> killMe = new ArrayList<AvailableLoad>();
         for (AvailableLoad availableLoad : getAvailableLoadMap().keySet()) {
 
             if (fieldsToKill.contains(availableLoad.getField())) {
@@ -284,7 +254,7 @@ public class ValueNumberFrame extends Frame<ValueNumber> implements ValueNumberA
         }
         String packageName = extractPackageName(className);
 
-        HashSet<AvailableLoad> killMe = new HashSet<AvailableLoad>();
+        ArrayList<AvailableLoad> killMe = new ArrayList<AvailableLoad>();
         for (AvailableLoad availableLoad : getAvailableLoadMap().keySet()) {
 
             XField field = availableLoad.getField();
@@ -298,9 +268,9 @@ public class ValueNumberFrame extends Frame<ValueNumber> implements ValueNumberA
         killAvailableLoads(killMe);
     }
 
-    private void killAvailableLoads(HashSet<AvailableLoad> killMe) {
+    private void killAvailableLoads(ArrayList<AvailableLoad> killMe) {
         if (killMe.size() > 0) {
-            removeAllKeys(getUpdateableAvailableLoadMap(), killMe);
+            setAvailableLoadMap(getAvailableLoadMap().minusAll(killMe));
         }
     }
 
@@ -320,9 +290,9 @@ public class ValueNumberFrame extends Frame<ValueNumber> implements ValueNumberA
             boolean changed = false;
             if (other.isBottom()) {
                 changed = !this.getAvailableLoadMap().isEmpty();
-                setAvailableLoadMap(Collections.<AvailableLoad, ValueNumber[]> emptyMap());
+                setAvailableLoadMap(PersistentHashMap.<AvailableLoad, ValueNumber[]> empty());
             } else if (!other.isTop()) {
-                for (Map.Entry<AvailableLoad, ValueNumber[]> e : getUpdateableAvailableLoadMap().entrySet()) {
+                for (Map.Entry<AvailableLoad, ValueNumber[]> e : getAvailableLoadMap().entrySet()) {
                     AvailableLoad load = e.getKey();
                     ValueNumber[] myVN = e.getValue();
                     ValueNumber[] otherVN = other.getAvailableLoadMap().get(load);
@@ -368,7 +338,7 @@ public class ValueNumberFrame extends Frame<ValueNumber> implements ValueNumberA
                                         + " x " + Arrays.toString(otherVN) + " in " + System.identityHashCode(this));
                             }
                             changed = true;
-                            e.setValue(new ValueNumber[] { phi });
+                            setAvailableLoadMap(getAvailableLoadMap().plus(load, new ValueNumber[] { phi }));
                         } else {
                             if (RLE_DEBUG) {
                                 System.out.println("Reusing phi node : " + phi + " for " + load + " from "
@@ -376,7 +346,7 @@ public class ValueNumberFrame extends Frame<ValueNumber> implements ValueNumberA
                                         + System.identityHashCode(this));
                             }
                             if (myVN.length != 1 || !myVN[0].equals(phi)) {
-                                e.setValue(new ValueNumber[] { phi });
+                                setAvailableLoadMap(getAvailableLoadMap().plus(load, new ValueNumber[] { phi }));
                             }
                         }
 
@@ -384,13 +354,9 @@ public class ValueNumberFrame extends Frame<ValueNumber> implements ValueNumberA
 
                 }
             }
-            Map<ValueNumber, AvailableLoad> previouslyKnownAsOther = other.getPreviouslyKnownAs();
+            PersistentHashMap<ValueNumber, AvailableLoad> previouslyKnownAsOther = other.getPreviouslyKnownAs();
             if (getPreviouslyKnownAs() != previouslyKnownAsOther && previouslyKnownAsOther.size() != 0) {
-                if (getPreviouslyKnownAs().size() == 0) {
-                    assignPreviouslyKnownAs(other);
-                } else {
-                    getUpdateablePreviouslyKnownAs().putAll(previouslyKnownAsOther);
-                }
+                setPreviouslyKnownAs(getPreviouslyKnownAs().plusAll(previouslyKnownAsOther));
             }
             if (changed) {
                 this.phiNodeForLoads = true;
@@ -428,39 +394,14 @@ public class ValueNumberFrame extends Frame<ValueNumber> implements ValueNumberA
         }
 
         if (REDUNDANT_LOAD_ELIMINATION) {
-            assignAvailableLoadMap((ValueNumberFrame) other);
-            assignPreviouslyKnownAs((ValueNumberFrame) other);
+            ValueNumberFrame otherFrame = (ValueNumberFrame) other;
+            setAvailableLoadMap(otherFrame.getAvailableLoadMap());
+            setPreviouslyKnownAs(otherFrame.getPreviouslyKnownAs());
         }
 
         super.copyFrom(other);
     }
 
-    private void assignAvailableLoadMap(ValueNumberFrame other) {
-        Map<AvailableLoad, ValueNumber[]> availableLoadMapOther = other.getAvailableLoadMap();
-        if (availableLoadMapOther instanceof HashMap) {
-            availableLoadMapOther = Collections.<AvailableLoad, ValueNumber[]> unmodifiableMap(availableLoadMapOther);
-            other.setAvailableLoadMap(availableLoadMapOther);
-            setAvailableLoadMap(availableLoadMapOther);
-            constructedUnmodifiableMap++;
-        } else {
-            setAvailableLoadMap(availableLoadMapOther);
-            reusedMap++;
-        }
-    }
-
-    private void assignPreviouslyKnownAs(ValueNumberFrame other) {
-        Map<ValueNumber, AvailableLoad> previouslyKnownAsOther = other.getPreviouslyKnownAs();
-        if (previouslyKnownAsOther instanceof HashMap) {
-            previouslyKnownAsOther = Collections.<ValueNumber, AvailableLoad> unmodifiableMap(previouslyKnownAsOther);
-            other.setPreviouslyKnownAs(previouslyKnownAsOther);
-            setPreviouslyKnownAs(previouslyKnownAsOther);
-            constructedUnmodifiableMap++;
-        } else {
-            setPreviouslyKnownAs(previouslyKnownAsOther);
-            reusedMap++;
-        }
-    }
-
     @Override
     public String toString() {
         String frameValues = super.toString();
@@ -597,20 +538,11 @@ public class ValueNumberFrame extends Frame<ValueNumber> implements ValueNumberA
         return result;
     }
 
-    private void setAvailableLoadMap(Map<AvailableLoad, ValueNumber[]> availableLoadMap) {
+    private void setAvailableLoadMap(PersistentHashMap<AvailableLoad, ValueNumber[]> availableLoadMap) {
         this.availableLoadMap = availableLoadMap;
     }
 
-    private Map<AvailableLoad, ValueNumber[]> getAvailableLoadMap() {
-        return availableLoadMap;
-    }
-
-    private Map<AvailableLoad, ValueNumber[]> getUpdateableAvailableLoadMap() {
-        if (!(availableLoadMap instanceof HashMap)) {
-            HashMap<AvailableLoad, ValueNumber[]> tmp = new HashMap<AvailableLoad, ValueNumber[]>(availableLoadMap.size() + 4);
-            tmp.putAll(availableLoadMap);
-            availableLoadMap = tmp;
-        }
+    private PersistentHashMap<AvailableLoad, ValueNumber[]> getAvailableLoadMap() {
         return availableLoadMap;
     }
 
@@ -630,27 +562,11 @@ public class ValueNumberFrame extends Frame<ValueNumber> implements ValueNumberA
         return mergedLoads;
     }
 
-    private void setPreviouslyKnownAs(Map<ValueNumber, AvailableLoad> previouslyKnownAs) {
+    private void setPreviouslyKnownAs(PersistentHashMap<ValueNumber, AvailableLoad> previouslyKnownAs) {
         this.previouslyKnownAs = previouslyKnownAs;
     }
 
-    private Map<ValueNumber, AvailableLoad> getPreviouslyKnownAs() {
-        return previouslyKnownAs;
-    }
-
-    private Map<ValueNumber, AvailableLoad> getUpdateablePreviouslyKnownAs() {
-        if (previouslyKnownAs.size() == 0) {
-            previouslyKnownAs = new HashMap<ValueNumber, AvailableLoad>(4);
-            createdEmptyMap++;
-        } else if (!(previouslyKnownAs instanceof HashMap)) {
-            HashMap<ValueNumber, AvailableLoad> tmp = new HashMap<ValueNumber, AvailableLoad>(previouslyKnownAs.size() + 4);
-            tmp.putAll(previouslyKnownAs);
-            previouslyKnownAs = tmp;
-            madeImmutableMutable++;
-        } else {
-            reusedMutableMap++;
-        }
-
+    private PersistentHashMap<ValueNumber, AvailableLoad> getPreviouslyKnownAs() {
         return previouslyKnownAs;
     }
 
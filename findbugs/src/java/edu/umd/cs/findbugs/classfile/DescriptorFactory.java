@@ -20,8 +20,9 @@
 package edu.umd.cs.findbugs.classfile;
 
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -37,11 +38,16 @@ import edu.umd.cs.findbugs.classfile.analysis.MethodInfo;
 import edu.umd.cs.findbugs.internalAnnotations.DottedClassName;
 import edu.umd.cs.findbugs.internalAnnotations.SlashedClassName;
 import edu.umd.cs.findbugs.util.ClassName;
-import edu.umd.cs.findbugs.util.MapCache;
+import edu.umd.cs.findbugs.util.ConcurrentMapCache;
 
 /**
  * Factory for creating ClassDescriptors, MethodDescriptors, and
  * FieldDescriptors.
+ * <p>
+ * The factory is thread safe. Each thread has its own instance by default;
+ * threads which take part in an analysis share the instance of the thread
+ * running the analysis (see {@link #setInstanceForCurrentThread}), so that
+ * all of them create the same canonical descriptors.
  *
  * @author David Hovemeyer
  */
@@ -53,33 +59,32 @@ public class DescriptorFactory {
         }
     };
 
-    private final Map<String, ClassDescriptor> classDescriptorMap;
+    private final ConcurrentMap<String, ClassDescriptor> classDescriptorMap;
 
-    private final Map<String, ClassDescriptor> dottedClassDescriptorMap;
+    private final ConcurrentMap<String, ClassDescriptor> dottedClassDescriptorMap;
 
-    private final Map<MethodDescriptor, MethodDescriptor> methodDescriptorMap;
+    private final ConcurrentMap<MethodDescriptor, MethodDescriptor> methodDescriptorMap;
 
-    private final Map<FieldDescriptor, FieldDescriptor> fieldDescriptorMap;
+    private final ConcurrentMap<FieldDescriptor, FieldDescriptor> fieldDescriptorMap;
 
     private DescriptorFactory() {
-        this.classDescriptorMap = new HashMap<String, ClassDescriptor>();
-        this.dottedClassDescriptorMap = new HashMap<String, ClassDescriptor>();
-        this.methodDescriptorMap = new HashMap<MethodDescriptor, MethodDescriptor>();
-        this.fieldDescriptorMap = new HashMap<FieldDescriptor, FieldDescriptor>();
+        this.classDescriptorMap = new ConcurrentHashMap<String, ClassDescriptor>();
+        this.dottedClassDescriptorMap = new ConcurrentHashMap<String, ClassDescriptor>();
+        this.methodDescriptorMap = new ConcurrentHashMap<MethodDescriptor, MethodDescriptor>();
+        this.fieldDescriptorMap = new ConcurrentHashMap<FieldDescriptor, FieldDescriptor>();
     }
 
-    private final MapCache<String, String> stringCache = new MapCache<String, String>(10000);
+    private final ConcurrentMapCache<String, String> stringCache = new ConcurrentMapCache<String, String>(10000);
 
     public static String canonicalizeString(@CheckForNull String s) {
         if (s == null) {
             return s;
         }
         DescriptorFactory df =  instanceThreadLocal.get();
-        String cached = df.stringCache.get(s);
+        String cached = df.stringCache.putIfAbsent(s, s);
         if (cached != null) {
             return cached;
         }
-        df.stringCache.put(s, s);
         return s;
     }
 
@@ -92,6 +97,17 @@ public class DescriptorFactory {
         return instanceThreadLocal.get();
     }
 
+    /**
+     * Make the current thread use given DescriptorFactory, typically the
+     * instance of the thread which started it to help with an analysis.
+     *
+     * @param descriptorFactory
+     *            the DescriptorFactory to use
+     */
+    public static void setInstanceForCurrentThread(DescriptorFactory descriptorFactory) {
+        instanceThreadLocal.set(descriptorFactory);
+    }
+
     public static void clearInstance() {
         instanceThreadLocal.remove();
     }
@@ -126,7 +142,10 @@ public class DescriptorFactory {
         ClassDescriptor classDescriptor = classDescriptorMap.get(className);
         if (classDescriptor == null) {
             classDescriptor = new ClassDescriptor(className);
-            classDescriptorMap.put(className, classDescriptor);
+            ClassDescriptor existing = classDescriptorMap.putIfAbsent(className, classDescriptor);
+            if (existing != null) {
+                classDescriptor = existing;
+            }
         }
         return classDescriptor;
     }
@@ -143,6 +162,8 @@ public class DescriptorFactory {
         ClassDescriptor classDescriptor = dottedClassDescriptorMap.get(dottedClassName);
         if (classDescriptor == null) {
             classDescriptor = getClassDescriptor(dottedClassName.replace('.', '/'));
+            // The slashed map makes the descriptor canonical, so it doesn't
+            // matter which thread puts it here
             dottedClassDescriptorMap.put(dottedClassName, classDescriptor);
         }
         return classDescriptor;
@@ -173,9 +194,8 @@ public class DescriptorFactory {
             throw new NullPointerException("className must be nonnull");
         }
         MethodDescriptor methodDescriptor = new MethodDescriptor(className, name, signature, isStatic);
-        MethodDescriptor existing = methodDescriptorMap.get(methodDescriptor);
+        MethodDescriptor existing = methodDescriptorMap.putIfAbsent(methodDescriptor, methodDescriptor);
         if (existing == null) {
-            methodDescriptorMap.put(methodDescriptor, methodDescriptor);
             existing = methodDescriptor;
         }
         return existing;
@@ -236,9 +256,8 @@ public class DescriptorFactory {
      */
     public FieldDescriptor getFieldDescriptor(@SlashedClassName String className, String name, String signature, boolean isStatic) {
         FieldDescriptor fieldDescriptor = new FieldDescriptor(className, name, signature, isStatic);
-        FieldDescriptor existing = fieldDescriptorMap.get(fieldDescriptor);
+        FieldDescriptor existing = fieldDescriptorMap.putIfAbsent(fieldDescriptor, fieldDescriptor);
         if (existing == null) {
-            fieldDescriptorMap.put(fieldDescriptor, fieldDescriptor);
             existing = fieldDescriptor;
         }
         return existing;
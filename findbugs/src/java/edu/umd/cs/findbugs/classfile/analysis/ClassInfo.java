@@ -36,6 +36,7 @@ import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.XClass;
 import edu.umd.cs.findbugs.ba.XField;
 import edu.umd.cs.findbugs.ba.XMethod;
+import edu.umd.cs.findbugs.ba.jsr305.TypeQualifierApplications;
 import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
 import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 import edu.umd.cs.findbugs.classfile.DescriptorFactory;
@@ -441,6 +442,7 @@ public class ClassInfo extends ClassNameAndSuperclassInfo implements XClass {
         HashMap<ClassDescriptor, AnnotationValue> updatedMap = new HashMap<ClassDescriptor, AnnotationValue>(classAnnotations);
         updatedMap.put(annotationValue.getAnnotationClass(), annotationValue);
         classAnnotations = Util.immutableMap(updatedMap);
+        TypeQualifierApplications.updateAnnotations(this);
     }
 
     @Override
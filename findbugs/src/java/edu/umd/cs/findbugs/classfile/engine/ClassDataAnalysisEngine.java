@@ -31,6 +31,8 @@ import edu.umd.cs.findbugs.classfile.MissingClassException;
 import edu.umd.cs.findbugs.classfile.RecomputableClassAnalysisEngine;
 import edu.umd.cs.findbugs.classfile.ResourceNotFoundException;
 import edu.umd.cs.findbugs.classfile.analysis.ClassData;
+import edu.umd.cs.findbugs.classfile.impl.DelegatingCodeBaseEntry;
+import edu.umd.cs.findbugs.classfile.impl.MappedZipFileCodeBaseEntry;
 import edu.umd.cs.findbugs.classfile.impl.ZipInputStreamCodeBaseEntry;
 import edu.umd.cs.findbugs.io.IO;
 
@@ -61,9 +63,21 @@ public class ClassDataAnalysisEngine extends RecomputableClassAnalysisEngine<Cla
             }
         }
 
+        ICodeBaseEntry realEntry = codeBaseEntry;
+        while (realEntry instanceof DelegatingCodeBaseEntry) {
+            realEntry = ((DelegatingCodeBaseEntry) realEntry).getDelegateCodeBaseEntry();
+        }
+
         byte[] data;
-        if (codeBaseEntry instanceof ZipInputStreamCodeBaseEntry) {
-            data = ((ZipInputStreamCodeBaseEntry) codeBaseEntry).getBytes();
+        if (realEntry instanceof ZipInputStreamCodeBaseEntry) {
+            data = ((ZipInputStreamCodeBaseEntry) realEntry).getBytes();
+        } else if (realEntry instanceof MappedZipFileCodeBaseEntry) {
+            // Copied or inflated straight from the mapped zip file
+            try {
+                data = ((MappedZipFileCodeBaseEntry) realEntry).getBytes();
+            } catch (IOException e) {
+                throw new MissingClassException(descriptor, e);
+            }
         } else {
             try {
                 // Create a ByteArrayOutputStream to capture the class data
@@ -19,6 +19,7 @@
 
 package edu.umd.cs.findbugs.classfile.engine.bcel;
 
+import java.io.DataInputStream;
 import java.io.IOException;
 
 import org.apache.bcel.Repository;
@@ -55,7 +56,10 @@ public class JavaClassAnalysisEngine implements IClassAnalysisEngine<JavaClass>
     public JavaClass analyze(IAnalysisCache analysisCache, ClassDescriptor descriptor) throws CheckedAnalysisException {
         try {
             ClassData classData = analysisCache.getClassAnalysis(ClassData.class, descriptor);
-            JavaClass javaClass = new ClassParser(classData.getInputStream(), descriptor.toResourceName()).parse();
+            // The class data is already in memory: passing a DataInputStream
+            // keeps BCEL from copying it through a BufferedInputStream
+            JavaClass javaClass = new ClassParser(new DataInputStream(classData.getInputStream()),
+                    descriptor.toResourceName()).parse();
 
             // Make sure that the JavaClass object knows the repository
             // it was loaded from.
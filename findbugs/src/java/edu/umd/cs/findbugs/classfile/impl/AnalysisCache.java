@@ -21,6 +21,7 @@ package edu.umd.cs.findbugs.classfile.impl;
 
 import static java.util.Objects.requireNonNull;
 
+import java.io.PrintStream;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -29,12 +30,8 @@ import java.util.Map;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 
-import org.apache.bcel.classfile.JavaClass;
-import org.apache.bcel.generic.ConstantPoolGen;
-
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.SystemProperties;
-import edu.umd.cs.findbugs.asm.FBClassReader;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.ba.Debug;
@@ -50,27 +47,20 @@ import edu.umd.cs.findbugs.classfile.IMethodAnalysisEngine;
 import edu.umd.cs.findbugs.classfile.MethodDescriptor;
 import edu.umd.cs.findbugs.classfile.UncheckedAnalysisException;
 import edu.umd.cs.findbugs.log.Profiler;
-import edu.umd.cs.findbugs.util.MapCache;
 
 /**
  * Implementation of IAnalysisCache. This object is responsible for registering
- * class and method analysis engines and caching analysis results.
+ * class and method analysis engines and caching analysis results. Results
+ * are discarded as needed to stay within a memory budget, see
+ * {@link AnalysisCacheBudget}.
  *
  * @author David Hovemeyer
  */
 public class AnalysisCache implements IAnalysisCache {
     /**
-     *
+     * Maximum number of ClassContexts to cache.
      */
-    private static final int MAX_JAVACLASS_RESULTS_TO_CACHE = 3000;
-    private static final int MAX_FBCLASSREADER_RESULTS_TO_CACHE = 3000;
-
-    private static final int MAX_CONSTANT_POOL_GEN_RESULTS_TO_CACHE = 500;
-
-    /**
-     * Maximum number of class analysis results to cache.
-     */
-    private static final int MAX_CLASS_RESULTS_TO_CACHE = 5000;
+    private static final int MAX_CLASS_CONTEXT_RESULTS_TO_CACHE = 10;
 
     //    private static final boolean ASSERTIONS_ENABLED = SystemProperties.ASSERTIONS_ENABLED;
 
@@ -89,6 +79,8 @@ public class AnalysisCache implements IAnalysisCache {
 
     private final Map<Class<?>, Object> databaseMap;
 
+    private final AnalysisCacheBudget budget;
+
     private final Map<?, ?> analysisLocals = Collections.synchronizedMap(new HashMap<Object, Object>());
 
     @Override
@@ -162,6 +154,7 @@ public class AnalysisCache implements IAnalysisCache {
         this.databaseFactoryMap = new HashMap<Class<?>, IDatabaseFactory<?>>();
         this.classAnalysisMap = new HashMap<Class<?>, Map<ClassDescriptor, Object>>();
         this.databaseMap = new HashMap<Class<?>, Object>();
+        this.budget = new AnalysisCacheBudget(classAnalysisMap);
     }
 
     @Override
@@ -188,21 +181,26 @@ public class AnalysisCache implements IAnalysisCache {
 
     @SuppressWarnings("unchecked")
     private <E> Map<ClassDescriptor, E> getAllClassAnalysis(Class<E> analysisClass)  {
-        Map<ClassDescriptor, Object> descriptorMap
-        = findOrCreateDescriptorMap(classAnalysisMap, classAnalysisEngineMap,
-                analysisClass);
+        Map<ClassDescriptor, Object> descriptorMap = findOrCreateDescriptorMap(analysisClass);
         return (Map<ClassDescriptor, E>) descriptorMap;
     }
 
     @Override
     public void purgeClassAnalysis(Class<?> analysisClass) {
-        classAnalysisMap.remove(analysisClass);
+        Map<ClassDescriptor, Object> descriptorMap = classAnalysisMap.remove(analysisClass);
+        if (descriptorMap != null) {
+            // release the results from the shared budget
+            descriptorMap.clear();
+        }
     }
 
     /**
      * Cleans up all cached data
      */
     public void dispose(){
+        for (Map<ClassDescriptor, Object> descriptorMap : classAnalysisMap.values()) {
+            descriptorMap.clear();
+        }
         classAnalysisMap.clear();
         classAnalysisEngineMap.clear();
         analysisLocals.clear();
@@ -229,7 +227,7 @@ public class AnalysisCache implements IAnalysisCache {
         if (myMap != null) {
             myMap.putAll(map);
         } else {
-            myMap = createMap(classAnalysisEngineMap, analysisClass);
+            myMap = createMap(analysisClass);
             myMap.putAll(map);
             classAnalysisMap.put(analysisClass, myMap);
         }
@@ -241,9 +239,7 @@ public class AnalysisCache implements IAnalysisCache {
         requireNonNull(classDescriptor, "classDescriptor is null");
         // Get the descriptor->result map for this analysis class,
         // creating if necessary
-        Map<ClassDescriptor, Object> descriptorMap = findOrCreateDescriptorMap(classAnalysisMap,
-                classAnalysisEngineMap,
-                analysisClass);
+        Map<ClassDescriptor, Object> descriptorMap = findOrCreateDescriptorMap(analysisClass);
 
         // See if there is a cached result in the descriptor map
         Object analysisResult = descriptorMap.get(classDescriptor);
@@ -402,50 +398,23 @@ public class AnalysisCache implements IAnalysisCache {
     /**
      * Find or create a descriptor to analysis object map.
      *
-     * @param <DescriptorType>
-     *            type of descriptor used as the map's key type (ClassDescriptor
-     *            or MethodDescriptor)
-     * @param analysisClassToDescriptorMapMap
-     *            analysis class to descriptor map map
-     * @param engineMap
-     *            analysis class to analysis engine map
      * @param analysisClass
      *            the analysis map
      * @return the descriptor to analysis object map
      */
-    private static <DescriptorType> Map<DescriptorType, Object> findOrCreateDescriptorMap(
-            final Map<Class<?>, Map<DescriptorType, Object>> analysisClassToDescriptorMapMap,
-            final Map<Class<?>, ? extends IAnalysisEngine<DescriptorType, ?>> engineMap,
-                    final Class<?> analysisClass) {
-        Map<DescriptorType, Object> descriptorMap = analysisClassToDescriptorMapMap.get(analysisClass);
+    private Map<ClassDescriptor, Object> findOrCreateDescriptorMap(final Class<?> analysisClass) {
+        Map<ClassDescriptor, Object> descriptorMap = classAnalysisMap.get(analysisClass);
         if (descriptorMap == null) {
-            descriptorMap = createMap(engineMap, analysisClass);
-            analysisClassToDescriptorMapMap.put(analysisClass, descriptorMap);
+            descriptorMap = createMap(analysisClass);
+            classAnalysisMap.put(analysisClass, descriptorMap);
         }
         return descriptorMap;
     }
 
-    private static <DescriptorType> Map<DescriptorType, Object> createMap(
-            final Map<Class<?>, ? extends IAnalysisEngine<DescriptorType, ?>> engineMap,
-                    final Class<?> analysisClass) {
-        Map<DescriptorType, Object> descriptorMap;
-        // Create a MapCache that allows the analysis engine to
+    private Map<ClassDescriptor, Object> createMap(final Class<?> analysisClass) {
+        // Create a map that allows the analysis engine to
         // decide that analysis results should be retained indefinitely.
-        IAnalysisEngine<DescriptorType, ?> engine = engineMap.get(analysisClass);
-        if (analysisClass.equals(JavaClass.class)) {
-            descriptorMap = new MapCache<DescriptorType, Object>(MAX_JAVACLASS_RESULTS_TO_CACHE);
-        } else if (analysisClass.equals(FBClassReader.class)) {
-            descriptorMap = new MapCache<DescriptorType, Object>(MAX_FBCLASSREADER_RESULTS_TO_CACHE);
-        } else if (analysisClass.equals(ConstantPoolGen.class)) {
-            descriptorMap = new MapCache<DescriptorType, Object>(MAX_CONSTANT_POOL_GEN_RESULTS_TO_CACHE);
-        } else if (analysisClass.equals(ClassContext.class)) {
-            descriptorMap = new MapCache<DescriptorType, Object>(10);
-        } else if (engine instanceof IClassAnalysisEngine && ((IClassAnalysisEngine<?>) engine).canRecompute()) {
-            descriptorMap = new MapCache<DescriptorType, Object>(MAX_CLASS_RESULTS_TO_CACHE);
-        } else {
-            descriptorMap = new HashMap<DescriptorType, Object>();
-        }
-        return descriptorMap;
+        return budget.createMap(analysisClass, classAnalysisEngineMap.get(analysisClass), MAX_CLASS_CONTEXT_RESULTS_TO_CACHE);
     }
 
     @Override
@@ -516,4 +485,15 @@ public class AnalysisCache implements IAnalysisCache {
     public Profiler getProfiler() {
         return bugReporter.getProjectStats().getProfiler();
     }
+
+    /**
+     * Print statistics about the cached class analysis results: their number
+     * and size, and how often they were found in the cache.
+     *
+     * @param out
+     *            stream to print the statistics to
+     */
+    public void reportStatistics(PrintStream out) {
+        budget.reportStatistics(out);
+    }
 }
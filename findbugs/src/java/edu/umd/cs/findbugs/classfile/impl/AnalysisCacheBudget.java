@@ -0,0 +1,166 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2006-2007 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.classfile.impl;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.CheckForNull;
+
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.generic.ConstantPoolGen;
+
+import edu.umd.cs.findbugs.SystemProperties;
+import edu.umd.cs.findbugs.asm.FBClassReader;
+import edu.umd.cs.findbugs.ba.ClassContext;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.IClassAnalysisEngine;
+import edu.umd.cs.findbugs.classfile.analysis.ClassData;
+import edu.umd.cs.findbugs.classfile.impl.AnalysisCache.AbnormalAnalysisResult;
+import edu.umd.cs.findbugs.classfile.impl.ConcurrentAnalysisCache.PendingResult;
+import edu.umd.cs.findbugs.util.ConcurrentMapCache;
+
+/**
+ * Creates the maps in which an analysis cache keeps class analysis results.
+ * <p>
+ * Results which can be recomputed (and JavaClass objects) count against a
+ * memory budget shared by all analysis classes. The budget is set with the
+ * findbugs.analysiscache.maxMB system property, and defaults to a quarter of
+ * the maximum heap size. The weight of a result is the approximate number of
+ * bytes it retains, estimated from the size of the class file.
+ * <p>
+ * ClassContexts are limited by number instead, since they keep growing as
+ * method analysis results are added to them.
+ */
+final class AnalysisCacheBudget {
+
+    private static final long DEFAULT_MAX_BYTES = Runtime.getRuntime().maxMemory() / 4;
+
+    private static final long MAX_BYTES = SystemProperties.getInt("findbugs.analysiscache.maxMB",
+            (int) (DEFAULT_MAX_BYTES >> 20)) * (1L << 20);
+
+    /**
+     * Class file size assumed if the class data is not cached.
+     */
+    private static final int DEFAULT_CLASS_SIZE = 4096;
+
+    /**
+     * Size of a result which doesn't depend on the size of the class.
+     */
+    private static final int SMALL_RESULT_SIZE = 64;
+
+    private final ConcurrentMapCache.Budget budget = new ConcurrentMapCache.Budget(MAX_BYTES);
+
+    private final Map<Class<?>, ? extends Map<ClassDescriptor, Object>> classAnalysisMap;
+
+    /**
+     * @param classAnalysisMap
+     *            the analysis cache's map of analysis class to result map, in
+     *            which the class data is looked up to weigh results
+     */
+    AnalysisCacheBudget(Map<Class<?>, ? extends Map<ClassDescriptor, Object>> classAnalysisMap) {
+        this.classAnalysisMap = classAnalysisMap;
+    }
+
+    /**
+     * Create the map for results of given analysis class.
+     *
+     * @param analysisClass
+     *            the analysis class
+     * @param engine
+     *            the analysis engine producing the results
+     * @param maxClassContexts
+     *            maximum number of ClassContexts to keep
+     * @return the map
+     */
+    ConcurrentMapCache<ClassDescriptor, Object> createMap(Class<?> analysisClass, @CheckForNull IClassAnalysisEngine<?> engine,
+            int maxClassContexts) {
+        if (analysisClass.equals(ClassContext.class)) {
+            return new ConcurrentMapCache<ClassDescriptor, Object>(maxClassContexts);
+        } else if (analysisClass.equals(JavaClass.class)) {
+            return new ConcurrentMapCache<ClassDescriptor, Object>(budget, new ResultWeigher(6));
+        } else if (analysisClass.equals(ConstantPoolGen.class)) {
+            return new ConcurrentMapCache<ClassDescriptor, Object>(budget, new ResultWeigher(4));
+        } else if (analysisClass.equals(FBClassReader.class) || analysisClass.equals(ClassData.class)) {
+            return new ConcurrentMapCache<ClassDescriptor, Object>(budget, new ResultWeigher(1));
+        } else if (engine != null && engine.canRecompute()) {
+            return new ConcurrentMapCache<ClassDescriptor, Object>(budget, new ResultWeigher(2));
+        } else {
+            return new ConcurrentMapCache<ClassDescriptor, Object>();
+        }
+    }
+
+    /**
+     * Weighs a result as a multiple of the size of the class file.
+     */
+    private class ResultWeigher implements ConcurrentMapCache.Weigher<ClassDescriptor, Object> {
+        private final int classSizeMultiplier;
+
+        ResultWeigher(int classSizeMultiplier) {
+            this.classSizeMultiplier = classSizeMultiplier;
+        }
+
+        @Override
+        public int weigh(ClassDescriptor classDescriptor, Object result) {
+            if (result instanceof ClassData) {
+                return ((ClassData) result).getData().length + SMALL_RESULT_SIZE;
+            } else if (result instanceof AbnormalAnalysisResult || result instanceof PendingResult) {
+                return SMALL_RESULT_SIZE;
+            }
+            return classSizeMultiplier * getClassSize(classDescriptor) + SMALL_RESULT_SIZE;
+        }
+    }
+
+    private int getClassSize(ClassDescriptor classDescriptor) {
+        Map<ClassDescriptor, Object> classDataMap = classAnalysisMap.get(ClassData.class);
+        if (classDataMap instanceof ConcurrentMapCache) {
+            Object classData = ((ConcurrentMapCache<ClassDescriptor, Object>) classDataMap).peek(classDescriptor);
+            if (classData instanceof PendingResult) {
+                classData = ((PendingResult) classData).getIfDone();
+            }
+            if (classData instanceof ClassData) {
+                return ((ClassData) classData).getData().length;
+            }
+        }
+        return DEFAULT_CLASS_SIZE;
+    }
+
+    /**
+     * Print the number of cached results, their weight, and the number of
+     * hits, misses and evictions for each analysis class.
+     */
+    void reportStatistics(PrintStream out) {
+        Map<String, ConcurrentMapCache<ClassDescriptor, Object>> sorted = new TreeMap<String, ConcurrentMapCache<ClassDescriptor, Object>>();
+        for (Map.Entry<Class<?>, ? extends Map<ClassDescriptor, Object>> e : classAnalysisMap.entrySet()) {
+            if (e.getValue() instanceof ConcurrentMapCache) {
+                sorted.put(e.getKey().getName(), (ConcurrentMapCache<ClassDescriptor, Object>) e.getValue());
+            }
+        }
+        out.println("ANALYSIS CACHE STATISTICS");
+        out.printf("%d of %d kbytes used%n", budget.getWeight() >> 10, budget.getMaxWeight() >> 10);
+        out.printf("%8s %8s %10s %10s %10s  %s%n", "results", "kbytes", "hits", "misses", "evictions", "Analysis class");
+        for (Map.Entry<String, ConcurrentMapCache<ClassDescriptor, Object>> e : sorted.entrySet()) {
+            ConcurrentMapCache<ClassDescriptor, Object> map = e.getValue();
+            out.printf("%8d %8d %10d %10d %10d  %s%n", map.size(), map.getWeight() >> 10, map.getHitCount(),
+                    map.getMissCount(), map.getEvictionCount(), e.getKey());
+        }
+    }
+}
@@ -22,6 +22,7 @@ package edu.umd.cs.findbugs.classfile.impl;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.PrintStream;
 
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.classfile.IAnalysisCache;
@@ -139,4 +140,27 @@ public class ClassFactory implements IClassFactory {
         IAnalysisCache analysisCache = new AnalysisCache(classPath, errorLogger);
         return analysisCache;
     }
+
+    @Override
+    public IAnalysisCache createConcurrentAnalysisCache(IClassPath classPath, BugReporter errorLogger) {
+        return new ConcurrentAnalysisCache(classPath, errorLogger);
+    }
+
+    /**
+     * Print statistics about the cached class analysis results of an analysis
+     * cache created by this factory. Other IAnalysisCache implementations
+     * don't keep statistics, so nothing is printed for them.
+     *
+     * @param analysisCache
+     *            the analysis cache
+     * @param out
+     *            stream to print the statistics to
+     */
+    public static void reportStatistics(IAnalysisCache analysisCache, PrintStream out) {
+        if (analysisCache instanceof AnalysisCache) {
+            ((AnalysisCache) analysisCache).reportStatistics(out);
+        } else if (analysisCache instanceof ConcurrentAnalysisCache) {
+            ((ConcurrentAnalysisCache) analysisCache).reportStatistics(out);
+        }
+    }
 }
@@ -25,8 +25,10 @@ import java.io.FileFilter;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -34,9 +36,16 @@ import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 
+import edu.umd.cs.findbugs.AnalysisError;
 import edu.umd.cs.findbugs.FindBugs;
 import edu.umd.cs.findbugs.SystemProperties;
 import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
@@ -73,6 +82,14 @@ public class ClassPathBuilder implements IClassPathBuilder {
 
     private static final boolean NO_PARSE_CLASS_NAMES = SystemProperties.getBoolean("findbugs2.builder.noparseclassnames");
 
+    /**
+     * Number of threads opening and scanning codebases. Codebases are scanned
+     * ahead of the worklist by this many threads; with one thread, each
+     * codebase is scanned when the worklist reaches it.
+     */
+    private static final int NUM_THREADS = SystemProperties.getInt("findbugs2.builder.threads",
+            Math.min(Runtime.getRuntime().availableProcessors(), 8));
+
     /**
      * Worklist item. Represents one codebase to be processed during the
      * classpath construction algorithm.
@@ -111,6 +128,99 @@ public class ClassPathBuilder implements IClassPathBuilder {
         }
     }
 
+    /**
+     * Result of opening and scanning the codebase of a worklist item. Scanning
+     * may be done ahead of time by another thread, so everything which
+     * affects the classpath (new worklist items, errors) is recorded here, and
+     * applied when the worklist reaches the item.
+     */
+    static class ScannedCodeBase {
+        DiscoveredCodeBase discoveredCodeBase;
+
+        final LinkedList<WorkListItem> nestedWorkList = new LinkedList<WorkListItem>();
+
+        final LinkedList<WorkListItem> manifestWorkList = new LinkedList<WorkListItem>();
+
+        final List<AnalysisError> errors = new ArrayList<AnalysisError>();
+
+        IOException ioException;
+
+        ResourceNotFoundException resourceNotFoundException;
+
+        /**
+         * Close the codebase, if it was opened.
+         */
+        void close() {
+            if (discoveredCodeBase != null) {
+                discoveredCodeBase.getCodeBase().close();
+            }
+        }
+    }
+
+    /**
+     * Scan of a worklist item by a scanning thread. If the scan is discarded,
+     * its codebase is closed, even if the scan is still running.
+     */
+    private class ScanTask implements Callable<ScannedCodeBase> {
+        private final WorkListItem item;
+
+        private Future<ScannedCodeBase> future;
+
+        // guarded by this
+        private boolean discarded;
+
+        // guarded by this
+        private ScannedCodeBase result;
+
+        ScanTask(WorkListItem item) {
+            this.item = item;
+        }
+
+        @Override
+        public ScannedCodeBase call() throws InterruptedException {
+            ScannedCodeBase scanned = scan(item);
+            synchronized (this) {
+                if (!discarded) {
+                    result = scanned;
+                    return scanned;
+                }
+            }
+            scanned.close();
+            return scanned;
+        }
+
+        ScannedCodeBase getResult() throws InterruptedException {
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof InterruptedException) {
+                    throw (InterruptedException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException("Unexpected exception scanning codebase", cause);
+            }
+        }
+
+        /**
+         * Cancel the scan if it is still running, and close its codebase.
+         */
+        void discard() {
+            ScannedCodeBase scanned;
+            synchronized (this) {
+                discarded = true;
+                scanned = result;
+            }
+            future.cancel(true);
+            if (scanned != null) {
+                scanned.close();
+            }
+        }
+    }
+
     /**
      * A codebase discovered during classpath building.
      */
@@ -170,6 +280,10 @@ public class ClassPathBuilder implements IClassPathBuilder {
 
     private boolean scanNestedArchives;
 
+    private int numThreads = NUM_THREADS;
+
+    private ExecutorService executor;
+
     /**
      * Constructor.
      *
@@ -211,6 +325,17 @@ public class ClassPathBuilder implements IClassPathBuilder {
         this.scanNestedArchives = scanNestedArchives;
     }
 
+    /**
+     * Set the number of threads opening and scanning codebases.
+     *
+     * @param numThreads
+     *            the number of threads; with one thread, codebases are
+     *            scanned by the thread building the classpath
+     */
+    void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -222,13 +347,49 @@ public class ClassPathBuilder implements IClassPathBuilder {
     @Override
     public void build(IClassPath classPath, IClassPathBuilderProgress progress) throws CheckedAnalysisException, IOException,
     InterruptedException {
-        // Discover all directly and indirectly referenced codebases
-        processWorkList(classPath, projectWorkList, progress);
+        if (numThreads > 1) {
+            // Class descriptors created while parsing class names are
+            // interned in the DescriptorFactory of this thread
+            final DescriptorFactory descriptorFactory = DescriptorFactory.instance();
+            executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+                private int threadCount;
+
+                @Override
+                public Thread newThread(final Runnable r) {
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            DescriptorFactory.setInstanceForCurrentThread(descriptorFactory);
+                            r.run();
+                        }
+                    }, "FindBugs classpath scanning thread " + (++threadCount));
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        boolean built = false;
+        try {
+            // Discover all directly and indirectly referenced codebases
+            processWorkList(classPath, projectWorkList, progress);
 
-        // If not already located, try to locate any additional codebases
-        // containing classes required for analysis.
-        if (!discoveredCodeBaseList.isEmpty()) {
-            locateCodebasesRequiredForAnalysis(classPath, progress);
+            // If not already located, try to locate any additional codebases
+            // containing classes required for analysis.
+            if (!discoveredCodeBaseList.isEmpty()) {
+                locateCodebasesRequiredForAnalysis(classPath, progress);
+            }
+            built = true;
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+            if (!built) {
+                // The codebases won't be added to the classpath
+                for (DiscoveredCodeBase discoveredCodeBase : discoveredCodeBaseList) {
+                    discoveredCodeBase.getCodeBase().close();
+                }
+            }
         }
 
         // Add all discovered codebases to the classpath
@@ -549,6 +710,11 @@ public class ClassPathBuilder implements IClassPathBuilder {
      * archives and Class-Path entries specified in Jar manifests. This should
      * give us as good an idea as possible of all of the classes available (and
      * which are part of the application).
+     * <p>
+     * Items are processed in worklist order, but their codebases may be
+     * opened and scanned ahead of time by the scanning threads. The
+     * resulting classpath is the same as if each codebase were scanned when
+     * the worklist reaches it.
      *
      * @param workList
      *            the worklist to process
@@ -560,73 +726,74 @@ public class ClassPathBuilder implements IClassPathBuilder {
      */
     private void processWorkList(IClassPath classPath, LinkedList<WorkListItem> workList, IClassPathBuilderProgress progress)
             throws InterruptedException, IOException, ResourceNotFoundException {
-        // Build the classpath, scanning codebases for nested archives
-        // and referenced codebases.
-        while (!workList.isEmpty()) {
-            WorkListItem item = workList.removeFirst();
-            if (item.getHowDiscovered() == ICodeBase.Discovered.SPECIFIED) {
-                progress.startArchive(item.toString());
-            }
-            if (DEBUG) {
-                System.out.println("Working: " + item.getCodeBaseLocator());
-            }
+        Map<WorkListItem, ScanTask> scansInProgress = new IdentityHashMap<WorkListItem, ScanTask>();
+        try {
+            // Build the classpath, scanning codebases for nested archives
+            // and referenced codebases.
+            while (!workList.isEmpty()) {
+                startScans(workList, scansInProgress);
+                WorkListItem item = workList.removeFirst();
+                // Kept in scansInProgress until its result is taken, so it is
+                // discarded if the build fails or is interrupted before
+                ScanTask scanInProgress = scansInProgress.get(item);
+                if (item.getHowDiscovered() == ICodeBase.Discovered.SPECIFIED) {
+                    progress.startArchive(item.toString());
+                }
+                if (DEBUG) {
+                    System.out.println("Working: " + item.getCodeBaseLocator());
+                }
 
-            DiscoveredCodeBase discoveredCodeBase;
+                DiscoveredCodeBase discoveredCodeBase;
 
-            // See if we have encountered this codebase before
-            discoveredCodeBase = discoveredCodeBaseMap.get(item.getCodeBaseLocator().toString());
-            if (discoveredCodeBase != null) {
-                // If the codebase is not an app codebase and
-                // the worklist item says that it is an app codebase,
-                // change it. Otherwise, we have nothing to do.
-                if (!discoveredCodeBase.getCodeBase().isApplicationCodeBase() && item.isAppCodeBase()) {
-                    discoveredCodeBase.getCodeBase().setApplicationCodeBase(true);
+                // See if we have encountered this codebase before
+                discoveredCodeBase = discoveredCodeBaseMap.get(item.getCodeBaseLocator().toString());
+                if (discoveredCodeBase != null) {
+                    // If the codebase is not an app codebase and
+                    // the worklist item says that it is an app codebase,
+                    // change it. Otherwise, we have nothing to do.
+                    if (!discoveredCodeBase.getCodeBase().isApplicationCodeBase() && item.isAppCodeBase()) {
+                        discoveredCodeBase.getCodeBase().setApplicationCodeBase(true);
+                    }
+                    if (scanInProgress != null) {
+                        scansInProgress.remove(item);
+                        scanInProgress.discard();
+                    }
+                    continue;
                 }
 
-                continue;
-            }
-
-            // Detect .java files, which are probably human error
-            if (item.getCodeBaseLocator() instanceof FilesystemCodeBaseLocator) {
-                FilesystemCodeBaseLocator l = (FilesystemCodeBaseLocator) item.getCodeBaseLocator();
-                if (l.getPathName().endsWith(".java")) {
+                // Detect .java files, which are probably human error
+                if (isJavaFile(item)) {
                     if (DEBUG){
-                        System.err.println("Ignoring .java file \"" + l.getPathName() + "\" specified in classpath or auxclasspath");
+                        System.err.println("Ignoring .java file \"" + item.getCodeBaseLocator()
+                                + "\" specified in classpath or auxclasspath");
                     }
                     continue;
                 }
-            }
 
-            // If we are working on an application codebase,
-            // then failing to open/scan it is a fatal error.
-            // We issue warnings about problems with aux codebases,
-            // but continue anyway.
+                ScannedCodeBase scanned = scanInProgress != null ? scanInProgress.getResult() : scan(item);
+                scansInProgress.remove(item);
+                for (AnalysisError error : scanned.errors) {
+                    errorLogger.logError(error.getMessage(), error.getException());
+                }
+                if (scanned.discoveredCodeBase != null) {
+                    // Note that this codebase has been visited
+                    discoveredCodeBaseMap.put(item.getCodeBaseLocator().toString(), scanned.discoveredCodeBase);
+                    discoveredCodeBaseList.addLast(scanned.discoveredCodeBase);
 
-            try {
-                // Open the codebase and add it to the classpath
-                discoveredCodeBase = new DiscoveredCodeBase(item.getCodeBaseLocator().openCodeBase());
-                discoveredCodeBase.getCodeBase().setApplicationCodeBase(item.isAppCodeBase());
-                discoveredCodeBase.getCodeBase().setHowDiscovered(item.getHowDiscovered());
-
-                // Note that this codebase has been visited
-                discoveredCodeBaseMap.put(item.getCodeBaseLocator().toString(), discoveredCodeBase);
-                discoveredCodeBaseList.addLast(discoveredCodeBase);
-
-                // If it is a scannable codebase, check it for nested archives.
-                // In addition, if it is an application codebase then
-                // make a list of application classes.
-                if (discoveredCodeBase.getCodeBase() instanceof IScannableCodeBase
-                        && ( discoveredCodeBase.codeBase.isApplicationCodeBase()
-                                || item.getHowDiscovered() == ICodeBase.Discovered.SPECIFIED)
-                        ) {
-                    scanCodebase(classPath, workList, discoveredCodeBase);
+                    for (WorkListItem nestedItem : scanned.nestedWorkList) {
+                        addToWorkList(workList, nestedItem);
+                    }
+                    for (WorkListItem manifestItem : scanned.manifestWorkList) {
+                        addToWorkList(workList, manifestItem);
+                    }
                 }
 
-                // Check for a Jar manifest for additional aux classpath
-                // entries.
-                scanJarManifestForClassPathEntries(workList, discoveredCodeBase.getCodeBase());
-            } catch (IOException e) {
-                if (item.isAppCodeBase() || item.getHowDiscovered() == ICodeBase.Discovered.SPECIFIED) {
+                // If we are working on an application codebase,
+                // then failing to open/scan it is a fatal error.
+                // We issue warnings about problems with aux codebases,
+                // but continue anyway.
+                IOException e = scanned.ioException;
+                if (e != null && (item.isAppCodeBase() || item.getHowDiscovered() == ICodeBase.Discovered.SPECIFIED)) {
                     if (e instanceof FileNotFoundException) {
                         if(item.isAppCodeBase()){
                             errorLogger.logError("File from project not found: " + item.getCodeBaseLocator(), e);
@@ -637,18 +804,107 @@ public class ClassPathBuilder implements IClassPathBuilder {
                         errorLogger.logError("Cannot open codebase " + item.getCodeBaseLocator(), e);
                     }
                 }
-            } catch (ResourceNotFoundException e) {
+                if (scanned.resourceNotFoundException != null && item.getHowDiscovered() == ICodeBase.Discovered.SPECIFIED) {
+                    errorLogger.logError("Cannot open codebase " + item.getCodeBaseLocator(), scanned.resourceNotFoundException);
+                }
+
                 if (item.getHowDiscovered() == ICodeBase.Discovered.SPECIFIED) {
-                    errorLogger.logError("Cannot open codebase " + item.getCodeBaseLocator(), e);
+                    progress.finishArchive();
                 }
             }
+        } finally {
+            // Close the codebases of scans which were started ahead of a
+            // failure or interruption
+            for (ScanTask scanInProgress : scansInProgress.values()) {
+                scanInProgress.discard();
+            }
+        }
+    }
+
+    private static boolean isJavaFile(WorkListItem item) {
+        return item.getCodeBaseLocator() instanceof FilesystemCodeBaseLocator
+                && ((FilesystemCodeBaseLocator) item.getCodeBaseLocator()).getPathName().endsWith(".java");
+    }
 
-            if (item.getHowDiscovered() == ICodeBase.Discovered.SPECIFIED) {
-                progress.finishArchive();
+    /**
+     * Start scanning the codebases of the first few items on the worklist,
+     * unless they are being scanned already or have been discovered before.
+     *
+     * @param workList
+     *            the worklist
+     * @param scansInProgress
+     *            scans started for worklist items
+     */
+    private void startScans(LinkedList<WorkListItem> workList, Map<WorkListItem, ScanTask> scansInProgress) {
+        if (executor == null) {
+            return;
+        }
+        Set<String> locators = new HashSet<String>();
+        for (WorkListItem item : scansInProgress.keySet()) {
+            locators.add(item.getCodeBaseLocator().toString());
+        }
+        int count = 0;
+        for (Iterator<WorkListItem> i = workList.iterator(); i.hasNext() && count < 2 * numThreads; count++) {
+            WorkListItem item = i.next();
+            String locator = item.getCodeBaseLocator().toString();
+            if (scansInProgress.containsKey(item) || discoveredCodeBaseMap.containsKey(locator) || isJavaFile(item)
+                    || !locators.add(locator)) {
+                continue;
             }
+            ScanTask task = new ScanTask(item);
+            task.future = executor.submit(task);
+            scansInProgress.put(item, task);
         }
     }
 
+    /**
+     * Open the codebase of a worklist item, and scan it for class resources,
+     * nested archives and Class-Path entries in its Jar manifest.
+     *
+     * @param item
+     *            the worklist item
+     * @return the scanned codebase
+     * @throws InterruptedException
+     */
+    private ScannedCodeBase scan(WorkListItem item) throws InterruptedException {
+        ScannedCodeBase scanned = new ScannedCodeBase();
+        boolean done = false;
+        try {
+            // Open the codebase
+            DiscoveredCodeBase discoveredCodeBase = new DiscoveredCodeBase(item.getCodeBaseLocator().openCodeBase());
+            discoveredCodeBase.getCodeBase().setApplicationCodeBase(item.isAppCodeBase());
+            discoveredCodeBase.getCodeBase().setHowDiscovered(item.getHowDiscovered());
+            scanned.discoveredCodeBase = discoveredCodeBase;
+
+            // If it is a scannable codebase, check it for nested archives.
+            // In addition, if it is an application codebase then
+            // make a list of application classes.
+            if (discoveredCodeBase.getCodeBase() instanceof IScannableCodeBase
+                    && ( discoveredCodeBase.codeBase.isApplicationCodeBase()
+                            || item.getHowDiscovered() == ICodeBase.Discovered.SPECIFIED)
+                    ) {
+                scanCodebase(scanned, discoveredCodeBase);
+            }
+
+            // Check for a Jar manifest for additional aux classpath
+            // entries.
+            scanJarManifestForClassPathEntries(scanned.manifestWorkList, discoveredCodeBase.getCodeBase());
+            done = true;
+        } catch (IOException e) {
+            scanned.ioException = e;
+            done = true;
+        } catch (ResourceNotFoundException e) {
+            scanned.resourceNotFoundException = e;
+            done = true;
+        } finally {
+            if (!done) {
+                // Interrupted, or failed unexpectedly
+                scanned.close();
+            }
+        }
+        return scanned;
+    }
+
     /**
      * Scan given codebase in order to
      * <ul>
@@ -657,14 +913,14 @@ public class ClassPathBuilder implements IClassPathBuilder {
      * <li>build a list of class resources found in the codebase
      * </ul>
      *
-     * @param workList
-     *            the worklist
+     * @param scanned
+     *            the scan result, to which nested archives, parsed classes
+     *            and errors are added
      * @param discoveredCodeBase
      *            the codebase to scan
      * @throws InterruptedException
      */
-    private void scanCodebase(IClassPath classPath, LinkedList<WorkListItem> workList, DiscoveredCodeBase discoveredCodeBase)
-            throws InterruptedException {
+    private void scanCodebase(ScannedCodeBase scanned, DiscoveredCodeBase discoveredCodeBase) throws InterruptedException {
         if (DEBUG) {
             System.out.println("Scanning " + discoveredCodeBase.getCodeBase().getCodeBaseLocator());
         }
@@ -680,7 +936,7 @@ public class ClassPathBuilder implements IClassPathBuilder {
 
             if (!NO_PARSE_CLASS_NAMES && codeBase.isApplicationCodeBase()
                     && DescriptorFactory.isClassResource(entry.getResourceName()) && !(entry instanceof SingleFileCodeBaseEntry)) {
-                parseClassName(entry);
+                parseClassName(entry, scanned);
             }
 
             // Note the resource exists in this codebase
@@ -694,7 +950,7 @@ public class ClassPathBuilder implements IClassPathBuilder {
                 }
                 ICodeBaseLocator nestedArchiveLocator = classFactory.createNestedArchiveCodeBaseLocator(codeBase,
                         entry.getResourceName());
-                addToWorkList(workList,
+                addToWorkList(scanned.nestedWorkList,
                         new WorkListItem(nestedArchiveLocator, codeBase.isApplicationCodeBase(), ICodeBase.Discovered.NESTED));
             }
         }
@@ -706,8 +962,10 @@ public class ClassPathBuilder implements IClassPathBuilder {
      *
      * @param entry
      *            the resource
+     * @param scanned
+     *            the scan result, to which errors are added
      */
-    private void parseClassName(ICodeBaseEntry entry) {
+    private void parseClassName(ICodeBaseEntry entry, ScannedCodeBase scanned) {
         DataInputStream in = null;
         try {
             InputStream resourceIn = entry.openResource();
@@ -724,9 +982,9 @@ public class ClassPathBuilder implements IClassPathBuilder {
                 entry.overrideResourceName(trueResourceName);
             }
         } catch (IOException e) {
-            errorLogger.logError("Invalid class resource " + entry.getResourceName() + " in " + entry, e);
+            scanned.errors.add(new AnalysisError("Invalid class resource " + entry.getResourceName() + " in " + entry, e));
         } catch (InvalidClassFileFormatException e) {
-            errorLogger.logError("Invalid class resource " + entry.getResourceName() + " in " + entry, e);
+            scanned.errors.add(new AnalysisError("Invalid class resource " + entry.getResourceName() + " in " + entry, e));
         } finally {
             IO.close(in);
         }
@@ -0,0 +1,545 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2006-2007 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.classfile.impl;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import edu.umd.cs.findbugs.BugReporter;
+import edu.umd.cs.findbugs.ba.ClassContext;
+import edu.umd.cs.findbugs.ba.Debug;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.IClassAnalysisEngine;
+import edu.umd.cs.findbugs.classfile.IClassPath;
+import edu.umd.cs.findbugs.classfile.IDatabaseFactory;
+import edu.umd.cs.findbugs.classfile.IErrorLogger;
+import edu.umd.cs.findbugs.classfile.IMethodAnalysisEngine;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+import edu.umd.cs.findbugs.classfile.UncheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.impl.AnalysisCache.AbnormalAnalysisResult;
+import edu.umd.cs.findbugs.log.Profiler;
+import edu.umd.cs.findbugs.util.ConcurrentMapCache;
+
+/**
+ * Implementation of IAnalysisCache which can be shared by several analysis
+ * threads.
+ * <p>
+ * Lookups don't lock. Each analysis result is computed only once: the first
+ * thread asking for a result computes it, other threads asking for the same
+ * result wait for it. Results are discarded as needed to stay within a memory
+ * budget, see {@link AnalysisCacheBudget}; results still being computed are
+ * never discarded.
+ *
+ * @see AnalysisCache
+ */
+public class ConcurrentAnalysisCache implements IAnalysisCache {
+
+    /**
+     * Maximum number of ClassContexts to cache. This is larger than in
+     * AnalysisCache, since each analysis thread works on a different class.
+     */
+    private static final int MAX_CLASS_CONTEXT_RESULTS_TO_CACHE = 10 + 2 * Runtime.getRuntime().availableProcessors();
+
+    // Fields
+    private final IClassPath classPath;
+
+    private final BugReporter bugReporter;
+
+    private final ConcurrentMap<Class<?>, IClassAnalysisEngine<?>> classAnalysisEngineMap;
+
+    private final ConcurrentMap<Class<?>, IMethodAnalysisEngine<?>> methodAnalysisEngineMap;
+
+    private final ConcurrentMap<Class<?>, IDatabaseFactory<?>> databaseFactoryMap;
+
+    private final ConcurrentMap<Class<?>, ConcurrentMapCache<ClassDescriptor, Object>> classAnalysisMap;
+
+    private final ConcurrentMap<Class<?>, Object> databaseMap;
+
+    private final AnalysisCacheBudget budget;
+
+    private final Map<?, ?> analysisLocals = Collections.synchronizedMap(new HashMap<Object, Object>());
+
+    @Override
+    public final Map<?, ?> getAnalysisLocals() {
+        return analysisLocals;
+    }
+
+    /**
+     * An analysis result which is being computed, or has been computed, by
+     * one of the analysis threads.
+     */
+    static class PendingResult {
+        private final Thread owner = Thread.currentThread();
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private volatile Object result;
+
+        void set(@CheckForNull Object result) {
+            this.result = result;
+            done.countDown();
+        }
+
+        /**
+         * @return the result, or null if it is not computed yet
+         */
+        @CheckForNull
+        Object getIfDone() {
+            return result;
+        }
+
+        boolean isBeingComputedByCurrentThread() {
+            return owner == Thread.currentThread() && done.getCount() > 0;
+        }
+
+        /**
+         * Wait for the result. Must not be called by the thread computing the
+         * result.
+         *
+         * @return the result, or null if computing it failed with an Error
+         */
+        @CheckForNull
+        Object get() {
+            if (done.getCount() > 0) {
+                assert owner != Thread.currentThread();
+                boolean interrupted = false;
+                while (true) {
+                    try {
+                        done.await();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param classPath
+     *            the IClassPath to load resources from
+     * @param errorLogger
+     *            the IErrorLogger
+     */
+    ConcurrentAnalysisCache(IClassPath classPath, BugReporter errorLogger) {
+        this.classPath = classPath;
+        this.bugReporter = errorLogger;
+        this.classAnalysisEngineMap = new ConcurrentHashMap<Class<?>, IClassAnalysisEngine<?>>();
+        this.methodAnalysisEngineMap = new ConcurrentHashMap<Class<?>, IMethodAnalysisEngine<?>>();
+        this.databaseFactoryMap = new ConcurrentHashMap<Class<?>, IDatabaseFactory<?>>();
+        this.classAnalysisMap = new ConcurrentHashMap<Class<?>, ConcurrentMapCache<ClassDescriptor, Object>>();
+        this.databaseMap = new ConcurrentHashMap<Class<?>, Object>();
+        this.budget = new AnalysisCacheBudget(classAnalysisMap);
+    }
+
+    @Override
+    public IClassPath getClassPath() {
+        return classPath;
+    }
+
+    @Override
+    public void purgeAllMethodAnalysis() {
+        ConcurrentMapCache<ClassDescriptor, Object> map = classAnalysisMap.get(ClassContext.class);
+        if (map == null) {
+            return;
+        }
+        for (Object c : map.values()) {
+            if (c instanceof PendingResult) {
+                // don't wait for class contexts still being created
+                c = ((PendingResult) c).getIfDone();
+            }
+            if (c instanceof ClassContext) {
+                ((ClassContext) c).purgeAllMethodAnalyses();
+            }
+        }
+    }
+
+    @Override
+    public void purgeClassAnalysis(Class<?> analysisClass) {
+        ConcurrentMapCache<ClassDescriptor, Object> descriptorMap = classAnalysisMap.remove(analysisClass);
+        if (descriptorMap != null) {
+            // release the results from the shared budget
+            descriptorMap.clear();
+        }
+    }
+
+    /**
+     * Cleans up all cached data
+     */
+    public void dispose() {
+        for (ConcurrentMapCache<ClassDescriptor, Object> descriptorMap : classAnalysisMap.values()) {
+            descriptorMap.clear();
+        }
+        classAnalysisMap.clear();
+        classAnalysisEngineMap.clear();
+        analysisLocals.clear();
+        databaseFactoryMap.clear();
+        databaseMap.clear();
+        methodAnalysisEngineMap.clear();
+    }
+
+    @Override
+    public <E> E getClassAnalysis(Class<E> analysisClass, @Nonnull ClassDescriptor classDescriptor) throws CheckedAnalysisException {
+        requireNonNull(classDescriptor, "classDescriptor is null");
+        // Get the descriptor->result map for this analysis class,
+        // creating if necessary
+        ConcurrentMapCache<ClassDescriptor, Object> descriptorMap = findOrCreateDescriptorMap(analysisClass);
+
+        Object analysisResult;
+        while (true) {
+            // See if there is a cached result in the descriptor map
+            analysisResult = descriptorMap.get(classDescriptor);
+            if (analysisResult == null) {
+                IClassAnalysisEngine<?> engine = getClassAnalysisEngine(analysisClass);
+                PendingResult pendingResult = new PendingResult();
+                // Pinned, so that the budget doesn't discard it while the
+                // result is computed, and other threads compute it again
+                analysisResult = descriptorMap.putIfAbsentPinned(classDescriptor, pendingResult);
+                if (analysisResult == null) {
+                    // No cached result - compute (or recompute)
+                    boolean completed = false;
+                    try {
+                        Object result = analyzeClass(engine, classDescriptor);
+                        pendingResult.set(result);
+                        // Weigh the entry again, now that the result is known
+                        descriptorMap.replace(classDescriptor, pendingResult, result);
+                        completed = true;
+                    } finally {
+                        if (!completed) {
+                            descriptorMap.remove(classDescriptor, pendingResult);
+                            pendingResult.set(null);
+                        }
+                    }
+                    analysisResult = pendingResult;
+                }
+            }
+            if (analysisResult instanceof PendingResult) {
+                PendingResult pendingResult = (PendingResult) analysisResult;
+                if (pendingResult.isBeingComputedByCurrentThread()) {
+                    // The analysis needs its own result: compute it once
+                    // more, as AnalysisCache does
+                    analysisResult = analyzeClass(getClassAnalysisEngine(analysisClass), classDescriptor);
+                } else {
+                    analysisResult = pendingResult.get();
+                    if (analysisResult == null) {
+                        // Computing the result failed with an Error; try again
+                        continue;
+                    }
+                }
+            }
+            break;
+        }
+
+        // Abnormal analysis result?
+        if (analysisResult instanceof AbnormalAnalysisResult) {
+            return AnalysisCache.checkedCast(analysisClass, ((AbnormalAnalysisResult) analysisResult).returnOrThrow());
+        }
+
+        return AnalysisCache.checkedCast(analysisClass, analysisResult);
+    }
+
+    private IClassAnalysisEngine<?> getClassAnalysisEngine(Class<?> analysisClass) {
+        IClassAnalysisEngine<?> engine = classAnalysisEngineMap.get(analysisClass);
+        if (engine == null) {
+            throw new IllegalArgumentException("No analysis engine registered to produce " + analysisClass.getName());
+        }
+        return engine;
+    }
+
+    /**
+     * Analyze a class.
+     *
+     * @return the analysis result, or an AbnormalAnalysisResult if it is null
+     *         or the analysis failed
+     */
+    private Object analyzeClass(IClassAnalysisEngine<?> engine, ClassDescriptor classDescriptor) {
+        Profiler profiler = getProfiler();
+        profiler.start(engine.getClass());
+        try {
+            Object analysisResult = engine.analyze(this, classDescriptor);
+
+            // If engine returned null, we need to construct
+            // an AbnormalAnalysisResult object to record that fact.
+            // Otherwise we will try to recompute the value in
+            // the future.
+            if (analysisResult == null) {
+                return AnalysisCache.NULL_ANALYSIS_RESULT;
+            }
+            return analysisResult;
+        } catch (CheckedAnalysisException e) {
+            return new AbnormalAnalysisResult(e);
+        } catch (RuntimeException e) {
+            return new AbnormalAnalysisResult(e);
+        } finally {
+            profiler.end(engine.getClass());
+        }
+    }
+
+    @Override
+    public <E> E probeClassAnalysis(Class<E> analysisClass, @Nonnull ClassDescriptor classDescriptor) {
+        ConcurrentMapCache<ClassDescriptor, Object> descriptorMap = classAnalysisMap.get(analysisClass);
+        if (descriptorMap == null) {
+            return null;
+        }
+        Object analysisResult = descriptorMap.get(classDescriptor);
+        if (analysisResult instanceof PendingResult) {
+            // A probe doesn't wait for a result still being computed, which
+            // may even be computed by the current thread
+            analysisResult = ((PendingResult) analysisResult).getIfDone();
+        }
+        return AnalysisCache.checkedCast(analysisClass, analysisResult);
+    }
+
+    @Override
+    public <E> E getMethodAnalysis(Class<E> analysisClass, @Nonnull MethodDescriptor methodDescriptor) throws CheckedAnalysisException {
+        requireNonNull(methodDescriptor, "methodDescriptor is null");
+        ClassContext classContext = getClassAnalysis(ClassContext.class, methodDescriptor.getClassDescriptor());
+
+        Object object;
+        while (true) {
+            object = classContext.getMethodAnalysis(analysisClass, methodDescriptor);
+            if (object == null) {
+                PendingResult pendingResult = new PendingResult();
+                object = classContext.putMethodAnalysisIfAbsent(analysisClass, methodDescriptor, pendingResult);
+                if (object == null) {
+                    boolean completed = false;
+                    try {
+                        pendingResult.set(analyzeMethod(analysisClass, methodDescriptor));
+                        completed = true;
+                    } finally {
+                        if (!completed) {
+                            classContext.removeMethodAnalysis(analysisClass, methodDescriptor, pendingResult);
+                            pendingResult.set(null);
+                        }
+                    }
+                    object = pendingResult;
+                }
+            }
+            if (object instanceof PendingResult) {
+                PendingResult pendingResult = (PendingResult) object;
+                if (pendingResult.isBeingComputedByCurrentThread()) {
+                    // The analysis needs its own result: compute it once
+                    // more, as AnalysisCache does
+                    object = analyzeMethod(analysisClass, methodDescriptor);
+                } else {
+                    object = pendingResult.get();
+                    if (object == null) {
+                        // Computing the result failed with an Error; try again
+                        continue;
+                    }
+                }
+            }
+            break;
+        }
+        if (Debug.VERIFY_INTEGRITY && object == null) {
+            throw new IllegalStateException("AnalysisFactory failed to produce a result object");
+        }
+
+        if (object instanceof AbnormalAnalysisResult) {
+            return AnalysisCache.checkedCast(analysisClass, ((AbnormalAnalysisResult) object).returnOrThrow());
+        }
+
+        return AnalysisCache.checkedCast(analysisClass, object);
+    }
+
+    /**
+     * Analyze a method.
+     *
+     * @param analysisClass
+     *            class the method analysis object should belong to
+     * @param methodDescriptor
+     *            method descriptor identifying the method to analyze
+     * @return the analysis result, or an AbnormalAnalysisResult if it is null
+     *         or the analysis failed
+     */
+    private Object analyzeMethod(Class<?> analysisClass, MethodDescriptor methodDescriptor) {
+        IMethodAnalysisEngine<?> engine = methodAnalysisEngineMap.get(analysisClass);
+        if (engine == null) {
+            return new AbnormalAnalysisResult(new IllegalArgumentException("No analysis engine registered to produce "
+                    + analysisClass.getName()));
+        }
+        Profiler profiler = getProfiler();
+        profiler.start(engine.getClass());
+        try {
+            Object object = engine.analyze(this, methodDescriptor);
+            if (object == null) {
+                return AnalysisCache.NULL_ANALYSIS_RESULT;
+            }
+            return object;
+        } catch (CheckedAnalysisException e) {
+            return new AbnormalAnalysisResult(e);
+        } catch (RuntimeException e) {
+            return new AbnormalAnalysisResult(e);
+        } finally {
+            profiler.end(engine.getClass());
+        }
+    }
+
+    @Override
+    public <E> void eagerlyPutMethodAnalysis(Class<E> analysisClass, @Nonnull MethodDescriptor methodDescriptor, E analysisObject) {
+        try {
+            ClassContext classContext = getClassAnalysis(ClassContext.class, methodDescriptor.getClassDescriptor());
+            assert analysisClass.isInstance(analysisObject);
+            classContext.putMethodAnalysis(analysisClass, methodDescriptor, analysisObject);
+        } catch (CheckedAnalysisException e) {
+            IllegalStateException ise = new IllegalStateException("Unexpected exception adding method analysis to cache");
+            ise.initCause(e);
+            throw ise;
+        }
+    }
+
+    @Override
+    public void purgeMethodAnalyses(@Nonnull MethodDescriptor methodDescriptor) {
+        try {
+            ClassContext classContext = getClassAnalysis(ClassContext.class, methodDescriptor.getClassDescriptor());
+            classContext.purgeMethodAnalyses(methodDescriptor);
+        } catch (CheckedAnalysisException e) {
+            IllegalStateException ise = new IllegalStateException("Unexpected exception purging method analyses from cache");
+            ise.initCause(e);
+            throw ise;
+        }
+    }
+
+    /**
+     * Find or create the descriptor to analysis object map for given analysis
+     * class.
+     */
+    private ConcurrentMapCache<ClassDescriptor, Object> findOrCreateDescriptorMap(Class<?> analysisClass) {
+        ConcurrentMapCache<ClassDescriptor, Object> descriptorMap = classAnalysisMap.get(analysisClass);
+        if (descriptorMap == null) {
+            descriptorMap = createMap(analysisClass);
+            ConcurrentMapCache<ClassDescriptor, Object> existing = classAnalysisMap.putIfAbsent(analysisClass, descriptorMap);
+            if (existing != null) {
+                descriptorMap = existing;
+            }
+        }
+        return descriptorMap;
+    }
+
+    private ConcurrentMapCache<ClassDescriptor, Object> createMap(Class<?> analysisClass) {
+        return budget.createMap(analysisClass, classAnalysisEngineMap.get(analysisClass), MAX_CLASS_CONTEXT_RESULTS_TO_CACHE);
+    }
+
+    @Override
+    public <E> void registerClassAnalysisEngine(Class<E> analysisResultType, IClassAnalysisEngine<E> classAnalysisEngine) {
+        classAnalysisEngineMap.put(analysisResultType, classAnalysisEngine);
+    }
+
+    @Override
+    public <E> void registerMethodAnalysisEngine(Class<E> analysisResultType, IMethodAnalysisEngine<E> methodAnalysisEngine) {
+        methodAnalysisEngineMap.put(analysisResultType, methodAnalysisEngine);
+    }
+
+    @Override
+    public <E> void registerDatabaseFactory(Class<E> databaseClass, IDatabaseFactory<E> databaseFactory) {
+        databaseFactoryMap.put(databaseClass, databaseFactory);
+    }
+
+    @Override
+    public <E> E getDatabase(Class<E> databaseClass) {
+        return getDatabase(databaseClass, false);
+    }
+
+    @Override
+    public @CheckForNull <E> E getOptionalDatabase(Class<E> databaseClass) {
+        return getDatabase(databaseClass, true);
+    }
+
+    public <E> E getDatabase(Class<E> databaseClass, boolean optional) {
+        Object database = databaseMap.get(databaseClass);
+
+        if (database == null) {
+            // Databases are created rarely, so it is fine to serialize
+            // their creation
+            synchronized (databaseMap) {
+                database = databaseMap.get(databaseClass);
+                if (database == null) {
+                    try {
+                        // Find the database factory
+                        IDatabaseFactory<?> databaseFactory = databaseFactoryMap.get(databaseClass);
+                        if (databaseFactory == null) {
+                            if (optional) {
+                                return null;
+                            }
+                            throw new IllegalArgumentException("No database factory registered for " + databaseClass.getName());
+                        }
+
+                        // Create the database
+                        database = databaseFactory.createDatabase();
+                    } catch (CheckedAnalysisException e) {
+                        // Error - record the analysis error
+                        database = new AbnormalAnalysisResult(e);
+                    }
+                    databaseMap.put(databaseClass, database);
+                }
+            }
+        }
+
+        if (database instanceof AbnormalAnalysisResult) {
+            throw new UncheckedAnalysisException("Error instantiating " + databaseClass.getName() + " database",
+                    ((AbnormalAnalysisResult) database).checkedAnalysisException);
+        }
+        return databaseClass.cast(database);
+    }
+
+    @Override
+    public <E> void eagerlyPutDatabase(Class<E> databaseClass, E database) {
+        databaseMap.put(databaseClass, database);
+    }
+
+    @Override
+    public IErrorLogger getErrorLogger() {
+        return bugReporter;
+    }
+
+    @Override
+    public Profiler getProfiler() {
+        return bugReporter.getProjectStats().getProfiler();
+    }
+
+    /**
+     * Print statistics about the cached class analysis results: their number
+     * and size, and how often they were found in the cache.
+     *
+     * @param out
+     *            stream to print the statistics to
+     */
+    public void reportStatistics(PrintStream out) {
+        budget.reportStatistics(out);
+    }
+}
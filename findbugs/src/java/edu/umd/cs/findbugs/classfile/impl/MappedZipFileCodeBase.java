@@ -0,0 +1,442 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.classfile.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.ZipException;
+
+import javax.annotation.CheckForNull;
+
+import edu.umd.cs.findbugs.classfile.ICodeBaseEntry;
+import edu.umd.cs.findbugs.classfile.ICodeBaseIterator;
+import edu.umd.cs.findbugs.classfile.ICodeBaseLocator;
+
+/**
+ * Implementation of ICodeBase to read from a zip file or jar file which is
+ * memory-mapped, or from a zip file held in a ByteBuffer (e.g., a stored
+ * nested zip file, which is then read in place).
+ * <p>
+ * The central directory is parsed directly, and the data of stored entries is
+ * accessed as slices of the buffer, without going through ZipFile or
+ * InputStream copies. Zip64 archives, and archives larger than 2GB, are not
+ * supported: a ZipException is thrown, so the caller can fall back on
+ * ZipFileCodeBase.
+ * <p>
+ * A mapping created by this codebase is released explicitly when the codebase
+ * is closed (where the JVM allows it), so that a zip file opened by a
+ * long-running process such as the GUI is neither kept open nor locked until
+ * the next garbage collection. The buffer is only read while holding the read
+ * lock of the codebase (shared with the codebases nested in it), and the
+ * mapping is released while holding its write lock, so a read either
+ * completes before the codebase is closed or fails with an IOException.
+ *
+ * @see ZipCodeBaseFactory
+ */
+public class MappedZipFileCodeBase extends AbstractScannableCodeBase {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+
+    private static final int CENTRAL_HEADER_SIZE = 46;
+
+    private static final int END_SIZE = 22;
+
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+
+    private static final int MAX_COMMENT_SIZE = 0xffff;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final @CheckForNull String pathName;
+
+    private final ByteBuffer buffer;
+
+    /** the mapping owned by this codebase, or null if it owns none */
+    private final @CheckForNull MappedByteBuffer mapping;
+
+    /** the codebase whose buffer contains this one's, if any */
+    private final @CheckForNull MappedZipFileCodeBase outerCodeBase;
+
+    /**
+     * held for reading while the buffer is read, and for writing while the
+     * codebase is closed; shared with the outer codebase, if any
+     */
+    private final ReadWriteLock lock;
+
+    private volatile boolean closed;
+
+    private final List<MappedZipFileCodeBaseEntry> entryList = new ArrayList<MappedZipFileCodeBaseEntry>();
+
+    private final Map<String, MappedZipFileCodeBaseEntry> entryMap = new HashMap<String, MappedZipFileCodeBaseEntry>();
+
+    /**
+     * Constructor.
+     *
+     * @param codeBaseLocator
+     *            the codebase locator for this codebase
+     * @param file
+     *            the zip file, which is memory-mapped
+     */
+    public MappedZipFileCodeBase(ICodeBaseLocator codeBaseLocator, File file) throws IOException {
+        this(codeBaseLocator, file.getPath(), map(file), true, null);
+        setLastModifiedTime(file.lastModified());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param codeBaseLocator
+     *            the codebase locator for this codebase
+     * @param pathName
+     *            filesystem pathname of the zip file, or null if it is not a
+     *            file
+     * @param buffer
+     *            the contents of the zip file, from its position to its limit;
+     *            must not be modified while the codebase is in use
+     */
+    public MappedZipFileCodeBase(ICodeBaseLocator codeBaseLocator, @CheckForNull String pathName, ByteBuffer buffer)
+            throws IOException {
+        this(codeBaseLocator, pathName, buffer, false, null);
+    }
+
+    /**
+     * Constructor for a stored or compressed zip file nested in another
+     * memory-mapped zip file. The nested codebase cannot be read once the
+     * outer one is closed.
+     *
+     * @param codeBaseLocator
+     *            the codebase locator for this codebase
+     * @param entry
+     *            the entry of the outer codebase containing the zip file
+     */
+    MappedZipFileCodeBase(ICodeBaseLocator codeBaseLocator, MappedZipFileCodeBaseEntry entry) throws IOException {
+        this(codeBaseLocator, null, entry.getByteBuffer(), false, (MappedZipFileCodeBase) entry.getCodeBase());
+    }
+
+    private MappedZipFileCodeBase(ICodeBaseLocator codeBaseLocator, @CheckForNull String pathName, ByteBuffer buffer,
+            boolean ownsMapping, @CheckForNull MappedZipFileCodeBase outerCodeBase) throws IOException {
+        super(codeBaseLocator);
+        this.outerCodeBase = outerCodeBase;
+        this.lock = outerCodeBase != null ? outerCodeBase.lock : new ReentrantReadWriteLock();
+        this.pathName = pathName;
+        this.buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        this.mapping = ownsMapping ? (MappedByteBuffer) buffer : null;
+        try {
+            beginRead();
+            try {
+                readCentralDirectory();
+            } finally {
+                endRead();
+            }
+        } catch (IOException e) {
+            // The caller falls back on another kind of codebase
+            close();
+            throw e;
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private static MappedByteBuffer map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new ZipException("Zip file " + file + " is too large to be mapped");
+            }
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void readCentralDirectory() throws IOException {
+        int end = findEndOfCentralDirectory();
+        if (end >= ZIP64_LOCATOR_SIZE && buffer.getInt(end - ZIP64_LOCATOR_SIZE) == ZIP64_LOCATOR_SIGNATURE) {
+            throw new ZipException("Zip64 archives are not supported");
+        }
+        int numEntries = getUnsignedShort(end + 10);
+        long size = getUnsignedInt(end + 12);
+        long offset = getUnsignedInt(end + 16);
+        if (offset + size > end) {
+            throw new ZipException("Invalid central directory");
+        }
+
+        int pos = (int) offset;
+        Calendar calendar = Calendar.getInstance();
+        for (int i = 0; i < numEntries; i++) {
+            if (pos + CENTRAL_HEADER_SIZE > end || buffer.getInt(pos) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid central directory header");
+            }
+            int flags = getUnsignedShort(pos + 8);
+            int method = getUnsignedShort(pos + 10);
+            long time = dosToJavaTime(calendar, getUnsignedInt(pos + 12));
+            long compressedSize = getUnsignedInt(pos + 20);
+            long uncompressedSize = getUnsignedInt(pos + 24);
+            int nameLength = getUnsignedShort(pos + 28);
+            int extraLength = getUnsignedShort(pos + 30);
+            int commentLength = getUnsignedShort(pos + 32);
+            long localHeaderOffset = getUnsignedInt(pos + 42);
+            if (compressedSize >= Integer.MAX_VALUE || uncompressedSize >= Integer.MAX_VALUE
+                    || localHeaderOffset >= Integer.MAX_VALUE) {
+                throw new ZipException("Zip64 entries are not supported");
+            }
+            if (pos + CENTRAL_HEADER_SIZE + nameLength > end) {
+                throw new ZipException("Invalid central directory header");
+            }
+
+            byte[] nameBytes = new byte[nameLength];
+            ByteBuffer nameBuffer = buffer.duplicate();
+            nameBuffer.position(pos + CENTRAL_HEADER_SIZE);
+            nameBuffer.get(nameBytes);
+            String name = new String(nameBytes, UTF8);
+
+            MappedZipFileCodeBaseEntry entry = new MappedZipFileCodeBaseEntry(this, name, flags, method, time,
+                    (int) compressedSize, (int) uncompressedSize, (int) localHeaderOffset);
+            entryList.add(entry);
+            if (!entryMap.containsKey(name)) {
+                entryMap.put(name, entry);
+            }
+            pos += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+    }
+
+    private int findEndOfCentralDirectory() throws IOException {
+        int limit = buffer.limit();
+        int min = Math.max(0, limit - END_SIZE - MAX_COMMENT_SIZE);
+        for (int pos = limit - END_SIZE; pos >= min; pos--) {
+            if (buffer.getInt(pos) == END_SIGNATURE && pos + END_SIZE + getUnsignedShort(pos + 20) <= limit) {
+                return pos;
+            }
+        }
+        throw new ZipException("End of central directory not found");
+    }
+
+    /**
+     * Get a slice of the buffer containing the (possibly compressed) data of
+     * an entry. Must be called, and the slice read, between
+     * {@link #beginRead()} and {@link #endRead()}.
+     *
+     * @param localHeaderOffset
+     *            offset of the entry's local header
+     * @param compressedSize
+     *            size of the entry's data
+     * @return the data
+     */
+    ByteBuffer getEntryData(int localHeaderOffset, int compressedSize) throws IOException {
+        if (localHeaderOffset + LOCAL_HEADER_SIZE > buffer.limit()
+                || buffer.getInt(localHeaderOffset) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Invalid local header at offset " + localHeaderOffset + " of " + this);
+        }
+        int start = localHeaderOffset + LOCAL_HEADER_SIZE + getUnsignedShort(localHeaderOffset + 26)
+                + getUnsignedShort(localHeaderOffset + 28);
+        if (start + compressedSize > buffer.limit()) {
+            throw new ZipException("Truncated entry at offset " + localHeaderOffset + " of " + this);
+        }
+        ByteBuffer data = buffer.duplicate();
+        data.position(start);
+        data.limit(start + compressedSize);
+        return data.slice();
+    }
+
+    /**
+     * Start reading the buffer: the codebase (and the codebase it is nested
+     * in, if any) can't be closed until {@link #endRead()} is called.
+     *
+     * @throws IOException
+     *             if the codebase has been closed
+     */
+    void beginRead() throws IOException {
+        lock.readLock().lock();
+        if (isClosed()) {
+            lock.readLock().unlock();
+            throw new IOException(this + " is closed");
+        }
+    }
+
+    /**
+     * Finish reading the buffer.
+     */
+    void endRead() {
+        lock.readLock().unlock();
+    }
+
+    private boolean isClosed() {
+        return closed || outerCodeBase != null && outerCodeBase.isClosed();
+    }
+
+    private int getUnsignedShort(int pos) {
+        return buffer.getShort(pos) & 0xffff;
+    }
+
+    private long getUnsignedInt(int pos) {
+        return buffer.getInt(pos) & 0xffffffffL;
+    }
+
+    private static long dosToJavaTime(Calendar calendar, long dosTime) {
+        calendar.clear();
+        calendar.set((int) (((dosTime >> 25) & 0x7f) + 1980), (int) (((dosTime >> 21) & 0x0f) - 1),
+                (int) ((dosTime >> 16) & 0x1f), (int) ((dosTime >> 11) & 0x1f), (int) ((dosTime >> 5) & 0x3f),
+                (int) ((dosTime << 1) & 0x3e));
+        return calendar.getTimeInMillis();
+    }
+
+    @Override
+    public ICodeBaseEntry lookupResource(String resourceName) {
+        // Translate resource name, in case a resource name
+        // has been overridden and the resource is being accessed
+        // using the overridden name.
+        resourceName = translateResourceName(resourceName);
+
+        return entryMap.get(resourceName);
+    }
+
+    @Override
+    public ICodeBaseIterator iterator() {
+        final Iterator<MappedZipFileCodeBaseEntry> entryIterator = entryList.iterator();
+
+        return new ICodeBaseIterator() {
+            MappedZipFileCodeBaseEntry nextEntry;
+
+            @Override
+            public boolean hasNext() {
+                scanForNextEntry();
+                return nextEntry != null;
+            }
+
+            @Override
+            public ICodeBaseEntry next() throws InterruptedException {
+                scanForNextEntry();
+                if (nextEntry == null) {
+                    throw new NoSuchElementException();
+                }
+                ICodeBaseEntry result = nextEntry;
+                nextEntry = null;
+                return result;
+            }
+
+            private void scanForNextEntry() {
+                while (nextEntry == null) {
+                    if (!entryIterator.hasNext()) {
+                        return;
+                    }
+
+                    MappedZipFileCodeBaseEntry entry = entryIterator.next();
+
+                    if (!entry.isDirectory()) {
+                        addLastModifiedTime(entry.getTime());
+                        nextEntry = entry;
+                        break;
+                    }
+                }
+            }
+        };
+    }
+
+    @Override
+    public String getPathName() {
+        return pathName;
+    }
+
+    @Override
+    public void close() {
+        // Wait for reads of the buffer to finish
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (mapping != null) {
+                unmap(mapping);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Release a mapping without waiting for the buffer to be garbage
+     * collected. There is no public API for this, so the JVM's internal
+     * cleaner is called reflectively; if that is not possible, the mapping is
+     * left to the garbage collector.
+     */
+    private static void unmap(MappedByteBuffer mapping) {
+        try {
+            // Java 9 and later
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), mapping);
+            return;
+        } catch (Exception e) {
+            // Fall through
+        } catch (LinkageError e) {
+            // Fall through
+        }
+        try {
+            // Java 8 and earlier
+            Method cleanerMethod = mapping.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(mapping);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception e) {
+            // Not supported: the mapping is released when the buffer
+            // is garbage collected
+        } catch (LinkageError e) {
+            // Likewise
+        }
+    }
+
+    @Override
+    public String toString() {
+        return pathName != null ? pathName : getCodeBaseLocator().toString();
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.classfile.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+
+/**
+ * Implementation of ICodeBaseEntry for resources in memory-mapped zipfile
+ * codebases.
+ *
+ * @see MappedZipFileCodeBase
+ */
+public class MappedZipFileCodeBaseEntry extends AbstractScannableCodeBaseEntry {
+    private static final int ENCRYPTED = 1;
+
+    private final MappedZipFileCodeBase codeBase;
+
+    private final String name;
+
+    private final int flags;
+
+    private final int method;
+
+    private final long time;
+
+    private final int compressedSize;
+
+    private final int size;
+
+    private final int localHeaderOffset;
+
+    MappedZipFileCodeBaseEntry(MappedZipFileCodeBase codeBase, String name, int flags, int method, long time,
+            int compressedSize, int size, int localHeaderOffset) {
+        this.codeBase = codeBase;
+        this.name = name;
+        this.flags = flags;
+        this.method = method;
+        this.time = time;
+        this.compressedSize = compressedSize;
+        this.size = size;
+        this.localHeaderOffset = localHeaderOffset;
+    }
+
+    boolean isDirectory() {
+        return name.endsWith("/");
+    }
+
+    long getTime() {
+        return time;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see edu.umd.cs.findbugs.classfile.ICodeBaseEntry#getNumBytes()
+     */
+    @Override
+    public int getNumBytes() {
+        return size;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see edu.umd.cs.findbugs.classfile.ICodeBaseEntry#openResource()
+     */
+    @Override
+    public InputStream openResource() throws IOException {
+        if (method == ZipEntry.STORED) {
+            codeBase.beginRead();
+            try {
+                return new ByteBufferInputStream(codeBase, getCompressedData());
+            } finally {
+                codeBase.endRead();
+            }
+        }
+        return new ByteArrayInputStream(getBytes());
+    }
+
+    /**
+     * Get the contents of the resource as a buffer. The contents of a stored
+     * entry are a read-only slice of the codebase's buffer, so they are not
+     * copied, and must only be read between
+     * {@link MappedZipFileCodeBase#beginRead()} and
+     * {@link MappedZipFileCodeBase#endRead()}; the contents of a compressed
+     * entry are inflated into a new buffer.
+     *
+     * @return the contents of the resource
+     */
+    ByteBuffer getByteBuffer() throws IOException {
+        if (method == ZipEntry.STORED) {
+            codeBase.beginRead();
+            try {
+                return getCompressedData().asReadOnlyBuffer();
+            } finally {
+                codeBase.endRead();
+            }
+        }
+        return ByteBuffer.wrap(getBytes());
+    }
+
+    /**
+     * Get the contents of the resource, copied or inflated directly from the
+     * codebase's buffer into an array of the exact size.
+     *
+     * @return the contents of the resource
+     */
+    public byte[] getBytes() throws IOException {
+        codeBase.beginRead();
+        try {
+            return readBytes();
+        } finally {
+            codeBase.endRead();
+        }
+    }
+
+    private byte[] readBytes() throws IOException {
+        ByteBuffer data = getCompressedData();
+        byte[] result = new byte[size];
+        if (method == ZipEntry.STORED) {
+            data.get(result);
+            return result;
+        }
+
+        Inflater inflater = new Inflater(true);
+        try {
+            if (data.hasArray()) {
+                inflater.setInput(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            } else {
+                byte[] input = new byte[data.remaining()];
+                data.get(input);
+                inflater.setInput(input);
+            }
+            int pos = 0;
+            while (pos < size) {
+                int n = inflater.inflate(result, pos, size - pos);
+                if (n == 0) {
+                    // Finished, or needs more input or a dictionary
+                    break;
+                }
+                pos += n;
+            }
+            if (pos < size) {
+                throw new ZipException("Truncated entry " + name + " in " + codeBase);
+            }
+            return result;
+        } catch (DataFormatException e) {
+            ZipException zipException = new ZipException("Invalid compressed data for " + name + " in " + codeBase);
+            zipException.initCause(e);
+            throw zipException;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private ByteBuffer getCompressedData() throws IOException {
+        if ((flags & ENCRYPTED) != 0) {
+            throw new ZipException("Entry " + name + " in " + codeBase + " is encrypted");
+        }
+        if (method != ZipEntry.STORED && method != ZipEntry.DEFLATED) {
+            throw new ZipException("Unsupported compression method " + method + " for " + name + " in " + codeBase);
+        }
+        if (method == ZipEntry.STORED && compressedSize != size) {
+            throw new ZipException("Invalid size of stored entry " + name + " in " + codeBase);
+        }
+        return codeBase.getEntryData(localHeaderOffset, compressedSize);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * edu.umd.cs.findbugs.classfile.impl.AbstractScannableCodeBaseEntry#getCodeBase
+     * ()
+     */
+    @Override
+    public AbstractScannableCodeBase getCodeBase() {
+        return codeBase;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see edu.umd.cs.findbugs.classfile.impl.AbstractScannableCodeBaseEntry#
+     * getRealResourceName()
+     */
+    @Override
+    public String getRealResourceName() {
+        return name;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see edu.umd.cs.findbugs.classfile.ICodeBaseEntry#getClassDescriptor()
+     */
+    @Override
+    public ClassDescriptor getClassDescriptor() {
+        return DescriptorFactory.createClassDescriptorFromResourceName(getResourceName());
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || obj.getClass() != this.getClass()) {
+            return false;
+        }
+        MappedZipFileCodeBaseEntry other = (MappedZipFileCodeBaseEntry) obj;
+        return this.codeBase.equals(other.codeBase) && this.localHeaderOffset == other.localHeaderOffset;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return 7919 * codeBase.hashCode() + localHeaderOffset;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return getCodeBase() + ":" + getResourceName();
+    }
+
+    /**
+     * InputStream reading the remaining bytes of a buffer of a codebase, which
+     * fails once the codebase is closed. Each read holds the read lock of the
+     * codebase.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final MappedZipFileCodeBase codeBase;
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(MappedZipFileCodeBase codeBase, ByteBuffer buffer) {
+            this.codeBase = codeBase;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() throws IOException {
+            codeBase.beginRead();
+            try {
+                return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+            } finally {
+                codeBase.endRead();
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            codeBase.beginRead();
+            try {
+                if (!buffer.hasRemaining()) {
+                    return -1;
+                }
+                int n = Math.min(len, buffer.remaining());
+                buffer.get(b, off, n);
+                return n;
+            } finally {
+                codeBase.endRead();
+            }
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -25,6 +25,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.zip.ZipException;
 
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.classfile.ICodeBase;
@@ -35,9 +36,10 @@ import edu.umd.cs.findbugs.io.IO;
 
 /**
  * A scannable code base class for a zip (or Jar) file nested inside some other
- * codebase. These are handled by extracting the nested zip/jar file to a
- * temporary file, and delegating to an internal ZipFileCodeBase that reads from
- * the temporary file.
+ * codebase. If the parent codebase is memory-mapped, the nested zip/jar file is
+ * read in place by an internal MappedZipFileCodeBase. Otherwise, it is
+ * extracted to a temporary file, and we delegate to an internal ZipFileCodeBase
+ * that reads from the temporary file.
  *
  * @author David Hovemeyer
  */
@@ -61,6 +63,30 @@ public class NestedZipFileCodeBase extends AbstractScannableCodeBase {
         this.parentCodeBase = codeBaseLocator.getParentCodeBase();
         this.resourceName = codeBaseLocator.getResourceName();
 
+        ICodeBaseEntry resource = parentCodeBase.lookupResource(resourceName);
+        if (resource == null) {
+            throw new ResourceNotFoundException(resourceName);
+        }
+
+        // A nested zip file in a memory-mapped zip file is read in place
+        // (or, if it is compressed, from memory) instead of being
+        // extracted to a temporary file
+        if (ZipCodeBaseFactory.MAP_ZIP_FILES) {
+            ICodeBaseEntry realResource = resource;
+            while (realResource instanceof DelegatingCodeBaseEntry) {
+                realResource = ((DelegatingCodeBaseEntry) realResource).getDelegateCodeBaseEntry();
+            }
+            if (realResource instanceof MappedZipFileCodeBaseEntry) {
+                try {
+                    delegateCodeBase = new MappedZipFileCodeBase(codeBaseLocator,
+                            (MappedZipFileCodeBaseEntry) realResource);
+                    return;
+                } catch (ZipException e) {
+                    // Unsupported: extract it to a temporary file
+                }
+            }
+        }
+
         InputStream inputStream = null;
         OutputStream outputStream = null;
         try {
@@ -72,10 +98,6 @@ public class NestedZipFileCodeBase extends AbstractScannableCodeBase {
             // Copy nested zipfile to the temporary file
             // FIXME: potentially long blocking operation - should be
             // interruptible
-            ICodeBaseEntry resource = parentCodeBase.lookupResource(resourceName);
-            if (resource == null) {
-                throw new ResourceNotFoundException(resourceName);
-            }
             inputStream = resource.openResource();
             outputStream = new BufferedOutputStream(new FileOutputStream(tempFile));
             IO.copy(inputStream, outputStream);
@@ -137,7 +159,7 @@ public class NestedZipFileCodeBase extends AbstractScannableCodeBase {
     @Override
     public void close() {
         delegateCodeBase.close();
-        if (!tempFile.delete()) {
+        if (tempFile != null && !tempFile.delete()) {
             AnalysisContext.logError("Could not delete " + tempFile);
         }
     }
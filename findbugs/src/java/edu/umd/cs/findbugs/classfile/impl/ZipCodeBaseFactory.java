@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.zip.ZipException;
 
+import edu.umd.cs.findbugs.SystemProperties;
 import edu.umd.cs.findbugs.classfile.Global;
 import edu.umd.cs.findbugs.classfile.ICodeBaseLocator;
 import edu.umd.cs.findbugs.log.Profiler;
@@ -32,10 +33,24 @@ import edu.umd.cs.findbugs.log.Profiler;
  */
 public class ZipCodeBaseFactory {
 
+    /**
+     * Whether zip files are memory-mapped and read by MappedZipFileCodeBase;
+     * set findbugs.zip.noMapping to read them through java.util.zip.
+     */
+    static final boolean MAP_ZIP_FILES = !SystemProperties.getBoolean("findbugs.zip.noMapping");
+
     public static AbstractScannableCodeBase makeZipCodeBase(ICodeBaseLocator codeBaseLocator, File file) throws IOException {
         Profiler profiler = Global.getAnalysisCache().getProfiler();
         profiler.start(ZipCodeBaseFactory.class);
         try {
+            if (MAP_ZIP_FILES) {
+                try {
+                    return new MappedZipFileCodeBase(codeBaseLocator, file);
+                } catch (IOException e) {
+                    // Unsupported (e.g., Zip64) or damaged: fall back on
+                    // java.util.zip, which also gives better error messages
+                }
+            }
             return new ZipFileCodeBase(codeBaseLocator, file);
         } catch (ZipException e) {
             // May be too many zip entries
@@ -44,8 +59,4 @@ public class ZipCodeBaseFactory {
             profiler.end(ZipCodeBaseFactory.class);
         }
     }
-
-
-
-
 }
@@ -27,10 +27,11 @@ import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.Priorities;
+import edu.umd.cs.findbugs.StatelessDetector;
 import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 
-public class AppendingToAnObjectOutputStream extends OpcodeStackDetector {
+public class AppendingToAnObjectOutputStream extends OpcodeStackDetector implements StatelessDetector {
 
     BugReporter bugReporter;
 
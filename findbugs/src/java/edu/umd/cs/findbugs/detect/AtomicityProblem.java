@@ -26,6 +26,7 @@ import org.apache.bcel.classfile.Code;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.OpcodeStack;
+import edu.umd.cs.findbugs.StatelessDetector;
 import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.ba.XClass;
 import edu.umd.cs.findbugs.ba.XMethod;
@@ -38,7 +39,7 @@ import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
  *
  * @author Michael Midgley-Biggs
  */
-public class AtomicityProblem extends OpcodeStackDetector {
+public class AtomicityProblem extends OpcodeStackDetector implements StatelessDetector {
 
     int priority = IGNORE_PRIORITY;
 
@@ -28,9 +28,10 @@ import org.apache.bcel.classfile.Method;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.BytecodeScanningDetector;
+import edu.umd.cs.findbugs.StatelessDetector;
 import edu.umd.cs.findbugs.ba.ClassContext;
 
-public class BadAppletConstructor extends BytecodeScanningDetector {
+public class BadAppletConstructor extends BytecodeScanningDetector implements StatelessDetector {
     private final BugReporter bugReporter;
 
     private final JavaClass appletClass;
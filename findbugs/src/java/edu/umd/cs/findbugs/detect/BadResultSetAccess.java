@@ -27,12 +27,13 @@ import java.util.Set;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.OpcodeStack;
+import edu.umd.cs.findbugs.StatelessDetector;
 import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 import edu.umd.cs.findbugs.internalAnnotations.StaticConstant;
 import edu.umd.cs.findbugs.visitclass.PreorderVisitor;
 
-public class BadResultSetAccess extends OpcodeStackDetector {
+public class BadResultSetAccess extends OpcodeStackDetector implements StatelessDetector {
 
     @StaticConstant
     private static final Set<String> dbFieldTypesSet = new HashSet<String>() {
@@ -26,10 +26,11 @@ import java.util.regex.PatternSyntaxException;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.OpcodeStack;
+import edu.umd.cs.findbugs.StatelessDetector;
 import edu.umd.cs.findbugs.StringAnnotation;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 
-public class BadSyntaxForRegularExpression extends OpcodeStackDetector {
+public class BadSyntaxForRegularExpression extends OpcodeStackDetector implements StatelessDetector {
 
     BugReporter bugReporter;
 
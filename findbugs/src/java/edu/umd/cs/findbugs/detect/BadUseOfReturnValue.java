@@ -25,8 +25,9 @@ import edu.umd.cs.findbugs.BugAccumulator;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.BytecodeScanningDetector;
+import edu.umd.cs.findbugs.StatelessDetector;
 
-public class BadUseOfReturnValue extends BytecodeScanningDetector {
+public class BadUseOfReturnValue extends BytecodeScanningDetector implements StatelessDetector {
 
     BugAccumulator bugAccumulator;
 
@@ -27,11 +27,13 @@ import org.apache.bcel.classfile.ClassElementValue;
 import org.apache.bcel.classfile.ElementValue;
 import org.apache.bcel.classfile.EnumElementValue;
 
+import edu.umd.cs.findbugs.LibrarySummaryOutput;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.AnnotationDatabase;
 import edu.umd.cs.findbugs.ba.AnnotationDatabase.Target;
 import edu.umd.cs.findbugs.ba.CheckReturnValueAnnotation;
 import edu.umd.cs.findbugs.ba.XFactory;
+import edu.umd.cs.findbugs.ba.XMethod;
 import edu.umd.cs.findbugs.internalAnnotations.DottedClassName;
 import edu.umd.cs.findbugs.internalAnnotations.StaticConstant;
 import edu.umd.cs.findbugs.visitclass.AnnotationVisitor;
@@ -45,6 +47,10 @@ import edu.umd.cs.findbugs.visitclass.AnnotationVisitor;
 
 public class BuildCheckReturnAnnotationDatabase extends AnnotationVisitor {
 
+    static final byte DIRECT_ANNOTATION = 1;
+
+    static final byte DEFAULT_ANNOTATION = 2;
+
     private static final String DEFAULT_ANNOTATION_ANNOTATION_CLASS = "DefaultAnnotation";
 
     @StaticConstant
@@ -56,6 +62,9 @@ public class BuildCheckReturnAnnotationDatabase extends AnnotationVisitor {
         defaultKind.put("ForFields", AnnotationDatabase.Target.FIELD);
     }
 
+    /** If not null, records every annotation added to the database */
+    protected LibrarySummaryOutput summaryOutput;
+
     public BuildCheckReturnAnnotationDatabase() {
 
     }
@@ -126,11 +135,9 @@ public class BuildCheckReturnAnnotationDatabase extends AnnotationVisitor {
             return;
         }
         if (visitingMethod()) {
-            AnalysisContext.currentAnalysisContext().getCheckReturnAnnotationDatabase()
-            .addDirectAnnotation(XFactory.createXMethod(this), n);
+            addDirectAnnotation(XFactory.createXMethod(this), n);
         } else {
-            AnalysisContext.currentAnalysisContext().getCheckReturnAnnotationDatabase()
-            .addDefaultAnnotation(Target.METHOD, getDottedClassName(), n);
+            addDefaultAnnotation(Target.METHOD, getDottedClassName(), n);
         }
 
     }
@@ -139,11 +146,29 @@ public class BuildCheckReturnAnnotationDatabase extends AnnotationVisitor {
         if ("CheckReturnValue".equals(simpleClassName(value.getClassString()))) {
             CheckReturnValueAnnotation n = CheckReturnValueAnnotation.parse(getAnnotationParameterAsString(map, "priority"));
             if (n != null) {
-                AnalysisContext.currentAnalysisContext().getCheckReturnAnnotationDatabase()
-                .addDefaultAnnotation(annotationTarget, getDottedClassName(), n);
+                addDefaultAnnotation(annotationTarget, getDottedClassName(), n);
             }
 
         }
     }
 
+    private void addDirectAnnotation(XMethod m, CheckReturnValueAnnotation n) {
+        AnalysisContext.currentAnalysisContext().getCheckReturnAnnotationDatabase().addDirectAnnotation(m, n);
+        if (summaryOutput != null) {
+            summaryOutput.writeByte(DIRECT_ANNOTATION);
+            summaryOutput.writeXMethod(m);
+            summaryOutput.writeInt(n.getIndex());
+        }
+    }
+
+    private void addDefaultAnnotation(Target target, @DottedClassName String className, CheckReturnValueAnnotation n) {
+        AnalysisContext.currentAnalysisContext().getCheckReturnAnnotationDatabase().addDefaultAnnotation(target, className, n);
+        if (summaryOutput != null) {
+            summaryOutput.writeByte(DEFAULT_ANNOTATION);
+            summaryOutput.writeByte(target.ordinal());
+            summaryOutput.writeString(className);
+            summaryOutput.writeInt(n.getIndex());
+        }
+    }
+
 }
@@ -19,6 +19,7 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -29,13 +30,20 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 
+import javax.annotation.CheckForNull;
+
 import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.Method;
 
 import edu.umd.cs.findbugs.BugReporter;
+import edu.umd.cs.findbugs.LibrarySummaryDetector;
+import edu.umd.cs.findbugs.LibrarySummaryInput;
+import edu.umd.cs.findbugs.LibrarySummaryOutput;
 import edu.umd.cs.findbugs.NonReportingDetector;
 import edu.umd.cs.findbugs.OpcodeStack.Item;
+import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 import edu.umd.cs.findbugs.classfile.Global;
 import edu.umd.cs.findbugs.classfile.MethodDescriptor;
 
@@ -43,7 +51,7 @@ import edu.umd.cs.findbugs.classfile.MethodDescriptor;
  * Builds the database of string parameters passed from method to method unchanged.
  * @author Tagir Valeev
  */
-public class BuildStringPassthruGraph extends OpcodeStackDetector implements NonReportingDetector {
+public class BuildStringPassthruGraph extends OpcodeStackDetector implements NonReportingDetector, LibrarySummaryDetector {
 
     public static class MethodParameter {
         final MethodDescriptor md;
@@ -211,6 +219,8 @@ public class BuildStringPassthruGraph extends OpcodeStackDetector implements Non
 
     private List<MethodParameter>[] passedParameters;
 
+    private LibrarySummaryOutput summaryOutput;
+
     public BuildStringPassthruGraph(BugReporter bugReporter) {
         Global.getAnalysisCache().eagerlyPutDatabase(StringPassthruDatabase.class, cache);
     }
@@ -253,11 +263,41 @@ public class BuildStringPassthruGraph extends OpcodeStackDetector implements Non
                 MethodParameter cur = new MethodParameter(getMethodDescriptor(), i);
                 for (MethodParameter mp : list) {
                     cache.addEdge(mp, cur);
+                    if (summaryOutput != null) {
+                        summaryOutput.writeBoolean(true);
+                        summaryOutput.writeMethodDescriptor(mp.getMethodDescriptor());
+                        summaryOutput.writeInt(mp.getParameterNumber());
+                        summaryOutput.writeMethodDescriptor(cur.getMethodDescriptor());
+                        summaryOutput.writeInt(cur.getParameterNumber());
+                    }
                 }
             }
         }
     }
 
+    @Override
+    public void visitClassContext(ClassContext classContext) {
+        super.visitClassContext(classContext);
+        if (summaryOutput != null) {
+            summaryOutput.writeBoolean(false);
+        }
+    }
+
+    @Override
+    public void setSummaryOutput(@CheckForNull LibrarySummaryOutput out) {
+        summaryOutput = out;
+    }
+
+    @Override
+    public void replaySummary(ClassDescriptor classDescriptor, LibrarySummaryInput in) throws IOException {
+        while (in.readBoolean()) {
+            MethodDescriptor calleeMethod = in.readMethodDescriptor();
+            MethodParameter callee = new MethodParameter(calleeMethod, in.readInt());
+            MethodDescriptor callerMethod = in.readMethodDescriptor();
+            cache.addEdge(callee, new MethodParameter(callerMethod, in.readInt()));
+        }
+    }
+
     @Override
     public void sawOpcode(int seen) {
         if (isRegisterStore()) {
@@ -19,21 +19,37 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.io.IOException;
 import java.util.HashSet;
 
+import javax.annotation.CheckForNull;
+
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.BytecodeScanningDetector;
+import edu.umd.cs.findbugs.LibrarySummaryDetector;
+import edu.umd.cs.findbugs.LibrarySummaryInput;
+import edu.umd.cs.findbugs.LibrarySummaryOutput;
 import edu.umd.cs.findbugs.NonReportingDetector;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.ba.XFactory;
 import edu.umd.cs.findbugs.ba.XField;
 import edu.umd.cs.findbugs.ba.ch.Subtypes2;
 import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
 
 /**
  * Detector to find private methods that are never called.
  */
-public class CalledMethods extends BytecodeScanningDetector implements NonReportingDetector {
+public class CalledMethods extends BytecodeScanningDetector implements NonReportingDetector, LibrarySummaryDetector {
+    private static final int EMPTY_ARRAY_STORED = 1;
+
+    private static final int NON_EMPTY_ARRAY_STORED = 2;
+
+    private static final int FIELD_COPIED = 3;
+
+    private static final int METHOD_CALLED = 4;
+
     boolean emptyArrayOnTOS;
 
     HashSet<XField> emptyArray = new HashSet<XField>();
@@ -42,6 +58,14 @@ public class CalledMethods extends BytecodeScanningDetector implements NonReport
 
     XFactory xFactory = AnalysisContext.currentXFactory();
 
+    private LibrarySummaryOutput summaryOutput;
+
+    /** Field loaded by the previous instruction, when summarizing */
+    private XField loadedField;
+
+    /** Methods called by the visited class, when summarizing */
+    private final HashSet<MethodDescriptor> calledMethods = new HashSet<MethodDescriptor>();
+
     public CalledMethods(BugReporter bugReporter) {
 
     }
@@ -53,6 +77,18 @@ public class CalledMethods extends BytecodeScanningDetector implements NonReport
             XField f = getXFieldOperand();
             if (f != null) {
                 if (f.isFinal() || !f.isProtected() && !f.isPublic()) {
+                    if (summaryOutput != null) {
+                        // Whether a copied field holds an empty array may
+                        // depend on classes visited later
+                        if (loadedField != null) {
+                            summaryOutput.writeByte(FIELD_COPIED);
+                            summaryOutput.writeXField(f);
+                            summaryOutput.writeXField(loadedField);
+                        } else {
+                            summaryOutput.writeByte(emptyArrayOnTOS ? EMPTY_ARRAY_STORED : NON_EMPTY_ARRAY_STORED);
+                            summaryOutput.writeXField(f);
+                        }
+                    }
                     if (emptyArrayOnTOS) {
                         emptyArray.add(f);
                     } else {
@@ -64,18 +100,26 @@ public class CalledMethods extends BytecodeScanningDetector implements NonReport
         }
         emptyArrayOnTOS = (seen == ANEWARRAY || seen == NEWARRAY || seen == MULTIANEWARRAY && getIntConstant() == 1)
                 && getPrevOpcode(1) == ICONST_0;
+        loadedField = null;
 
         if (seen == GETSTATIC || seen == GETFIELD) {
             XField f = getXFieldOperand();
-            if (emptyArray.contains(f) && !nonEmptyArray.contains(f) && f.isFinal()) {
+            if (isEmptyArray(f)) {
                 emptyArrayOnTOS = true;
             }
+            loadedField = f;
         }
         switch (seen) {
         case INVOKEVIRTUAL:
         case INVOKESPECIAL:
         case INVOKESTATIC:
         case INVOKEINTERFACE:
+            if (summaryOutput != null && calledMethods.add(getMethodDescriptorOperand())) {
+                // Which classes are application classes depends on the
+                // analyzed application
+                summaryOutput.writeByte(METHOD_CALLED);
+                summaryOutput.writeMethodDescriptor(getMethodDescriptorOperand());
+            }
             ClassDescriptor c = getClassDescriptorOperand();
             Subtypes2 subtypes2 = AnalysisContext.currentAnalysisContext().getSubtypes2();
             if (subtypes2.isApplicationClass(c)) {
@@ -88,6 +132,57 @@ public class CalledMethods extends BytecodeScanningDetector implements NonReport
         }
     }
 
+    private boolean isEmptyArray(XField f) {
+        return emptyArray.contains(f) && !nonEmptyArray.contains(f) && f.isFinal();
+    }
+
+    @Override
+    public void visitClassContext(ClassContext classContext) {
+        loadedField = null;
+        calledMethods.clear();
+        super.visitClassContext(classContext);
+        if (summaryOutput != null) {
+            summaryOutput.writeByte(0);
+        }
+    }
+
+    @Override
+    public void setSummaryOutput(@CheckForNull LibrarySummaryOutput out) {
+        summaryOutput = out;
+    }
+
+    @Override
+    public void replaySummary(ClassDescriptor classDescriptor, LibrarySummaryInput in) throws IOException {
+        Subtypes2 subtypes2 = AnalysisContext.currentAnalysisContext().getSubtypes2();
+        int kind;
+        while ((kind = in.readByte()) != 0) {
+            switch (kind) {
+            case EMPTY_ARRAY_STORED:
+                emptyArray.add(in.readXField());
+                break;
+            case NON_EMPTY_ARRAY_STORED:
+                nonEmptyArray.add(in.readXField());
+                break;
+            case FIELD_COPIED:
+                XField f = in.readXField();
+                if (isEmptyArray(in.readXField())) {
+                    emptyArray.add(f);
+                } else {
+                    nonEmptyArray.add(f);
+                }
+                break;
+            case METHOD_CALLED:
+                MethodDescriptor m = in.readMethodDescriptor();
+                if (subtypes2.isApplicationClass(m.getClassDescriptor())) {
+                    xFactory.addCalledMethod(m);
+                }
+                break;
+            default:
+                throw new IOException("Bad called methods entry kind " + kind);
+            }
+        }
+    }
+
     @Override
     public void report() {
         emptyArray.removeAll(nonEmptyArray);
@@ -98,4 +193,3 @@ public class CalledMethods extends BytecodeScanningDetector implements NonReport
     }
 
 }
-
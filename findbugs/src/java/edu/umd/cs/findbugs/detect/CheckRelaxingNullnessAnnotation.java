@@ -44,6 +44,7 @@ import org.objectweb.asm.tree.MethodNode;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.LocalVariableAnnotation;
+import edu.umd.cs.findbugs.StatelessDetector;
 import edu.umd.cs.findbugs.asm.ClassNodeDetector;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.Hierarchy;
@@ -72,7 +73,7 @@ import edu.umd.cs.findbugs.util.ClassName;
  * @author alienisty (Alessandro Nistico)
  * @author Andrey Loskutov
  */
-public class CheckRelaxingNullnessAnnotation extends ClassNodeDetector {
+public class CheckRelaxingNullnessAnnotation extends ClassNodeDetector implements StatelessDetector {
 
     XClass xclass;
 
@@ -80,6 +81,15 @@ public class CheckRelaxingNullnessAnnotation extends ClassNodeDetector {
         super(bugReporter);
     }
 
+    @Override
+    public Object clone() {
+        try {
+            return super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
     @Override
     public void visitClass(ClassDescriptor classDescriptor) throws CheckedAnalysisException {
         xclass = getClassInfo(classDescriptor);
@@ -41,6 +41,7 @@ import edu.umd.cs.findbugs.IntAnnotation;
 import edu.umd.cs.findbugs.LocalVariableAnnotation;
 import edu.umd.cs.findbugs.Priorities;
 import edu.umd.cs.findbugs.SourceLineAnnotation;
+import edu.umd.cs.findbugs.StatelessDetector;
 import edu.umd.cs.findbugs.StringAnnotation;
 import edu.umd.cs.findbugs.SystemProperties;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
@@ -87,7 +88,7 @@ import edu.umd.cs.findbugs.util.Util;
  *
  * @author David Hovemeyer
  */
-public class CheckTypeQualifiers extends CFGDetector {
+public class CheckTypeQualifiers extends CFGDetector implements StatelessDetector {
     private static final boolean DEBUG = SystemProperties.getBoolean("ctq.debug");
 
     private static final boolean DEBUG_DATAFLOW = SystemProperties.getBoolean("ctq.dataflow.debug");
@@ -115,6 +116,15 @@ public class CheckTypeQualifiers extends CFGDetector {
      * edu.umd.cs.findbugs.bcel.CFGDetector#visitClass(edu.umd.cs.findbugs.classfile
      * .ClassDescriptor)
      */
+    @Override
+    public Object clone() {
+        try {
+            return super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
     @Override
     public void visitClass(ClassDescriptor classDescriptor) throws CheckedAnalysisException {
 
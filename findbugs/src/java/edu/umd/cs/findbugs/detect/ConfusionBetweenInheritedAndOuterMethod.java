@@ -28,13 +28,14 @@ import org.apache.bcel.classfile.LocalVariableTable;
 import edu.umd.cs.findbugs.BugAccumulator;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
+import edu.umd.cs.findbugs.StatelessDetector;
 import edu.umd.cs.findbugs.ba.XFactory;
 import edu.umd.cs.findbugs.ba.XMethod;
 import edu.umd.cs.findbugs.ba.ch.Subtypes2;
 import edu.umd.cs.findbugs.bcel.BCELUtil;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 
-public class ConfusionBetweenInheritedAndOuterMethod extends OpcodeStackDetector {
+public class ConfusionBetweenInheritedAndOuterMethod extends OpcodeStackDetector implements StatelessDetector {
 
     BugAccumulator bugAccumulator;
 
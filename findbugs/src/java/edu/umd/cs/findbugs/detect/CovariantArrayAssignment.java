@@ -27,6 +27,7 @@ import edu.umd.cs.findbugs.BugAccumulator;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.OpcodeStack.Item;
+import edu.umd.cs.findbugs.StatelessDetector;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.SignatureParser;
 import edu.umd.cs.findbugs.ba.XClass;
@@ -41,7 +42,7 @@ import edu.umd.cs.findbugs.internalAnnotations.SlashedClassName;
 /**
  * @author Tagir Valeev
  */
-public class CovariantArrayAssignment extends OpcodeStackDetector {
+public class CovariantArrayAssignment extends OpcodeStackDetector implements StatelessDetector {
     private final BugAccumulator accumulator;
 
     public CovariantArrayAssignment(BugReporter bugReporter) {
@@ -10,6 +10,7 @@ import edu.umd.cs.findbugs.BugAccumulator;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.MethodAnnotation;
+import edu.umd.cs.findbugs.StatelessDetector;
 import edu.umd.cs.findbugs.ba.AnnotationDatabase;
 import edu.umd.cs.findbugs.ba.AnnotationEnumeration;
 import edu.umd.cs.findbugs.ba.XFactory;
@@ -38,7 +39,7 @@ import edu.umd.cs.findbugs.internalAnnotations.DottedClassName;
  *
  * @author Robin Fernandes
  */
-public class DefaultEncodingDetector extends OpcodeStackDetector {
+public class DefaultEncodingDetector extends OpcodeStackDetector implements StatelessDetector {
 
     private final BugAccumulator bugAccumulator;
 
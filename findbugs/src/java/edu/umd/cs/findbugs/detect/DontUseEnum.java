@@ -28,9 +28,10 @@ import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.LocalVariableAnnotation;
 import edu.umd.cs.findbugs.SourceLineAnnotation;
+import edu.umd.cs.findbugs.StatelessDetector;
 import edu.umd.cs.findbugs.bcel.PreorderDetector;
 
-public class DontUseEnum extends PreorderDetector {
+public class DontUseEnum extends PreorderDetector implements StatelessDetector {
 
     BugReporter bugReporter;
 
@@ -19,16 +19,23 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.io.IOException;
+
+import javax.annotation.CheckForNull;
+
 import org.apache.bcel.classfile.Code;
 import org.apache.bcel.generic.Type;
 
 import edu.umd.cs.findbugs.BugAccumulator;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.FirstPassDetector;
+import edu.umd.cs.findbugs.LibrarySummaryDetector;
+import edu.umd.cs.findbugs.LibrarySummaryInput;
+import edu.umd.cs.findbugs.LibrarySummaryOutput;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.TypeAnnotation;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.ba.ClassSummary;
 import edu.umd.cs.findbugs.ba.IncompatibleTypes;
 import edu.umd.cs.findbugs.ba.ch.Subtypes2;
@@ -37,7 +44,7 @@ import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 import edu.umd.cs.findbugs.classfile.DescriptorFactory;
 import edu.umd.cs.findbugs.util.ClassName;
 
-public class EqualsOperandShouldHaveClassCompatibleWithThis extends OpcodeStackDetector implements FirstPassDetector {
+public class EqualsOperandShouldHaveClassCompatibleWithThis extends OpcodeStackDetector implements LibrarySummaryDetector {
 
     final BugReporter bugReporter;
 
@@ -45,6 +52,8 @@ public class EqualsOperandShouldHaveClassCompatibleWithThis extends OpcodeStackD
 
     final ClassSummary classSummary = new ClassSummary();
 
+    private LibrarySummaryOutput summaryOutput;
+
     public EqualsOperandShouldHaveClassCompatibleWithThis(BugReporter bugReporter) {
         this.bugReporter = bugReporter;
         this.bugAccumulator = new BugAccumulator(bugReporter);
@@ -106,22 +115,21 @@ public class EqualsOperandShouldHaveClassCompatibleWithThis extends OpcodeStackD
             if (c.equals(thisClassDescriptor)) {
                 return;
             }
-            Subtypes2 subtypes2 = AnalysisContext.currentAnalysisContext().getSubtypes2();
+            if (summaryOutput != null) {
+                summaryOutput.writeBoolean(true);
+                summaryOutput.writeClassDescriptor(c);
+            }
             try {
-                if (!c.isArray() && (subtypes2.isSubtype(c, thisClassDescriptor) || subtypes2.isSubtype(thisClassDescriptor, c))) {
+                IncompatibleTypes check = checkForEqualTo(thisClassDescriptor, c);
+                if (check == null) {
                     return;
                 }
-
-                Type thisType = Type.getType(thisClassDescriptor.getSignature());
-                Type cType = Type.getType(c.getSignature());
-                IncompatibleTypes check = IncompatibleTypes.getPriorityForAssumingCompatible(thisType, cType, false);
                 int priority = check.getPriority();
                 if ("java/lang/Object".equals(getSuperclassName()) && ClassName.isAnonymous(getClassName())) {
                     priority++;
                 }
                 bugAccumulator.accumulateBug(new BugInstance(this, "EQ_CHECK_FOR_OPERAND_NOT_COMPATIBLE_WITH_THIS", priority)
                 .addClassAndMethod(this).addType(c).describe(TypeAnnotation.FOUND_ROLE), this);
-                classSummary.checksForEqualTo(thisClassDescriptor, c);
 
             } catch (ClassNotFoundException e) {
                 bugReporter.reportMissingClass(e);
@@ -130,4 +138,50 @@ public class EqualsOperandShouldHaveClassCompatibleWithThis extends OpcodeStackD
         }
     }
 
+    /**
+     * Note that the equals method of a class checks for another class, if
+     * the classes are not compatible.
+     *
+     * @return how incompatible the classes are, or null if they are
+     *         compatible
+     */
+    private @CheckForNull IncompatibleTypes checkForEqualTo(ClassDescriptor thisClassDescriptor, ClassDescriptor c)
+            throws ClassNotFoundException {
+        Subtypes2 subtypes2 = AnalysisContext.currentAnalysisContext().getSubtypes2();
+        if (!c.isArray() && (subtypes2.isSubtype(c, thisClassDescriptor) || subtypes2.isSubtype(thisClassDescriptor, c))) {
+            return null;
+        }
+
+        Type thisType = Type.getType(thisClassDescriptor.getSignature());
+        Type cType = Type.getType(c.getSignature());
+        IncompatibleTypes check = IncompatibleTypes.getPriorityForAssumingCompatible(thisType, cType, false);
+        classSummary.checksForEqualTo(thisClassDescriptor, c);
+        return check;
+    }
+
+    @Override
+    public void setSummaryOutput(@CheckForNull LibrarySummaryOutput out) {
+        summaryOutput = out;
+    }
+
+    @Override
+    public void visitClassContext(ClassContext classContext) {
+        super.visitClassContext(classContext);
+        if (summaryOutput != null) {
+            summaryOutput.writeBoolean(false);
+        }
+    }
+
+    @Override
+    public void replaySummary(ClassDescriptor classDescriptor, LibrarySummaryInput in) throws IOException {
+        while (in.readBoolean()) {
+            ClassDescriptor c = in.readClassDescriptor();
+            try {
+                checkForEqualTo(classDescriptor, c);
+            } catch (ClassNotFoundException e) {
+                bugReporter.reportMissingClass(e);
+            }
+        }
+    }
+
 }
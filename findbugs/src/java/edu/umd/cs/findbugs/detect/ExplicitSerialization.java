@@ -19,16 +19,23 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
+import javax.annotation.CheckForNull;
+
 import org.apache.bcel.classfile.JavaClass;
 
 import edu.umd.cs.findbugs.BugReporter;
+import edu.umd.cs.findbugs.LibrarySummaryDetector;
+import edu.umd.cs.findbugs.LibrarySummaryInput;
+import edu.umd.cs.findbugs.LibrarySummaryOutput;
 import edu.umd.cs.findbugs.NonReportingDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.ba.XClass;
 import edu.umd.cs.findbugs.ba.XFactory;
 import edu.umd.cs.findbugs.ba.XMethod;
@@ -39,7 +46,7 @@ import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 import edu.umd.cs.findbugs.classfile.DescriptorFactory;
 import edu.umd.cs.findbugs.classfile.Global;
 
-public class ExplicitSerialization extends OpcodeStackDetector implements NonReportingDetector {
+public class ExplicitSerialization extends OpcodeStackDetector implements NonReportingDetector, LibrarySummaryDetector {
 
     final static XMethod writeObject = XFactory.createXMethod("java.io.ObjectOutputStream", "writeObject", "(Ljava/lang/Object;)V", false);
 
@@ -52,6 +59,8 @@ public class ExplicitSerialization extends OpcodeStackDetector implements NonRep
 
     final BugReporter bugReporter;
 
+    private LibrarySummaryOutput summaryOutput;
+
     public ExplicitSerialization(BugReporter bugReporter) {
         AnalysisContext context = AnalysisContext.currentAnalysisContext();
         unreadFields = context.getUnreadFieldsData();
@@ -65,6 +74,26 @@ public class ExplicitSerialization extends OpcodeStackDetector implements NonRep
                 || xClass.getCalledClassDescriptors().contains(ObjectInputStream);
     }
 
+    @Override
+    public void visitClassContext(ClassContext classContext) {
+        super.visitClassContext(classContext);
+        if (summaryOutput != null) {
+            summaryOutput.writeBoolean(false);
+        }
+    }
+
+    @Override
+    public void setSummaryOutput(@CheckForNull LibrarySummaryOutput out) {
+        summaryOutput = out;
+    }
+
+    @Override
+    public void replaySummary(ClassDescriptor classDescriptor, LibrarySummaryInput in) throws IOException {
+        while (in.readBoolean()) {
+            noteSerialized(in.readClassDescriptor());
+        }
+    }
+
     @Override
     public void sawOpcode(int seen) {
         if (seen == INVOKEVIRTUAL && writeObject.equals(getXMethodOperand())) {
@@ -74,52 +103,42 @@ public class ExplicitSerialization extends OpcodeStackDetector implements NonRep
                 signature = signature.substring(1);
             }
             ClassDescriptor c = DescriptorFactory.createClassDescriptorFromFieldSignature(signature);
-            if (c == null || !Subtypes2.instanceOf(c, Serializable.class)) {
-                return;
+            if (c != null) {
+                noteSerialized(c);
             }
-
-            try {
-                XClass xClass = Global.getAnalysisCache().getClassAnalysis(XClass.class, c);
-                if (xClass.isInterface()) {
-                    return;
-                }
-                if (xClass.isSynthetic()) {
-                    return;
-                }
-                if (xClass.isAbstract()) {
-                    return;
-                }
-                unreadFields.strongEvidenceForIntendedSerialization(c);
-            } catch (CheckedAnalysisException e) {
-                bugReporter.logError("Error looking up xClass of " + c, e);
-            }
-
         }
         if (seen == CHECKCAST) {
             OpcodeStack.Item top = stack.getStackItem(0);
             if (readObject.equals(top.getReturnValueOf())) {
-                ClassDescriptor c = getClassDescriptorOperand();
-                if (!Subtypes2.instanceOf(c, Serializable.class)) {
-                    return;
-                }
-
-                try {
-                    XClass xClass = Global.getAnalysisCache().getClassAnalysis(XClass.class, c);
-                    if (xClass.isInterface()) {
-                        return;
-                    }
-                    if (xClass.isSynthetic()) {
-                        return;
-                    }
-                    if (xClass.isAbstract()) {
-                        return;
-                    }
-                    unreadFields.strongEvidenceForIntendedSerialization(c);
-                } catch (CheckedAnalysisException e) {
-                    bugReporter.logError("Error looking up xClass of " + c, e);
-                }
+                noteSerialized(getClassDescriptorOperand());
             }
         }
 
     }
+
+    private void noteSerialized(ClassDescriptor c) {
+        if (summaryOutput != null) {
+            summaryOutput.writeBoolean(true);
+            summaryOutput.writeClassDescriptor(c);
+        }
+        if (!Subtypes2.instanceOf(c, Serializable.class)) {
+            return;
+        }
+
+        try {
+            XClass xClass = Global.getAnalysisCache().getClassAnalysis(XClass.class, c);
+            if (xClass.isInterface()) {
+                return;
+            }
+            if (xClass.isSynthetic()) {
+                return;
+            }
+            if (xClass.isAbstract()) {
+                return;
+            }
+            unreadFields.strongEvidenceForIntendedSerialization(c);
+        } catch (CheckedAnalysisException e) {
+            bugReporter.logError("Error looking up xClass of " + c, e);
+        }
+    }
 }
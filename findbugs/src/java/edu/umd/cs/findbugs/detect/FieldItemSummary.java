@@ -19,17 +19,24 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
 
+import javax.annotation.CheckForNull;
+
 import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.JavaClass;
 
 import edu.umd.cs.findbugs.BugReporter;
+import edu.umd.cs.findbugs.LibrarySummaryDetector;
+import edu.umd.cs.findbugs.LibrarySummaryInput;
+import edu.umd.cs.findbugs.LibrarySummaryOutput;
 import edu.umd.cs.findbugs.NonReportingDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ProgramPoint;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.ba.FieldSummary;
 import edu.umd.cs.findbugs.ba.Hierarchy2;
 import edu.umd.cs.findbugs.ba.XClass;
@@ -37,12 +44,25 @@ import edu.umd.cs.findbugs.ba.XField;
 import edu.umd.cs.findbugs.ba.XMethod;
 import edu.umd.cs.findbugs.ba.ch.Subtypes2;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 import edu.umd.cs.findbugs.visitclass.PreorderVisitor;
 
-public class FieldItemSummary extends OpcodeStackDetector implements NonReportingDetector {
+public class FieldItemSummary extends OpcodeStackDetector implements NonReportingDetector, LibrarySummaryDetector {
+
+    private static final int CALLED_FROM_SUPER_CONSTRUCTOR = 1;
+
+    private static final int SUPER_CALL = 2;
+
+    private static final int WRITTEN_OUTSIDE_OF_CONSTRUCTOR = 3;
+
+    private static final int MERGE_SUMMARY = 4;
+
+    private static final int FIELDS_WRITTEN = 5;
 
     FieldSummary fieldSummary = new FieldSummary();
 
+    private LibrarySummaryOutput summaryOutput;
+
     public FieldItemSummary(BugReporter bugReporter) {
         AnalysisContext context = AnalysisContext.currentAnalysisContext();
         context.setFieldSummary(fieldSummary);
@@ -65,20 +85,15 @@ public class FieldItemSummary extends OpcodeStackDetector implements NonReportin
                 int args = PreorderVisitor.getNumberArguments(m.getSignature());
                 OpcodeStack.Item item = stack.getStackItem(args);
                 if (item.getRegisterNumber() == 0) {
-                    try {
-                        Set<XMethod> targets = Hierarchy2.resolveVirtualMethodCallTargets(m, false, false);
-                        Subtypes2 subtypes2 = AnalysisContext.currentAnalysisContext().getSubtypes2();
-
-                        for (XMethod called : targets) {
-                            if (!called.isAbstract() && !called.equals(m)
-                                    && subtypes2.isSubtype(called.getClassDescriptor(), getClassDescriptor())) {
-                                fieldSummary.setCalledFromSuperConstructor(new ProgramPoint(this), called);
-                            }
-                        }
-                    } catch (ClassNotFoundException e) {
-                        AnalysisContext.reportMissingClass(e);
+                    if (summaryOutput != null) {
+                        // The overriding methods depend on the analyzed
+                        // application, so they are looked up on replay
+                        summaryOutput.writeByte(CALLED_FROM_SUPER_CONSTRUCTOR);
+                        summaryOutput.writeXMethod(getXMethod());
+                        summaryOutput.writeInt(getPC());
+                        summaryOutput.writeXMethod(m);
                     }
-
+                    noteCalledFromConstructor(new ProgramPoint(this), m);
                 }
 
             }
@@ -93,6 +108,11 @@ public class FieldItemSummary extends OpcodeStackDetector implements NonReportin
                 sawInitializeSuper = true;
                 XMethod invoked = getXMethodOperand();
                 if (invoked != null) {
+                    if (summaryOutput != null) {
+                        summaryOutput.writeByte(SUPER_CALL);
+                        summaryOutput.writeXMethod(getXMethod());
+                        summaryOutput.writeXMethod(invoked);
+                    }
                     fieldSummary.sawSuperCall(getXMethod(), invoked);
                 }
             }
@@ -106,27 +126,68 @@ public class FieldItemSummary extends OpcodeStackDetector implements NonReportin
             }
             touched.add(fieldOperand);
             if (!fieldOperand.getClassDescriptor().getClassName().equals(getClassName())) {
-                fieldSummary.addWrittenOutsideOfConstructor(fieldOperand);
+                addWrittenOutsideOfConstructor(fieldOperand);
             } else if (seen == PUTFIELD) {
                 OpcodeStack.Item addr = stack.getStackItem(1);
                 {
                     if (addr.getRegisterNumber() != 0 || !"<init>".equals(getMethodName())) {
-                        fieldSummary.addWrittenOutsideOfConstructor(fieldOperand);
+                        addWrittenOutsideOfConstructor(fieldOperand);
                     }
                 }
             } else if (seen == PUTSTATIC && !"<clinit>".equals(getMethodName())) {
-                fieldSummary.addWrittenOutsideOfConstructor(fieldOperand);
+                addWrittenOutsideOfConstructor(fieldOperand);
             }
             OpcodeStack.Item top = stack.getStackItem(0);
-            fieldSummary.mergeSummary(fieldOperand, top);
+            mergeSummary(fieldOperand, top);
+        }
+
+    }
+
+    private void noteCalledFromConstructor(ProgramPoint from, XMethod m) {
+        try {
+            Set<XMethod> targets = Hierarchy2.resolveVirtualMethodCallTargets(m, false, false);
+            Subtypes2 subtypes2 = AnalysisContext.currentAnalysisContext().getSubtypes2();
+
+            for (XMethod called : targets) {
+                if (!called.isAbstract() && !called.equals(m)
+                        && subtypes2.isSubtype(called.getClassDescriptor(), from.method.getClassDescriptor())) {
+                    fieldSummary.setCalledFromSuperConstructor(from, called);
+                }
+            }
+        } catch (ClassNotFoundException e) {
+            AnalysisContext.reportMissingClass(e);
+        }
+    }
+
+    private void addWrittenOutsideOfConstructor(XField field) {
+        if (summaryOutput != null) {
+            summaryOutput.writeByte(WRITTEN_OUTSIDE_OF_CONSTRUCTOR);
+            summaryOutput.writeXField(field);
         }
+        fieldSummary.addWrittenOutsideOfConstructor(field);
+    }
 
+    private void mergeSummary(XField field, OpcodeStack.Item item) {
+        if (summaryOutput != null) {
+            summaryOutput.writeByte(MERGE_SUMMARY);
+            summaryOutput.writeXField(field);
+            summaryOutput.writeItem(item);
+        }
+        fieldSummary.mergeSummary(field, item);
     }
 
     @Override
     public void visit(Code obj) {
         sawInitializeSuper = false;
         super.visit(obj);
+        if (summaryOutput != null && !touched.isEmpty()) {
+            summaryOutput.writeByte(FIELDS_WRITTEN);
+            summaryOutput.writeXMethod(getXMethod());
+            summaryOutput.writeInt(touched.size());
+            for (XField f : touched) {
+                summaryOutput.writeXField(f);
+            }
+        }
         fieldSummary.setFieldsWritten(getXMethod(), touched);
         if ("<init>".equals(getMethodName()) && sawInitializeSuper) {
             XClass thisClass = getXClass();
@@ -143,13 +204,62 @@ public class FieldItemSummary extends OpcodeStackDetector implements NonReportin
                     } else {
                         item = new OpcodeStack.Item(f.getSignature());
                     }
-                    fieldSummary.mergeSummary(f, item);
+                    mergeSummary(f, item);
                 }
             }
         }
         touched.clear();
     }
 
+    @Override
+    public void visitClassContext(ClassContext classContext) {
+        super.visitClassContext(classContext);
+        if (summaryOutput != null) {
+            summaryOutput.writeByte(0);
+        }
+    }
+
+    @Override
+    public void setSummaryOutput(@CheckForNull LibrarySummaryOutput out) {
+        summaryOutput = out;
+    }
+
+    @Override
+    public void replaySummary(ClassDescriptor classDescriptor, LibrarySummaryInput in) throws IOException {
+        int kind;
+        while ((kind = in.readByte()) != 0) {
+            switch (kind) {
+            case CALLED_FROM_SUPER_CONSTRUCTOR:
+                XMethod method = in.readXMethod();
+                ProgramPoint from = new ProgramPoint(method, in.readInt());
+                noteCalledFromConstructor(from, in.readXMethod());
+                break;
+            case SUPER_CALL:
+                XMethod constructor = in.readXMethod();
+                fieldSummary.sawSuperCall(constructor, in.readXMethod());
+                break;
+            case WRITTEN_OUTSIDE_OF_CONSTRUCTOR:
+                fieldSummary.addWrittenOutsideOfConstructor(in.readXField());
+                break;
+            case MERGE_SUMMARY:
+                XField field = in.readXField();
+                fieldSummary.mergeSummary(field, in.readItem());
+                break;
+            case FIELDS_WRITTEN:
+                XMethod writer = in.readXMethod();
+                int count = in.readInt();
+                Set<XField> fields = new HashSet<XField>();
+                for (int i = 0; i < count; i++) {
+                    fields.add(in.readXField());
+                }
+                fieldSummary.setFieldsWritten(writer, fields);
+                break;
+            default:
+                throw new IOException("Bad field summary kind " + kind);
+            }
+        }
+    }
+
     @Override
     public void report() {
         fieldSummary.setComplete(true);
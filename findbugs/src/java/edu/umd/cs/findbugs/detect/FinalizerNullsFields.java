@@ -30,8 +30,9 @@ import edu.umd.cs.findbugs.BugAccumulator;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.BytecodeScanningDetector;
+import edu.umd.cs.findbugs.StatelessDetector;
 
-public class FinalizerNullsFields extends BytecodeScanningDetector {
+public class FinalizerNullsFields extends BytecodeScanningDetector implements StatelessDetector {
 
     final BugReporter bugReporter;
 
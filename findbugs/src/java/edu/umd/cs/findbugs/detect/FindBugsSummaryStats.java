@@ -19,9 +19,12 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.io.IOException;
 import java.io.PrintStream;
 import java.util.BitSet;
 
+import javax.annotation.CheckForNull;
+
 import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.Field;
 import org.apache.bcel.classfile.JavaClass;
@@ -32,13 +35,18 @@ import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.BugReporterObserver;
 import edu.umd.cs.findbugs.Detector;
+import edu.umd.cs.findbugs.LibrarySummaryDetector;
+import edu.umd.cs.findbugs.LibrarySummaryInput;
+import edu.umd.cs.findbugs.LibrarySummaryOutput;
 import edu.umd.cs.findbugs.NonReportingDetector;
 import edu.umd.cs.findbugs.ProjectStats;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.ClassContext;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 import edu.umd.cs.findbugs.visitclass.PreorderVisitor;
 
-public class FindBugsSummaryStats extends PreorderVisitor implements Detector, BugReporterObserver, NonReportingDetector {
+public class FindBugsSummaryStats extends PreorderVisitor implements Detector, BugReporterObserver, NonReportingDetector,
+LibrarySummaryDetector {
     private final ProjectStats stats;
 
     BitSet lines = new BitSet(500);
@@ -59,6 +67,8 @@ public class FindBugsSummaryStats extends PreorderVisitor implements Detector, B
 
     boolean sawLineNumbers;
 
+    private LibrarySummaryOutput summaryOutput;
+
     @Override
     public void visitJavaClass(JavaClass obj) {
         if (AnalysisContext.currentAnalysisContext().isApplicationClass(obj)) {
@@ -99,14 +109,27 @@ public class FindBugsSummaryStats extends PreorderVisitor implements Detector, B
         } else {
             linesNCSS += classCodeSize / 10;
         }
+        addClass(getDottedClassName(), obj.getSourceFileName(), obj.isInterface(), linesNCSS, classCodeSize, methods, fields);
+        if (summaryOutput != null) {
+            summaryOutput.writeString(getDottedClassName());
+            summaryOutput.writeString(obj.getSourceFileName());
+            summaryOutput.writeBoolean(obj.isInterface());
+            summaryOutput.writeInt(linesNCSS);
+            summaryOutput.writeInt(classCodeSize);
+            summaryOutput.writeInt(methods);
+            summaryOutput.writeInt(fields);
+        }
+    }
+
+    private void addClass(String className, @CheckForNull String sourceFile, boolean isInterface, int linesNCSS,
+            int codeSize, int classMethods, int classFields) {
         if (stats != null) {
-            stats.addClass(getDottedClassName(), obj.getSourceFileName(), obj.isInterface(), linesNCSS);
+            stats.addClass(className, sourceFile, isInterface, linesNCSS);
         }
-        totalCodeSize += classCodeSize;
+        totalCodeSize += codeSize;
         totalNCSS += linesNCSS;
-        totalMethods += methods;
-        totalFields += fields;
-
+        totalMethods += classMethods;
+        totalFields += classFields;
     }
 
     @Override
@@ -134,6 +157,30 @@ public class FindBugsSummaryStats extends PreorderVisitor implements Detector, B
     public void report() {
     }
 
+    @Override
+    public void setSummaryOutput(@CheckForNull LibrarySummaryOutput out) {
+        // Only application classes are counted, so only their results
+        // (see AnalysisResultStore) have a non-empty summary
+        summaryOutput = out;
+    }
+
+    @Override
+    public void replaySummary(ClassDescriptor classDescriptor, LibrarySummaryInput in) throws IOException {
+        while (!in.atEnd()) {
+            String className = in.readString();
+            String sourceFile = in.readString();
+            boolean isInterface = in.readBoolean();
+            int linesNCSS = in.readInt();
+            int codeSize = in.readInt();
+            int classMethods = in.readInt();
+            int classFields = in.readInt();
+            if (className == null) {
+                throw new IOException("Missing class name");
+            }
+            addClass(className, sourceFile, isInterface, linesNCSS, codeSize, classMethods, classFields);
+        }
+    }
+
     @Override
     public void report(PrintStream out) {
         out.println("NCSS\t" + totalNCSS);
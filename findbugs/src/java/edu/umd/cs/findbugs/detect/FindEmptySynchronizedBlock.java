@@ -22,8 +22,9 @@ package edu.umd.cs.findbugs.detect;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.BytecodeScanningDetector;
+import edu.umd.cs.findbugs.StatelessDetector;
 
-public class FindEmptySynchronizedBlock extends BytecodeScanningDetector {
+public class FindEmptySynchronizedBlock extends BytecodeScanningDetector implements StatelessDetector {
 
     BugReporter bugReporter;
 
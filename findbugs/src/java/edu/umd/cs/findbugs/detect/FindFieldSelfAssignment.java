@@ -48,6 +48,7 @@ public class FindFieldSelfAssignment extends OpcodeStackDetector implements Stat
     @Override
     public void visit(Code obj) {
         state = 0;
+        register = -1;
         lastMethodCall = -1;
 
         if (DEBUG) {
@@ -19,6 +19,7 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -29,6 +30,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 
 import org.apache.bcel.classfile.Code;
@@ -39,10 +41,14 @@ import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.Type;
 
 import edu.umd.cs.findbugs.BugReporter;
+import edu.umd.cs.findbugs.LibrarySummaryDetector;
+import edu.umd.cs.findbugs.LibrarySummaryInput;
+import edu.umd.cs.findbugs.LibrarySummaryOutput;
 import edu.umd.cs.findbugs.NonReportingDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.Item;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.ba.Hierarchy2;
 import edu.umd.cs.findbugs.ba.SignatureParser;
 import edu.umd.cs.findbugs.ba.XClass;
@@ -55,12 +61,13 @@ import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 import edu.umd.cs.findbugs.classfile.FieldDescriptor;
 import edu.umd.cs.findbugs.classfile.Global;
 import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+import edu.umd.cs.findbugs.classfile.analysis.MethodInfo;
 import edu.umd.cs.findbugs.util.ClassName;
 
 /**
  * @author Tagir Valeev
  */
-public class FindNoSideEffectMethods extends OpcodeStackDetector implements NonReportingDetector {
+public class FindNoSideEffectMethods extends OpcodeStackDetector implements NonReportingDetector, LibrarySummaryDetector {
     private static final MethodDescriptor GET_CLASS = new MethodDescriptor("java/lang/Object", "getClass", "()Ljava/lang/Class;");
     private static final MethodDescriptor ARRAY_COPY = new MethodDescriptor("java/lang/System", "arraycopy", "(Ljava/lang/Object;ILjava/lang/Object;II)V", true);
     private static final MethodDescriptor HASH_CODE = new MethodDescriptor("java/lang/Object", "hashCode", "()I");
@@ -294,36 +301,163 @@ public class FindNoSideEffectMethods extends OpcodeStackDetector implements NonR
     private final Set<MethodDescriptor> getStaticMethods = new HashSet<>();
     private final Set<MethodDescriptor> uselessVoidCandidates = new HashSet<>();
 
+    // Records of the library summary journal, see replaySummary
+    private static final int END_OF_CLASS = 0;
+    private static final int ALLOWED_FIELD = 1;
+    private static final int METHOD = 2;
+    private static final int CODE = 3;
+    private static final int END_OF_CODE = 4;
+    private static final int SAW_SIDE_EFFECT = 5;
+    private static final int SAW_THROW = 6;
+    private static final int SAW_FIELD_STORE = 7;
+    private static final int SAW_CALL = 8;
+
+    // Kinds of method code, see visit(Code)
+    private static final int NORMAL_CODE = 0;
+    private static final int GETSTATIC_CODE = 1;
+    private static final int STUB_CODE = 2;
+
     private SideEffectStatus status;
     private ArrayList<MethodCall> calledMethods;
     private Set<ClassDescriptor> subtypes;
     private Set<Integer> finallyTargets;
     private Set<Integer> finallyExceptionRegisters;
 
+    private String className;
+    private String superclassName;
+    private MethodInfo currentMethod;
     private boolean constructor;
     private boolean uselessVoidCandidate;
     private boolean classInit;
+    private boolean applyCode;
 
     private Set<FieldDescriptor> allowedFields;
     private Set<MethodDescriptor> fieldsModifyingMethods;
 
     private final NoSideEffectMethodsDatabase noSideEffectMethods = new NoSideEffectMethodsDatabase();
 
+    private LibrarySummaryOutput summaryOutput;
+
     public FindNoSideEffectMethods(BugReporter bugReporter) {
         Global.getAnalysisCache().eagerlyPutDatabase(NoSideEffectMethodsDatabase.class, noSideEffectMethods);
     }
 
+    /*
+     * The visit methods below only collect facts about the class which depend
+     * on nothing but its bytecode, and pass them to the start/saw/end methods,
+     * which look at the rest of the program. When a library summary is
+     * recorded, the facts are journaled, and replaySummary feeds them back to
+     * the same methods. So while recording, the code of every method is
+     * scanned, even when the status of the method is already known.
+     */
+
+    @Override
+    public void visitClassContext(ClassContext classContext) {
+        super.visitClassContext(classContext);
+        if (summaryOutput != null) {
+            summaryOutput.writeByte(END_OF_CLASS);
+        }
+    }
+
+    @Override
+    public void setSummaryOutput(@CheckForNull LibrarySummaryOutput out) {
+        summaryOutput = out;
+    }
+
+    @Override
+    public void replaySummary(ClassDescriptor classDescriptor, LibrarySummaryInput in) throws IOException {
+        startClass(classDescriptor, in.readString(), in.readBoolean());
+        int kind;
+        while ((kind = in.readByte()) != END_OF_CLASS) {
+            switch (kind) {
+            case ALLOWED_FIELD:
+                allowedFields.add(in.readFieldDescriptor());
+                break;
+            case METHOD:
+                startMethod((MethodInfo) in.readXMethod(), in.readInt());
+                break;
+            case CODE:
+                startCode(in.readByte(), in.readBoolean());
+                break;
+            case END_OF_CODE:
+                endCode();
+                break;
+            case SAW_SIDE_EFFECT:
+                sawSideEffect();
+                break;
+            case SAW_THROW:
+                sawThrow(in.readBoolean());
+                break;
+            case SAW_FIELD_STORE:
+                sawFieldStore(in.readFieldDescriptor());
+                break;
+            case SAW_CALL:
+                sawCallInCode(readMethodCall(in));
+                break;
+            default:
+                throw new IOException("Bad side effect summary record " + kind);
+            }
+        }
+        endClass();
+    }
+
+    private static void writeMethodCall(LibrarySummaryOutput out, MethodCall methodCall) {
+        MethodDescriptor m = methodCall.getMethod();
+        out.writeBoolean(m instanceof XMethod);
+        out.writeMethodDescriptor(m);
+        FieldDescriptor target = methodCall.getTarget();
+        if (target == TARGET_THIS) {
+            out.writeByte(0);
+        } else if (target == TARGET_NEW) {
+            out.writeByte(1);
+        } else if (target == TARGET_OTHER) {
+            out.writeByte(2);
+        } else {
+            out.writeByte(3);
+            out.writeFieldDescriptor(target);
+        }
+    }
+
+    private static MethodCall readMethodCall(LibrarySummaryInput in) throws IOException {
+        MethodDescriptor m = in.readBoolean() ? in.readXMethod().getMethodDescriptor() : in.readMethodDescriptor();
+        switch (in.readByte()) {
+        case 0:
+            return new MethodCall(m, TARGET_THIS);
+        case 1:
+            return new MethodCall(m, TARGET_NEW);
+        case 2:
+            return new MethodCall(m, TARGET_OTHER);
+        case 3:
+            return new MethodCall(m, in.readFieldDescriptor());
+        default:
+            throw new IOException("Bad method call target");
+        }
+    }
+
     @Override
     public void visit(JavaClass obj) {
         super.visit(obj);
+        ClassDescriptor superclassDescriptor = getXClass().getSuperclassDescriptor();
+        String superclass = superclassDescriptor == null ? null : superclassDescriptor.getClassName();
+        boolean extensible = !obj.isFinal() && !obj.isEnum();
+        if (summaryOutput != null) {
+            summaryOutput.writeString(superclass);
+            summaryOutput.writeBoolean(extensible);
+        }
+        startClass(getClassDescriptor(), superclass, extensible);
+    }
+
+    private void startClass(ClassDescriptor classDescriptor, @CheckForNull String superclass, boolean extensible) {
+        className = classDescriptor.getClassName();
+        superclassName = superclass;
         allowedFields = new HashSet<>();
         fieldsModifyingMethods = new HashSet<>();
         subtypes = null;
-        if (!obj.isFinal() && !obj.isEnum()) {
+        if (extensible) {
             try {
                 Subtypes2 subtypes2 = AnalysisContext.currentAnalysisContext().getSubtypes2();
-                subtypes = new HashSet<>(subtypes2.getSubtypes(getClassDescriptor()));
-                subtypes.remove(getClassDescriptor());
+                subtypes = new HashSet<>(subtypes2.getSubtypes(classDescriptor));
+                subtypes.remove(classDescriptor);
             } catch (ClassNotFoundException e) {
             }
         }
@@ -331,18 +465,32 @@ public class FindNoSideEffectMethods extends OpcodeStackDetector implements NonR
 
     @Override
     public void visit(Method method) {
-        constructor = method.getName().equals("<init>");
-        classInit = method.getName().equals("<clinit>");
+        MethodInfo methodInfo = (MethodInfo) getMethodDescriptor();
+        if (summaryOutput != null) {
+            summaryOutput.writeByte(METHOD);
+            summaryOutput.writeXMethod(methodInfo);
+            summaryOutput.writeInt(method.getAccessFlags());
+        }
+        startMethod(methodInfo, method.getAccessFlags());
+    }
+
+    private void startMethod(MethodInfo methodInfo, int accessFlags) {
+        currentMethod = methodInfo;
+        constructor = currentMethod.getName().equals("<init>");
+        classInit = currentMethod.getName().equals("<clinit>");
         calledMethods = new ArrayList<>();
         status = SideEffectStatus.NO_SIDE_EFFECT;
-        if (hasNoSideEffect(getMethodDescriptor())) {
+        if (hasNoSideEffect(currentMethod)) {
             handleStatus();
             return;
         }
-        if(isObjectOnlyMethod(getMethodDescriptor())) {
+        if(isObjectOnlyMethod(currentMethod)) {
             status = SideEffectStatus.OBJECT_ONLY;
         }
-        if (method.isNative() || changedArg(getMethodDescriptor()) != -1) {
+        boolean isNative = (accessFlags & ACC_NATIVE) != 0;
+        boolean isAbstract = (accessFlags & ACC_ABSTRACT) != 0;
+        boolean isInterface = (accessFlags & ACC_INTERFACE) != 0;
+        if (isNative || changedArg(currentMethod) != -1) {
             status = SideEffectStatus.SIDE_EFFECT;
             handleStatus();
             return;
@@ -351,11 +499,11 @@ public class FindNoSideEffectMethods extends OpcodeStackDetector implements NonR
         if (classInit) {
             superClinitCall();
         }
-        if (!method.isStatic() && !method.isPrivate() && !method.isFinal() && !constructor && subtypes != null) {
+        if (!currentMethod.isStatic() && !currentMethod.isPrivate() && !currentMethod.isFinal() && !constructor && subtypes != null) {
             for (ClassDescriptor subtype : subtypes) {
                 try {
                     XClass xClass = Global.getAnalysisCache().getClassAnalysis(XClass.class, subtype);
-                    XMethod matchingMethod = xClass.findMatchingMethod(getMethodDescriptor());
+                    XMethod matchingMethod = xClass.findMatchingMethod(currentMethod);
                     if (matchingMethod != null) {
                         sawImplementation = true;
                         sawCall(new MethodCall(matchingMethod.getMethodDescriptor(), TARGET_THIS), false);
@@ -364,24 +512,24 @@ public class FindNoSideEffectMethods extends OpcodeStackDetector implements NonR
                 }
             }
         }
-        if (method.isAbstract() || method.isInterface()) {
+        if (isAbstract || isInterface) {
             if (!sawImplementation
-                    || getClassName().endsWith("Visitor") || getClassName().endsWith("Listener")
-                    || getClassName().startsWith("java/sql/")
-                    || (getClassName().equals("java/util/concurrent/Future") && !method.getName().startsWith("is"))
-                    || (getClassName().equals("java/lang/Process") && method.getName().equals("exitValue"))) {
+                    || className.endsWith("Visitor") || className.endsWith("Listener")
+                    || className.startsWith("java/sql/")
+                    || (className.equals("java/util/concurrent/Future") && !currentMethod.getName().startsWith("is"))
+                    || (className.equals("java/lang/Process") && currentMethod.getName().equals("exitValue"))) {
                 status = SideEffectStatus.SIDE_EFFECT;
-            } else if(isObjectOnlyMethod(getMethodDescriptor())) {
+            } else if(isObjectOnlyMethod(currentMethod)) {
                 status = SideEffectStatus.OBJECT_ONLY;
             } else {
-                String[] thrownExceptions = getXMethod().getThrownExceptions();
+                String[] thrownExceptions = currentMethod.getThrownExceptions();
                 if(thrownExceptions != null && thrownExceptions.length > 0) {
                     status = SideEffectStatus.SIDE_EFFECT;
                 }
             }
         }
-        if ((status == SideEffectStatus.SIDE_EFFECT || status == SideEffectStatus.OBJECT_ONLY) || method.isAbstract()
-                || method.isInterface() || method.isNative()) {
+        if ((status == SideEffectStatus.SIDE_EFFECT || status == SideEffectStatus.OBJECT_ONLY) || isAbstract
+                || isInterface || isNative) {
             handleStatus();
         }
     }
@@ -391,11 +539,19 @@ public class FindNoSideEffectMethods extends OpcodeStackDetector implements NonR
         XField xField = getXField();
         if(!xField.isStatic() && (xField.isPrivate() || xField.isFinal()) && xField.isReferenceType()) {
             allowedFields.add(xField.getFieldDescriptor());
+            if (summaryOutput != null) {
+                summaryOutput.writeByte(ALLOWED_FIELD);
+                summaryOutput.writeFieldDescriptor(xField.getFieldDescriptor());
+            }
         }
     }
 
     @Override
     public void visitAfter(JavaClass obj) {
+        endClass();
+    }
+
+    private void endClass() {
         for(MethodDescriptor method : fieldsModifyingMethods) {
             List<MethodCall> calls = callGraph.get(method);
             SideEffectStatus prevStatus = statusMap.get(method);
@@ -425,7 +581,7 @@ public class FindNoSideEffectMethods extends OpcodeStackDetector implements NonR
                 callGraph.remove(method);
             }
         }
-        MethodDescriptor clinit = new MethodDescriptor(getClassName(), "<clinit>", "()V", true);
+        MethodDescriptor clinit = new MethodDescriptor(className, "<clinit>", "()V", true);
         if(!statusMap.containsKey(clinit)) {
             status = SideEffectStatus.NO_SIDE_EFFECT;
             calledMethods = new ArrayList<>();
@@ -439,84 +595,120 @@ public class FindNoSideEffectMethods extends OpcodeStackDetector implements NonR
     }
 
     private void superClinitCall() {
-        ClassDescriptor superclassDescriptor = getXClass().getSuperclassDescriptor();
-        if(superclassDescriptor != null && !superclassDescriptor.getClassName().equals("java/lang/Object")) {
-            sawCall(new MethodCall(new MethodDescriptor(superclassDescriptor.getClassName(), "<clinit>", "()V", true), TARGET_THIS), false);
+        if(superclassName != null && !superclassName.equals("java/lang/Object")) {
+            sawCall(new MethodCall(new MethodDescriptor(superclassName, "<clinit>", "()V", true), TARGET_THIS), false);
         }
     }
 
     private void handleStatus() {
-        statusMap.put(getMethodDescriptor(), status);
+        statusMap.put(currentMethod, status);
         if(status == SideEffectStatus.UNSURE || status == SideEffectStatus.UNSURE_OBJECT_ONLY) {
             calledMethods.trimToSize();
-            callGraph.put(getMethodDescriptor(), calledMethods);
+            callGraph.put(currentMethod, calledMethods);
         } else {
-            fieldsModifyingMethods.remove(getMethodDescriptor());
+            fieldsModifyingMethods.remove(currentMethod);
         }
     }
 
     @Override
     public void visit(Code obj) {
-        uselessVoidCandidate = !classInit && !constructor && !getXMethod().isSynthetic() && Type.getReturnType(getMethodSig()) == Type.VOID;
         byte[] code = obj.getCode();
+        int kind = NORMAL_CODE;
         if(code.length == 4 && (code[0] & 0xFF) == GETSTATIC && (code[3] & 0xFF) == ARETURN) {
-            getStaticMethods.add(getMethodDescriptor());
-            handleStatus();
-            return;
-        }
-
-        if (code.length <= 2 && !getXMethod().isStatic() && (getXMethod().isPublic() || getXMethod().isProtected())
+            kind = GETSTATIC_CODE;
+        } else if (code.length <= 2 && !getXMethod().isStatic() && (getXMethod().isPublic() || getXMethod().isProtected())
                 && !getXMethod().isFinal() && (getXClass().isPublic() || getXClass().isProtected())) {
             for(byte[] stubMethod : STUB_METHODS) {
-                if (Arrays.equals(stubMethod, code)
-                        && (getClassName().endsWith("Visitor") || getClassName().endsWith("Listener") || !hasOtherImplementations(getXMethod()))) {
-                    // stub method which can be extended: assume it can be extended with possible side-effect
-                    status = SideEffectStatus.SIDE_EFFECT;
-                    handleStatus();
-                    return;
+                if (Arrays.equals(stubMethod, code)) {
+                    kind = STUB_CODE;
+                    break;
                 }
             }
         }
-        if (statusMap.containsKey(getMethodDescriptor())) {
+        if (summaryOutput != null) {
+            summaryOutput.writeByte(CODE);
+            summaryOutput.writeByte(kind);
+            summaryOutput.writeBoolean(code.length > 1);
+        }
+        startCode(kind, code.length > 1);
+        if (kind != GETSTATIC_CODE && (applyCode || summaryOutput != null)) {
+            finallyTargets = new HashSet<>();
+            for(CodeException ex : getCode().getExceptionTable()) {
+                if(ex.getCatchType() == 0) {
+                    finallyTargets.add(ex.getHandlerPC());
+                }
+            }
+            finallyExceptionRegisters = new HashSet<>();
+            try {
+                super.visit(obj);
+            } catch (EarlyExitException e) {
+                // Ignore
+            }
+        }
+        if (summaryOutput != null) {
+            summaryOutput.writeByte(END_OF_CODE);
+        }
+        endCode();
+    }
+
+    /**
+     * Start the code of the current method. The saw methods only have an
+     * effect if the code is to be analyzed.
+     *
+     * @param kind
+     *            NORMAL_CODE, GETSTATIC_CODE or STUB_CODE
+     * @param longCode
+     *            true if the code is longer than one byte
+     */
+    private void startCode(int kind, boolean longCode) {
+        uselessVoidCandidate = !classInit && !constructor && !currentMethod.isSynthetic()
+                && Type.getReturnType(currentMethod.getSignature()) == Type.VOID && longCode;
+        applyCode = false;
+        if(kind == GETSTATIC_CODE) {
+            getStaticMethods.add(currentMethod);
+            handleStatus();
             return;
         }
-        finallyTargets = new HashSet<>();
-        for(CodeException ex : getCode().getExceptionTable()) {
-            if(ex.getCatchType() == 0) {
-                finallyTargets.add(ex.getHandlerPC());
-            }
+        if (kind == STUB_CODE
+                && (className.endsWith("Visitor") || className.endsWith("Listener") || !hasOtherImplementations(currentMethod))) {
+            // stub method which can be extended: assume it can be extended with possible side-effect
+            status = SideEffectStatus.SIDE_EFFECT;
+            handleStatus();
+            return;
         }
-        finallyExceptionRegisters = new HashSet<>();
-        try {
-            super.visit(obj);
-        } catch (EarlyExitException e) {
-            // Ignore
+        if (statusMap.containsKey(currentMethod)) {
+            return;
         }
-        if (uselessVoidCandidate && code.length > 1
-                && (status == SideEffectStatus.UNSURE || status == SideEffectStatus.NO_SIDE_EFFECT)) {
-            uselessVoidCandidates.add(getMethodDescriptor());
+        applyCode = true;
+    }
+
+    private void endCode() {
+        if (!applyCode) {
+            return;
+        }
+        applyCode = false;
+        if (uselessVoidCandidate && (status == SideEffectStatus.UNSURE || status == SideEffectStatus.NO_SIDE_EFFECT)) {
+            uselessVoidCandidates.add(currentMethod);
         }
         handleStatus();
     }
 
     @Override
     public void sawOpcode(int seen) {
-        if (!allowedFields.isEmpty() && seen == PUTFIELD) {
+        if (seen == PUTFIELD && (summaryOutput != null || !allowedFields.isEmpty())) {
             Item objItem = getStack().getStackItem(1);
             if (objItem.getRegisterNumber() == 0) {
-                if (allowedFields.contains(getFieldDescriptorOperand())) {
-                    Item valueItem = getStack().getStackItem(0);
-                    if (!isNew(valueItem) && !valueItem.isNull()) {
-                        allowedFields.remove(getFieldDescriptorOperand());
-                    }
+                Item valueItem = getStack().getStackItem(0);
+                if (!isNew(valueItem) && !valueItem.isNull()) {
+                    sawFieldStore(getFieldDescriptorOperand());
                 }
             }
         }
-        if (status == SideEffectStatus.SIDE_EFFECT && allowedFields.isEmpty()) {
-            // Nothing to do: skip the rest of the method
-            throw new EarlyExitException();
-        }
-        if (status == SideEffectStatus.SIDE_EFFECT) {
+        if (summaryOutput == null && status == SideEffectStatus.SIDE_EFFECT) {
+            if (allowedFields.isEmpty()) {
+                // Nothing to do: skip the rest of the method
+                throw new EarlyExitException();
+            }
             return;
         }
         switch (seen) {
@@ -532,15 +724,13 @@ public class FindNoSideEffectMethods extends OpcodeStackDetector implements NonR
         case ATHROW: {
             Item exceptionItem = getStack().getStackItem(0);
             if(!finallyExceptionRegisters.remove(exceptionItem.getRegisterNumber())) {
-                uselessVoidCandidate = false;
+                boolean allowed = false;
                 try {
                     JavaClass javaClass = exceptionItem.getJavaClass();
-                    if (javaClass != null && ALLOWED_EXCEPTIONS.contains(javaClass.getClassName())) {
-                        break;
-                    }
+                    allowed = javaClass != null && ALLOWED_EXCEPTIONS.contains(javaClass.getClassName());
                 } catch (ClassNotFoundException e) {
                 }
-                status = SideEffectStatus.SIDE_EFFECT;
+                sawThrow(allowed);
             }
             break;
         }
@@ -550,13 +740,13 @@ public class FindNoSideEffectMethods extends OpcodeStackDetector implements NonR
                     break;
                 }
             }
-            status = SideEffectStatus.SIDE_EFFECT;
+            sawSideEffect();
             break;
         case INVOKEDYNAMIC:
-            status = SideEffectStatus.SIDE_EFFECT;
+            sawSideEffect();
             break;
         case PUTFIELD:
-            sawCall(getMethodCall(FIELD_STORE_STUB_METHOD), false);
+            sawCallInCode(getMethodCall(FIELD_STORE_STUB_METHOD));
             break;
         case AASTORE:
         case DASTORE:
@@ -566,13 +756,13 @@ public class FindNoSideEffectMethods extends OpcodeStackDetector implements NonR
         case LASTORE:
         case FASTORE:
         case SASTORE:
-            sawCall(getMethodCall(ARRAY_STORE_STUB_METHOD), false);
+            sawCallInCode(getMethodCall(ARRAY_STORE_STUB_METHOD));
             break;
         case INVOKESTATIC:
             if (changesOnlyNewObjects(getMethodDescriptorOperand())) {
                 break;
             }
-            sawCall(new MethodCall(getMethodDescriptorOperand(), TARGET_OTHER), false);
+            sawCallInCode(new MethodCall(getMethodDescriptorOperand(), TARGET_OTHER));
             break;
         case INVOKESPECIAL:
         case INVOKEINTERFACE:
@@ -583,8 +773,7 @@ public class FindNoSideEffectMethods extends OpcodeStackDetector implements NonR
             if (changesOnlyNewObjects(getMethodDescriptorOperand())) {
                 break;
             }
-            MethodCall methodCall = getMethodCall(methodDescriptorOperand);
-            sawCall(methodCall, false);
+            sawCallInCode(getMethodCall(methodDescriptorOperand));
             break;
         }
         default:
@@ -592,6 +781,10 @@ public class FindNoSideEffectMethods extends OpcodeStackDetector implements NonR
         }
     }
 
+    /**
+     * @return the call, with a field as target if it might be made on an
+     *         allowed field of this object
+     */
     private MethodCall getMethodCall(MethodDescriptor methodDescriptorOperand) {
         Item objItem = getStack().getStackItem(getNumberArguments(methodDescriptorOperand.getSignature()));
         if (isNew(objItem)) {
@@ -605,15 +798,64 @@ public class FindNoSideEffectMethods extends OpcodeStackDetector implements NonR
             if (classInit && xField.isStatic() && xField.getClassDescriptor().getClassName().equals(getClassName())) {
                 return new MethodCall(methodDescriptorOperand, TARGET_NEW);
             }
-            if (!getMethodDescriptor().isStatic() && objItem.getFieldLoadedFromRegister() == 0
-                    && allowedFields.contains(xField.getFieldDescriptor())) {
-                fieldsModifyingMethods.add(getMethodDescriptor());
+            if (!getMethodDescriptor().isStatic() && objItem.getFieldLoadedFromRegister() == 0) {
                 return new MethodCall(methodDescriptorOperand, xField.getFieldDescriptor());
             }
         }
         return new MethodCall(methodDescriptorOperand, TARGET_OTHER);
     }
 
+    private void sawFieldStore(FieldDescriptor field) {
+        if (summaryOutput != null) {
+            summaryOutput.writeByte(SAW_FIELD_STORE);
+            summaryOutput.writeFieldDescriptor(field);
+        }
+        if (applyCode) {
+            allowedFields.remove(field);
+        }
+    }
+
+    private void sawSideEffect() {
+        if (summaryOutput != null) {
+            summaryOutput.writeByte(SAW_SIDE_EFFECT);
+        }
+        if (applyCode) {
+            status = SideEffectStatus.SIDE_EFFECT;
+        }
+    }
+
+    private void sawThrow(boolean allowedException) {
+        if (summaryOutput != null) {
+            summaryOutput.writeByte(SAW_THROW);
+            summaryOutput.writeBoolean(allowedException);
+        }
+        if (applyCode && status != SideEffectStatus.SIDE_EFFECT) {
+            uselessVoidCandidate = false;
+            if (!allowedException) {
+                status = SideEffectStatus.SIDE_EFFECT;
+            }
+        }
+    }
+
+    private void sawCallInCode(MethodCall methodCall) {
+        if (summaryOutput != null) {
+            summaryOutput.writeByte(SAW_CALL);
+            writeMethodCall(summaryOutput, methodCall);
+        }
+        if (!applyCode || status == SideEffectStatus.SIDE_EFFECT) {
+            return;
+        }
+        FieldDescriptor target = methodCall.getTarget();
+        if (target != TARGET_NEW && target != TARGET_OTHER && target != TARGET_THIS) {
+            if (allowedFields.contains(target)) {
+                fieldsModifyingMethods.add(currentMethod);
+            } else {
+                methodCall = new MethodCall(methodCall.getMethod(), TARGET_OTHER);
+            }
+        }
+        sawCall(methodCall, false);
+    }
+
     private void sawCall(MethodCall methodCall, boolean finalPass) {
         if (status == SideEffectStatus.SIDE_EFFECT) {
             return;
@@ -33,6 +33,7 @@ import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.SourceLineAnnotation;
+import edu.umd.cs.findbugs.StatelessDetector;
 import edu.umd.cs.findbugs.ba.CFG;
 import edu.umd.cs.findbugs.ba.CFGBuilderException;
 import edu.umd.cs.findbugs.ba.DataflowAnalysisException;
@@ -47,7 +48,7 @@ import edu.umd.cs.findbugs.ba.vna.ValueNumberFrame;
 import edu.umd.cs.findbugs.ba.vna.ValueNumberSourceInfo;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 
-public class FindNullDerefsInvolvingNonShortCircuitEvaluation extends OpcodeStackDetector {
+public class FindNullDerefsInvolvingNonShortCircuitEvaluation extends OpcodeStackDetector implements StatelessDetector {
 
     private static boolean DEBUG = false;
 
@@ -66,6 +66,7 @@ import edu.umd.cs.findbugs.MethodAnnotation;
 import edu.umd.cs.findbugs.OpcodeStack.Item;
 import edu.umd.cs.findbugs.Priorities;
 import edu.umd.cs.findbugs.SourceLineAnnotation;
+import edu.umd.cs.findbugs.StatelessDetector;
 import edu.umd.cs.findbugs.SystemProperties;
 import edu.umd.cs.findbugs.TypeAnnotation;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
@@ -120,7 +121,7 @@ import edu.umd.cs.findbugs.util.ClassName;
  * @author David Hovemeyer
  * @author Bill Pugh
  */
-public class FindRefComparison implements Detector, ExtendedTypes {
+public class FindRefComparison implements Detector, ExtendedTypes, StatelessDetector {
     private static final boolean DEBUG = SystemProperties.getBoolean("frc.debug");
 
     private static final boolean REPORT_ALL_REF_COMPARISONS = true /*|| SystemProperties.getBoolean("findbugs.refcomp.reportAll")*/;
@@ -668,6 +669,15 @@ public class FindRefComparison implements Detector, ExtendedTypes {
         testingEnabled = SystemProperties.getBoolean("report_TESTING_pattern_in_standard_detectors");
     }
 
+    @Override
+    public Object clone() {
+        try {
+            return super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
     @Override
     public void visitClassContext(ClassContext classContext) {
         this.classContext = classContext;
@@ -28,10 +28,11 @@ import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.LocalVariableAnnotation;
 import edu.umd.cs.findbugs.OpcodeStack;
+import edu.umd.cs.findbugs.StatelessDetector;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 
-public class FindReturnRef extends OpcodeStackDetector {
+public class FindReturnRef extends OpcodeStackDetector implements StatelessDetector {
     boolean check = false;
 
     boolean thisOnTOS = false;
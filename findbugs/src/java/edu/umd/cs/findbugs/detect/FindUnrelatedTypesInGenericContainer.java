@@ -57,6 +57,7 @@ import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.Detector;
 import edu.umd.cs.findbugs.Priorities;
 import edu.umd.cs.findbugs.SourceLineAnnotation;
+import edu.umd.cs.findbugs.StatelessDetector;
 import edu.umd.cs.findbugs.SystemProperties;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.CFG;
@@ -103,7 +104,7 @@ import edu.umd.cs.findbugs.util.MultiMap;
  * @author Nat Ayewah
  * @author William Pugh
  */
-public class FindUnrelatedTypesInGenericContainer implements Detector {
+public class FindUnrelatedTypesInGenericContainer implements Detector, StatelessDetector {
 
     private final BugReporter bugReporter;
 
@@ -245,6 +246,15 @@ public class FindUnrelatedTypesInGenericContainer implements Detector {
      *
      * @see edu.umd.cs.findbugs.Detector#visitClassContext(edu.umd.cs.findbugs.ba.ClassContext)
      */
+    @Override
+    public Object clone() {
+        try {
+            return super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
     @Override
     public void visitClassContext(ClassContext classContext) {
         JavaClass javaClass = classContext.getJavaClass();
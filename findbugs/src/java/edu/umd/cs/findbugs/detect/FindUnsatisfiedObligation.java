@@ -43,6 +43,7 @@ import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.IntAnnotation;
 import edu.umd.cs.findbugs.SourceLineAnnotation;
+import edu.umd.cs.findbugs.StatelessDetector;
 import edu.umd.cs.findbugs.StringAnnotation;
 import edu.umd.cs.findbugs.SystemProperties;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
@@ -84,7 +85,7 @@ import edu.umd.cs.findbugs.classfile.MethodDescriptor;
  *
  * @author David Hovemeyer
  */
-public class FindUnsatisfiedObligation extends CFGDetector {
+public class FindUnsatisfiedObligation extends CFGDetector implements StatelessDetector {
 
     private static final boolean DEBUG = SystemProperties.getBoolean("oa.debug");
 
@@ -123,6 +124,15 @@ public class FindUnsatisfiedObligation extends CFGDetector {
 
     }
 
+    @Override
+    public Object clone() {
+        try {
+            return super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
     @Override
     public void visitClass(ClassDescriptor classDescriptor) throws CheckedAnalysisException {
         IAnalysisCache analysisCache = Global.getAnalysisCache();
@@ -19,6 +19,7 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.io.IOException;
 import java.util.HashSet;
 
 import javax.annotation.CheckForNull;
@@ -30,11 +31,14 @@ import org.apache.bcel.generic.Type;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
-import edu.umd.cs.findbugs.FirstPassDetector;
+import edu.umd.cs.findbugs.LibrarySummaryDetector;
+import edu.umd.cs.findbugs.LibrarySummaryInput;
+import edu.umd.cs.findbugs.LibrarySummaryOutput;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.Item;
 import edu.umd.cs.findbugs.SystemProperties;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.ba.SignatureParser;
 import edu.umd.cs.findbugs.ba.XFactory;
 import edu.umd.cs.findbugs.ba.XMethod;
@@ -43,10 +47,11 @@ import edu.umd.cs.findbugs.ba.generic.GenericSignatureParser;
 import edu.umd.cs.findbugs.ba.generic.GenericUtilities;
 import edu.umd.cs.findbugs.bcel.BCELUtil;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 import edu.umd.cs.findbugs.internalAnnotations.SlashedClassName;
 import edu.umd.cs.findbugs.util.ClassName;
 
-public class FunctionsThatMightBeMistakenForProcedures extends OpcodeStackDetector implements FirstPassDetector {
+public class FunctionsThatMightBeMistakenForProcedures extends OpcodeStackDetector implements LibrarySummaryDetector {
 
     final BugReporter bugReporter;
 
@@ -54,6 +59,8 @@ public class FunctionsThatMightBeMistakenForProcedures extends OpcodeStackDetect
 
     final static boolean REPORT_INFERRED_METHODS = SystemProperties.getBoolean("mrc.inferred.report");
 
+    private LibrarySummaryOutput summaryOutput;
+
     public FunctionsThatMightBeMistakenForProcedures(BugReporter bugReporter) {
         this.bugReporter = bugReporter;
         setVisitMethodsInCallOrder(true);
@@ -88,6 +95,27 @@ public class FunctionsThatMightBeMistakenForProcedures extends OpcodeStackDetect
 
     }
 
+    @Override
+    public void visitClassContext(ClassContext classContext) {
+        super.visitClassContext(classContext);
+        if (summaryOutput != null) {
+            summaryOutput.writeBoolean(false);
+        }
+    }
+
+    @Override
+    public void setSummaryOutput(@CheckForNull LibrarySummaryOutput out) {
+        summaryOutput = out;
+    }
+
+    @Override
+    public void replaySummary(ClassDescriptor classDescriptor, LibrarySummaryInput in) throws IOException {
+        XFactory xFactory = AnalysisContext.currentXFactory();
+        while (in.readBoolean()) {
+            xFactory.addFunctionThatMightBeMistakenForProcedures(in.readMethodDescriptor());
+        }
+    }
+
     HashSet<XMethod> okToIgnore = new HashSet<XMethod>();
 
     HashSet<XMethod> methodsSeen = new HashSet<XMethod>();
@@ -184,6 +212,10 @@ public class FunctionsThatMightBeMistakenForProcedures extends OpcodeStackDetect
                 if (!m.isStatic()) {
                     XFactory xFactory = AnalysisContext.currentXFactory();
                     xFactory.addFunctionThatMightBeMistakenForProcedures(getMethodDescriptor());
+                    if (summaryOutput != null) {
+                        summaryOutput.writeBoolean(true);
+                        summaryOutput.writeMethodDescriptor(getMethodDescriptor());
+                    }
                     if (inferredMethod != null) {
                         inferredMethod.setPriority(priority);
                         inferredMethod.addString(String.format("%3d %3d %5d %3d", returnOther, returnSelf, returnNew, updates));
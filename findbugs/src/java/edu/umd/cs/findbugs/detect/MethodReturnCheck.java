@@ -31,6 +31,7 @@ import edu.umd.cs.findbugs.MethodAnnotation;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.Item;
 import edu.umd.cs.findbugs.SourceLineAnnotation;
+import edu.umd.cs.findbugs.StatelessDetector;
 import edu.umd.cs.findbugs.SystemProperties;
 import edu.umd.cs.findbugs.UseAnnotationDatabase;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
@@ -53,7 +54,7 @@ import edu.umd.cs.findbugs.visitclass.PreorderVisitor;
  *
  * @author David Hovemeyer
  */
-public class MethodReturnCheck extends OpcodeStackDetector implements UseAnnotationDatabase {
+public class MethodReturnCheck extends OpcodeStackDetector implements UseAnnotationDatabase, StatelessDetector {
     private static final boolean DEBUG = SystemProperties.getBoolean("mrc.debug");
 
     private static final int SCAN = 0;
@@ -19,13 +19,19 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import javax.annotation.CheckForNull;
+
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.Detector;
+import edu.umd.cs.findbugs.LibrarySummaryDetector;
+import edu.umd.cs.findbugs.LibrarySummaryInput;
+import edu.umd.cs.findbugs.LibrarySummaryOutput;
 import edu.umd.cs.findbugs.NonReportingDetector;
 import edu.umd.cs.findbugs.ba.ClassContext;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 import edu.umd.cs.findbugs.visitclass.PreorderVisitor;
 
-public class Methods extends PreorderVisitor implements Detector, NonReportingDetector {
+public class Methods extends PreorderVisitor implements Detector, NonReportingDetector, LibrarySummaryDetector {
 
     public Methods(BugReporter bugReporter) {
     }
@@ -40,4 +46,13 @@ public class Methods extends PreorderVisitor implements Detector, NonReportingDe
 
     }
 
+    @Override
+    public void setSummaryOutput(@CheckForNull LibrarySummaryOutput out) {
+        // Nothing is learned from visiting a class
+    }
+
+    @Override
+    public void replaySummary(ClassDescriptor classDescriptor, LibrarySummaryInput in) {
+    }
+
 }
@@ -36,10 +36,11 @@ import org.apache.bcel.classfile.Method;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.FieldAnnotation;
+import edu.umd.cs.findbugs.StatelessDetector;
 import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 
-public class MultithreadedInstanceAccess extends OpcodeStackDetector {
+public class MultithreadedInstanceAccess extends OpcodeStackDetector implements StatelessDetector {
     private static final String STRUTS_ACTION_NAME = "org.apache.struts.action.Action";
 
     private static final String SERVLET_NAME = "javax.servlet.Servlet";
@@ -24,6 +24,7 @@ import org.apache.bcel.classfile.Code;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.OpcodeStack.Item;
+import edu.umd.cs.findbugs.StatelessDetector;
 import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.ba.XField;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
@@ -31,7 +32,7 @@ import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 /**
  * @author Tagir Valeev
  */
-public class MutableEnum extends OpcodeStackDetector {
+public class MutableEnum extends OpcodeStackDetector implements StatelessDetector {
 
     private final BugReporter reporter;
     private boolean skip;
@@ -19,25 +19,33 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.io.IOException;
 import java.util.Map;
 
+import javax.annotation.CheckForNull;
+
 import org.apache.bcel.classfile.ElementValue;
 import org.apache.bcel.classfile.EnumElementValue;
 import org.apache.bcel.classfile.JavaClass;
 
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.Detector;
-import edu.umd.cs.findbugs.FirstPassDetector;
+import edu.umd.cs.findbugs.LibrarySummaryDetector;
+import edu.umd.cs.findbugs.LibrarySummaryInput;
+import edu.umd.cs.findbugs.LibrarySummaryOutput;
 import edu.umd.cs.findbugs.NonReportingDetector;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.bcel.BCELUtil;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 import edu.umd.cs.findbugs.visitclass.AnnotationVisitor;
 
-public class NoteAnnotationRetention extends AnnotationVisitor implements Detector, NonReportingDetector, FirstPassDetector {
+public class NoteAnnotationRetention extends AnnotationVisitor implements Detector, NonReportingDetector, LibrarySummaryDetector {
 
     private boolean runtimeRetention;
 
+    private LibrarySummaryOutput summaryOutput;
+
     public NoteAnnotationRetention(BugReporter bugReporter) {
     }
 
@@ -65,6 +73,10 @@ public class NoteAnnotationRetention extends AnnotationVisitor implements Detect
             if ("java.lang.annotation.Annotation".equals(i)) {
                 AnalysisContext.currentAnalysisContext().getAnnotationRetentionDatabase()
                 .setRuntimeRetention(getDottedClassName(), runtimeRetention);
+                if (summaryOutput != null) {
+                    summaryOutput.writeBoolean(true);
+                    summaryOutput.writeBoolean(runtimeRetention);
+                }
             }
         }
 
@@ -76,7 +88,23 @@ public class NoteAnnotationRetention extends AnnotationVisitor implements Detect
         if (!BCELUtil.preTiger(javaClass)) {
             javaClass.accept(this);
         }
+        if (summaryOutput != null) {
+            summaryOutput.writeBoolean(false);
+        }
+
+    }
 
+    @Override
+    public void setSummaryOutput(@CheckForNull LibrarySummaryOutput out) {
+        summaryOutput = out;
+    }
+
+    @Override
+    public void replaySummary(ClassDescriptor classDescriptor, LibrarySummaryInput in) throws IOException {
+        while (in.readBoolean()) {
+            AnalysisContext.currentAnalysisContext().getAnnotationRetentionDatabase()
+            .setRuntimeRetention(classDescriptor.getDottedClassName(), in.readBoolean());
+        }
     }
 
     @Override
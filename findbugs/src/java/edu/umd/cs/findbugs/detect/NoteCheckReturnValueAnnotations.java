@@ -19,18 +19,31 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.io.IOException;
+
+import javax.annotation.CheckForNull;
+
 import org.apache.bcel.classfile.JavaClass;
 
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.Detector;
+import edu.umd.cs.findbugs.LibrarySummaryDetector;
+import edu.umd.cs.findbugs.LibrarySummaryInput;
+import edu.umd.cs.findbugs.LibrarySummaryOutput;
 import edu.umd.cs.findbugs.NonReportingDetector;
+import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.ba.AnnotationDatabase.Target;
+import edu.umd.cs.findbugs.ba.CheckReturnAnnotationDatabase;
+import edu.umd.cs.findbugs.ba.CheckReturnValueAnnotation;
 import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.bcel.BCELUtil;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 
 /**
  * Scan classes for @CheckReturnValue annotations
  */
-public class NoteCheckReturnValueAnnotations extends BuildCheckReturnAnnotationDatabase implements Detector, NonReportingDetector {
+public class NoteCheckReturnValueAnnotations extends BuildCheckReturnAnnotationDatabase implements Detector, NonReportingDetector,
+LibrarySummaryDetector {
 
     public NoteCheckReturnValueAnnotations(BugReporter bugReporter) {
     }
@@ -42,6 +55,34 @@ public class NoteCheckReturnValueAnnotations extends BuildCheckReturnAnnotationD
         if (!BCELUtil.preTiger(javaClass)) {
             javaClass.accept(this);
         }
+        if (summaryOutput != null) {
+            summaryOutput.writeByte(0);
+        }
+    }
+
+    @Override
+    public void setSummaryOutput(@CheckForNull LibrarySummaryOutput out) {
+        summaryOutput = out;
+    }
+
+    @Override
+    public void replaySummary(ClassDescriptor classDescriptor, LibrarySummaryInput in) throws IOException {
+        CheckReturnAnnotationDatabase database = AnalysisContext.currentAnalysisContext().getCheckReturnAnnotationDatabase();
+        CheckReturnValueAnnotation[] annotations = CheckReturnValueAnnotation.values();
+        int kind;
+        while ((kind = in.readByte()) != 0) {
+            switch (kind) {
+            case DIRECT_ANNOTATION:
+                database.addDirectAnnotation(in.readXMethod(), annotations[in.readInt()]);
+                break;
+            case DEFAULT_ANNOTATION:
+                Target target = Target.values()[in.readByte()];
+                database.addDefaultAnnotation(target, in.readString(), annotations[in.readInt()]);
+                break;
+            default:
+                throw new IOException("Bad check return value summary record " + kind);
+            }
+        }
     }
 
     @Override
@@ -19,15 +19,22 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
 
 import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.JavaClass;
 
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.Detector;
+import edu.umd.cs.findbugs.LibrarySummaryDetector;
+import edu.umd.cs.findbugs.LibrarySummaryInput;
+import edu.umd.cs.findbugs.LibrarySummaryOutput;
 import edu.umd.cs.findbugs.NonReportingDetector;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -39,6 +46,8 @@ import edu.umd.cs.findbugs.ba.jsr305.TypeQualifierAnnotation;
 import edu.umd.cs.findbugs.ba.jsr305.TypeQualifierApplications;
 import edu.umd.cs.findbugs.ba.jsr305.TypeQualifierValue;
 import edu.umd.cs.findbugs.bcel.BCELUtil;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
 import edu.umd.cs.findbugs.visitclass.DismantleBytecode;
 
 /**
@@ -46,10 +55,13 @@ import edu.umd.cs.findbugs.visitclass.DismantleBytecode;
  * DirectlyRelevantTypeQualifiersDatabase. This helps the CheckTypeQualifiers
  * detector figure out which type qualifiers to check for each method.
  */
-public class NoteDirectlyRelevantTypeQualifiers extends DismantleBytecode implements Detector, NonReportingDetector {
+public class NoteDirectlyRelevantTypeQualifiers extends DismantleBytecode implements Detector, NonReportingDetector,
+LibrarySummaryDetector {
 
     private DirectlyRelevantTypeQualifiersDatabase qualifiers;
 
+    private LibrarySummaryOutput summaryOutput;
+
     public NoteDirectlyRelevantTypeQualifiers(BugReporter bugReporter) {
     }
 
@@ -63,6 +75,30 @@ public class NoteDirectlyRelevantTypeQualifiers extends DismantleBytecode implem
         if (!BCELUtil.preTiger(javaClass)) {
             javaClass.accept(this);
         }
+        if (summaryOutput != null) {
+            summaryOutput.writeBoolean(false);
+        }
+    }
+
+    @Override
+    public void setSummaryOutput(@CheckForNull LibrarySummaryOutput out) {
+        summaryOutput = out;
+    }
+
+    @Override
+    public void replaySummary(ClassDescriptor classDescriptor, LibrarySummaryInput in) throws IOException {
+        if (qualifiers == null) {
+            qualifiers = AnalysisContext.currentAnalysisContext().getDirectlyRelevantTypeQualifiersDatabase();
+        }
+        while (in.readBoolean()) {
+            MethodDescriptor methodDescriptor = in.readMethodDescriptor();
+            int count = in.readInt();
+            List<TypeQualifierValue<?>> applications = new ArrayList<TypeQualifierValue<?>>(count);
+            for (int i = 0; i < count; i++) {
+                applications.add(in.readTypeQualifierValue());
+            }
+            qualifiers.setDirectlyRelevantTypeQualifiers(methodDescriptor, applications);
+        }
     }
 
     HashSet<TypeQualifierValue<?>> applicableApplications;
@@ -79,8 +115,16 @@ public class NoteDirectlyRelevantTypeQualifiers extends DismantleBytecode implem
         super.visit(m);
 
         if (applicableApplications.size() > 0) {
-            qualifiers.setDirectlyRelevantTypeQualifiers(getMethodDescriptor(), new ArrayList<TypeQualifierValue<?>>(
-                    applicableApplications));
+            List<TypeQualifierValue<?>> applications = new ArrayList<TypeQualifierValue<?>>(applicableApplications);
+            qualifiers.setDirectlyRelevantTypeQualifiers(getMethodDescriptor(), applications);
+            if (summaryOutput != null) {
+                summaryOutput.writeBoolean(true);
+                summaryOutput.writeMethodDescriptor(getMethodDescriptor());
+                summaryOutput.writeInt(applications.size());
+                for (TypeQualifierValue<?> tqv : applications) {
+                    summaryOutput.writeTypeQualifierValue(tqv);
+                }
+            }
         }
     }
 
@@ -19,27 +19,45 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Map;
 
+import javax.annotation.CheckForNull;
+
 import org.apache.bcel.classfile.ElementValue;
 import org.apache.bcel.classfile.JavaClass;
 
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.Detector;
+import edu.umd.cs.findbugs.LibrarySummaryDetector;
+import edu.umd.cs.findbugs.LibrarySummaryInput;
+import edu.umd.cs.findbugs.LibrarySummaryOutput;
 import edu.umd.cs.findbugs.NonReportingDetector;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.ba.ClassMember;
 import edu.umd.cs.findbugs.ba.JCIPAnnotationDatabase;
 import edu.umd.cs.findbugs.ba.XFactory;
+import edu.umd.cs.findbugs.ba.XField;
+import edu.umd.cs.findbugs.ba.XMethod;
 import edu.umd.cs.findbugs.bcel.BCELUtil;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 import edu.umd.cs.findbugs.visitclass.AnnotationVisitor;
 
-public class NoteJCIPAnnotation extends AnnotationVisitor implements Detector, NonReportingDetector {
+public class NoteJCIPAnnotation extends AnnotationVisitor implements Detector, NonReportingDetector, LibrarySummaryDetector {
 
     private static final String NET_JCIP_ANNOTATIONS = "net.jcip.annotations.";
     private static final String JSR305_CONCURRENT_ANNOTATIONS = "javax.annotation.concurrent.";
 
+    private static final int CLASS_ENTRY = 1;
+
+    private static final int FIELD_ENTRY = 2;
+
+    private static final int METHOD_ENTRY = 3;
+
+    private LibrarySummaryOutput summaryOutput;
+
     public NoteJCIPAnnotation(BugReporter bugReporter) {
         super();
     }
@@ -59,22 +77,112 @@ public class NoteJCIPAnnotation extends AnnotationVisitor implements Detector, N
         ClassMember member;
         if (visitingField()) {
             member = XFactory.createXField(this);
+            if (summaryOutput != null) {
+                summaryOutput.writeByte(FIELD_ENTRY);
+                summaryOutput.writeXField((XField) member);
+            }
         } else if (visitingMethod()) {
             member = XFactory.createXMethod(this);
+            if (summaryOutput != null) {
+                summaryOutput.writeByte(METHOD_ENTRY);
+                summaryOutput.writeXMethod((XMethod) member);
+            }
         } else {
+            if (summaryOutput != null) {
+                summaryOutput.writeByte(CLASS_ENTRY);
+            }
+            writeEntry(annotationClass, value);
             annotationDatabase.addEntryForClass(getDottedClassName(), annotationClass, value);
             return;
         }
+        writeEntry(annotationClass, value);
         annotationDatabase.addEntryForClassMember(member, annotationClass, value);
     }
 
+    private void writeEntry(String annotationClass, @CheckForNull ElementValue value) {
+        if (summaryOutput == null) {
+            return;
+        }
+        summaryOutput.writeString(annotationClass);
+        summaryOutput.writeBoolean(value != null);
+        if (value != null) {
+            summaryOutput.writeInt(value.getElementValueType());
+            summaryOutput.writeString(value.stringifyValue());
+        }
+    }
+
     @Override
     public void visitClassContext(ClassContext classContext) {
         JavaClass javaClass = classContext.getJavaClass();
         if (!BCELUtil.preTiger(javaClass)) {
             javaClass.accept(this);
         }
+        if (summaryOutput != null) {
+            summaryOutput.writeByte(0);
+        }
+
+    }
+
+    @Override
+    public void setSummaryOutput(@CheckForNull LibrarySummaryOutput out) {
+        summaryOutput = out;
+    }
+
+    @Override
+    public void replaySummary(ClassDescriptor classDescriptor, LibrarySummaryInput in) throws IOException {
+        JCIPAnnotationDatabase annotationDatabase = AnalysisContext.currentAnalysisContext()
+                .getJCIPAnnotationDatabase();
+        int kind;
+        while ((kind = in.readByte()) != 0) {
+            ClassMember member;
+            switch (kind) {
+            case CLASS_ENTRY:
+                member = null;
+                break;
+            case FIELD_ENTRY:
+                member = in.readXField();
+                break;
+            case METHOD_ENTRY:
+                member = in.readXMethod();
+                break;
+            default:
+                throw new IOException("Bad annotation entry kind " + kind);
+            }
+            String annotationClass = in.readString();
+            ElementValue value = null;
+            if (in.readBoolean()) {
+                int type = in.readInt();
+                value = new StoredElementValue(type, in.readString());
+            }
+            if (member == null) {
+                annotationDatabase.addEntryForClass(classDescriptor.getDottedClassName(), annotationClass, value);
+            } else {
+                annotationDatabase.addEntryForClassMember(member, annotationClass, value);
+            }
+        }
+    }
+
+    /**
+     * An annotation value replayed from a library summary. Only its string
+     * form is available.
+     */
+    private static class StoredElementValue extends ElementValue {
+        private final String value;
+
+        StoredElementValue(int type, String value) {
+            super(type, null);
+            this.value = value;
+        }
 
+        @Override
+        public String stringifyValue() {
+            return value;
+        }
+
+        @Override
+        public void dump(DataOutputStream dos) {
+            throw new UnsupportedOperationException();
+        }
     }
 
     @Override
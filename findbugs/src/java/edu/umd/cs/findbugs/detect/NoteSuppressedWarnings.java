@@ -19,10 +19,13 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import javax.annotation.CheckForNull;
+
 import org.apache.bcel.Repository;
 import org.apache.bcel.classfile.ElementValue;
 import org.apache.bcel.classfile.JavaClass;
@@ -33,6 +36,9 @@ import edu.umd.cs.findbugs.ClassWarningSuppressor;
 import edu.umd.cs.findbugs.Detector;
 import edu.umd.cs.findbugs.FieldAnnotation;
 import edu.umd.cs.findbugs.FieldWarningSuppressor;
+import edu.umd.cs.findbugs.LibrarySummaryDetector;
+import edu.umd.cs.findbugs.LibrarySummaryInput;
+import edu.umd.cs.findbugs.LibrarySummaryOutput;
 import edu.umd.cs.findbugs.MethodAnnotation;
 import edu.umd.cs.findbugs.MethodWarningSuppressor;
 import edu.umd.cs.findbugs.NonReportingDetector;
@@ -42,15 +48,33 @@ import edu.umd.cs.findbugs.SuppressionMatcher;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.bcel.BCELUtil;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 import edu.umd.cs.findbugs.internalAnnotations.DottedClassName;
 import edu.umd.cs.findbugs.visitclass.AnnotationVisitor;
 
-public class NoteSuppressedWarnings extends AnnotationVisitor implements Detector, NonReportingDetector {
+public class NoteSuppressedWarnings extends AnnotationVisitor implements Detector, NonReportingDetector, LibrarySummaryDetector {
+
+    private static final int CLASS_SUPPRESSOR = 1;
+
+    private static final int METHOD_SUPPRESSOR = 2;
+
+    private static final int FIELD_SUPPRESSOR = 3;
+
+    private static final int PARAMETER_SUPPRESSOR = 4;
+
+    private static final int PACKAGE_SUPPRESSOR = 5;
 
     private final Set<String> packages = new HashSet<String>();
 
     private final SuppressionMatcher suppressionMatcher;
 
+    private LibrarySummaryOutput summaryOutput;
+
+    /** Records the suppressors of the visited class, if not null */
+    private LibrarySummaryOutput journal;
+
+    private boolean addSuppressors = true;
+
     public NoteSuppressedWarnings(BugReporter bugReporter) {
         suppressionMatcher = AnalysisContext.currentAnalysisContext().getSuppressionMatcher();
     }
@@ -58,28 +82,104 @@ public class NoteSuppressedWarnings extends AnnotationVisitor implements Detecto
     @Override
     public void visitClassContext(ClassContext classContext) {
         JavaClass javaClass = classContext.getJavaClass();
-        if (!BCELUtil.preTiger(javaClass)) {
-            @DottedClassName
-            String name = javaClass.getClassName();
-            int i = name.lastIndexOf('.');
-            String packageName = i < 0 ? "" : name.substring(0, i);
-            if (name.endsWith(".package-info")) {
-                if (!packages.add(packageName)) {
-                    return;
-                }
-            } else if (packages.add(packageName)) {
-                JavaClass packageInfoClass;
+        boolean visit = !BCELUtil.preTiger(javaClass);
+        if (summaryOutput != null) {
+            summaryOutput.writeBoolean(visit);
+        }
+        if (visit) {
+            boolean visitClass = notePackage(javaClass.getClassName());
+            // When summarizing, record the suppressors even if the
+            // package-info class was already visited
+            if (visitClass || summaryOutput != null) {
+                journal = summaryOutput;
+                addSuppressors = visitClass;
                 try {
-                    packageInfoClass = Repository.lookupClass(packageName + ".package-info");
-                    packageInfoClass.accept(this);
-                } catch (ClassNotFoundException e) {
-                    assert true;
+                    javaClass.accept(this);
+                } finally {
+                    journal = null;
+                    addSuppressors = true;
+                }
+            }
+            if (summaryOutput != null) {
+                summaryOutput.writeByte(0);
+            }
+        }
+    }
+
+    /**
+     * Note the package of a class, visiting its package-info class the first
+     * time.
+     *
+     * @return false if the class is a package-info class which was already
+     *         visited
+     */
+    private boolean notePackage(@DottedClassName String name) {
+        int i = name.lastIndexOf('.');
+        String packageName = i < 0 ? "" : name.substring(0, i);
+        if (name.endsWith(".package-info")) {
+            if (!packages.add(packageName)) {
+                return false;
+            }
+        } else if (packages.add(packageName)) {
+            JavaClass packageInfoClass;
+            try {
+                packageInfoClass = Repository.lookupClass(packageName + ".package-info");
+                packageInfoClass.accept(this);
+            } catch (ClassNotFoundException e) {
+                assert true;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void setSummaryOutput(@CheckForNull LibrarySummaryOutput out) {
+        summaryOutput = out;
+    }
+
+    @Override
+    public void replaySummary(ClassDescriptor classDescriptor, LibrarySummaryInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return;
+        }
+        addSuppressors = notePackage(classDescriptor.getDottedClassName());
+        try {
+            int kind;
+            while ((kind = in.readByte()) != 0) {
+                String pattern = in.readString();
+                switch (kind) {
+                case CLASS_SUPPRESSOR:
+                    addClassSuppressor(pattern, in.readString());
+                    break;
+                case METHOD_SUPPRESSOR:
+                    addMethodSuppressor(pattern, in.readString(), readMethodAnnotation(in));
+                    break;
+                case FIELD_SUPPRESSOR:
+                    addFieldSuppressor(pattern, in.readString(), readFieldAnnotation(in));
+                    break;
+                case PARAMETER_SUPPRESSOR:
+                    addParameterSuppressor(pattern, in.readString(), readMethodAnnotation(in), in.readInt());
+                    break;
+                case PACKAGE_SUPPRESSOR:
+                    addPackageSuppressor(pattern, in.readString());
+                    break;
+                default:
+                    throw new IOException("Bad suppressor kind " + kind);
                 }
             }
-            javaClass.accept(this);
+        } finally {
+            addSuppressors = true;
         }
     }
 
+    private static MethodAnnotation readMethodAnnotation(LibrarySummaryInput in) throws IOException {
+        return new MethodAnnotation(in.readString(), in.readString(), in.readString(), in.readBoolean());
+    }
+
+    private static FieldAnnotation readFieldAnnotation(LibrarySummaryInput in) throws IOException {
+        return new FieldAnnotation(in.readString(), in.readString(), in.readString(), in.readBoolean());
+    }
+
     @Override
     public void visitAnnotation(String annotationClass, Map<String, ElementValue> map, boolean runtimeVisible) {
         if (!isSuppressWarnings(annotationClass)) {
@@ -120,28 +220,92 @@ public class NoteSuppressedWarnings extends AnnotationVisitor implements Detecto
     }
 
     private void suppressWarning(int parameter, String pattern) {
-        String className = getDottedClassName();
-        ClassAnnotation clazz = new ClassAnnotation(className);
-        suppressionMatcher.addSuppressor(new ParameterWarningSuppressor(pattern, clazz, MethodAnnotation.fromVisitedMethod(this),
-                parameter));
-
+        addParameterSuppressor(pattern, getDottedClassName(), MethodAnnotation.fromVisitedMethod(this), parameter);
     }
 
     private void suppressWarning(String pattern) {
         String className = getDottedClassName();
-        ClassAnnotation clazz = new ClassAnnotation(className);
         if (className.endsWith(".package-info")) {
-            suppressionMatcher.addPackageSuppressor(new PackageWarningSuppressor(pattern, getPackageName().replace('/', '.')));
+            addPackageSuppressor(pattern, getPackageName().replace('/', '.'));
         } else if (visitingMethod()) {
-            suppressionMatcher
-            .addSuppressor(new MethodWarningSuppressor(pattern, clazz, MethodAnnotation.fromVisitedMethod(this)));
+            addMethodSuppressor(pattern, className, MethodAnnotation.fromVisitedMethod(this));
         } else if (visitingField()) {
-            suppressionMatcher.addSuppressor(new FieldWarningSuppressor(pattern, clazz, FieldAnnotation.fromVisitedField(this)));
+            addFieldSuppressor(pattern, className, FieldAnnotation.fromVisitedField(this));
         } else {
-            suppressionMatcher.addSuppressor(new ClassWarningSuppressor(pattern, clazz));
+            addClassSuppressor(pattern, className);
+        }
+    }
+
+    private void addParameterSuppressor(String pattern, String className, MethodAnnotation method, int parameter) {
+        if (journal != null) {
+            journal.writeByte(PARAMETER_SUPPRESSOR);
+            journal.writeString(pattern);
+            journal.writeString(className);
+            writeMethodAnnotation(method);
+            journal.writeInt(parameter);
+        }
+        if (addSuppressors) {
+            suppressionMatcher.addSuppressor(new ParameterWarningSuppressor(pattern, new ClassAnnotation(className), method,
+                    parameter));
+        }
+    }
+
+    private void addPackageSuppressor(String pattern, String packageName) {
+        if (journal != null) {
+            journal.writeByte(PACKAGE_SUPPRESSOR);
+            journal.writeString(pattern);
+            journal.writeString(packageName);
+        }
+        if (addSuppressors) {
+            suppressionMatcher.addPackageSuppressor(new PackageWarningSuppressor(pattern, packageName));
         }
     }
 
+    private void addMethodSuppressor(String pattern, String className, MethodAnnotation method) {
+        if (journal != null) {
+            journal.writeByte(METHOD_SUPPRESSOR);
+            journal.writeString(pattern);
+            journal.writeString(className);
+            writeMethodAnnotation(method);
+        }
+        if (addSuppressors) {
+            suppressionMatcher.addSuppressor(new MethodWarningSuppressor(pattern, new ClassAnnotation(className), method));
+        }
+    }
+
+    private void addFieldSuppressor(String pattern, String className, FieldAnnotation field) {
+        if (journal != null) {
+            journal.writeByte(FIELD_SUPPRESSOR);
+            journal.writeString(pattern);
+            journal.writeString(className);
+            journal.writeString(field.getClassName());
+            journal.writeString(field.getFieldName());
+            journal.writeString(field.getFieldSignature());
+            journal.writeBoolean(field.isStatic());
+        }
+        if (addSuppressors) {
+            suppressionMatcher.addSuppressor(new FieldWarningSuppressor(pattern, new ClassAnnotation(className), field));
+        }
+    }
+
+    private void addClassSuppressor(String pattern, String className) {
+        if (journal != null) {
+            journal.writeByte(CLASS_SUPPRESSOR);
+            journal.writeString(pattern);
+            journal.writeString(className);
+        }
+        if (addSuppressors) {
+            suppressionMatcher.addSuppressor(new ClassWarningSuppressor(pattern, new ClassAnnotation(className)));
+        }
+    }
+
+    private void writeMethodAnnotation(MethodAnnotation method) {
+        journal.writeString(method.getClassName());
+        journal.writeString(method.getMethodName());
+        journal.writeString(method.getMethodSignature());
+        journal.writeBoolean(method.isStatic());
+    }
+
     @Override
     public void report() {
 
@@ -31,6 +31,7 @@ import org.apache.bcel.classfile.Code;
 import edu.umd.cs.findbugs.BugAccumulator;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
+import edu.umd.cs.findbugs.StatelessDetector;
 import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 import edu.umd.cs.findbugs.classfile.MethodDescriptor;
@@ -53,7 +54,7 @@ import edu.umd.cs.findbugs.internalAnnotations.SlashedClassName;
  *
  * @author Mikko Tiihonen
  */
-public class NumberConstructor extends OpcodeStackDetector {
+public class NumberConstructor extends OpcodeStackDetector implements StatelessDetector {
 
     static class Pair {
         final MethodDescriptor boxingMethod;
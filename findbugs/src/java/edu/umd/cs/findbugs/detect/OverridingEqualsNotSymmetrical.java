@@ -19,23 +19,29 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.io.IOException;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 
+import javax.annotation.CheckForNull;
+
 import org.apache.bcel.classfile.Code;
 
 import edu.umd.cs.findbugs.BugAccumulator;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.ClassAnnotation;
-import edu.umd.cs.findbugs.FirstPassDetector;
+import edu.umd.cs.findbugs.LibrarySummaryDetector;
+import edu.umd.cs.findbugs.LibrarySummaryInput;
+import edu.umd.cs.findbugs.LibrarySummaryOutput;
 import edu.umd.cs.findbugs.MethodAnnotation;
 import edu.umd.cs.findbugs.OpcodeStack.Item;
 import edu.umd.cs.findbugs.Priorities;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.ba.EqualsKindSummary;
 import edu.umd.cs.findbugs.ba.Hierarchy2;
 import edu.umd.cs.findbugs.ba.XClass;
@@ -47,8 +53,9 @@ import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
 import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 import edu.umd.cs.findbugs.classfile.Global;
 import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+import edu.umd.cs.findbugs.internalAnnotations.DottedClassName;
 
-public class OverridingEqualsNotSymmetrical extends OpcodeStackDetector implements FirstPassDetector {
+public class OverridingEqualsNotSymmetrical extends OpcodeStackDetector implements LibrarySummaryDetector {
 
     private static final String EQUALS_NAME = "equals";
 
@@ -70,6 +77,8 @@ public class OverridingEqualsNotSymmetrical extends OpcodeStackDetector implemen
 
     final EqualsKindSummary equalsKindSummary;
 
+    private LibrarySummaryOutput summaryOutput;
+
     public OverridingEqualsNotSymmetrical(BugReporter bugReporter) {
         this.bugReporter = bugReporter;
         this.bugAccumulator = new BugAccumulator(bugReporter);
@@ -117,50 +126,84 @@ public class OverridingEqualsNotSymmetrical extends OpcodeStackDetector implemen
                     .reportBug(new BugInstance(this, "EQ_UNUSUAL", Priorities.NORMAL_PRIORITY).addClassAndMethod(this));
                 }
             }
-            ClassAnnotation classAnnotation = new ClassAnnotation(getDottedClassName());
-            equalsKindSummary.put(classAnnotation, kind);
+            String superClassName = getSuperclassName().replace('/', '.');
+            if (summaryOutput != null) {
+                summaryOutput.writeBoolean(true);
+                summaryOutput.writeByte(kind.ordinal());
+                summaryOutput.writeMethodDescriptor(getMethodDescriptor());
+                summaryOutput.writeString(superClassName);
+            }
+            noteEquals(getClassDescriptor(), kind, getMethodDescriptor(), superClassName);
+        }
+        bugAccumulator.reportAccumulatedBugs();
+    }
 
-            count(kind);
-            if (kind == EqualsKindSummary.KindOfEquals.GETCLASS_GOOD_EQUALS
-                    || kind == EqualsKindSummary.KindOfEquals.ABSTRACT_GETCLASS_GOOD_EQUALS
-                    || kind == EqualsKindSummary.KindOfEquals.GETCLASS_BAD_EQUALS) {
+    private void noteEquals(ClassDescriptor classDescriptor, EqualsKindSummary.KindOfEquals kind,
+            MethodDescriptor equalsMethodDescriptor, @DottedClassName String superClassName) {
+        ClassAnnotation classAnnotation = new ClassAnnotation(classDescriptor.getDottedClassName());
+        equalsKindSummary.put(classAnnotation, kind);
 
-                ClassDescriptor classDescriptor = getClassDescriptor();
-                try {
-                    Set<ClassDescriptor> subtypes = AnalysisContext.currentAnalysisContext().getSubtypes2()
-                            .getSubtypes(classDescriptor);
-                    if (subtypes.size() > 1) {
-                        classesWithGetClassBasedEquals.put(classDescriptor, subtypes);
-                    }
-                } catch (ClassNotFoundException e) {
-                    assert true;
-                }
+        count(kind);
+        if (kind == EqualsKindSummary.KindOfEquals.GETCLASS_GOOD_EQUALS
+                || kind == EqualsKindSummary.KindOfEquals.ABSTRACT_GETCLASS_GOOD_EQUALS
+                || kind == EqualsKindSummary.KindOfEquals.GETCLASS_BAD_EQUALS) {
 
+            try {
+                Set<ClassDescriptor> subtypes = AnalysisContext.currentAnalysisContext().getSubtypes2()
+                        .getSubtypes(classDescriptor);
+                if (subtypes.size() > 1) {
+                    classesWithGetClassBasedEquals.put(classDescriptor, subtypes);
+                }
+            } catch (ClassNotFoundException e) {
+                assert true;
             }
-            if (kind == EqualsKindSummary.KindOfEquals.INSTANCE_OF_EQUALS
-                    || kind == EqualsKindSummary.KindOfEquals.ABSTRACT_INSTANCE_OF) {
 
-                ClassDescriptor classDescriptor = getClassDescriptor();
-                try {
-                    Set<ClassDescriptor> subtypes = AnalysisContext.currentAnalysisContext().getSubtypes2()
-                            .getSubtypes(classDescriptor);
-                    if (subtypes.size() > 1) {
-                        classesWithInstanceOfBasedEquals.put(classDescriptor, subtypes);
-                    }
-                } catch (ClassNotFoundException e) {
-                    assert true;
-                }
+        }
+        if (kind == EqualsKindSummary.KindOfEquals.INSTANCE_OF_EQUALS
+                || kind == EqualsKindSummary.KindOfEquals.ABSTRACT_INSTANCE_OF) {
 
+            try {
+                Set<ClassDescriptor> subtypes = AnalysisContext.currentAnalysisContext().getSubtypes2()
+                        .getSubtypes(classDescriptor);
+                if (subtypes.size() > 1) {
+                    classesWithInstanceOfBasedEquals.put(classDescriptor, subtypes);
+                }
+            } catch (ClassNotFoundException e) {
+                assert true;
             }
 
-            String superClassName = getSuperclassName().replace('/', '.');
-            if (!"java.lang.Object".equals(superClassName)) {
-                parentMap.put(classAnnotation, new ClassAnnotation(superClassName));
-            }
-            equalsMethod.put(classAnnotation, getMethodDescriptor());
+        }
 
+        if (!"java.lang.Object".equals(superClassName)) {
+            parentMap.put(classAnnotation, new ClassAnnotation(superClassName));
+        }
+        equalsMethod.put(classAnnotation, equalsMethodDescriptor);
+    }
+
+    @Override
+    public void setSummaryOutput(@CheckForNull LibrarySummaryOutput out) {
+        summaryOutput = out;
+    }
+
+    @Override
+    public void visitClassContext(ClassContext classContext) {
+        super.visitClassContext(classContext);
+        if (summaryOutput != null) {
+            summaryOutput.writeBoolean(false);
+        }
+    }
+
+    @Override
+    public void replaySummary(ClassDescriptor classDescriptor, LibrarySummaryInput in) throws IOException {
+        EqualsKindSummary.KindOfEquals[] kinds = EqualsKindSummary.KindOfEquals.values();
+        while (in.readBoolean()) {
+            int kind = in.readByte();
+            if (kind < 0 || kind >= kinds.length) {
+                throw new IOException("Bad kind of equals " + kind);
+            }
+            MethodDescriptor equalsMethodDescriptor = in.readMethodDescriptor();
+            noteEquals(classDescriptor, kinds[kind], equalsMethodDescriptor, in.readString());
         }
-        bugAccumulator.reportAccumulatedBugs();
     }
 
     boolean sawInstanceOf, sawInstanceOfSupertype, sawCheckedCast;
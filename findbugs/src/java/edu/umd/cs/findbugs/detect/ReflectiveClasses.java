@@ -19,10 +19,18 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.io.IOException;
+
+import javax.annotation.CheckForNull;
+
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.BytecodeScanningDetector;
+import edu.umd.cs.findbugs.LibrarySummaryDetector;
+import edu.umd.cs.findbugs.LibrarySummaryInput;
+import edu.umd.cs.findbugs.LibrarySummaryOutput;
 import edu.umd.cs.findbugs.NonReportingDetector;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 import edu.umd.cs.findbugs.classfile.DescriptorFactory;
 import edu.umd.cs.findbugs.internalAnnotations.SlashedClassName;
@@ -31,7 +39,9 @@ import edu.umd.cs.findbugs.util.ClassName;
 /**
  * Detector to find private methods that are never called.
  */
-public class ReflectiveClasses extends BytecodeScanningDetector implements NonReportingDetector {
+public class ReflectiveClasses extends BytecodeScanningDetector implements NonReportingDetector, LibrarySummaryDetector {
+
+    private LibrarySummaryOutput summaryOutput;
 
     public ReflectiveClasses(BugReporter bugReporter) {
         AnalysisContext.currentXFactory().addReflectiveClasses(DescriptorFactory.createClassDescriptor(java.lang.System.class));
@@ -69,6 +79,30 @@ public class ReflectiveClasses extends BytecodeScanningDetector implements NonRe
     private void process(@SlashedClassName String className) {
         ClassDescriptor d = DescriptorFactory.createClassDescriptor(className);
         AnalysisContext.currentXFactory().addReflectiveClasses(d);
+        if (summaryOutput != null) {
+            summaryOutput.writeBoolean(true);
+            summaryOutput.writeClassDescriptor(d);
+        }
+    }
+
+    @Override
+    public void visitClassContext(ClassContext classContext) {
+        super.visitClassContext(classContext);
+        if (summaryOutput != null) {
+            summaryOutput.writeBoolean(false);
+        }
+    }
+
+    @Override
+    public void setSummaryOutput(@CheckForNull LibrarySummaryOutput out) {
+        summaryOutput = out;
+    }
+
+    @Override
+    public void replaySummary(ClassDescriptor classDescriptor, LibrarySummaryInput in) throws IOException {
+        while (in.readBoolean()) {
+            AnalysisContext.currentXFactory().addReflectiveClasses(in.readClassDescriptor());
+        }
     }
 }
 
@@ -26,10 +26,11 @@ import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.Priorities;
+import edu.umd.cs.findbugs.StatelessDetector;
 import edu.umd.cs.findbugs.ba.XField;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 
-public class SynchronizingOnContentsOfFieldToProtectField extends OpcodeStackDetector {
+public class SynchronizingOnContentsOfFieldToProtectField extends OpcodeStackDetector implements StatelessDetector {
 
     final BugReporter bugReporter;
 
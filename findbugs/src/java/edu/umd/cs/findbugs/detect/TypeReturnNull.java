@@ -23,6 +23,7 @@ import org.apache.bcel.classfile.Code;
 
 import edu.umd.cs.findbugs.BugAccumulator;
 import edu.umd.cs.findbugs.BugReporter;
+import edu.umd.cs.findbugs.StatelessDetector;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.INullnessAnnotationDatabase;
 import edu.umd.cs.findbugs.ba.NullnessAnnotation;
@@ -37,7 +38,7 @@ import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
  * @author alison
  * @author Andrey Loskutov
  */
-public abstract class TypeReturnNull extends OpcodeStackDetector {
+public abstract class TypeReturnNull extends OpcodeStackDetector implements StatelessDetector {
 
     protected final BugAccumulator bugAccumulator;
 
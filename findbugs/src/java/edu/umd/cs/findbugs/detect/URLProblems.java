@@ -29,6 +29,7 @@ import edu.umd.cs.findbugs.BugAccumulator;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.OpcodeStack;
+import edu.umd.cs.findbugs.StatelessDetector;
 import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 import edu.umd.cs.findbugs.classfile.MethodDescriptor;
@@ -37,7 +38,7 @@ import edu.umd.cs.findbugs.classfile.MethodDescriptor;
  * equals and hashCode are blocking methods on URL's. Warn about invoking equals
  * or hashCode on them, or defining Set or Maps with them as keys.
  */
-public class URLProblems extends OpcodeStackDetector {
+public class URLProblems extends OpcodeStackDetector implements StatelessDetector {
 
     private static final MethodDescriptor URL_EQUALS = new MethodDescriptor("java/net/URL", "equals", "(Ljava/lang/Object;)Z");
     private static final MethodDescriptor URL_HASHCODE = new MethodDescriptor("java/net/URL", "hashCode", "()I");
@@ -28,10 +28,11 @@ import org.apache.bcel.classfile.JavaClass;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.BytecodeScanningDetector;
+import edu.umd.cs.findbugs.StatelessDetector;
 import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.internalAnnotations.StaticConstant;
 
-public class XMLFactoryBypass extends BytecodeScanningDetector {
+public class XMLFactoryBypass extends BytecodeScanningDetector implements StatelessDetector {
     private final BugReporter bugReporter;
 
     @StaticConstant
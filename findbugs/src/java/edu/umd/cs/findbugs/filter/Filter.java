@@ -25,8 +25,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
+import java.util.ArrayList;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
 
 import javax.annotation.WillClose;
 
@@ -54,6 +56,12 @@ public class Filter extends OrMatcher {
 
     private final IdentityHashMap<Matcher, Boolean> disabled = new IdentityHashMap<Matcher, Boolean>();
 
+    /**
+     * Index of the enabled children, built when the filter is first used
+     * for matching, and discarded when its children change
+     */
+    private volatile MatcherIndex index;
+
     /**
      * Constructor for empty filter
      *
@@ -106,6 +114,7 @@ public class Filter extends OrMatcher {
 
     public void disable(Matcher m) {
         disabled.put(m, true);
+        index = null;
     }
 
     public boolean isEnabled(Matcher m) {
@@ -114,6 +123,7 @@ public class Filter extends OrMatcher {
 
     public void enable(Matcher m) {
         disabled.remove(m);
+        index = null;
     }
 
     public static Filter parseFilter(String fileName) throws IOException {
@@ -161,6 +171,7 @@ public class Filter extends OrMatcher {
      */
     public void softAdd(Matcher child) {
         super.addChild(child);
+        index = null;
     }
 
     @Override
@@ -173,24 +184,32 @@ public class Filter extends OrMatcher {
     public void removeChild(Matcher child) {
         enable(child);// Remove from disabled before removing it
         super.removeChild(child);
+        index = null;
     }
 
     @Override
     public void clear() {
         disabled.clear();
         super.clear();
+        index = null;
     }
 
     @Override
     public boolean match(BugInstance bugInstance) {
-        Iterator<Matcher> i = childIterator();
-        while (i.hasNext()) {
-            Matcher child = i.next();
-            if (isEnabled(child) && child.match(bugInstance)) {
-                return true;
+        MatcherIndex index = this.index;
+        if (index == null) {
+            List<Matcher> enabledChildren = new ArrayList<Matcher>();
+            Iterator<Matcher> i = childIterator();
+            while (i.hasNext()) {
+                Matcher child = i.next();
+                if (isEnabled(child)) {
+                    enabledChildren.add(child);
+                }
             }
+            index = new MatcherIndex(enabledChildren);
+            this.index = index;
         }
-        return false;
+        return index.match(bugInstance);
     }
 
     /**
@@ -0,0 +1,247 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.filter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.BugPattern;
+import edu.umd.cs.findbugs.ClassAnnotation;
+
+/**
+ * Index over the alternatives of an OrMatcher, to find the alternatives which
+ * may match a BugInstance without evaluating all of them.
+ * <p>
+ * Most alternatives of a filter file are Match elements with a class name, a
+ * package (class name regex) or a bug pattern, code or category. Each
+ * alternative is indexed on a condition it cannot match without: the exact
+ * primary class name, the literal prefix of a primary class name regex, or
+ * the bug types, abbrevs and categories of a Bug matcher. Alternatives without
+ * such a condition are always candidates. The candidates for a BugInstance are
+ * then evaluated in their original order, so the result (and the side effects
+ * of matching) are exactly those of evaluating all the alternatives.
+ * </p>
+ */
+class MatcherIndex {
+    private final Matcher[] alternatives;
+
+    /** Alternatives which must always be evaluated */
+    private final BitSet unindexed = new BitSet();
+
+    private final Map<String, BitSet> byClassName = new HashMap<String, BitSet>();
+
+    /** Trie of the literal prefixes of class name regexes */
+    private final PrefixNode byClassNamePrefix = new PrefixNode();
+
+    private final Map<String, BitSet> byType = new HashMap<String, BitSet>();
+
+    private final Map<String, BitSet> byAbbrev = new HashMap<String, BitSet>();
+
+    private final Map<String, BitSet> byCategory = new HashMap<String, BitSet>();
+
+    private static class PrefixNode {
+        final Map<Character, PrefixNode> children = new HashMap<Character, PrefixNode>();
+
+        final BitSet alternatives = new BitSet();
+    }
+
+    MatcherIndex(List<Matcher> alternatives) {
+        this.alternatives = alternatives.toArray(new Matcher[alternatives.size()]);
+        for (int i = 0; i < this.alternatives.length; i++) {
+            if (!index(this.alternatives[i], i)) {
+                unindexed.set(i);
+            }
+        }
+    }
+
+    /**
+     * Index an alternative on one of the matchers it requires to match.
+     *
+     * @return true if the alternative was indexed
+     */
+    private boolean index(Matcher alternative, int i) {
+        List<Matcher> required = new ArrayList<Matcher>();
+        if (alternative instanceof AndMatcher) {
+            required.addAll(((AndMatcher) alternative).getChildren());
+        } else {
+            required.add(alternative);
+        }
+        // Prefer the most selective condition
+        for (Matcher m : required) {
+            String spec = getPrimaryClassNameSpec(m);
+            if (spec != null && !spec.startsWith("~")) {
+                add(byClassName, spec, i);
+                return true;
+            }
+        }
+        for (Matcher m : required) {
+            String spec = getPrimaryClassNameSpec(m);
+            if (spec != null && spec.startsWith("~")) {
+                String prefix = getLiteralPrefix(spec.substring(1));
+                if (prefix.length() > 0) {
+                    PrefixNode node = byClassNamePrefix;
+                    for (int j = 0; j < prefix.length(); j++) {
+                        Character c = prefix.charAt(j);
+                        PrefixNode child = node.children.get(c);
+                        if (child == null) {
+                            child = new PrefixNode();
+                            node.children.put(c, child);
+                        }
+                        node = child;
+                    }
+                    node.alternatives.set(i);
+                    return true;
+                }
+            }
+        }
+        for (Matcher m : required) {
+            if (m instanceof BugMatcher) {
+                BugMatcher bugMatcher = (BugMatcher) m;
+                for (String code : bugMatcher.getCodes().getStrings()) {
+                    add(byAbbrev, code, i);
+                }
+                for (String pattern : bugMatcher.getPatterns().getStrings()) {
+                    add(byType, pattern, i);
+                }
+                for (String category : bugMatcher.getCategories().getStrings()) {
+                    add(byCategory, category, i);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the class name specification of a matcher on the primary class.
+     *
+     * @return the specification, or null if the matcher is not a class
+     *         matcher on the primary class
+     */
+    private static String getPrimaryClassNameSpec(Matcher m) {
+        if (!(m instanceof ClassMatcher)) {
+            return null;
+        }
+        ClassMatcher classMatcher = (ClassMatcher) m;
+        String role = classMatcher.getRole();
+        if (role != null && !"".equals(role)) {
+            return null;
+        }
+        return classMatcher.getClassNameMatch().getSpec();
+    }
+
+    private static void add(Map<String, BitSet> map, String key, int i) {
+        BitSet alternatives = map.get(key);
+        if (alternatives == null) {
+            alternatives = new BitSet();
+            map.put(key, alternatives);
+        }
+        alternatives.set(i);
+    }
+
+    private static void addAll(BitSet candidates, Map<String, BitSet> map, String key) {
+        BitSet alternatives = map.get(key);
+        if (alternatives != null) {
+            candidates.or(alternatives);
+        }
+    }
+
+    /**
+     * Get the literal prefix every string matching a regular expression must
+     * start with. This is conservative: an empty prefix is returned for any
+     * expression with alternatives.
+     *
+     * @param regex
+     *            the regular expression
+     * @return the prefix, possibly empty
+     */
+    static String getLiteralPrefix(String regex) {
+        if (regex.indexOf('|') >= 0) {
+            return "";
+        }
+        StringBuilder prefix = new StringBuilder();
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    // Character class, quotation, back reference...
+                    break;
+                }
+                prefix.append(regex.charAt(i + 1));
+                i += 2;
+            } else if (".^$*+?()[]{}".indexOf(c) >= 0) {
+                break;
+            } else {
+                prefix.append(c);
+                i++;
+            }
+        }
+        if (i < regex.length() && "*?{".indexOf(regex.charAt(i)) >= 0 && prefix.length() > 0) {
+            // The last character is optional or repeated
+            prefix.setLength(prefix.length() - 1);
+        }
+        return prefix.toString();
+    }
+
+    boolean match(BugInstance bugInstance) {
+        ClassAnnotation primaryClass = bugInstance.getPrimaryClass();
+        if (primaryClass == null) {
+            // Let the class matchers fail the way they always have
+            return matchAll(bugInstance);
+        }
+        BitSet candidates = (BitSet) unindexed.clone();
+        String className = primaryClass.getClassName();
+        addAll(candidates, byClassName, className);
+        PrefixNode node = byClassNamePrefix;
+        for (int i = 0; i < className.length() && node != null; i++) {
+            node = node.children.get(className.charAt(i));
+            if (node != null) {
+                candidates.or(node.alternatives);
+            }
+        }
+        if (!byType.isEmpty() || !byAbbrev.isEmpty() || !byCategory.isEmpty()) {
+            // Matched as BugMatcher does
+            BugPattern bugPattern = bugInstance.getBugPattern();
+            addAll(candidates, byType, bugInstance.getType().trim());
+            addAll(candidates, byAbbrev, bugPattern.getAbbrev().trim());
+            addAll(candidates, byCategory, bugPattern.getCategory().trim());
+        }
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (alternatives[i].match(bugInstance)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean matchAll(BugInstance bugInstance) {
+        for (Matcher alternative : alternatives) {
+            if (alternative.match(bugInstance)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
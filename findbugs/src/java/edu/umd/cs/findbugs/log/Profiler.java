@@ -24,7 +24,9 @@ import java.io.PrintStream;
 import java.io.Serializable;
 import java.util.Comparator;
 import java.util.EmptyStackException;
+import java.util.Map;
 import java.util.Stack;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -47,8 +49,20 @@ public class Profiler implements XMLWriteable {
     final static boolean MAX_CONTEXT = SystemProperties.getBoolean("findbugs.profiler.maxcontext");
 
     public Profiler() {
-        startTimes = new Stack<Clock>();
+        startTimes = new ThreadLocal<Stack<Clock>>() {
+            @Override
+            protected Stack<Clock> initialValue() {
+                return new Stack<Clock>();
+            }
+        };
+        context = new ThreadLocal<Stack<Object>>() {
+            @Override
+            protected Stack<Object> initialValue() {
+                return new Stack<Object>();
+            }
+        };
         profile = new ConcurrentHashMap<Class<?>, Profile>();
+        counts = new ConcurrentHashMap<String, AtomicLong>();
         if (REPORT) {
             System.err.println("Profiling activated");
         }
@@ -208,27 +222,35 @@ public class Profiler implements XMLWriteable {
 
     }
 
-    final Stack<Clock> startTimes;
+    /**
+     * Clocks and contexts are kept per thread, so that detectors running on
+     * several analysis threads can share one profiler.
+     */
+    final ThreadLocal<Stack<Clock>> startTimes;
 
     final ConcurrentMap<Class<?>, Profile> profile;
 
-    final Stack<Object> context = new Stack<Object>();
+    final ThreadLocal<Stack<Object>> context;
+
+    /** Named event counts, reported along with the timings */
+    final ConcurrentMap<String, AtomicLong> counts;
 
     public void startContext(Object context) {
-        this.context.push(context);
+        this.context.get().push(context);
     }
 
     public void endContext(Object context) {
-        Object o = this.context.pop();
+        Object o = this.context.get().pop();
         assert o == context;
     }
 
     private Object getContext() {
-        if (context.size() == 0) {
+        Stack<Object> stack = context.get();
+        if (stack.size() == 0) {
             return "";
         }
         try {
-            return context.peek();
+            return stack.peek();
         } catch (EmptyStackException e) {
             return "";
         }
@@ -236,7 +258,7 @@ public class Profiler implements XMLWriteable {
     public void start(Class<?> c) {
         long currentNanoTime = System.nanoTime();
 
-        Stack<Clock> stack = startTimes;
+        Stack<Clock> stack = startTimes.get();
         if (!stack.isEmpty()) {
             stack.peek().accumulateTime(currentNanoTime);
         }
@@ -249,7 +271,7 @@ public class Profiler implements XMLWriteable {
         // System.err.println("pop " + c.getSimpleName());
         long currentNanoTime = System.nanoTime();
 
-        Stack<Clock> stack = startTimes;
+        Stack<Clock> stack = startTimes.get();
         Clock ending = stack.pop();
         if (ending.clazz != c) {
             throw new AssertionError("Asked to end timing for " + c + " but top of stack is " + ending.clazz
@@ -276,6 +298,45 @@ public class Profiler implements XMLWriteable {
 
     }
 
+    /**
+     * Whether the profile is reported (profiler.report is set). Statistics
+     * which are costly to gather should only be gathered if it is.
+     */
+    public static boolean isReportEnabled() {
+        return REPORT;
+    }
+
+    /**
+     * Count events which are too frequent or too short to be timed, such as
+     * the basic blocks processed by a dataflow analysis.
+     *
+     * @param name
+     *            name of the kind of event
+     * @param n
+     *            number of events
+     */
+    public void count(String name, long n) {
+        AtomicLong counter = counts.get(name);
+        if (counter == null) {
+            counter = new AtomicLong();
+            AtomicLong counter2 = counts.putIfAbsent(name, counter);
+            if (counter2 != null) {
+                counter = counter2;
+            }
+        }
+        counter.addAndGet(n);
+    }
+
+    /**
+     * @param name
+     *            name of the kind of event
+     * @return number of events of that kind counted so far
+     */
+    public long getCount(String name) {
+        AtomicLong counter = counts.get(name);
+        return counter == null ? 0 : counter.get();
+    }
+
     public static class ClassNameComparator implements Comparator<Class<?>>, Serializable {
         final protected Profiler profiler;
 
@@ -401,6 +462,12 @@ public class Profiler implements XMLWriteable {
                 }
 
             }
+            if (!counts.isEmpty()) {
+                stream.printf("%12s  %s%n", "count", "Event");
+                for (Map.Entry<String, AtomicLong> e : new TreeMap<String, AtomicLong>(counts).entrySet()) {
+                    stream.printf("%12d  %s%n", Long.valueOf(e.getValue().get()), e.getKey());
+                }
+            }
             stream.flush();
         } catch (RuntimeException e) {
             System.err.println(e);
@@ -417,7 +484,8 @@ public class Profiler implements XMLWriteable {
      */
     public void clear() {
         profile.clear();
-        startTimes.clear();
+        counts.clear();
+        startTimes.get().clear();
     }
 
     public Profile getProfile(Class<?> c) {
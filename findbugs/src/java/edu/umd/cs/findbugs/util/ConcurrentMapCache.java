@@ -0,0 +1,628 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.util;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * A thread-safe counterpart of {@link MapCache}: a map whose entries are
+ * discarded when the total weight of the entries exceeds a budget. Lookups and
+ * insertions don't block each other.
+ * <p>
+ * Each entry has a weight, for example its approximate size in bytes. Several
+ * caches can share one {@link Budget}, in which case entries are discarded
+ * from all of them as needed to keep their total weight within the budget.
+ * Entries are discarded using the S3-FIFO algorithm: new entries go to a small
+ * FIFO queue. Entries which are not read again before reaching the end of that
+ * queue are discarded (and their keys remembered for a while), the others are
+ * moved to a main queue, where entries get a second chance for each time they
+ * were read (up to three). Entries whose keys are remembered go to the main
+ * queue directly. So entries which are used only once, like most of the
+ * results of analyzing a class, don't push out entries which are used again
+ * and again.
+ * <p>
+ * Each cache counts hits, misses and evictions. The keySet, values and
+ * entrySet views are snapshots which can't be modified. Null values are not
+ * supported.
+ */
+public class ConcurrentMapCache<K, V> extends AbstractMap<K, V> {
+
+    /**
+     * Computes the weight of cache entries.
+     */
+    public interface Weigher<K, V> {
+        /**
+         * @return the weight of an entry, at least 1
+         */
+        int weigh(K key, V value);
+    }
+
+    private static final Weigher<Object, Object> UNIT_WEIGHER = new Weigher<Object, Object>() {
+        @Override
+        public int weigh(Object key, Object value) {
+            return 1;
+        }
+    };
+
+    private static final int MAX_FREQUENCY = 3;
+
+    private static final int MIN_DEAD_TO_SWEEP = 1000;
+
+    /**
+     * Weight budget which can be shared by several caches.
+     */
+    public static class Budget {
+        private final long maxWeight;
+
+        private final long maxSmallWeight;
+
+        private final AtomicLong weight = new AtomicLong();
+
+        private final AtomicLong smallWeight = new AtomicLong();
+
+        private final AtomicLong entries = new AtomicLong();
+
+        /** Number of removed entries still in the queues */
+        private final AtomicLong dead = new AtomicLong();
+
+        private final Queue<Node<?, ?>> small = new ConcurrentLinkedQueue<Node<?, ?>>();
+
+        private final Queue<Node<?, ?>> main = new ConcurrentLinkedQueue<Node<?, ?>>();
+
+        /** Recently discarded keys, see {@link Node#fingerprint()} */
+        private final Set<Integer> ghosts = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
+        /** Recently discarded keys in the order they were discarded */
+        private final Queue<Integer> ghostQueue = new ConcurrentLinkedQueue<Integer>();
+
+        // guarded by evictionLock
+        private int ghostCount;
+
+        private final ReentrantLock evictionLock = new ReentrantLock();
+
+        /**
+         * @param maxWeight
+         *            maximum total weight of the entries of the caches sharing
+         *            this budget
+         */
+        public Budget(long maxWeight) {
+            this.maxWeight = maxWeight;
+            this.maxSmallWeight = Math.max(1, maxWeight / 10);
+        }
+
+        public long getMaxWeight() {
+            return maxWeight;
+        }
+
+        /**
+         * @return the total weight of the entries of the caches sharing this
+         *         budget
+         */
+        public long getWeight() {
+            return weight.get();
+        }
+
+        void add(Node<?, ?> node, boolean toMain) {
+            synchronized (node) {
+                if (node.removed) {
+                    return;
+                }
+                node.accounted = true;
+                node.queued = true;
+                node.inMain = toMain || ghosts.remove(node.fingerprint());
+                node.owner.weight.addAndGet(node.weight);
+                weight.addAndGet(node.weight);
+                entries.incrementAndGet();
+                if (!node.inMain) {
+                    smallWeight.addAndGet(node.weight);
+                }
+            }
+            if (node.inMain) {
+                main.add(node);
+            } else {
+                small.add(node);
+            }
+            evict();
+        }
+
+        void removed(Node<?, ?> node) {
+            boolean queued;
+            synchronized (node) {
+                if (node.removed) {
+                    return;
+                }
+                node.removed = true;
+                if (!node.accounted) {
+                    return;
+                }
+                queued = node.queued;
+                node.owner.weight.addAndGet(-node.weight);
+                weight.addAndGet(-node.weight);
+                entries.decrementAndGet();
+                if (!node.inMain) {
+                    smallWeight.addAndGet(-node.weight);
+                }
+            }
+            // The node stays in its queue, without its value, until the
+            // eviction gets round to it. If many removed entries pile up,
+            // e.g. because a whole cache was cleared and nothing needs to be
+            // evicted, they are swept out, which takes time proportional to
+            // the number of removed entries.
+            if (queued && dead.incrementAndGet() > Math.max(entries.get(), MIN_DEAD_TO_SWEEP) && evictionLock.tryLock()) {
+                try {
+                    sweep(small);
+                    sweep(main);
+                } finally {
+                    evictionLock.unlock();
+                }
+            }
+        }
+
+        private void sweep(Queue<Node<?, ?>> queue) {
+            for (Iterator<Node<?, ?>> i = queue.iterator(); i.hasNext();) {
+                Node<?, ?> node = i.next();
+                synchronized (node) {
+                    if (!node.removed || !node.queued) {
+                        continue;
+                    }
+                    node.queued = false;
+                }
+                i.remove();
+                dead.decrementAndGet();
+            }
+        }
+
+        private void moveToMain(Node<?, ?> node) {
+            synchronized (node) {
+                if (node.removed) {
+                    return;
+                }
+                node.inMain = true;
+                node.queued = true;
+                smallWeight.addAndGet(-node.weight);
+            }
+            node.frequency = 0;
+            main.add(node);
+        }
+
+        private void evict() {
+            if (weight.get() <= maxWeight || !evictionLock.tryLock()) {
+                // someone else is already evicting
+                return;
+            }
+            try {
+                while (weight.get() > maxWeight && evictOne()) {
+                    // keep evicting
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+
+        /**
+         * Process one entry from the small or main queue.
+         *
+         * @return false if both queues are empty
+         */
+        private boolean evictOne() {
+            boolean fromSmall = smallWeight.get() >= maxSmallWeight || main.isEmpty();
+            Node<?, ?> node = fromSmall ? small.poll() : main.poll();
+            if (node == null) {
+                node = fromSmall ? main.poll() : small.poll();
+                if (node == null) {
+                    return false;
+                }
+            }
+            synchronized (node) {
+                node.queued = false;
+                if (node.removed) {
+                    dead.decrementAndGet();
+                    return true;
+                }
+            }
+            if (node.inMain) {
+                if (node.frequency > 0) {
+                    node.frequency--;
+                    synchronized (node) {
+                        if (node.removed) {
+                            return true;
+                        }
+                        node.queued = true;
+                    }
+                    main.add(node);
+                } else {
+                    node.evict();
+                }
+            } else if (node.frequency > 0) {
+                moveToMain(node);
+            } else if (node.evict()) {
+                remember(node.fingerprint());
+            }
+            return true;
+        }
+
+        private void remember(int fingerprint) {
+            if (ghosts.add(fingerprint)) {
+                ghostQueue.add(fingerprint);
+                ghostCount++;
+            }
+            // remember about as many keys as there are entries
+            while (ghostCount > Math.max(entries.get(), 100)) {
+                Integer oldest = ghostQueue.poll();
+                if (oldest == null) {
+                    break;
+                }
+                ghosts.remove(oldest);
+                ghostCount--;
+            }
+        }
+    }
+
+    private static class Node<K, V> {
+        final ConcurrentMapCache<K, V> owner;
+
+        final K key;
+
+        /** The value, or null once the entry has been removed */
+        volatile V value;
+
+        final int weight;
+
+        volatile int frequency;
+
+        // guarded by this
+        boolean accounted, removed;
+
+        /** Whether the node is in the small or main queue, guarded by this */
+        boolean queued;
+
+        volatile boolean inMain;
+
+        Node(ConcurrentMapCache<K, V> owner, K key, V value, int weight) {
+            this.owner = owner;
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+
+        int fingerprint() {
+            return System.identityHashCode(owner) * 31 + key.hashCode();
+        }
+
+        void touch() {
+            int f = frequency;
+            if (f < MAX_FREQUENCY) {
+                frequency = f + 1;
+            }
+        }
+
+        boolean evict() {
+            return owner.evict(this);
+        }
+    }
+
+    private final ConcurrentMap<K, Node<K, V>> map = new ConcurrentHashMap<K, Node<K, V>>();
+
+    private final @CheckForNull Budget budget;
+
+    private final Weigher<? super K, ? super V> weigher;
+
+    private final AtomicLong weight = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Create a new ConcurrentMapCache
+     *
+     * @param maxCapacity
+     *            - maximum number of entries in the map
+     */
+    public ConcurrentMapCache(int maxCapacity) {
+        this(new Budget(maxCapacity), UNIT_WEIGHER);
+    }
+
+    /**
+     * Create a new ConcurrentMapCache with no bound on the number of entries.
+     */
+    public ConcurrentMapCache() {
+        this.budget = null;
+        this.weigher = UNIT_WEIGHER;
+    }
+
+    /**
+     * Create a new ConcurrentMapCache
+     *
+     * @param budget
+     *            the budget the weight of the entries counts against
+     * @param weigher
+     *            computes the weight of the entries
+     */
+    public ConcurrentMapCache(Budget budget, Weigher<? super K, ? super V> weigher) {
+        this.budget = budget;
+        this.weigher = weigher;
+    }
+
+    @Override
+    public V get(Object key) {
+        Node<K, V> node = map.get(key);
+        if (node == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        V value = node.value;
+        if (value == null) {
+            // removed meanwhile
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        node.touch();
+        return value;
+    }
+
+    /**
+     * Get the value for a key without counting it as a use of the entry.
+     */
+    public V peek(Object key) {
+        Node<K, V> node = map.get(key);
+        return node != null ? node.value : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        Node<K, V> node = newNode(key, value);
+        Node<K, V> old = map.put(key, node);
+        V oldValue = null;
+        if (old != null) {
+            oldValue = removed(old);
+        }
+        added(node, old != null && old.inMain);
+        return oldValue;
+    }
+
+    /**
+     * Add an entry unless there already is one for the key.
+     *
+     * @return the value already in the map, or null if the value was added
+     */
+    public V putIfAbsent(K key, V value) {
+        Node<K, V> node = newNode(key, value);
+        V oldValue = putIfAbsent(node);
+        if (oldValue == null) {
+            added(node, false);
+        }
+        return oldValue;
+    }
+
+    /**
+     * Add an entry unless there already is one for the key, without counting
+     * it against the budget. So the entry is never discarded to stay within
+     * the budget; it stays until it is replaced, e.g. by
+     * {@link #replace(Object, Object, Object)}, or removed. This is meant for
+     * placeholders of values which are being computed.
+     *
+     * @return the value already in the map, or null if the value was added
+     */
+    public V putIfAbsentPinned(K key, V value) {
+        return putIfAbsent(newNode(key, value));
+    }
+
+    private V putIfAbsent(Node<K, V> node) {
+        while (true) {
+            Node<K, V> old = map.putIfAbsent(node.key, node);
+            if (old == null) {
+                return null;
+            }
+            V oldValue = old.value;
+            if (oldValue != null) {
+                old.touch();
+                return oldValue;
+            }
+            // The old entry has been removed from the map meanwhile
+        }
+    }
+
+    /**
+     * Replace the value for a key, if it currently is given value. The entry
+     * is weighed again.
+     *
+     * @return true if the value was replaced
+     */
+    public boolean replace(K key, V oldValue, V newValue) {
+        Node<K, V> old = map.get(key);
+        if (old == null || old.value != oldValue) {
+            return false;
+        }
+        Node<K, V> node = newNode(key, newValue);
+        node.frequency = old.frequency;
+        if (!map.replace(key, old, node)) {
+            return false;
+        }
+        removed(old);
+        added(node, old.inMain);
+        return true;
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
+            put(e.getKey(), e.getValue());
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        Node<K, V> node = map.remove(key);
+        if (node == null) {
+            return null;
+        }
+        return removed(node);
+    }
+
+    /**
+     * Remove the entry for a key only if it maps to given value.
+     *
+     * @return true if the entry was removed
+     */
+    public boolean remove(Object key, Object value) {
+        Node<K, V> node = map.get(key);
+        if (node == null || node.value != value || !map.remove(key, node)) {
+            return false;
+        }
+        removed(node);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        for (Map.Entry<K, Node<K, V>> e : map.entrySet()) {
+            if (map.remove(e.getKey(), e.getValue())) {
+                removed(e.getValue());
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    /**
+     * @return a snapshot of the values in the map
+     */
+    @Override
+    public Collection<V> values() {
+        Collection<V> result = new ArrayList<V>(map.size());
+        for (Node<K, V> node : map.values()) {
+            V value = node.value;
+            if (value != null) {
+                result.add(value);
+            }
+        }
+        return Collections.unmodifiableCollection(result);
+    }
+
+    /**
+     * @return a snapshot of the entries in the map
+     */
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> result = new HashSet<Map.Entry<K, V>>();
+        for (Node<K, V> node : map.values()) {
+            V value = node.value;
+            if (value != null) {
+                result.add(new AbstractMap.SimpleImmutableEntry<K, V>(node.key, value));
+            }
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * @return the total weight of the entries in the map
+     */
+    public long getWeight() {
+        return weight.get();
+    }
+
+    /**
+     * @return number of lookups which found an entry
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of lookups which didn't find an entry
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of entries discarded to stay within the budget
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    private Node<K, V> newNode(K key, V value) {
+        int w = budget != null ? Math.max(1, weigher.weigh(key, value)) : 1;
+        return new Node<K, V>(this, key, value, w);
+    }
+
+    private void added(Node<K, V> node, boolean toMain) {
+        if (budget != null) {
+            budget.add(node, toMain);
+        }
+    }
+
+    /**
+     * Release a node which has been removed from the map. Its value is
+     * cleared, since the node may stay in an eviction queue for a while.
+     *
+     * @return the value of the node
+     */
+    private V removed(Node<K, V> node) {
+        V value = node.value;
+        if (budget != null) {
+            budget.removed(node);
+        }
+        node.value = null;
+        return value;
+    }
+
+    private boolean evict(Node<K, V> node) {
+        if (!map.remove(node.key, node)) {
+            return false;
+        }
+        removed(node);
+        evictions.incrementAndGet();
+        return true;
+    }
+}
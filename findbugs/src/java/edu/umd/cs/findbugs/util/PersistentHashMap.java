@@ -0,0 +1,457 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * An immutable hash map which can be updated cheaply: {@link #plus} and
+ * {@link #minus} return a new map sharing all but O(log n) of its structure
+ * with the old one, which is left unchanged. So a copy of a map is just a
+ * reference to it, and maps derived from a common ancestor share most of their
+ * entries.
+ * <p>
+ * The map is a hash array mapped trie: each inner node selects its children
+ * by 5 bits of the key's hash code, and stores only the children present.
+ * The Map methods which would modify the map throw
+ * UnsupportedOperationException.
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+    private static final int BITS = 5;
+
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final PersistentHashMap<Object, Object> EMPTY = new PersistentHashMap<Object, Object>(null, 0);
+
+    /** A Leaf, Collision or Branch, or null for the empty map */
+    private final @CheckForNull Object root;
+
+    private final int size;
+
+    /** One entry */
+    private static final class Leaf implements Map.Entry<Object, Object> {
+        final int hash;
+
+        final Object key;
+
+        final Object value;
+
+        Leaf(int hash, Object key, Object value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public Object getKey() {
+            return key;
+        }
+
+        @Override
+        public Object getValue() {
+            return value;
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return Util.nullSafeEquals(key, e.getKey()) && Util.nullSafeEquals(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Util.nullSafeHashcode(key) ^ Util.nullSafeHashcode(value);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    /** Entries whose keys have the same hash code */
+    private static final class Collision {
+        final int hash;
+
+        final Leaf[] leaves;
+
+        Collision(int hash, Leaf[] leaves) {
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+    }
+
+    /** Inner node: bit i of the bitmap is set if there is a child for i */
+    private static final class Branch {
+        final int bitmap;
+
+        final Object[] children;
+
+        Branch(int bitmap, Object[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+    }
+
+    private PersistentHashMap(@CheckForNull Object root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    private static int hash(@CheckForNull Object key) {
+        int h = Util.nullSafeHashcode(key);
+        return h ^ (h >>> 16);
+    }
+
+    private static int hashOf(Object node) {
+        return node instanceof Leaf ? ((Leaf) node).hash : ((Collision) node).hash;
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private static int index(int bitmap, int bit) {
+        return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    private static @CheckForNull Leaf find(@CheckForNull Object node, int hash, @CheckForNull Object key) {
+        int shift = 0;
+        while (node instanceof Branch) {
+            Branch branch = (Branch) node;
+            int bit = bit(hash, shift);
+            if ((branch.bitmap & bit) == 0) {
+                return null;
+            }
+            node = branch.children[index(branch.bitmap, bit)];
+            shift += BITS;
+        }
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            return leaf.hash == hash && Util.nullSafeEquals(leaf.key, key) ? leaf : null;
+        }
+        if (node instanceof Collision && ((Collision) node).hash == hash) {
+            for (Leaf leaf : ((Collision) node).leaves) {
+                if (Util.nullSafeEquals(leaf.key, key)) {
+                    return leaf;
+                }
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V get(Object key) {
+        Leaf leaf = find(root, hash(key), key);
+        return leaf == null ? null : (V) leaf.value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(root, hash(key), key) != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return a map with the entries of this one, and key mapped to value;
+     *         this map if key is already mapped to the very same value
+     */
+    public PersistentHashMap<K, V> plus(K key, V value) {
+        int hash = hash(key);
+        Leaf existing = find(root, hash, key);
+        if (existing != null && existing.value == value) {
+            return this;
+        }
+        Object newRoot = insert(root, new Leaf(hash, key, value), 0);
+        return new PersistentHashMap<K, V>(newRoot, existing == null ? size + 1 : size);
+    }
+
+    /**
+     * @return a map with the entries of this one and of the given map
+     */
+    public PersistentHashMap<K, V> plusAll(Map<? extends K, ? extends V> map) {
+        if (isEmpty() && map instanceof PersistentHashMap) {
+            @SuppressWarnings("unchecked")
+            PersistentHashMap<K, V> result = (PersistentHashMap<K, V>) map;
+            return result;
+        }
+        PersistentHashMap<K, V> result = this;
+        for (Map.Entry<? extends K, ? extends V> e : map.entrySet()) {
+            result = result.plus(e.getKey(), e.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * @return a map with the entries of this one except the one for key;
+     *         this map if it has no entry for key
+     */
+    public PersistentHashMap<K, V> minus(@CheckForNull Object key) {
+        int hash = hash(key);
+        if (find(root, hash, key) == null) {
+            return this;
+        }
+        if (size == 1) {
+            return empty();
+        }
+        return new PersistentHashMap<K, V>(remove(root, hash, key, 0), size - 1);
+    }
+
+    /**
+     * @return a map with the entries of this one except those for the given
+     *         keys
+     */
+    public PersistentHashMap<K, V> minusAll(Iterable<?> keys) {
+        PersistentHashMap<K, V> result = this;
+        for (Object key : keys) {
+            result = result.minus(key);
+        }
+        return result;
+    }
+
+    private static Object insert(@CheckForNull Object node, Leaf leaf, int shift) {
+        if (node == null) {
+            return leaf;
+        }
+        if (node instanceof Branch) {
+            Branch branch = (Branch) node;
+            int bit = bit(leaf.hash, shift);
+            int i = index(branch.bitmap, bit);
+            if ((branch.bitmap & bit) == 0) {
+                Object[] children = new Object[branch.children.length + 1];
+                System.arraycopy(branch.children, 0, children, 0, i);
+                children[i] = leaf;
+                System.arraycopy(branch.children, i, children, i + 1, branch.children.length - i);
+                return new Branch(branch.bitmap | bit, children);
+            }
+            Object[] children = branch.children.clone();
+            children[i] = insert(children[i], leaf, shift + BITS);
+            return new Branch(branch.bitmap, children);
+        }
+        int nodeHash = hashOf(node);
+        if (nodeHash != leaf.hash) {
+            return split(node, nodeHash, leaf, shift);
+        }
+        if (node instanceof Leaf) {
+            Leaf old = (Leaf) node;
+            if (Util.nullSafeEquals(old.key, leaf.key)) {
+                return leaf;
+            }
+            return new Collision(leaf.hash, new Leaf[] { old, leaf });
+        }
+        Leaf[] leaves = ((Collision) node).leaves;
+        for (int i = 0; i < leaves.length; i++) {
+            if (Util.nullSafeEquals(leaves[i].key, leaf.key)) {
+                Leaf[] newLeaves = leaves.clone();
+                newLeaves[i] = leaf;
+                return new Collision(leaf.hash, newLeaves);
+            }
+        }
+        Leaf[] newLeaves = new Leaf[leaves.length + 1];
+        System.arraycopy(leaves, 0, newLeaves, 0, leaves.length);
+        newLeaves[leaves.length] = leaf;
+        return new Collision(leaf.hash, newLeaves);
+    }
+
+    /**
+     * Make a branch holding a leaf or collision node and a leaf with a
+     * different hash code
+     */
+    private static Branch split(Object node, int nodeHash, Leaf leaf, int shift) {
+        int nodeBit = bit(nodeHash, shift);
+        int leafBit = bit(leaf.hash, shift);
+        if (nodeBit == leafBit) {
+            return new Branch(nodeBit, new Object[] { split(node, nodeHash, leaf, shift + BITS) });
+        }
+        // Compare the indices: the bit for index 31 is negative
+        boolean nodeFirst = ((nodeHash >>> shift) & MASK) < ((leaf.hash >>> shift) & MASK);
+        Object[] children = nodeFirst ? new Object[] { node, leaf } : new Object[] { leaf, node };
+        return new Branch(nodeBit | leafBit, children);
+    }
+
+    /**
+     * Remove a key known to be present
+     *
+     * @return the node without the key, or null if it would be empty
+     */
+    private static @CheckForNull Object remove(Object node, int hash, @CheckForNull Object key, int shift) {
+        if (node instanceof Leaf) {
+            return null;
+        }
+        if (node instanceof Collision) {
+            Leaf[] leaves = ((Collision) node).leaves;
+            if (leaves.length == 2) {
+                return Util.nullSafeEquals(leaves[0].key, key) ? leaves[1] : leaves[0];
+            }
+            Leaf[] newLeaves = new Leaf[leaves.length - 1];
+            int j = 0;
+            for (Leaf leaf : leaves) {
+                if (!Util.nullSafeEquals(leaf.key, key)) {
+                    newLeaves[j++] = leaf;
+                }
+            }
+            return new Collision(hash, newLeaves);
+        }
+        Branch branch = (Branch) node;
+        int bit = bit(hash, shift);
+        int i = index(branch.bitmap, bit);
+        Object child = remove(branch.children[i], hash, key, shift + BITS);
+        if (child == null) {
+            if (branch.children.length == 2) {
+                Object other = branch.children[1 - i];
+                if (!(other instanceof Branch)) {
+                    // A single leaf or collision can move up
+                    return other;
+                }
+            }
+            Object[] children = new Object[branch.children.length - 1];
+            System.arraycopy(branch.children, 0, children, 0, i);
+            System.arraycopy(branch.children, i + 1, children, i, children.length - i);
+            return new Branch(branch.bitmap & ~bit, children);
+        }
+        if (branch.children.length == 1 && !(child instanceof Branch)) {
+            return child;
+        }
+        Object[] children = branch.children.clone();
+        children[i] = child;
+        return new Branch(branch.bitmap, children);
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                if (root == null) {
+                    return Collections.emptyIterator();
+                }
+                return new EntryIterator<K, V>(root);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private static final class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+        /** Children arrays of the nodes on the path to the next entry */
+        private Object[][] path = new Object[4][];
+
+        private int[] positions = new int[4];
+
+        private int depth = -1;
+
+        private Leaf next;
+
+        EntryIterator(Object root) {
+            if (root instanceof Leaf) {
+                next = (Leaf) root;
+            } else {
+                push(root instanceof Branch ? ((Branch) root).children : ((Collision) root).leaves);
+                advance();
+            }
+        }
+
+        private void push(Object[] children) {
+            depth++;
+            if (depth == path.length) {
+                path = Arrays.copyOf(path, 2 * depth);
+                positions = Arrays.copyOf(positions, 2 * depth);
+            }
+            path[depth] = children;
+            positions[depth] = 0;
+        }
+
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                if (positions[depth] == path[depth].length) {
+                    depth--;
+                    continue;
+                }
+                Object node = path[depth][positions[depth]++];
+                if (node instanceof Leaf) {
+                    next = (Leaf) node;
+                    return;
+                } else if (node instanceof Collision) {
+                    push(((Collision) node).leaves);
+                } else {
+                    push(((Branch) node).children);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Map.Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Leaf result = next;
+            advance();
+            return (Map.Entry<K, V>) (Map.Entry<?, ?>) result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -19,16 +19,19 @@ package edu.umd.cs.findbugs.workflow;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.TreeSet;
 
+import javax.annotation.CheckForNull;
+
 import org.dom4j.DocumentException;
 
 import edu.umd.cs.findbugs.AppVersion;
@@ -39,6 +42,7 @@ import edu.umd.cs.findbugs.BugRanker;
 import edu.umd.cs.findbugs.ClassAnnotation;
 import edu.umd.cs.findbugs.DetectorFactoryCollection;
 import edu.umd.cs.findbugs.FindBugs;
+import edu.umd.cs.findbugs.MatchKeyComparator;
 import edu.umd.cs.findbugs.PackageStats;
 import edu.umd.cs.findbugs.PackageStats.ClassStats;
 import edu.umd.cs.findbugs.SloppyBugComparator;
@@ -595,17 +599,113 @@ public class Update {
         }
     }
 
-    private void matchBugs(Comparator<BugInstance> bugInstanceComparator, BugCollection origCollection,
+    private void matchBugs(MatchKeyComparator bugInstanceComparator, BugCollection origCollection,
             BugCollection newCollection) {
         matchBugs(bugInstanceComparator, origCollection, newCollection, MatchOldBugs.IF_LIVE);
 
     }
 
-    private void matchBugs(Comparator<BugInstance> bugInstanceComparator, BugCollection origCollection,
+    /**
+     * Old BugInstances which compare as equal, in the order they appear in the
+     * original collection. The first one is the representative the group is
+     * compared with.
+     */
+    private static class MatchGroup {
+        final BugInstance representative;
+
+        final LinkedList<BugInstance> bugs = new LinkedList<BugInstance>();
+
+        MatchGroup(BugInstance representative) {
+            this.representative = representative;
+        }
+    }
+
+    /**
+     * Groups of old BugInstances which compare as equal, looked up as a
+     * TreeMap sorted by the comparator would look them up, but hashed on the
+     * match keys of the BugInstances. Each lookup only compares a BugInstance
+     * with the groups sharing its key.
+     */
+    static class MatchIndex {
+        private final MatchKeyComparator bugInstanceComparator;
+
+        private final HashMap<Object, List<MatchGroup>> buckets = new HashMap<Object, List<MatchGroup>>();
+
+        MatchIndex(MatchKeyComparator bugInstanceComparator) {
+            this.bugInstanceComparator = bugInstanceComparator;
+        }
+
+        private @CheckForNull MatchGroup findMatchGroup(@CheckForNull List<MatchGroup> bucket, BugInstance bug) {
+            if (bucket != null) {
+                for (MatchGroup group : bucket) {
+                    if (bugInstanceComparator.compare(bug, group.representative) == 0) {
+                        return group;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Add an old BugInstance to the end of the group it compares as equal
+         * to, starting a new group if there is none.
+         */
+        void add(BugInstance bug) {
+            Object key = bugInstanceComparator.getMatchKey(bug);
+            List<MatchGroup> bucket = buckets.get(key);
+            if (bucket == null) {
+                bucket = new ArrayList<MatchGroup>(1);
+                buckets.put(key, bucket);
+            }
+            MatchGroup group = findMatchGroup(bucket, bug);
+            if (group == null) {
+                group = new MatchGroup(bug);
+                bucket.add(group);
+            }
+            group.bugs.add(bug);
+        }
+
+        /**
+         * @return the old BugInstances which compare as equal to the given
+         *         one, or null if there are none
+         */
+        @CheckForNull
+        LinkedList<BugInstance> get(BugInstance bug) {
+            MatchGroup group = findMatchGroup(buckets.get(bugInstanceComparator.getMatchKey(bug)), bug);
+            return group != null ? group.bugs : null;
+        }
+
+        /**
+         * Remove the group of old BugInstances which compare as equal to the
+         * given one.
+         */
+        void remove(BugInstance bug) {
+            Object key = bugInstanceComparator.getMatchKey(bug);
+            List<MatchGroup> bucket = buckets.get(key);
+            MatchGroup group = findMatchGroup(bucket, bug);
+            if (group != null) {
+                bucket.remove(group);
+                if (bucket.isEmpty()) {
+                    buckets.remove(key);
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return buckets.isEmpty();
+        }
+    }
+
+    /**
+     * Match the unmatched bugs of the new collection with the unmatched bugs of
+     * the original collection which compare as equal. Old bugs are hashed on
+     * their match keys, so that each new bug is only compared with the few
+     * old bugs sharing its key.
+     */
+    private void matchBugs(MatchKeyComparator bugInstanceComparator, BugCollection origCollection,
             BugCollection newCollection, MatchOldBugs matchOld) {
 
-        TreeMap<BugInstance, LinkedList<BugInstance>> set = new TreeMap<BugInstance, LinkedList<BugInstance>>(
-                bugInstanceComparator);
+        MatchIndex index = new MatchIndex(bugInstanceComparator);
         //        int oldBugs = 0;
         //        int newBugs = 0;
         //        int matchedBugs = 0;
@@ -613,21 +713,19 @@ public class Update {
             if (!matchedOldBugs.containsKey(bug)) {
                 if (matchOld.match(bug)) {
                     //                    oldBugs++;
-                    LinkedList<BugInstance> q = set.get(bug);
-                    if (q == null) {
-                        q = new LinkedList<BugInstance>();
-                        set.put(bug, q);
-                    }
-                    q.add(bug);
+                    index.add(bug);
                 }
 
             }
         }
+        if (index.isEmpty()) {
+            return;
+        }
         long newVersion = origCollection.getCurrentAppVersion().getSequenceNumber() + 1;
         for (BugInstance bug : newCollection.getCollection()) {
             if (!mapFromNewToOldBug.containsKey(bug)) {
                 //                newBugs++;
-                LinkedList<BugInstance> q = set.get(bug);
+                LinkedList<BugInstance> q = index.get(bug);
                 if (q == null) {
                     continue;
                 }
@@ -651,7 +749,7 @@ public class Update {
                     matchedOldBugs.put(matchedBug, null);
                     i.remove();
                     if (q.isEmpty()) {
-                        set.remove(bug);
+                        index.remove(bug);
                     }
                     break;
                 }
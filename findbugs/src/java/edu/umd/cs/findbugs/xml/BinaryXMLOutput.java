@@ -0,0 +1,240 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.xml;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.WillCloseWhenClosed;
+
+import edu.umd.cs.findbugs.annotations.DischargesObligation;
+import edu.umd.cs.findbugs.charsets.UTF8;
+
+/**
+ * XMLOutput writing a compact binary encoding of the document, which can be
+ * read back with BinaryXMLReader.
+ * <p>
+ * The document is written as a sequence of start element, text and end
+ * element records. Element names, attribute names and values, and text are
+ * written to a string table the first time they occur, and as an index into
+ * the table afterwards, so class, method and signature names repeated in
+ * many BugInstances are only stored once. Values which are decimal integers,
+ * such as line numbers and bytecode offsets, are written as variable length
+ * integers instead.
+ * </p>
+ *
+ * @see BinaryXMLReader
+ */
+public class BinaryXMLOutput implements XMLOutput {
+    /**
+     * Bytes at the start of every binary document.
+     */
+    static final byte[] MAGIC = { 'F', 'B', 'B', 'X' };
+
+    /**
+     * Version of the format, written after the magic bytes.
+     */
+    static final int VERSION = 1;
+
+    static final int END_DOCUMENT = 0;
+
+    static final int START_ELEMENT = 1;
+
+    static final int END_ELEMENT = 2;
+
+    static final int TEXT = 3;
+
+    /** Value code for a string which is not yet in the string table */
+    static final int NEW_STRING = 0;
+
+    /** Value code for a decimal integer */
+    static final int NUMBER = 1;
+
+    /** Value codes of strings in the string table start here */
+    static final int FIRST_STRING_INDEX = 2;
+
+    private final OutputStream out;
+
+    private final Map<String, Integer> stringTable = new HashMap<String, Integer>();
+
+    private String startedTagName;
+
+    private final List<String> startedTagAttributes = new ArrayList<String>();
+
+    public BinaryXMLOutput(@WillCloseWhenClosed OutputStream out) {
+        this.out = new BufferedOutputStream(out);
+    }
+
+    @Override
+    public void beginDocument() throws IOException {
+        out.write(MAGIC);
+        writeVarint(VERSION);
+    }
+
+    @Override
+    public void openTag(String tagName) throws IOException {
+        startTag(tagName);
+        stopTag(false);
+    }
+
+    @Override
+    public void openTag(String tagName, XMLAttributeList attributeList) throws IOException {
+        startTag(tagName);
+        for (Iterator<XMLAttributeList.NameValuePair> i = attributeList.iterator(); i.hasNext();) {
+            XMLAttributeList.NameValuePair pair = i.next();
+            addAttribute(pair.getName(), pair.getValue());
+        }
+        stopTag(false);
+    }
+
+    @Override
+    public void startTag(String tagName) throws IOException {
+        if (startedTagName != null) {
+            throw new IllegalStateException("Tag " + startedTagName + " was not stopped");
+        }
+        startedTagName = tagName;
+    }
+
+    @Override
+    public void addAttribute(String name, String value) throws IOException {
+        if (startedTagName == null) {
+            throw new IllegalStateException("No tag started");
+        }
+        startedTagAttributes.add(name);
+        startedTagAttributes.add(value);
+    }
+
+    @Override
+    public void stopTag(boolean close) throws IOException {
+        if (startedTagName == null) {
+            throw new IllegalStateException("No tag started");
+        }
+        writeVarint(START_ELEMENT);
+        writeString(startedTagName);
+        writeVarint(startedTagAttributes.size() / 2);
+        for (int i = 0; i < startedTagAttributes.size(); i += 2) {
+            writeString(startedTagAttributes.get(i));
+            writeValue(startedTagAttributes.get(i + 1));
+        }
+        startedTagName = null;
+        startedTagAttributes.clear();
+        if (close) {
+            writeVarint(END_ELEMENT);
+        }
+    }
+
+    @Override
+    public void openCloseTag(String tagName) throws IOException {
+        startTag(tagName);
+        stopTag(true);
+    }
+
+    @Override
+    public void openCloseTag(String tagName, XMLAttributeList attributeList) throws IOException {
+        openTag(tagName, attributeList);
+        writeVarint(END_ELEMENT);
+    }
+
+    @Override
+    public void closeTag(String tagName) throws IOException {
+        writeVarint(END_ELEMENT);
+    }
+
+    @Override
+    public void writeText(String text) throws IOException {
+        writeVarint(TEXT);
+        writeValue(text);
+    }
+
+    @Override
+    public void writeCDATA(String cdata) throws IOException {
+        writeText(cdata);
+    }
+
+    @Override
+    @DischargesObligation
+    public void finish() throws IOException {
+        try {
+            writeVarint(END_DOCUMENT);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeValue(String value) throws IOException {
+        if (isNumber(value)) {
+            writeVarint(NUMBER);
+            long n = Long.parseLong(value);
+            writeVarint((n << 1) ^ (n >> 63));
+        } else {
+            writeString(value);
+        }
+    }
+
+    private void writeString(String s) throws IOException {
+        Integer index = stringTable.get(s);
+        if (index != null) {
+            writeVarint(FIRST_STRING_INDEX + (long) index);
+            return;
+        }
+        stringTable.put(s, stringTable.size());
+        writeVarint(NEW_STRING);
+        byte[] bytes = s.getBytes(UTF8.charset);
+        writeVarint(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Is the given string the canonical decimal representation of a long,
+     * i.e., would it be unchanged by parsing and printing it?
+     */
+    static boolean isNumber(String s) {
+        int length = s.length();
+        int start = length > 0 && s.charAt(0) == '-' ? 1 : 0;
+        if (length == start || length - start > 18) {
+            // Empty, or possibly too large for a long
+            return false;
+        }
+        if (s.charAt(start) == '0') {
+            return length == 1;
+        }
+        for (int i = start; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeVarint(long n) throws IOException {
+        while ((n & ~0x7fL) != 0) {
+            out.write((int) (n & 0x7f) | 0x80);
+            n >>>= 7;
+        }
+        out.write((int) n);
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.xml;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.WillNotClose;
+
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import edu.umd.cs.findbugs.charsets.UTF8;
+
+/**
+ * Read a document written by BinaryXMLOutput, reporting its contents to a SAX
+ * ContentHandler as an XML parser would.
+ *
+ * @see BinaryXMLOutput
+ */
+public class BinaryXMLReader {
+    /** Longest string, in bytes, that a document can contain */
+    static final int MAX_STRING_LENGTH = Integer.MAX_VALUE - 8;
+
+    private static final int READ_CHUNK_SIZE = 8192;
+
+    private final InputStream in;
+
+    private final List<String> stringTable = new ArrayList<String>();
+
+    private final List<String> elementStack = new ArrayList<String>();
+
+    /**
+     * Constructor.
+     *
+     * @param in
+     *            the input stream, which should be buffered
+     */
+    public BinaryXMLReader(@WillNotClose InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Does the given stream contain a document written by BinaryXMLOutput?
+     * The stream must support mark and reset; it is left at its original
+     * position.
+     *
+     * @param in
+     *            the input stream
+     * @return true if the stream starts with the magic bytes of the binary
+     *         format
+     */
+    public static boolean isBinaryXML(@WillNotClose BufferedInputStream in) throws IOException {
+        byte[] buf = new byte[BinaryXMLOutput.MAGIC.length];
+        in.mark(buf.length);
+        try {
+            int numRead = 0;
+            while (numRead < buf.length) {
+                int n = in.read(buf, numRead, buf.length - numRead);
+                if (n < 0) {
+                    return false;
+                }
+                numRead += n;
+            }
+            return Arrays.equals(buf, BinaryXMLOutput.MAGIC);
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * Read the document, reporting it to given handler.
+     *
+     * @param handler
+     *            the ContentHandler
+     */
+    public void parse(ContentHandler handler) throws IOException, SAXException {
+        for (byte b : BinaryXMLOutput.MAGIC) {
+            if (readByte() != (b & 0xff)) {
+                throw new IOException("Not a binary FindBugs document");
+            }
+        }
+        long version = readVarint();
+        if (version != BinaryXMLOutput.VERSION) {
+            throw new IOException("Unsupported binary FindBugs document version " + version);
+        }
+
+        handler.startDocument();
+        AttributesImpl attributes = new AttributesImpl();
+        while (true) {
+            int record = (int) readVarint();
+            switch (record) {
+            case BinaryXMLOutput.START_ELEMENT:
+                String name = readString();
+                int numAttributes = (int) readVarint();
+                attributes.clear();
+                for (int i = 0; i < numAttributes; i++) {
+                    String attributeName = readString();
+                    attributes.addAttribute("", attributeName, attributeName, "CDATA", readValue());
+                }
+                elementStack.add(name);
+                handler.startElement("", name, name, attributes);
+                break;
+            case BinaryXMLOutput.END_ELEMENT:
+                if (elementStack.isEmpty()) {
+                    throw new IOException("Unbalanced end of element in binary FindBugs document");
+                }
+                String closed = elementStack.remove(elementStack.size() - 1);
+                handler.endElement("", closed, closed);
+                break;
+            case BinaryXMLOutput.TEXT:
+                char[] text = readValue().toCharArray();
+                handler.characters(text, 0, text.length);
+                break;
+            case BinaryXMLOutput.END_DOCUMENT:
+                if (!elementStack.isEmpty()) {
+                    throw new IOException("Unclosed element " + elementStack.get(elementStack.size() - 1)
+                            + " in binary FindBugs document");
+                }
+                handler.endDocument();
+                return;
+            default:
+                throw new IOException("Invalid record " + record + " in binary FindBugs document");
+            }
+        }
+    }
+
+    private String readValue() throws IOException {
+        long code = readVarint();
+        if (code == BinaryXMLOutput.NUMBER) {
+            long n = readVarint();
+            return Long.toString((n >>> 1) ^ -(n & 1));
+        }
+        return readString(code);
+    }
+
+    private String readString() throws IOException {
+        return readString(readVarint());
+    }
+
+    private String readString(long code) throws IOException {
+        if (code == BinaryXMLOutput.NEW_STRING) {
+            long length = readVarint();
+            if (length < 0 || length > MAX_STRING_LENGTH) {
+                throw new IOException("Invalid string length " + length + " in binary FindBugs document");
+            }
+            // Grow the buffer as the bytes arrive, so that a corrupt length
+            // can't allocate more than the document actually contains
+            byte[] bytes = new byte[(int) Math.min(length, READ_CHUNK_SIZE)];
+            int numRead = 0;
+            while (numRead < length) {
+                if (numRead == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * bytes.length));
+                }
+                int n = in.read(bytes, numRead, bytes.length - numRead);
+                if (n < 0) {
+                    throw new EOFException("Truncated binary FindBugs document");
+                }
+                numRead += n;
+            }
+            String s = new String(bytes, UTF8.charset);
+            stringTable.add(s);
+            return s;
+        }
+        long index = code - BinaryXMLOutput.FIRST_STRING_INDEX;
+        if (index < 0 || index >= stringTable.size()) {
+            throw new IOException("Invalid string index " + index + " in binary FindBugs document");
+        }
+        return stringTable.get((int) index);
+    }
+
+    private long readVarint() throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            result |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Invalid variable length integer in binary FindBugs document");
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("Truncated binary FindBugs document");
+        }
+        return b;
+    }
+}
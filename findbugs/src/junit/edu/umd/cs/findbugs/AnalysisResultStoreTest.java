@@ -0,0 +1,244 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.config.UserPreferences;
+import edu.umd.cs.findbugs.io.IO;
+
+/**
+ * Analyzes a few classes with a result store, changes one of them, and checks
+ * that only the changed class and the classes depending on it are analyzed
+ * again, and that the cached analyses find the same bugs as clean ones.
+ *
+ * @see FindBugs2#setResultCacheDirectory(String)
+ */
+public class AnalysisResultStoreTest {
+
+    public static class Base {
+        String name;
+
+        public boolean isDefault() {
+            return name == "default";
+        }
+    }
+
+    public static class Derived extends Base {
+        public int length() {
+            String s = null;
+            if (isDefault()) {
+                s = name;
+            }
+            return s.length();
+        }
+    }
+
+    public static class Unrelated {
+        private int count;
+
+        public void reset() {
+            count = count;
+        }
+    }
+
+    private static final Class<?>[] FIXTURES = { Base.class, Derived.class, Unrelated.class };
+
+    private File classDirectory;
+
+    private File resultDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        // Load the default detectors, see DetectorsTest
+        DetectorFactoryCollection.resetInstance(new DetectorFactoryCollection());
+
+        classDirectory = createTempDir("classes");
+        resultDirectory = createTempDir("results");
+        for (Class<?> c : FIXTURES) {
+            String resourceName = c.getName().replace('.', '/') + ".class";
+            File file = new File(classDirectory, resourceName);
+            file.getParentFile().mkdirs();
+            InputStream in = getClass().getClassLoader().getResourceAsStream(resourceName);
+            assertNotNull(resourceName, in);
+            OutputStream out = new FileOutputStream(file);
+            try {
+                IO.copy(in, out);
+            } finally {
+                IO.close(in);
+                out.close();
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        delete(classDirectory);
+        delete(resultDirectory);
+    }
+
+    @Test
+    public void testReanalyzeChangedClassAndDependents() throws Exception {
+        List<String> clean = analyze(null);
+        assertFalse("The fixtures should have bugs", clean.isEmpty());
+
+        FindBugs2 engine = new FindBugs2();
+        assertEquals(clean, analyze(engine, resultDirectory.getPath()));
+        assertEquals(getNames(FIXTURES), getAnalyzedClasses(engine));
+
+        // Nothing changed, so all results are replayed
+        engine = new FindBugs2();
+        assertEquals(clean, analyze(engine, resultDirectory.getPath()));
+        assertTrue(engine.getResultStore().getHitCount() > 0);
+        assertEquals(Collections.<String> emptySet(), getAnalyzedClasses(engine));
+
+        addField(Base.class);
+        clean = analyze(null);
+        engine = new FindBugs2();
+        assertEquals(clean, analyze(engine, resultDirectory.getPath()));
+        assertEquals(getNames(Base.class, Derived.class), getAnalyzedClasses(engine));
+    }
+
+    private static Set<String> getNames(Class<?>... classes) {
+        Set<String> result = new TreeSet<String>();
+        for (Class<?> c : classes) {
+            result.add(c.getName());
+        }
+        return result;
+    }
+
+    private static Set<String> getAnalyzedClasses(FindBugs2 engine) {
+        Set<String> result = new TreeSet<String>();
+        for (ClassDescriptor c : engine.getResultStore().getAnalyzedClasses()) {
+            result.add(c.toDottedClassName());
+        }
+        return result;
+    }
+
+    /**
+     * Change the bytes of a fixture class by adding a field to it.
+     */
+    private void addField(Class<?> c) throws IOException {
+        File file = new File(classDirectory, c.getName().replace('.', '/') + ".class");
+        ClassReader reader = new ClassReader(IO.readAll(new FileInputStream(file)));
+        ClassWriter writer = new ClassWriter(0);
+        reader.accept(new ClassVisitor(Opcodes.ASM5, writer) {
+            @Override
+            public void visitEnd() {
+                visitField(Opcodes.ACC_PRIVATE, "addedField", "I", null, null).visitEnd();
+                super.visitEnd();
+            }
+        }, 0);
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(writer.toByteArray());
+        } finally {
+            out.close();
+        }
+    }
+
+    private List<String> analyze(String resultCacheDirectory) throws IOException, InterruptedException {
+        return analyze(new FindBugs2(), resultCacheDirectory);
+    }
+
+    /**
+     * Analyze the fixture classes.
+     *
+     * @param engine
+     *            the engine to analyze them with
+     * @param resultCacheDirectory
+     *            directory of stored results, or null if none are used
+     * @return the bugs found, as type, priority and instance key, sorted
+     */
+    private List<String> analyze(FindBugs2 engine, String resultCacheDirectory) throws IOException, InterruptedException {
+        Project project = new Project();
+        project.setProjectName("fixtures");
+        project.addFile(classDirectory.getPath());
+        engine.setProject(project);
+        engine.setDetectorFactoryCollection(DetectorFactoryCollection.instance());
+
+        BugCollectionBugReporter bugReporter = new BugCollectionBugReporter(project);
+        bugReporter.setPriorityThreshold(Priorities.LOW_PRIORITY);
+        bugReporter.setRankThreshold(BugRanker.VISIBLE_RANK_MAX);
+        engine.setBugReporter(bugReporter);
+
+        UserPreferences preferences = UserPreferences.createDefaultUserPreferences();
+        preferences.getFilterSettings().clearAllCategories();
+        engine.setUserPreferences(preferences);
+        engine.setResultCacheDirectory(resultCacheDirectory);
+        engine.setNoClassOk(true);
+
+        engine.execute();
+
+        List<String> bugs = new ArrayList<String>();
+        for (BugInstance bug : bugReporter.getBugCollection()) {
+            bugs.add(bug.getType() + " " + bug.getPriority() + " " + bug.getInstanceKey());
+        }
+        Collections.sort(bugs);
+        return bugs;
+    }
+
+    private static File createTempDir(String prefix) throws IOException {
+        File dir = File.createTempFile(prefix, null);
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("Could not create temp dir");
+        }
+        return dir;
+    }
+
+    private static void delete(File file) {
+        if (file == null) {
+            return;
+        }
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                delete(f);
+            }
+        }
+        if (!file.delete()) {
+            System.err.println("Could not delete " + file);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umd.cs.findbugs.config.UserPreferences;
+import edu.umd.cs.findbugs.io.IO;
+
+/**
+ * Tests the incremental analysis of a few fixture classes.
+ *
+ * @see IncrementalAnalysis
+ */
+public class IncrementalAnalysisTest {
+
+    public static class Base {
+        String name;
+
+        public boolean isDefault() {
+            return name == "default";
+        }
+    }
+
+    public static class Added extends Base {
+        public int length() {
+            String s = null;
+            if (isDefault()) {
+                s = name;
+            }
+            return s.length();
+        }
+    }
+
+    public static class Unrelated {
+        private int count;
+
+        public void reset() {
+            count = count;
+        }
+    }
+
+    private File classDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        // Load the default detectors, see DetectorsTest
+        DetectorFactoryCollection.resetInstance(new DetectorFactoryCollection());
+
+        classDirectory = File.createTempFile("classes", null);
+        if (!classDirectory.delete() || !classDirectory.mkdir()) {
+            throw new IOException("Could not create temp dir");
+        }
+        copyFixture(Base.class);
+        copyFixture(Unrelated.class);
+    }
+
+    @After
+    public void tearDown() {
+        delete(classDirectory);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIncrementalRequiresChangedClasses() throws Exception {
+        TextUICommandLine commandLine = new TextUICommandLine();
+        commandLine.parse(new String[] { "-incremental", "base.xml", classDirectory.getPath() });
+        commandLine.configureEngine(new FindBugs2());
+    }
+
+    @Test
+    public void testUnchangedClassesAreCarriedOver() throws Exception {
+        SortedBugCollection base = analyze(null);
+        assertFalse("The fixtures should have bugs", base.getCollection().isEmpty());
+
+        assertEquals(getBugs(base), getBugs(analyze(new IncrementalAnalysis(base, Collections.<String> emptyList()))));
+    }
+
+    @Test
+    public void testClassesAbsentFromBaseAreAnalyzed() throws Exception {
+        SortedBugCollection base = analyze(null);
+        copyFixture(Added.class);
+        List<String> expected = getBugs(analyze(null));
+        assertTrue("The added class should have bugs", expected.size() > getBugs(base).size());
+
+        // Added is not listed as changed, but isn't in the base results
+        assertEquals(expected, getBugs(analyze(new IncrementalAnalysis(base, Collections.<String> emptyList()))));
+    }
+
+    private void copyFixture(Class<?> c) throws IOException {
+        String resourceName = c.getName().replace('.', '/') + ".class";
+        File file = new File(classDirectory, resourceName);
+        file.getParentFile().mkdirs();
+        InputStream in = getClass().getClassLoader().getResourceAsStream(resourceName);
+        assertNotNull(resourceName, in);
+        OutputStream out = new FileOutputStream(file);
+        try {
+            IO.copy(in, out);
+        } finally {
+            IO.close(in);
+            out.close();
+        }
+    }
+
+    /**
+     * Analyze the fixture classes.
+     *
+     * @param incrementalAnalysis
+     *            the incremental analysis, or null for a full analysis
+     * @return the bugs found
+     */
+    private SortedBugCollection analyze(IncrementalAnalysis incrementalAnalysis) throws IOException, InterruptedException {
+        FindBugs2 engine = new FindBugs2();
+        Project project = new Project();
+        project.setProjectName("fixtures");
+        project.addFile(classDirectory.getPath());
+        engine.setProject(project);
+        engine.setDetectorFactoryCollection(DetectorFactoryCollection.instance());
+
+        BugCollectionBugReporter bugReporter = new BugCollectionBugReporter(project);
+        bugReporter.setPriorityThreshold(Priorities.LOW_PRIORITY);
+        bugReporter.setRankThreshold(BugRanker.VISIBLE_RANK_MAX);
+        engine.setBugReporter(bugReporter);
+
+        UserPreferences preferences = UserPreferences.createDefaultUserPreferences();
+        preferences.getFilterSettings().clearAllCategories();
+        engine.setUserPreferences(preferences);
+        engine.setIncrementalAnalysis(incrementalAnalysis);
+        engine.setNoClassOk(true);
+
+        engine.execute();
+        return (SortedBugCollection) bugReporter.getBugCollection();
+    }
+
+    /**
+     * @return the bugs, as type, priority and instance key, sorted
+     */
+    private static List<String> getBugs(BugCollection bugCollection) {
+        List<String> bugs = new ArrayList<String>();
+        for (BugInstance bug : bugCollection) {
+            bugs.add(bug.getType() + " " + bug.getPriority() + " " + bug.getInstanceKey());
+        }
+        Collections.sort(bugs);
+        return bugs;
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                delete(f);
+            }
+        }
+        if (!file.delete()) {
+            System.err.println("Could not delete " + file);
+        }
+    }
+}
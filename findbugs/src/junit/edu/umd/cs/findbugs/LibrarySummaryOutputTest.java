@@ -0,0 +1,75 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs;
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+
+public class LibrarySummaryOutputTest extends TestCase {
+
+    public void testRoundTrip() throws IOException {
+        ClassDescriptor c = DescriptorFactory.createClassDescriptor("java/lang/String");
+        MethodDescriptor m = DescriptorFactory.instance().getMethodDescriptor("java/lang/String", "valueOf",
+                "(I)Ljava/lang/String;", true);
+        OpcodeStack.Item item = new OpcodeStack.Item("J", (Object) Long.valueOf(42));
+        item.setPC(17);
+        item.setSpecialKind(OpcodeStack.Item.RESULT_OF_L2I);
+
+        LibrarySummaryOutput out = new LibrarySummaryOutput();
+        out.writeByte(3);
+        out.writeBoolean(true);
+        out.writeInt(-7);
+        out.writeLong(1L << 40);
+        out.writeString("été");
+        out.writeString(null);
+        out.writeClassDescriptor(c);
+        out.writeMethodDescriptor(m);
+        out.writeItem(item);
+        assertFalse(out.isFailed());
+
+        LibrarySummaryInput in = new LibrarySummaryInput(out.toByteArray());
+        assertEquals(3, in.readByte());
+        assertTrue(in.readBoolean());
+        assertEquals(-7, in.readInt());
+        assertEquals(1L << 40, in.readLong());
+        assertEquals("été", in.readString());
+        assertNull(in.readString());
+        assertEquals(c, in.readClassDescriptor());
+        assertEquals(m, in.readMethodDescriptor());
+        OpcodeStack.Item read = in.readItem();
+        assertEquals(item, read);
+        assertEquals(17, read.getPC());
+        assertEquals(OpcodeStack.Item.RESULT_OF_L2I, read.getSpecialKind());
+        assertTrue(in.atEnd());
+    }
+
+    public void testItemWithUserValueFails() {
+        OpcodeStack.Item item = new OpcodeStack.Item("I");
+        item.setUserValue(new Object());
+        LibrarySummaryOutput out = new LibrarySummaryOutput();
+        out.writeItem(item);
+        assertTrue(out.isFailed());
+    }
+}
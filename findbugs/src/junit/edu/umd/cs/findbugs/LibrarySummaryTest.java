@@ -0,0 +1,150 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umd.cs.findbugs.config.UserPreferences;
+
+/**
+ * Runs a FindBugs analysis of some of the findbugsTestCases without library
+ * summaries, then twice with them (once storing and once using the
+ * summaries), and checks that all runs find the same bugs.
+ *
+ * @see FindBugs2#setLibrarySummaryDirectory(String)
+ */
+public class LibrarySummaryTest {
+
+    /** packages analyzed, with their subpackages */
+    private static final String[] PACKAGES = { "jsr305", "nullnessAnnotations" };
+
+    private File findbugsTestCases;
+
+    private File summaryDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        findbugsTestCases = new File(SystemProperties.getProperty("findbugsTestCases.home", "../findbugsTestCases"));
+        Assume.assumeTrue(new File(findbugsTestCases, "build/classes").isDirectory());
+
+        // Load the default detectors, see DetectorsTest
+        DetectorFactoryCollection.resetInstance(new DetectorFactoryCollection());
+
+        summaryDirectory = File.createTempFile("summaries", null);
+        if (!summaryDirectory.delete() || !summaryDirectory.mkdir()) {
+            throw new IOException("Could not create temp dir");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (summaryDirectory != null) {
+            delete(summaryDirectory);
+        }
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                delete(f);
+            }
+        }
+        if (!file.delete()) {
+            System.err.println("Could not delete " + file);
+        }
+    }
+
+    @Test
+    public void testSameBugsWithSummaries() throws Exception {
+        List<String> expected = analyze(null);
+        List<String> stored = analyze(summaryDirectory.getPath());
+        String[] summaries = summaryDirectory.list();
+        assertNotNull(summaries);
+        assertFalse("No library summaries were stored", summaries.length == 0);
+        List<String> replayed = analyze(summaryDirectory.getPath());
+
+        assertEquals(expected, stored);
+        assertEquals(expected, replayed);
+    }
+
+    /**
+     * Analyze the test cases.
+     *
+     * @param librarySummaryDirectory
+     *            directory of library summaries, or null if none are used
+     * @return the bugs found, as type, priority and instance key, sorted
+     */
+    private List<String> analyze(String librarySummaryDirectory) throws IOException, InterruptedException {
+        FindBugs2 engine = new FindBugs2();
+        Project project = new Project();
+        project.setProjectName("findbugsTestCases");
+        project.addFile(new File(findbugsTestCases, "build/classes").getPath());
+        File[] lib = new File(findbugsTestCases, "lib").listFiles();
+        if (lib != null) {
+            for (File f : lib) {
+                if (f.getName().endsWith(".jar")) {
+                    project.addAuxClasspathEntry(f.getPath());
+                }
+            }
+        }
+        engine.setProject(project);
+        engine.setDetectorFactoryCollection(DetectorFactoryCollection.instance());
+
+        BugCollectionBugReporter bugReporter = new BugCollectionBugReporter(project);
+        bugReporter.setPriorityThreshold(Priorities.LOW_PRIORITY);
+        bugReporter.setRankThreshold(BugRanker.VISIBLE_RANK_MAX);
+        engine.setBugReporter(bugReporter);
+
+        UserPreferences preferences = UserPreferences.createDefaultUserPreferences();
+        preferences.getFilterSettings().clearAllCategories();
+        engine.setUserPreferences(preferences);
+
+        ClassScreener classScreener = new ClassScreener();
+        for (String packageName : PACKAGES) {
+            classScreener.addAllowedPrefix(packageName);
+        }
+        engine.setClassScreener(classScreener);
+        engine.setLibrarySummaryDirectory(librarySummaryDirectory);
+        engine.setNoClassOk(true);
+
+        engine.execute();
+
+        List<String> bugs = new ArrayList<String>();
+        for (BugInstance bug : bugReporter.getBugCollection()) {
+            bugs.add(bug.getType() + " " + bug.getPriority() + " " + bug.getInstanceKey());
+        }
+        Collections.sort(bugs);
+        return bugs;
+    }
+}
@@ -19,9 +19,10 @@
 
 package edu.umd.cs.findbugs;
 
-import junit.framework.TestCase;
+import edu.umd.cs.findbugs.ba.XFactory;
+import edu.umd.cs.findbugs.ba.XField;
 
-public class OpcodeStackItemTest extends TestCase {
+public class OpcodeStackItemTest extends FindBugsTestCase {
     public void testMergeIntAndZero() {
         OpcodeStack.Item intItem = new OpcodeStack.Item("I");
         OpcodeStack.Item zeroItem = new OpcodeStack.Item("I", 0);
@@ -41,4 +42,58 @@ public class OpcodeStackItemTest extends TestCase {
         assertEquals(0,m2.getConstant());
     }
 
+    private static OpcodeStack.Item roundTrip(OpcodeStack.Item item) throws Exception {
+        LibrarySummaryOutput out = new LibrarySummaryOutput();
+        out.writeItem(item);
+        assertFalse(out.isFailed());
+        LibrarySummaryInput in = new LibrarySummaryInput(out.toByteArray());
+        OpcodeStack.Item read = in.readItem();
+        assertTrue(in.atEnd());
+        assertEquals(item, read);
+        assertEquals(item.getPC(), read.getPC());
+        return read;
+    }
+
+    public void testRoundTripConstants() throws Exception {
+        Object[] constants = { null, Integer.valueOf(256), Long.valueOf(-1L), Float.valueOf(-0.0f),
+                Double.valueOf(Double.NaN), "", "\u00e9t\u00e9", Character.valueOf('x'), Short.valueOf((short) -2),
+                Byte.valueOf((byte) 7), Boolean.TRUE };
+        String[] signatures = { "Ljava/lang/Object;", "I", "J", "F", "D", "Ljava/lang/String;", "Ljava/lang/String;", "C",
+                "S", "B", "Z" };
+        for (int i = 0; i < constants.length; i++) {
+            OpcodeStack.Item read = roundTrip(new OpcodeStack.Item(signatures[i], constants[i]));
+            assertEquals(signatures[i], read.getSignature());
+            assertEquals(constants[i], read.getConstant());
+        }
+    }
+
+    public void testRoundTripRegisterAndFlags() throws Exception {
+        OpcodeStack.Item item = new OpcodeStack.Item(new OpcodeStack.Item("I"), 3);
+        item.setPC(42);
+        item.setCouldBeNegative();
+        OpcodeStack.Item read = roundTrip(item);
+        assertEquals(3, read.getRegisterNumber());
+        assertEquals(42, read.getPC());
+
+        item = OpcodeStack.Item.nullItem("Ljava/lang/String;");
+        item.setServletParameterTainted();
+        read = roundTrip(item);
+        assertTrue(read.isNull());
+        assertTrue(read.isServletParameterTainted());
+    }
+
+    public void testRoundTripFieldSource() throws Exception {
+        executeFindBugsTest(new RunnableWithExceptions() {
+            @Override
+            public void run() throws Exception {
+                XField field = XFactory.createXField("java.lang.System", "out", "Ljava/io/PrintStream;", true);
+                OpcodeStack.Item item = new OpcodeStack.Item("Ljava/io/PrintStream;");
+                item.setLoadedFromField(field, Integer.MAX_VALUE);
+                OpcodeStack.Item read = roundTrip(item);
+                assertEquals(field, read.getXField());
+                assertEquals(Integer.MAX_VALUE, read.getFieldLoadedFromRegister());
+                assertEquals(-1, read.getRegisterNumber());
+            }
+        });
+    }
 }
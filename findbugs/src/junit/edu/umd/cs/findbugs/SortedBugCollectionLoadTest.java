@@ -0,0 +1,177 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that bug collections loaded with BugInstances built in parallel are
+ * the same as when they are built by the parsing thread.
+ */
+public class SortedBugCollectionLoadTest extends TestCase {
+
+    private static final String[] TYPES = { "NP_NULL_ON_SOME_PATH", "UUF_UNUSED_FIELD", "MS_MUTABLE_ARRAY",
+        "DLS_DEAD_LOCAL_STORE" };
+
+    private String oldLoadThreads;
+
+    @Override
+    protected void setUp() throws Exception {
+        oldLoadThreads = SystemProperties.getLocalProperties().getProperty(SortedBugCollection.LOAD_THREADS_PROPERTY);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (oldLoadThreads == null) {
+            SystemProperties.getLocalProperties().remove(SortedBugCollection.LOAD_THREADS_PROPERTY);
+        } else {
+            SystemProperties.setProperty(SortedBugCollection.LOAD_THREADS_PROPERTY, oldLoadThreads);
+        }
+    }
+
+    /**
+     * @return more BugInstances than are built in parallel at once, in no
+     *         particular order, with some duplicates
+     */
+    private static List<BugInstance> createBugInstances() {
+        List<BugInstance> result = new ArrayList<BugInstance>();
+        for (int i = 0; i < 3000; i++) {
+            String className = "com.example.C" + (i * 7919 % 101);
+            BugInstance bug = new BugInstance(TYPES[i % TYPES.length], 1 + i % 3).addClass(className)
+                    .addMethod(className, "m" + (i % 13), "(I)V", i % 2 == 0).addField(className, "f" + (i % 5), "I", false)
+                    .addInt(i % 97).addString("s" + (i % 11));
+            result.add(bug);
+        }
+        return result;
+    }
+
+    private static SortedBugCollection createBugCollection() {
+        SortedBugCollection bugCollection = new SortedBugCollection();
+        for (BugInstance bug : createBugInstances()) {
+            bugCollection.add(bug, false);
+        }
+        return bugCollection;
+    }
+
+    private static String toXML(SortedBugCollection bugCollection) throws Exception {
+        StringWriter out = new StringWriter();
+        bugCollection.writeXML(out);
+        return out.toString();
+    }
+
+    /**
+     * @return the BugInstances of a collection, in order, as their type,
+     *         priority, instance hash and annotations
+     */
+    private static List<String> getBugs(SortedBugCollection bugCollection) {
+        List<String> result = new ArrayList<String>();
+        for (BugInstance bug : bugCollection) {
+            result.add(bug.getType() + " " + bug.getPriority() + " " + bug.getInstanceHash() + " " + bug.getAnnotations());
+        }
+        return result;
+    }
+
+    public void testParallelLoadMatchesSerialLoad() throws Exception {
+        SortedBugCollection original = createBugCollection();
+        String xml = toXML(original);
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        original.writeBinaryXML(binary);
+
+        List<String> expected = getBugs(original);
+        for (String loadThreads : new String[] { "0", "1", "4" }) {
+            SystemProperties.setProperty(SortedBugCollection.LOAD_THREADS_PROPERTY, loadThreads);
+
+            SortedBugCollection fromXML = new SortedBugCollection();
+            fromXML.readXML(new StringReader(xml));
+            assertEquals(original.getCollection().size(), fromXML.getCollection().size());
+            assertEquals("XML loaded with " + loadThreads + " threads", expected, getBugs(fromXML));
+
+            SortedBugCollection fromBinary = new SortedBugCollection();
+            fromBinary.readXML(new ByteArrayInputStream(binary.toByteArray()));
+            assertEquals("Binary XML loaded with " + loadThreads + " threads", expected, getBugs(fromBinary));
+        }
+    }
+
+    public void testAddAllMatchesAdd() throws Exception {
+        List<BugInstance> bugs = createBugInstances();
+        SortedBugCollection added = new SortedBugCollection();
+        for (BugInstance bug : bugs) {
+            added.add(bug, false);
+        }
+        SortedBugCollection addedAll = new SortedBugCollection();
+        addedAll.addAll(bugs, false);
+        assertEquals(new ArrayList<BugInstance>(added.getCollection()), new ArrayList<BugInstance>(addedAll.getCollection()));
+    }
+
+    public void testSortedArraySetViews() {
+        TreeSet<BugInstance> expected = new TreeSet<BugInstance>(SortedBugCollection.BugInstanceComparator.instance);
+        List<BugInstance> bugs = createBugInstances().subList(0, 40);
+        // Every other BugInstance is left out of the set, to look up values
+        // which aren't in it
+        for (int i = 0; i < bugs.size(); i += 2) {
+            expected.add(bugs.get(i));
+        }
+        BugInstance[] elements = expected.toArray(new BugInstance[expected.size()]);
+        SortedSet<BugInstance> set = new SortedBugCollection.SortedArraySet(elements, 0, elements.length,
+                SortedBugCollection.BugInstanceComparator.instance);
+        checkSameSet(expected, set);
+
+        List<BugInstance> sortedBugs = new ArrayList<BugInstance>(bugs);
+        Collections.sort(sortedBugs, SortedBugCollection.BugInstanceComparator.instance);
+        for (BugInstance from : sortedBugs) {
+            assertEquals(expected.contains(from), set.contains(from));
+            checkSameSet(expected.headSet(from), set.headSet(from));
+            checkSameSet(expected.tailSet(from), set.tailSet(from));
+            for (BugInstance to : sortedBugs) {
+                if (SortedBugCollection.BugInstanceComparator.instance.compare(from, to) <= 0) {
+                    checkSameSet(expected.subSet(from, to), set.subSet(from, to));
+                    checkSameSet(expected.tailSet(from).headSet(to), set.tailSet(from).headSet(to));
+                }
+            }
+        }
+        try {
+            set.subSet(sortedBugs.get(1), sortedBugs.get(0));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    private static void checkSameSet(SortedSet<BugInstance> expected, SortedSet<BugInstance> actual) {
+        assertEquals(new ArrayList<BugInstance>(expected), new ArrayList<BugInstance>(actual));
+        assertEquals(expected.size(), actual.size());
+        if (!expected.isEmpty()) {
+            assertSame(expected.first(), actual.first());
+            assertSame(expected.last(), actual.last());
+        }
+        assertTrue(Arrays.equals(expected.toArray(), actual.toArray()));
+    }
+}
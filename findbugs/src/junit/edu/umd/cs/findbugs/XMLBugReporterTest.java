@@ -0,0 +1,67 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import junit.framework.TestCase;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+
+public class XMLBugReporterTest extends TestCase {
+
+    private static BugInstance makeBug(int value) {
+        return new BugInstance("NP_NULL_ON_SOME_PATH", Priorities.NORMAL_PRIORITY).addClass("com.example.A").addInt(value);
+    }
+
+    private static String report(boolean streaming) {
+        XMLBugReporter reporter = new XMLBugReporter(new Project());
+        reporter.setIsRelaxed(true);
+        reporter.setStreaming(streaming);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        reporter.setOutputStream(new PrintStream(bytes));
+
+        reporter.observeClass(DescriptorFactory.createClassDescriptor("com/example/A"));
+        reporter.reportBug(makeBug(1));
+        reporter.reportBug(makeBug(1));
+        // The same bug, reported while analyzing another class
+        reporter.observeClass(DescriptorFactory.createClassDescriptor("com/example/B"));
+        reporter.reportBug(makeBug(1));
+        reporter.reportBug(makeBug(2));
+        reporter.finish();
+        return bytes.toString();
+    }
+
+    private static int countBugs(String xml) {
+        int count = 0;
+        for (int i = xml.indexOf("<BugInstance "); i >= 0; i = xml.indexOf("<BugInstance ", i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    public void testDuplicatesWrittenOnce() {
+        assertEquals(2, countBugs(report(false)));
+    }
+
+    public void testStreamingDuplicatesWrittenOnce() {
+        assertEquals(2, countBugs(report(true)));
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.ba;
+
+import java.util.Iterator;
+
+import org.apache.bcel.classfile.Method;
+import org.apache.bcel.generic.MethodGen;
+
+import edu.umd.cs.findbugs.FindBugsTestCase;
+import edu.umd.cs.findbugs.RunnableWithExceptions;
+import edu.umd.cs.findbugs.ba.constant.ConstantAnalysis;
+import edu.umd.cs.findbugs.ba.vna.ValueNumberDataflow;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.engine.bcel.NonExceptionPostdominatorsAnalysis;
+
+/**
+ * Checks that the worklist solver of {@link Dataflow} computes the same facts
+ * as the sweeps solver, at every location of the methods of some JDK classes.
+ */
+public class DataflowWorklistTest extends FindBugsTestCase {
+
+    private static final String[] CLASSES = { "java/lang/String", "java/lang/StringBuffer", "java/util/HashMap",
+        "java/util/TreeMap", "java/util/Collections$SynchronizedMap", "java/util/concurrent/ConcurrentHashMap" };
+
+    public void testSameFacts() throws Exception {
+        executeFindBugsTest(new RunnableWithExceptions() {
+            @Override
+            public void run() throws Throwable {
+                int numMethods = 0;
+                for (String className : CLASSES) {
+                    ClassContext classContext = Global.getAnalysisCache().getClassAnalysis(ClassContext.class,
+                            DescriptorFactory.createClassDescriptor(className));
+                    for (Method method : classContext.getJavaClass().getMethods()) {
+                        MethodGen methodGen = classContext.getMethodGen(method);
+                        if (methodGen == null) {
+                            continue;
+                        }
+                        CFG cfg;
+                        try {
+                            cfg = classContext.getCFG(method);
+                        } catch (MethodUnprofitableException e) {
+                            continue;
+                        }
+                        checkSameFacts(classContext, method, methodGen, cfg);
+                        numMethods++;
+                    }
+                }
+                assertTrue(numMethods > 100);
+            }
+        });
+    }
+
+    private static void checkSameFacts(ClassContext classContext, Method method, MethodGen methodGen, CFG cfg)
+            throws Exception {
+        String name = classContext.getJavaClass().getClassName() + "." + method.getName() + method.getSignature();
+        DepthFirstSearch dfs = classContext.getDepthFirstSearch(method);
+        ReverseDepthFirstSearch rdfs = classContext.getReverseDepthFirstSearch(method);
+        ValueNumberDataflow vnaDataflow = classContext.getValueNumberDataflow(method);
+
+        checkSameFacts(name, cfg, new DominatorsAnalysis(cfg, dfs, true), new DominatorsAnalysis(cfg, dfs, true));
+        checkSameFacts(name, cfg, new NonExceptionPostdominatorsAnalysis(cfg, rdfs, dfs),
+                new NonExceptionPostdominatorsAnalysis(cfg, rdfs, dfs));
+        checkSameFacts(name, cfg, new LiveLocalStoreAnalysis(methodGen, rdfs, dfs), new LiveLocalStoreAnalysis(methodGen,
+                rdfs, dfs));
+        checkSameFacts(name, cfg, new ConstantAnalysis(methodGen, dfs), new ConstantAnalysis(methodGen, dfs));
+        checkSameFacts(name, cfg, new LockAnalysis(methodGen, vnaDataflow, dfs), new LockAnalysis(methodGen, vnaDataflow,
+                dfs));
+    }
+
+    /**
+     * Solve one analysis with the sweeps solver and an identical one with the
+     * worklist solver, and compare their facts.
+     */
+    private static <Fact, AnalysisType extends DataflowAnalysis<Fact>> void checkSameFacts(String name, CFG cfg,
+            AnalysisType sweeps, AnalysisType worklist) throws DataflowAnalysisException {
+        Dataflow<Fact, AnalysisType> sweepsDataflow = new Dataflow<Fact, AnalysisType>(cfg, sweeps);
+        sweepsDataflow.setUseWorklistSolver(false);
+        sweepsDataflow.execute();
+        Dataflow<Fact, AnalysisType> worklistDataflow = new Dataflow<Fact, AnalysisType>(cfg, worklist);
+        worklistDataflow.setUseWorklistSolver(true);
+        worklistDataflow.execute();
+
+        String analysisName = sweeps.getClass().getSimpleName() + " of " + name;
+        for (Iterator<BasicBlock> i = cfg.blockIterator(); i.hasNext();) {
+            BasicBlock block = i.next();
+            checkSameFact(analysisName + " at start of block " + block.getLabel(), sweeps, sweeps.getStartFact(block),
+                    worklist.getStartFact(block));
+            checkSameFact(analysisName + " at end of block " + block.getLabel(), sweeps, sweeps.getResultFact(block),
+                    worklist.getResultFact(block));
+        }
+        for (Iterator<Location> i = cfg.locationIterator(); i.hasNext();) {
+            Location location = i.next();
+            checkSameFact(analysisName + " before " + location, sweeps, sweeps.getFactAtLocation(location),
+                    worklist.getFactAtLocation(location));
+            checkSameFact(analysisName + " after " + location, sweeps, sweeps.getFactAfterLocation(location),
+                    worklist.getFactAfterLocation(location));
+        }
+    }
+
+    private static <Fact> void checkSameFact(String where, DataflowAnalysis<Fact> analysis, Fact expected, Fact actual) {
+        if (!analysis.same(expected, actual)) {
+            fail(where + ": expected " + analysis.factToString(expected) + " but was " + analysis.factToString(actual));
+        }
+    }
+}
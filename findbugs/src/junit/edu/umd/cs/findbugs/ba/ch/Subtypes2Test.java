@@ -19,6 +19,10 @@
 
 package edu.umd.cs.findbugs.ba.ch;
 
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.bcel.Constants;
 import org.apache.bcel.generic.ArrayType;
 import org.apache.bcel.generic.ObjectType;
 import org.apache.bcel.generic.Type;
@@ -26,7 +30,14 @@ import org.apache.bcel.generic.Type;
 import edu.umd.cs.findbugs.FindBugsTestCase;
 import edu.umd.cs.findbugs.RunnableWithExceptions;
 import edu.umd.cs.findbugs.ba.ObjectTypeFactory;
+import edu.umd.cs.findbugs.ba.XClass;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
 import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.analysis.ClassInfo;
+import edu.umd.cs.findbugs.classfile.engine.ClassInfoAnalysisEngine;
 import edu.umd.cs.findbugs.detect.FindRefComparison;
 
 /**
@@ -398,4 +409,155 @@ public class Subtypes2Test extends FindBugsTestCase {
          */
 
     }
+
+    /**
+     * Engine for XClasses which also knows about classes defined by the test,
+     * whose supertypes may be missing or form a cycle.
+     */
+    static class TestClassInfoAnalysisEngine extends ClassInfoAnalysisEngine {
+        final Map<ClassDescriptor, XClass> testClasses = new HashMap<ClassDescriptor, XClass>();
+
+        void defineClass(String className, int accessFlags, String superclassName, String... interfaceNames) {
+            ClassInfo.Builder builder = new ClassInfo.Builder();
+            builder.setClassDescriptor(DescriptorFactory.createClassDescriptor(className));
+            builder.setAccessFlags(accessFlags);
+            builder.setSuperclassDescriptor(DescriptorFactory.createClassDescriptor(superclassName));
+            ClassDescriptor[] interfaces = new ClassDescriptor[interfaceNames.length];
+            for (int i = 0; i < interfaces.length; i++) {
+                interfaces[i] = DescriptorFactory.createClassDescriptor(interfaceNames[i]);
+            }
+            builder.setInterfaceDescriptorList(interfaces);
+            ClassInfo classInfo = builder.build();
+            testClasses.put(classInfo.getClassDescriptor(), classInfo);
+        }
+
+        void defineClass(String className, String superclassName, String... interfaceNames) {
+            defineClass(className, Constants.ACC_PUBLIC, superclassName, interfaceNames);
+        }
+
+        void defineInterface(String className, String... interfaceNames) {
+            defineClass(className, Constants.ACC_PUBLIC | Constants.ACC_INTERFACE | Constants.ACC_ABSTRACT,
+                    "java/lang/Object", interfaceNames);
+        }
+
+        @Override
+        public ClassInfo analyze(IAnalysisCache analysisCache, ClassDescriptor descriptor) throws CheckedAnalysisException {
+            XClass testClass = testClasses.get(descriptor);
+            if (testClass != null) {
+                return (ClassInfo) testClass;
+            }
+            return super.analyze(analysisCache, descriptor);
+        }
+
+        @Override
+        public void registerWith(IAnalysisCache analysisCache) {
+            analysisCache.registerClassAnalysisEngine(XClass.class, this);
+        }
+    }
+
+    private static TestClassInfoAnalysisEngine registerTestClasses() {
+        TestClassInfoAnalysisEngine engine = new TestClassInfoAnalysisEngine();
+        engine.registerWith(Global.getAnalysisCache());
+        return engine;
+    }
+
+    private static ObjectType type(String className) {
+        return ObjectTypeFactory.getInstance(className.replace('/', '.'));
+    }
+
+    public void testInheritanceCycle() throws Exception {
+        executeFindBugsTest(new RunnableWithExceptions() {
+            @Override
+            public void run() throws Throwable {
+                TestClassInfoAnalysisEngine engine = registerTestClasses();
+                engine.defineClass("test/CycleA", "test/CycleB");
+                engine.defineClass("test/CycleB", "test/CycleA");
+                Subtypes2 test = new Subtypes2();
+
+                // Direct supertypes are still known
+                assertTrue(test.isSubtype(type("test/CycleA"), type("test/CycleB")));
+
+                // The other supertypes are treated as missing
+                try {
+                    test.isSubtype(type("test/CycleA"), typeSerializable);
+                    fail();
+                } catch (ClassNotFoundException e) {
+                    // Expected
+                }
+                try {
+                    test.isSubtype(type("test/CycleB"), typeSerializable);
+                    fail();
+                } catch (ClassNotFoundException e) {
+                    // Expected
+                }
+            }
+        });
+    }
+
+    public void testMissingSupertypes() throws Exception {
+        executeFindBugsTest(new RunnableWithExceptions() {
+            @Override
+            public void run() throws Throwable {
+                TestClassInfoAnalysisEngine engine = registerTestClasses();
+                engine.defineClass("test/Orphan", "test/MissingSuperclass");
+                engine.defineClass("test/Impl", "java/lang/Object", "test/MissingInterface", "java/io/Serializable");
+                Subtypes2 test = new Subtypes2();
+
+                assertTrue(test.isSubtype(type("test/Orphan"), type("test/MissingSuperclass")));
+                try {
+                    test.isSubtype(type("test/Orphan"), typeSerializable);
+                    fail();
+                } catch (ClassNotFoundException e) {
+                    // Expected
+                }
+                try {
+                    test.getFirstCommonSuperclass(type("test/Orphan"), typeString);
+                    fail();
+                } catch (ClassNotFoundException e) {
+                    // Expected
+                }
+
+                // Known supertypes are found in spite of a missing interface
+                assertTrue(test.isSubtype(type("test/Impl"), typeSerializable));
+                assertTrue(test.isSubtype(type("test/Impl"), type("test/MissingInterface")));
+                try {
+                    test.isSubtype(type("test/Impl"), typeComparable);
+                    fail();
+                } catch (ClassNotFoundException e) {
+                    // Expected
+                }
+                assertEquals(typeSerializable, test.getFirstCommonSuperclass(type("test/Impl"), typeInteger));
+            }
+        });
+    }
+
+    public void testFirstCommonSuperclassThroughInterfaces() throws Exception {
+        executeFindBugsTest(new RunnableWithExceptions() {
+            @Override
+            public void run() throws Throwable {
+                TestClassInfoAnalysisEngine engine = registerTestClasses();
+                engine.defineInterface("test/I");
+                engine.defineInterface("test/J");
+                engine.defineInterface("test/SubI", "test/I");
+                engine.defineClass("test/A", "java/lang/Object", "test/I");
+                engine.defineClass("test/B", "java/lang/Object", "test/SubI");
+                engine.defineClass("test/C", "java/lang/Object", "test/J");
+                engine.defineClass("test/D", "java/lang/Object");
+                Subtypes2 test = new Subtypes2();
+
+                // Common interface
+                assertEquals(type("test/I"), test.getFirstCommonSuperclass(type("test/A"), type("test/B")));
+                assertEquals(type("test/I"), test.getFirstCommonSuperclass(type("test/B"), type("test/A")));
+
+                // Only java.lang.Object, which all interfaces extend, is common
+                assertEquals(typeObject, test.getFirstCommonSuperclass(type("test/A"), type("test/C")));
+                assertEquals(typeObject, test.getFirstCommonSuperclass(type("test/B"), type("test/C")));
+                assertEquals(typeObject, test.getFirstCommonSuperclass(type("test/A"), type("test/D")));
+
+                assertTrue(test.isSubtype(type("test/B"), type("test/I")));
+                assertFalse(test.isSubtype(type("test/A"), type("test/SubI")));
+                assertFalse(test.isSubtype(type("test/C"), type("test/I")));
+            }
+        });
+    }
 }
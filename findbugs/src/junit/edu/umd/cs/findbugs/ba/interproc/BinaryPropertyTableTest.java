@@ -0,0 +1,114 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs.ba.interproc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+import edu.umd.cs.findbugs.ba.npe.ReturnValueNullnessPropertyDatabase;
+import edu.umd.cs.findbugs.charsets.UTF8;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+
+public class BinaryPropertyTableTest extends TestCase {
+
+    private static final String TEXT = "java.lang.String,trim,()Ljava/lang/String;,1|true\n"
+            + "java.lang.String,valueOf,(Ljava/lang/Object;)Ljava/lang/String;,9|true\n"
+            + "java.util.Map,get,(Ljava/lang/Object;)Ljava/lang/Object;,1|false\n"
+            + "java.lang.String,trim,()Ljava/lang/String;,1|false\n";
+
+    private static byte[] toBinary(String text) throws Exception {
+        BinaryPropertyTable.Builder builder = new BinaryPropertyTable.Builder();
+        for (String line : text.split("\n")) {
+            builder.addTextLine(line);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        builder.write(out);
+        return out.toByteArray();
+    }
+
+    public void testFind() throws Exception {
+        BinaryPropertyTable table = BinaryPropertyTable.read(new ByteArrayInputStream(toBinary(TEXT)));
+        assertEquals(3, table.size());
+
+        int trim = table.find("java/lang/String", "trim", "()Ljava/lang/String;", false);
+        assertTrue(trim >= 0);
+        assertEquals("java/lang/String", table.getClassName(trim));
+        assertEquals(1, table.getAccessFlags(trim));
+        // The last entry for a key wins
+        assertEquals("false", table.getProperty(trim));
+
+        int valueOf = table.find("java/lang/String", "valueOf", "(Ljava/lang/Object;)Ljava/lang/String;", true);
+        assertTrue(valueOf >= 0);
+        assertTrue(table.isStatic(valueOf));
+        assertEquals("true", table.getProperty(valueOf));
+
+        assertEquals(-1, table.find("java/lang/String", "valueOf", "(Ljava/lang/Object;)Ljava/lang/String;", false));
+        assertEquals(-1, table.find("java/lang/String", "length", "()I", false));
+        assertEquals(-1, table.find("java/util/List", "get", "(I)Ljava/lang/Object;", false));
+    }
+
+    public void testWriteText() throws Exception {
+        BinaryPropertyTable table = BinaryPropertyTable.read(new ByteArrayInputStream(toBinary(TEXT)));
+        StringWriter writer = new StringWriter();
+        table.writeText(writer);
+        BinaryPropertyTable copy = BinaryPropertyTable.read(new ByteArrayInputStream(toBinary(writer.toString())));
+        assertEquals(table.size(), copy.size());
+        for (int i = 0; i < table.size(); i++) {
+            assertEquals(table.getClassName(i), copy.getClassName(i));
+            assertEquals(table.getName(i), copy.getName(i));
+            assertEquals(table.getSignature(i), copy.getSignature(i));
+            assertEquals(table.getAccessFlags(i), copy.getAccessFlags(i));
+            assertEquals(table.getProperty(i), copy.getProperty(i));
+        }
+    }
+
+    public void testIsBinary() throws Exception {
+        assertTrue(BinaryPropertyTable.isBinary(new ByteArrayInputStream(toBinary(TEXT))));
+        assertFalse(BinaryPropertyTable.isBinary(new ByteArrayInputStream(TEXT.getBytes(UTF8.charset))));
+        assertFalse(BinaryPropertyTable.isBinary(new ByteArrayInputStream(new byte[0])));
+    }
+
+    public void testDatabaseReadsBothFormats() throws Exception {
+        ReturnValueNullnessPropertyDatabase text = new ReturnValueNullnessPropertyDatabase();
+        text.read(new ByteArrayInputStream(TEXT.getBytes(UTF8.charset)));
+        ReturnValueNullnessPropertyDatabase binary = new ReturnValueNullnessPropertyDatabase();
+        binary.read(new ByteArrayInputStream(toBinary(TEXT)));
+
+        assertFalse(binary.isEmpty());
+        for (MethodDescriptor method : text.getKeys()) {
+            assertEquals(text.getProperty(method), binary.getProperty(method));
+        }
+        MethodDescriptor absent = DescriptorFactory.instance().getMethodDescriptor("java/lang/String", "length", "()I",
+                false);
+        assertNull(binary.getProperty(absent));
+
+        // Local changes override the table
+        MethodDescriptor trim = DescriptorFactory.instance().getMethodDescriptor("java/lang/String", "trim",
+                "()Ljava/lang/String;", false);
+        binary.setProperty(trim, Boolean.TRUE);
+        assertEquals(Boolean.TRUE, binary.getProperty(trim));
+        assertEquals(text.getKeys().size(), binary.getKeys().size());
+        assertEquals(Boolean.TRUE, binary.getProperty(trim));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.ba.jsr305;
+
+import java.lang.annotation.ElementType;
+import java.util.HashSet;
+import java.util.Set;
+
+import edu.umd.cs.findbugs.FindBugsTestCase;
+import edu.umd.cs.findbugs.RunnableWithExceptions;
+import edu.umd.cs.findbugs.ba.XClass;
+import edu.umd.cs.findbugs.ba.XFactory;
+import edu.umd.cs.findbugs.ba.XField;
+import edu.umd.cs.findbugs.ba.XMethod;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.analysis.AnnotationValue;
+import edu.umd.cs.findbugs.classfile.analysis.ClassInfo;
+
+/**
+ * Tests for the invalidation of the memoized type qualifier applications when
+ * annotations are added.
+ */
+public class TypeQualifierApplicationsTest extends FindBugsTestCase {
+
+    public void testNameScopedGeneration() throws Exception {
+        executeFindBugsTest(new RunnableWithExceptions() {
+            @Override
+            public void run() throws Exception {
+                XMethod objectToString = XFactory.createXMethod("java.lang.Object", "toString", "()Ljava/lang/String;", false);
+                XMethod stringToString = XFactory.createXMethod("java.lang.String", "toString", "()Ljava/lang/String;", false);
+                XMethod hashCode = XFactory.createXMethod("java.lang.Object", "hashCode", "()I", false);
+                XField out = XFactory.createXField("java.lang.System", "out", "Ljava/io/PrintStream;", true);
+                XClass objectClass = getXClass("java/lang/Object");
+
+                TypeQualifierApplications.Data data = new TypeQualifierApplications.Data();
+                int toStringGeneration = data.getGeneration(objectToString);
+                int hashCodeGeneration = data.getGeneration(hashCode);
+                int outGeneration = data.getGeneration(out);
+                int classGeneration = data.getGeneration(objectClass);
+
+                // Annotations of a method only affect methods of the same name
+                data.update(stringToString);
+                assertTrue(data.getGeneration(objectToString) != toStringGeneration);
+                assertEquals(hashCodeGeneration, data.getGeneration(hashCode));
+                assertEquals(outGeneration, data.getGeneration(out));
+                assertEquals(classGeneration, data.getGeneration(objectClass));
+                toStringGeneration = data.getGeneration(objectToString);
+
+                // Annotations of a class may affect anything
+                data.update(objectClass);
+                assertTrue(data.getGeneration(objectToString) != toStringGeneration);
+                assertTrue(data.getGeneration(hashCode) != hashCodeGeneration);
+                assertTrue(data.getGeneration(out) != outGeneration);
+                assertTrue(data.getGeneration(objectClass) != classGeneration);
+            }
+        });
+    }
+
+    public void testClassAnnotationInvalidates() throws Exception {
+        executeFindBugsTest(new RunnableWithExceptions() {
+            @Override
+            public void run() throws Exception {
+                XClass objectClass = getXClass("java/lang/Object");
+                // The direct annotations of a class are memoized if it has any
+                ((ClassInfo) objectClass).addAnnotation(new AnnotationValue("Ljava/lang/Deprecated;"));
+                Set<TypeQualifierAnnotation> result = new HashSet<TypeQualifierAnnotation>();
+                TypeQualifierApplications.getDirectApplications(result, objectClass, ElementType.TYPE);
+                assertTrue(result.isEmpty());
+
+                ((ClassInfo) objectClass).addAnnotation(new AnnotationValue("Ljavax/annotation/Nonnull;"));
+                TypeQualifierApplications.getDirectApplications(result, objectClass, ElementType.TYPE);
+                assertEquals(1, result.size());
+            }
+        });
+    }
+
+    static XClass getXClass(String className) throws Exception {
+        return Global.getAnalysisCache().getClassAnalysis(XClass.class,
+                DescriptorFactory.createClassDescriptor(className));
+    }
+}
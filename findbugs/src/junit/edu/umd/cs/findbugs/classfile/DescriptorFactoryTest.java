@@ -0,0 +1,90 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.classfile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+public class DescriptorFactoryTest extends TestCase {
+
+    private static final int NUM_THREADS = 4;
+
+    private static final int NUM_CLASSES = 1000;
+
+    public void testSharedInstanceIsCanonicalAcrossThreads() throws Exception {
+        final DescriptorFactory descriptorFactory = DescriptorFactory.instance();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+        try {
+            List<Future<Object[]>> results = new ArrayList<Future<Object[]>>();
+            for (int t = 0; t < NUM_THREADS; t++) {
+                results.add(executor.submit(new Callable<Object[]>() {
+                    @Override
+                    public Object[] call() throws Exception {
+                        DescriptorFactory.setInstanceForCurrentThread(descriptorFactory);
+                        start.await();
+                        Object[] result = new Object[3 * NUM_CLASSES];
+                        for (int i = 0; i < NUM_CLASSES; i++) {
+                            String className = "test/DescriptorFactoryTest" + i;
+                            result[3 * i] = DescriptorFactory.createClassDescriptor(className);
+                            result[3 * i + 1] = DescriptorFactory.instance().getMethodDescriptor(className, "m", "()V", false);
+                            result[3 * i + 2] = DescriptorFactory.instance().getFieldDescriptor(className, "f", "I", true);
+                        }
+                        return result;
+                    }
+                }));
+            }
+            start.countDown();
+            Object[] first = results.get(0).get();
+            for (Future<Object[]> result : results) {
+                Object[] other = result.get();
+                for (int i = 0; i < first.length; i++) {
+                    assertSame(first[i], other[i]);
+                }
+            }
+            assertSame(first[0], DescriptorFactory.createClassDescriptorFromDottedClassName("test.DescriptorFactoryTest0"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testThreadsHaveTheirOwnInstanceByDefault() throws Exception {
+        final DescriptorFactory descriptorFactory = DescriptorFactory.instance();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            DescriptorFactory other = executor.submit(new Callable<DescriptorFactory>() {
+                @Override
+                public DescriptorFactory call() {
+                    return DescriptorFactory.instance();
+                }
+            }).get();
+            assertNotSame(descriptorFactory, other);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
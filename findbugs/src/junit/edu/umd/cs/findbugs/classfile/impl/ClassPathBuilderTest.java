@@ -0,0 +1,199 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.classfile.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+import edu.umd.cs.findbugs.NoOpFindBugsProgress;
+import edu.umd.cs.findbugs.PrintingBugReporter;
+import edu.umd.cs.findbugs.classfile.ICodeBase;
+import edu.umd.cs.findbugs.classfile.ICodeBaseLocator;
+import edu.umd.cs.findbugs.classfile.ResourceNotFoundException;
+
+/**
+ * Checks that the codebases opened by the classpath scanning threads are
+ * closed when building the classpath fails or is interrupted.
+ */
+public class ClassPathBuilderTest extends TestCase {
+
+    private static final int NUM_GOOD_CODEBASES = 3;
+
+    private File directory;
+
+    /** Codebases opened by the good locators */
+    private final List<TrackedCodeBase> opened = new ArrayList<TrackedCodeBase>();
+
+    private final CountDownLatch allOpened = new CountDownLatch(NUM_GOOD_CODEBASES);
+
+    private class TrackedCodeBase extends DirectoryCodeBase {
+        volatile boolean closed;
+
+        TrackedCodeBase(ICodeBaseLocator locator) {
+            super(locator, directory);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            super.close();
+        }
+    }
+
+    private abstract class TestLocator implements ICodeBaseLocator {
+        private final String name;
+
+        TestLocator(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public ICodeBaseLocator createRelativeCodeBaseLocator(String relativePath) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private class GoodLocator extends TestLocator {
+        GoodLocator(String name) {
+            super(name);
+        }
+
+        @Override
+        public ICodeBase openCodeBase() {
+            TrackedCodeBase codeBase = new TrackedCodeBase(this);
+            synchronized (opened) {
+                opened.add(codeBase);
+            }
+            allOpened.countDown();
+            return codeBase;
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = File.createTempFile("classes", null);
+        if (!directory.delete() || !directory.mkdir()) {
+            throw new IOException("Could not create temp dir");
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        directory.delete();
+    }
+
+    public void testCodeBasesClosedWhenScanFails() throws Exception {
+        ClassPathBuilder builder = createBuilder(new TestLocator("failing") {
+            @Override
+            public ICodeBase openCodeBase() throws IOException {
+                // Fail once the codebases after this one have been opened
+                // ahead of time
+                try {
+                    allOpened.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException("Interrupted");
+                }
+                throw new IllegalStateException("Scan failed");
+            }
+        });
+        try {
+            builder.build(ClassFactory.instance().createClassPath(), new NoOpFindBugsProgress());
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("Scan failed", e.getMessage());
+        }
+        checkAllClosed();
+    }
+
+    public void testCodeBasesClosedWhenInterrupted() throws Exception {
+        final ClassPathBuilder builder = createBuilder(new TestLocator("blocking") {
+            @Override
+            public ICodeBase openCodeBase() throws IOException {
+                try {
+                    Thread.sleep(Long.MAX_VALUE);
+                } catch (InterruptedException e) {
+                    throw new IOException("Interrupted");
+                }
+                throw new IllegalStateException();
+            }
+        });
+        final List<Throwable> thrown = new ArrayList<Throwable>();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    builder.build(ClassFactory.instance().createClassPath(), new NoOpFindBugsProgress());
+                } catch (Throwable e) {
+                    thrown.add(e);
+                }
+            }
+        };
+        thread.start();
+        assertTrue(allOpened.await(10, TimeUnit.SECONDS));
+        thread.interrupt();
+        thread.join();
+        assertEquals(1, thrown.size());
+        assertTrue(thrown.get(0).toString(), thrown.get(0) instanceof InterruptedException);
+        checkAllClosed();
+    }
+
+    /**
+     * Create a builder scanning a good codebase, then the given one, then
+     * more good codebases, with enough threads to scan them all at once.
+     */
+    private ClassPathBuilder createBuilder(ICodeBaseLocator second) {
+        ClassPathBuilder builder = new ClassPathBuilder(ClassFactory.instance(), new PrintingBugReporter());
+        builder.setNumThreads(4);
+        builder.addCodeBase(new GoodLocator("good0"), true);
+        builder.addCodeBase(second, true);
+        for (int i = 1; i < NUM_GOOD_CODEBASES; i++) {
+            builder.addCodeBase(new GoodLocator("good" + i), true);
+        }
+        return builder;
+    }
+
+    /**
+     * Check that all good codebases were opened and closed. Scans still
+     * running when the build failed close their codebases when they finish.
+     */
+    private void checkAllClosed() throws InterruptedException {
+        assertTrue(allOpened.await(10, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 10000;
+        synchronized (opened) {
+            assertEquals(NUM_GOOD_CODEBASES, opened.size());
+            for (TrackedCodeBase codeBase : opened) {
+                while (!codeBase.closed && System.currentTimeMillis() < deadline) {
+                    opened.wait(10);
+                }
+                assertTrue(codeBase.getCodeBaseLocator() + " was not closed", codeBase.closed);
+            }
+        }
+    }
+}
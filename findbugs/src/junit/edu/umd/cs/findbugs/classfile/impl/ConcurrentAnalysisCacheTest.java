@@ -0,0 +1,108 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.classfile.impl;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+import edu.umd.cs.findbugs.PrintingBugReporter;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.IClassAnalysisEngine;
+
+public class ConcurrentAnalysisCacheTest extends TestCase {
+
+    /** Engine computing the name of a class, which can be made to wait */
+    static class NameEngine implements IClassAnalysisEngine<String> {
+        final CountDownLatch started = new CountDownLatch(1);
+
+        final CountDownLatch proceed = new CountDownLatch(1);
+
+        volatile String probed = "not probed";
+
+        @Override
+        public String analyze(IAnalysisCache analysisCache, ClassDescriptor descriptor) throws CheckedAnalysisException {
+            probed = analysisCache.probeClassAnalysis(String.class, descriptor);
+            started.countDown();
+            try {
+                proceed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return descriptor.getClassName();
+        }
+
+        @Override
+        public void registerWith(IAnalysisCache analysisCache) {
+            analysisCache.registerClassAnalysisEngine(String.class, this);
+        }
+
+        @Override
+        public boolean canRecompute() {
+            return true;
+        }
+    }
+
+    private ConcurrentAnalysisCache cache;
+
+    private NameEngine engine;
+
+    private ClassDescriptor descriptor;
+
+    @Override
+    protected void setUp() throws Exception {
+        cache = new ConcurrentAnalysisCache(ClassFactory.instance().createClassPath(), new PrintingBugReporter());
+        engine = new NameEngine();
+        engine.registerWith(cache);
+        descriptor = DescriptorFactory.createClassDescriptor("java/lang/Object");
+    }
+
+    public void testProbeByThreadComputingResult() throws Exception {
+        engine.proceed.countDown();
+        assertEquals("java/lang/Object", cache.getClassAnalysis(String.class, descriptor));
+        assertNull(engine.probed);
+        assertEquals("java/lang/Object", cache.probeClassAnalysis(String.class, descriptor));
+    }
+
+    public void testProbeDoesNotWaitForOtherThread() throws Exception {
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    cache.getClassAnalysis(String.class, descriptor);
+                } catch (CheckedAnalysisException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        };
+        thread.start();
+        try {
+            assertTrue(engine.started.await(10, TimeUnit.SECONDS));
+            assertNull(cache.probeClassAnalysis(String.class, descriptor));
+        } finally {
+            engine.proceed.countDown();
+            thread.join();
+        }
+        assertEquals("java/lang/Object", cache.probeClassAnalysis(String.class, descriptor));
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.classfile.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+import edu.umd.cs.findbugs.classfile.ICodeBaseEntry;
+import edu.umd.cs.findbugs.classfile.ICodeBaseIterator;
+import edu.umd.cs.findbugs.io.IO;
+
+public class MappedZipFileCodeBaseTest extends TestCase {
+
+    private static final byte[] STORED = "stored contents".getBytes();
+
+    private static final byte[] DEFLATED = new byte[10000];
+    static {
+        for (int i = 0; i < DEFLATED.length; i++) {
+            DEFLATED[i] = (byte) (i % 17);
+        }
+    }
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        file = File.createTempFile("findbugs", ".zip");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(makeZip(true));
+        } finally {
+            out.close();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+    }
+
+    static byte[] makeZip(boolean nested) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ZipOutputStream zip = new ZipOutputStream(bytes);
+        zip.putNextEntry(new ZipEntry("dir/"));
+        zip.closeEntry();
+        putStored(zip, "dir/stored.txt", STORED);
+        zip.putNextEntry(new ZipEntry("dir/deflated.bin"));
+        zip.write(DEFLATED);
+        zip.closeEntry();
+        if (nested) {
+            byte[] nestedZip = makeZip(false);
+            putStored(zip, "stored.jar", nestedZip);
+            zip.putNextEntry(new ZipEntry("deflated.jar"));
+            zip.write(nestedZip);
+            zip.closeEntry();
+        }
+        zip.close();
+        return bytes.toByteArray();
+    }
+
+    private static void putStored(ZipOutputStream zip, String name, byte[] data) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(data.length);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        entry.setCrc(crc.getValue());
+        zip.putNextEntry(entry);
+        zip.write(data);
+        zip.closeEntry();
+    }
+
+    private MappedZipFileCodeBase open() throws IOException {
+        return new MappedZipFileCodeBase(new FilesystemCodeBaseLocator(file.getPath()), file);
+    }
+
+    public void testEntries() throws Exception {
+        MappedZipFileCodeBase codeBase = open();
+        List<String> names = new ArrayList<String>();
+        for (ICodeBaseIterator i = codeBase.iterator(); i.hasNext();) {
+            names.add(i.next().getResourceName());
+        }
+        assertEquals(Arrays.asList("dir/stored.txt", "dir/deflated.bin", "stored.jar", "deflated.jar"), names);
+        assertNull(codeBase.lookupResource("missing"));
+        assertEquals(file.getPath(), codeBase.getPathName());
+    }
+
+    public void testContents() throws Exception {
+        MappedZipFileCodeBase codeBase = open();
+        MappedZipFileCodeBaseEntry stored = (MappedZipFileCodeBaseEntry) codeBase.lookupResource("dir/stored.txt");
+        assertEquals(STORED.length, stored.getNumBytes());
+        assertTrue(Arrays.equals(STORED, stored.getBytes()));
+        assertTrue(Arrays.equals(STORED, IO.readAll(stored.openResource())));
+        assertTrue(stored.getByteBuffer().isReadOnly());
+
+        MappedZipFileCodeBaseEntry deflated = (MappedZipFileCodeBaseEntry) codeBase.lookupResource("dir/deflated.bin");
+        assertEquals(DEFLATED.length, deflated.getNumBytes());
+        assertTrue(Arrays.equals(DEFLATED, deflated.getBytes()));
+        assertTrue(Arrays.equals(DEFLATED, IO.readAll(deflated.openResource())));
+    }
+
+    public void testNested() throws Exception {
+        MappedZipFileCodeBase codeBase = open();
+        for (String name : new String[] { "stored.jar", "deflated.jar" }) {
+            ByteBuffer buffer = ((MappedZipFileCodeBaseEntry) codeBase.lookupResource(name)).getByteBuffer();
+            MappedZipFileCodeBase nested = new MappedZipFileCodeBase(new NestedZipFileCodeBaseLocator(codeBase, name), null,
+                    buffer);
+            ICodeBaseEntry entry = nested.lookupResource("dir/deflated.bin");
+            assertTrue(Arrays.equals(DEFLATED, ((MappedZipFileCodeBaseEntry) entry).getBytes()));
+            assertNull(nested.lookupResource("stored.jar"));
+            assertNull(nested.getPathName());
+        }
+    }
+
+    public void testClose() throws Exception {
+        MappedZipFileCodeBase codeBase = open();
+        MappedZipFileCodeBaseEntry stored = (MappedZipFileCodeBaseEntry) codeBase.lookupResource("dir/stored.txt");
+        InputStream in = stored.openResource();
+        MappedZipFileCodeBase nested = new MappedZipFileCodeBase(new NestedZipFileCodeBaseLocator(codeBase, "stored.jar"),
+                (MappedZipFileCodeBaseEntry) codeBase.lookupResource("stored.jar"));
+        MappedZipFileCodeBaseEntry nestedEntry = (MappedZipFileCodeBaseEntry) nested.lookupResource("dir/stored.txt");
+        assertTrue(Arrays.equals(STORED, nestedEntry.getBytes()));
+
+        codeBase.close();
+        codeBase.close();
+        try {
+            stored.getBytes();
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+        try {
+            in.read();
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+        try {
+            nestedEntry.getBytes();
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+
+        // The file can be opened again
+        codeBase = open();
+        assertNotNull(codeBase.lookupResource("dir/stored.txt"));
+        codeBase.close();
+    }
+
+    public void testCloseWhileReading() throws Exception {
+        final MappedZipFileCodeBase codeBase = open();
+        final MappedZipFileCodeBaseEntry deflated = (MappedZipFileCodeBaseEntry) codeBase.lookupResource("dir/deflated.bin");
+        final MappedZipFileCodeBaseEntry stored = (MappedZipFileCodeBaseEntry) codeBase.lookupResource("dir/stored.txt");
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        final CountDownLatch started = new CountDownLatch(4);
+        Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        // Every read either sees the whole contents or fails
+                        // because the codebase is closed
+                        while (true) {
+                            assertTrue(Arrays.equals(DEFLATED, deflated.getBytes()));
+                            assertTrue(Arrays.equals(STORED, IO.readAll(stored.openResource())));
+                        }
+                    } catch (IOException e) {
+                        // Closed
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }
+            };
+            readers[i].start();
+        }
+        started.await();
+        Thread.sleep(50);
+        codeBase.close();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertEquals(Collections.<Throwable> emptyList(), failures);
+    }
+
+    public void testNotAZipFile() throws Exception {
+        try {
+            new MappedZipFileCodeBase(new FilesystemCodeBaseLocator("test"), null, ByteBuffer.wrap(STORED));
+            fail();
+        } catch (ZipException e) {
+            // Expected
+        }
+    }
+}
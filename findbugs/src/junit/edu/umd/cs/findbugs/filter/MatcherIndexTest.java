@@ -0,0 +1,102 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.umd.cs.findbugs.BugInstance;
+
+public class MatcherIndexTest {
+
+    @Test
+    public void literalPrefixOfRegex() {
+        assertEquals("com.foo.", MatcherIndex.getLiteralPrefix("com\\.foo\\..*"));
+        assertEquals("com.foo.", MatcherIndex.getLiteralPrefix("com\\.foo\\.[^.]+"));
+        assertEquals("com.foo", MatcherIndex.getLiteralPrefix("com\\.foo\\.?"));
+        assertEquals("com", MatcherIndex.getLiteralPrefix("com.foo"));
+        assertEquals("Test", MatcherIndex.getLiteralPrefix("Tests*"));
+        assertEquals("Tests", MatcherIndex.getLiteralPrefix("Tests+"));
+        assertEquals("", MatcherIndex.getLiteralPrefix(".*Test"));
+        assertEquals("", MatcherIndex.getLiteralPrefix("(?i)com\\.foo"));
+        assertEquals("", MatcherIndex.getLiteralPrefix("com\\.foo\\..*|org\\..*"));
+        assertEquals("com", MatcherIndex.getLiteralPrefix("com\\Q.foo\\E"));
+    }
+
+    private static BugInstance bug(String type, String className) {
+        return new BugInstance(type, 2).addClass(className);
+    }
+
+    private static AndMatcher match(Matcher... matchers) {
+        AndMatcher and = new AndMatcher();
+        for (Matcher m : matchers) {
+            and.addChild(m);
+        }
+        return and;
+    }
+
+    @Test
+    public void indexedMatchingEqualsInterpretedMatching() {
+        List<Matcher> alternatives = Arrays.<Matcher> asList(
+                match(new ClassMatcher("com.foo.Bar"), new BugMatcher("", "UUF_UNUSED_FIELD", "")),
+                match(new ClassMatcher("~com\\.foo\\.baz\\.[^.]+")),
+                match(new ClassMatcher("~.*Test"), new MethodMatcher("test")),
+                new BugMatcher("NP", "", ""),
+                match(new BugMatcher("", "", "PERFORMANCE"), new ClassMatcher("~org\\..*")),
+                match(new ClassMatcher("~com\\.foo\\.Qu+x")),
+                match(new ClassMatcher("com.foo.Bar", "CLASS_REFTYPE")));
+        Filter filter = new Filter();
+        OrMatcher reference = new OrMatcher();
+        for (Matcher m : alternatives) {
+            filter.addChild(m);
+            reference.addChild(m);
+        }
+
+        List<BugInstance> bugs = Arrays.asList(bug("UUF_UNUSED_FIELD", "com.foo.Bar"), bug("URF_UNREAD_FIELD", "com.foo.Bar"),
+                bug("URF_UNREAD_FIELD", "com.foo.baz.Quux"), bug("URF_UNREAD_FIELD", "com.foo.baz.sub.Quux"),
+                bug("URF_UNREAD_FIELD", "com.foo.FooTest"), bug("NP_NULL_ON_SOME_PATH", "net.Other"),
+                bug("DM_NUMBER_CTOR", "org.example.Slow"), bug("DM_NUMBER_CTOR", "net.example.Slow"),
+                bug("URF_UNREAD_FIELD", "com.foo.Quuux"), bug("URF_UNREAD_FIELD", "com.foo.Qx"));
+        for (BugInstance b : bugs) {
+            assertEquals(b.getType() + " in " + b.getPrimaryClass(), reference.match(b), filter.match(b));
+        }
+    }
+
+    @Test
+    public void indexFollowsEnabledChildren() {
+        Filter filter = new Filter();
+        ClassMatcher classMatcher = new ClassMatcher("com.foo.Bar");
+        filter.addChild(classMatcher);
+        BugInstance b = bug("URF_UNREAD_FIELD", "com.foo.Bar");
+        assertTrue(filter.match(b));
+        filter.disable(classMatcher);
+        assertFalse(filter.match(b));
+        filter.enable(classMatcher);
+        assertTrue(filter.match(b));
+        filter.removeChild(classMatcher);
+        assertFalse(filter.match(b));
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2006, University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307, USA
+ */
+
+package edu.umd.cs.findbugs.gui2;
+
+import static junit.framework.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.SourceLineAnnotation;
+import edu.umd.cs.findbugs.filter.Matcher;
+import edu.umd.cs.findbugs.gui2.BugAspects.SortableValue;
+import edu.umd.cs.findbugs.xml.XMLOutput;
+
+/**
+ * Checks the queries and filtered views of a BugSet against a linear scan of
+ * its bugs. Only Sortables which don't need a MainFrame are used.
+ */
+public class BugSetTest {
+
+    private static final Sortables[] KEYS = { Sortables.CATEGORY, Sortables.BUGCODE, Sortables.TYPE, Sortables.PRIORITY,
+        Sortables.PACKAGE, Sortables.CLASS };
+
+    private static final String[] TYPES = { "NP_NULL_ON_SOME_PATH", "NP_ALWAYS_NULL", "DLS_DEAD_LOCAL_STORE",
+        "UUF_UNUSED_FIELD", "URF_UNREAD_FIELD", "MS_MUTABLE_ARRAY", "MS_SHOULD_BE_FINAL", "SE_BAD_FIELD",
+        "EI_EXPOSE_REP" };
+
+    private final Random random = new Random(42);
+
+    private List<BugLeafNode> bugs;
+
+    /** Suppresses the bugs whose hash code is a multiple of a number */
+    private static class SuppressionMatcher implements Matcher {
+        final int modulus;
+
+        SuppressionMatcher(int modulus) {
+            this.modulus = modulus;
+        }
+
+        @Override
+        public boolean match(BugInstance bugInstance) {
+            return bugInstance.getInstanceHash().hashCode() % modulus == 0;
+        }
+
+        @Override
+        public void writeXML(XMLOutput xmlOutput, boolean disabled) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        bugs = new ArrayList<BugLeafNode>();
+        for (int i = 0; i < 2000; i++) {
+            int classNum = random.nextInt(40);
+            String className = "com.example.p" + (classNum % 7) + ".C" + classNum;
+            BugInstance bug = new BugInstance(TYPES[random.nextInt(TYPES.length)], 1 + random.nextInt(3)).addClass(className)
+                    .addSourceLine(new SourceLineAnnotation(className, "C" + classNum + ".java", i, i, i, i)).addInt(i);
+            bugs.add(new BugLeafNode(bug));
+        }
+    }
+
+    /**
+     * @return a random query, mostly of values some bug has
+     */
+    private BugAspects randomQuery() {
+        BugAspects result = new BugAspects();
+        int length = 1 + random.nextInt(4);
+        for (int i = 0; i < length; i++) {
+            Sortables key = KEYS[random.nextInt(KEYS.length)];
+            String value = random.nextInt(10) == 0 ? "missing" : key.getFrom(bugs.get(random.nextInt(bugs.size())).getBug());
+            result.add(new SortableValue(key, value));
+        }
+        return result;
+    }
+
+    /**
+     * @return the bugs, in order, which match the query and aren't suppressed
+     */
+    private List<BugLeafNode> scan(BugAspects query, Matcher suppression) {
+        List<BugLeafNode> result = new ArrayList<BugLeafNode>();
+        for (BugLeafNode bug : bugs) {
+            boolean matches = suppression == null || !suppression.match(bug.getBug());
+            for (SortableValue sp : query) {
+                matches &= bug.matches(sp);
+            }
+            if (matches) {
+                result.add(bug);
+            }
+        }
+        return result;
+    }
+
+    private static List<BugLeafNode> unfiltered(BugSet set) {
+        List<BugLeafNode> result = new ArrayList<BugLeafNode>();
+        for (int i = 0; i < set.sizeUnfiltered(); i++) {
+            result.add(set.getUnfiltered(i));
+        }
+        return result;
+    }
+
+    private static List<BugLeafNode> filtered(BugSet set) {
+        List<BugLeafNode> result = new ArrayList<BugLeafNode>();
+        for (int i = 0; i < set.size(); i++) {
+            result.add(set.get(i));
+        }
+        return result;
+    }
+
+    @Test
+    public void queriesMatchLinearScan() {
+        BugSet root = new BugSet(bugs);
+        assertEquals(bugs, unfiltered(root));
+        for (int i = 0; i < 300; i++) {
+            BugAspects query = randomQuery();
+            BugSet result = root.query(query);
+            List<BugLeafNode> expected = scan(query, null);
+            assertEquals(query.toString(), expected, unfiltered(result));
+            assertSame(result, root.query(query));
+            for (BugLeafNode bug : bugs) {
+                assertEquals(expected.indexOf(bug), result.indexOfUnfiltered(bug));
+            }
+        }
+    }
+
+    @Test
+    public void filteredViewsMatchLinearScan() {
+        BugSet root = new BugSet(bugs);
+        List<BugAspects> queries = new ArrayList<BugAspects>();
+        queries.add(new BugAspects());
+        for (int i = 0; i < 100; i++) {
+            queries.add(randomQuery());
+        }
+        // The second matcher checks that the cached filtered views of the
+        // sets already queried are recomputed
+        for (int modulus : new int[] { 3, 5 }) {
+            Matcher suppression = new SuppressionMatcher(modulus);
+            root.setSuppressionMatcher(suppression);
+            for (BugAspects query : queries) {
+                checkFilteredView(root.query(query), scan(query, suppression));
+            }
+        }
+    }
+
+    private void checkFilteredView(BugSet set, List<BugLeafNode> expected) {
+        assertEquals(expected, filtered(set));
+        assertEquals(expected.size(), set.size());
+        for (BugLeafNode bug : bugs) {
+            assertEquals(expected.indexOf(bug), set.indexOf(bug));
+        }
+        for (Sortables key : KEYS) {
+            TreeSet<String> values = new TreeSet<String>(new SortableStringComparator(key));
+            for (BugLeafNode bug : expected) {
+                values.add(key.getFrom(bug.getBug()));
+            }
+            assertEquals(key.toString(), new ArrayList<String>(values), Arrays.asList(set.getDistinctValues(key)));
+            for (BugLeafNode bug : bugs) {
+                String value = key.getFrom(bug.getBug());
+                assertEquals(values.contains(value), set.contains(new SortableValue(key, value)));
+            }
+            assertFalse(set.contains(new SortableValue(key, "missing")));
+        }
+    }
+
+    @Test
+    public void bugsMatchingFilterMatchLinearScan() {
+        BugSet root = new BugSet(bugs);
+        for (int i = 0; i < 50; i++) {
+            BugAspects query = randomQuery();
+            Matcher matcher = new SuppressionMatcher(2 + i % 5);
+            BugSet result = root.query(query).getBugsMatchingFilter(matcher);
+            List<BugLeafNode> expected = scan(query, matcher);
+            assertEquals(expected, unfiltered(result));
+            assertEquals(expected.size(), result.sizeUnfiltered());
+        }
+    }
+
+    @Test
+    public void intersect() {
+        for (int i = 0; i < 200; i++) {
+            int[] a = randomIds();
+            int[] b = randomIds();
+            List<Integer> expected = new ArrayList<Integer>();
+            for (int id : a) {
+                if (Arrays.binarySearch(b, id) >= 0) {
+                    expected.add(id);
+                }
+            }
+            int[] actual = BugSet.intersect(a, b);
+            assertEquals(expected.size(), actual.length);
+            for (int j = 0; j < actual.length; j++) {
+                assertEquals(expected.get(j).intValue(), actual[j]);
+            }
+        }
+    }
+
+    /**
+     * @return distinct ids in increasing order
+     */
+    private int[] randomIds() {
+        int[] result = new int[random.nextInt(50)];
+        int id = -1;
+        for (int i = 0; i < result.length; i++) {
+            id += 1 + random.nextInt(5);
+            result[i] = id;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.util;
+
+import junit.framework.TestCase;
+
+public class ConcurrentMapCacheTest extends TestCase {
+
+    static final ConcurrentMapCache.Weigher<Integer, String> LENGTH = new ConcurrentMapCache.Weigher<Integer, String>() {
+        @Override
+        public int weigh(Integer key, String value) {
+            return value.length();
+        }
+    };
+
+    public void testBoundedByCount() {
+        ConcurrentMapCache<Integer, Integer> cache = new ConcurrentMapCache<Integer, Integer>(10);
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, i);
+        }
+        assertEquals(10, cache.size());
+        assertEquals(90, cache.getEvictionCount());
+        assertEquals(Integer.valueOf(99), cache.get(99));
+    }
+
+    public void testUnbounded() {
+        ConcurrentMapCache<Integer, Integer> cache = new ConcurrentMapCache<Integer, Integer>();
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, i);
+        }
+        assertEquals(1000, cache.size());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    public void testSharedBudget() {
+        ConcurrentMapCache.Budget budget = new ConcurrentMapCache.Budget(100);
+        ConcurrentMapCache<Integer, String> a = new ConcurrentMapCache<Integer, String>(budget, LENGTH);
+        ConcurrentMapCache<Integer, String> b = new ConcurrentMapCache<Integer, String>(budget, LENGTH);
+        for (int i = 0; i < 50; i++) {
+            a.put(i, "0123456789");
+            b.put(i, "01234");
+        }
+        assertTrue(budget.getWeight() <= 100);
+        assertEquals(budget.getWeight(), a.getWeight() + b.getWeight());
+        assertEquals(10 * a.size(), a.getWeight());
+        assertEquals(5 * b.size(), b.getWeight());
+    }
+
+    public void testClearReleasesBudget() {
+        ConcurrentMapCache.Budget budget = new ConcurrentMapCache.Budget(100);
+        ConcurrentMapCache<Integer, String> a = new ConcurrentMapCache<Integer, String>(budget, LENGTH);
+        ConcurrentMapCache<Integer, String> b = new ConcurrentMapCache<Integer, String>(budget, LENGTH);
+        for (int i = 0; i < 10; i++) {
+            a.put(i, "0123456789");
+        }
+        a.clear();
+        assertEquals(0, a.size());
+        assertEquals(0, budget.getWeight());
+        for (int i = 0; i < 20; i++) {
+            b.put(i, "01234");
+        }
+        assertEquals(20, b.size());
+        assertEquals(0, b.getEvictionCount());
+        assertEquals(100, budget.getWeight());
+    }
+
+    public void testFrequentlyUsedEntriesSurvive() {
+        ConcurrentMapCache<Integer, Integer> cache = new ConcurrentMapCache<Integer, Integer>(20);
+        for (int i = 0; i < 5; i++) {
+            cache.put(i, i);
+        }
+        for (int i = 5; i < 1000; i++) {
+            for (int j = 0; j < 5; j++) {
+                assertEquals(Integer.valueOf(j), cache.get(j));
+            }
+            cache.put(i, i);
+        }
+        assertEquals(5 * 995, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    public void testReplaceReweighs() {
+        ConcurrentMapCache.Budget budget = new ConcurrentMapCache.Budget(100);
+        ConcurrentMapCache<Integer, String> cache = new ConcurrentMapCache<Integer, String>(budget, LENGTH);
+        String pending = "-";
+        assertNull(cache.putIfAbsent(1, pending));
+        assertEquals(1, cache.getWeight());
+        assertTrue(cache.replace(1, pending, "0123456789"));
+        assertEquals(10, cache.getWeight());
+        assertFalse(cache.replace(1, pending, "01"));
+        assertTrue(cache.remove(1, cache.get(1)));
+        assertEquals(0, cache.getWeight());
+        assertEquals(0, budget.getWeight());
+    }
+
+    public void testPinnedEntriesAreNotEvicted() {
+        ConcurrentMapCache.Budget budget = new ConcurrentMapCache.Budget(10);
+        ConcurrentMapCache<Integer, String> cache = new ConcurrentMapCache<Integer, String>(budget, LENGTH);
+        String pending = "-";
+        assertNull(cache.putIfAbsentPinned(-1, pending));
+        assertEquals(0, budget.getWeight());
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, "0");
+        }
+        assertSame(pending, cache.peek(-1));
+        assertEquals(pending, cache.putIfAbsent(-1, "x"));
+        assertEquals(cache.size() - 1, cache.getWeight());
+
+        // Once replaced, the entry counts against the budget as usual
+        assertTrue(cache.replace(-1, pending, "0"));
+        assertEquals(cache.size(), cache.getWeight());
+        assertTrue(budget.getWeight() <= 10);
+    }
+}
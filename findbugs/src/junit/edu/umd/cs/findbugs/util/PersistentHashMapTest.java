@@ -0,0 +1,142 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.util;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class PersistentHashMapTest extends TestCase {
+
+    /** Key with a given hash code, to exercise collision nodes */
+    static final class Key {
+        final int id;
+
+        final int hash;
+
+        Key(int id) {
+            this(id, id % 7);
+        }
+
+        Key(int id, int hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).id == id;
+        }
+    }
+
+    public void testMatchesHashMap() {
+        Random r = new Random(42);
+        PersistentHashMap<Integer, Integer> map = PersistentHashMap.empty();
+        HashMap<Integer, Integer> expected = new HashMap<Integer, Integer>();
+        for (int i = 0; i < 20000; i++) {
+            Integer key = r.nextInt(2000) - 1000;
+            if (r.nextInt(3) == 0) {
+                map = map.minus(key);
+                expected.remove(key);
+            } else {
+                map = map.plus(key, i);
+                expected.put(key, i);
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        assertEquals(expected, map);
+        assertEquals(map, expected);
+        assertEquals(expected.hashCode(), map.hashCode());
+    }
+
+    public void testFullRangeHashCodes() {
+        Random r = new Random(17);
+        Key[] keys = new Key[200];
+        for (int i = 0; i < keys.length; i++) {
+            // Half of the keys differ from an earlier one only in a single bit
+            keys[i] = new Key(i, i > 0 && r.nextBoolean() ? keys[r.nextInt(i)].hash ^ (1 << r.nextInt(32)) : r.nextInt());
+        }
+        PersistentHashMap<Key, Integer> map = PersistentHashMap.empty();
+        HashMap<Key, Integer> expected = new HashMap<Key, Integer>();
+        for (int i = 0; i < 5000; i++) {
+            Key key = keys[r.nextInt(keys.length)];
+            if (r.nextInt(3) == 0) {
+                map = map.minus(key);
+                expected.remove(key);
+            } else {
+                map = map.plus(key, i);
+                expected.put(key, i);
+            }
+            for (Key k : keys) {
+                assertEquals(expected.get(k), map.get(k));
+            }
+        }
+        assertEquals(expected, map);
+    }
+
+    public void testCollisions() {
+        PersistentHashMap<Key, Integer> map = PersistentHashMap.empty();
+        for (int i = 0; i < 100; i++) {
+            map = map.plus(new Key(i), i);
+        }
+        assertEquals(100, map.size());
+        for (int i = 0; i < 100; i += 2) {
+            map = map.minus(new Key(i));
+        }
+        assertEquals(50, map.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i % 2 == 0 ? null : Integer.valueOf(i), map.get(new Key(i)));
+        }
+        for (int i = 1; i < 100; i += 2) {
+            map = map.minus(new Key(i));
+        }
+        assertTrue(map.isEmpty());
+        assertFalse(map.entrySet().iterator().hasNext());
+    }
+
+    public void testOldVersionsUnchanged() {
+        PersistentHashMap<String, Integer> empty = PersistentHashMap.empty();
+        PersistentHashMap<String, Integer> one = empty.plus("a", 1);
+        PersistentHashMap<String, Integer> two = one.plus("b", 2);
+        PersistentHashMap<String, Integer> changed = two.plus("a", 3);
+        PersistentHashMap<String, Integer> removed = changed.minus("b");
+        assertTrue(empty.isEmpty());
+        assertEquals(1, one.size());
+        assertEquals(Integer.valueOf(1), two.get("a"));
+        assertEquals(Integer.valueOf(3), changed.get("a"));
+        assertEquals(Integer.valueOf(2), changed.get("b"));
+        assertEquals(1, removed.size());
+        assertFalse(removed.containsKey("b"));
+    }
+
+    public void testUnchangedMapIsShared() {
+        Integer value = Integer.valueOf(1000);
+        PersistentHashMap<String, Integer> map = PersistentHashMap.<String, Integer> empty().plus("a", value);
+        assertSame(map, map.plus("a", value));
+        assertSame(map, map.minus("b"));
+        assertSame(map, PersistentHashMap.<String, Integer> empty().plusAll(map));
+    }
+}
@@ -0,0 +1,389 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.workflow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.LocalVariableAnnotation;
+import edu.umd.cs.findbugs.MatchKeyComparator;
+import edu.umd.cs.findbugs.SloppyBugComparator;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import edu.umd.cs.findbugs.SourceLineAnnotation;
+import edu.umd.cs.findbugs.VersionInsensitiveBugComparator;
+import edu.umd.cs.findbugs.model.MovedClassMap;
+
+/**
+ * Checks that the hashed lookups Update uses to match bugs between versions
+ * find the same pairs of bugs as looking them up in a TreeMap sorted by the
+ * comparator of each matching round.
+ * <p>
+ * VersionInsensitiveBugComparator lets unnamed local variables match any
+ * local variable, so it doesn't order BugInstances with them consistently;
+ * which pairs a TreeMap finds then depends on the shape of the tree. Only the
+ * BugInstances of testUnnamedLocalsMatchEqualPairs have unnamed local
+ * variables.
+ */
+public class UpdateMatchTest extends TestCase {
+
+    /** Types with the same abbrev are next to each other */
+    private static final String[] TYPES = { "NP_NULL_ON_SOME_PATH", "NP_ALWAYS_NULL", "NP_NULL_PARAM_DEREF",
+        "DLS_DEAD_LOCAL_STORE", "UUF_UNUSED_FIELD", "URF_UNREAD_FIELD", "MS_MUTABLE_ARRAY", "MS_SHOULD_BE_FINAL" };
+
+    private static final int NUM_CLASSES = 12;
+
+    /** What a generated BugInstance is made of */
+    private static class Spec implements Cloneable {
+        int type;
+
+        int priority;
+
+        int classNum;
+
+        /** Negative if there is no method */
+        int method;
+
+        int field;
+
+        int line;
+
+        String local;
+
+        String string;
+
+        int value;
+
+        @Override
+        protected Spec clone() {
+            try {
+                return (Spec) super.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    private final Random random = new Random(4711);
+
+    /** Whether generated BugInstances may have unnamed local variables */
+    private boolean unnamedLocals;
+
+    private SortedBugCollection origCollection;
+
+    private SortedBugCollection newCollection;
+
+    /** Classes whose number is a multiple of this move in the new version */
+    private static final int MOVED = 4;
+
+    private static String getClassName(int classNum, boolean newVersion) {
+        String packageName = newVersion && classNum % MOVED == 0 ? "com.example.moved.p" : "com.example.p";
+        return packageName + (classNum % 3) + ".C" + classNum;
+    }
+
+    private static BugInstance createBugInstance(Spec spec, boolean newVersion) {
+        String className = getClassName(spec.classNum, newVersion);
+        BugInstance bug = new BugInstance(TYPES[spec.type], spec.priority).addClass(className);
+        if (spec.method >= 0) {
+            bug.addMethod(className, "m" + spec.method, "(I)V", false);
+        }
+        bug.addField(className, "f" + spec.field, "I", false);
+        bug.addSourceLine(new SourceLineAnnotation(className, "C" + spec.classNum + ".java", spec.line, spec.line,
+                spec.line * 3, spec.line * 3));
+        bug.add(new LocalVariableAnnotation(spec.local, 1, spec.line * 3));
+        bug.addString(spec.string).addInt(spec.value);
+        return bug;
+    }
+
+    private Spec randomSpec() {
+        Spec spec = new Spec();
+        spec.type = random.nextInt(TYPES.length);
+        spec.priority = 1 + random.nextInt(3);
+        spec.classNum = random.nextInt(NUM_CLASSES);
+        spec.method = random.nextInt(4) - 1;
+        spec.field = random.nextInt(3);
+        spec.line = 10 + random.nextInt(100);
+        spec.local = unnamedLocals && random.nextBoolean() ? "?" : "x" + random.nextInt(2);
+        spec.string = "s" + random.nextInt(2);
+        spec.value = random.nextInt(2);
+        return spec;
+    }
+
+    /**
+     * The same bug in the new version, with some of what the comparators
+     * look at changed.
+     */
+    private Spec mutate(Spec spec) {
+        Spec result = spec.clone();
+        if (random.nextInt(4) == 0) {
+            result.priority = 1 + random.nextInt(3);
+        }
+        if (random.nextInt(4) == 0) {
+            // Another type with the same abbrev, if any
+            String abbrev = TYPES[spec.type].substring(0, TYPES[spec.type].indexOf('_'));
+            int type = random.nextInt(TYPES.length);
+            if (TYPES[type].startsWith(abbrev + "_")) {
+                result.type = type;
+            }
+        }
+        if (random.nextBoolean()) {
+            result.line += random.nextInt(20) - 10;
+        }
+        if (random.nextInt(4) == 0) {
+            result.local = "y";
+        }
+        if (random.nextInt(4) == 0) {
+            result.string = "t";
+        }
+        if (random.nextInt(4) == 0) {
+            result.value++;
+        }
+        if (random.nextInt(6) == 0) {
+            result.method = random.nextInt(4) - 1;
+        }
+        if (random.nextInt(6) == 0) {
+            result.field = random.nextInt(3);
+        }
+        return result;
+    }
+
+    private void createCollections() {
+        origCollection = new SortedBugCollection();
+        newCollection = new SortedBugCollection();
+        for (int i = 0; i < 300; i++) {
+            Spec spec = randomSpec();
+            origCollection.add(createBugInstance(spec, false), false);
+            switch (random.nextInt(4)) {
+            case 0:
+                // Fixed
+                break;
+            case 1:
+                newCollection.add(createBugInstance(spec, true), false);
+                break;
+            default:
+                newCollection.add(createBugInstance(mutate(spec), true), false);
+                break;
+            }
+            if (random.nextInt(4) == 0) {
+                // Introduced
+                newCollection.add(createBugInstance(randomSpec(), true), false);
+            }
+        }
+    }
+
+    /**
+     * @return the comparators of the matching rounds, in the order Update uses
+     *         them
+     */
+    private List<MatchKeyComparator> getComparators() {
+        List<MatchKeyComparator> result = new ArrayList<MatchKeyComparator>();
+        result.add(SortedBugCollection.BugInstanceComparator.instance);
+        result.add(new VersionInsensitiveBugComparator());
+        VersionInsensitiveBugComparator priorities = new VersionInsensitiveBugComparator();
+        priorities.setComparePriorities(true);
+        result.add(priorities);
+        VersionInsensitiveBugComparator fuzzy = new VersionInsensitiveBugComparator();
+        fuzzy.setExactBugPatternMatch(false);
+        result.add(fuzzy);
+
+        MovedClassMap movedClassMap = new MovedClassMap(origCollection, newCollection).execute();
+        assertFalse(movedClassMap.isEmpty());
+        VersionInsensitiveBugComparator moved = new VersionInsensitiveBugComparator();
+        moved.setClassNameRewriter(movedClassMap);
+        result.add(moved);
+        VersionInsensitiveBugComparator movedPriorities = new VersionInsensitiveBugComparator();
+        movedPriorities.setClassNameRewriter(movedClassMap);
+        movedPriorities.setComparePriorities(true);
+        result.add(movedPriorities);
+        VersionInsensitiveBugComparator movedFuzzy = new VersionInsensitiveBugComparator();
+        movedFuzzy.setClassNameRewriter(movedClassMap);
+        movedFuzzy.setExactBugPatternMatch(false);
+        result.add(movedFuzzy);
+
+        result.add(new SloppyBugComparator());
+        SloppyBugComparator movedSloppy = new SloppyBugComparator();
+        movedSloppy.setClassNameRewriter(movedClassMap);
+        result.add(movedSloppy);
+        return result;
+    }
+
+    /**
+     * Match the bugs of the new collection with those of the original
+     * collection in the given rounds, as Update does.
+     *
+     * @param useIndex
+     *            true to look up old bugs with Update.MatchIndex, false to
+     *            look them up in a TreeMap
+     * @return map from new bugs to the old bugs they matched
+     */
+    private Map<BugInstance, BugInstance> match(List<MatchKeyComparator> comparators, boolean useIndex) {
+        Map<BugInstance, BugInstance> result = new IdentityHashMap<BugInstance, BugInstance>();
+        Map<BugInstance, Void> matchedOldBugs = new IdentityHashMap<BugInstance, Void>();
+        for (MatchKeyComparator comparator : comparators) {
+            TreeMap<BugInstance, LinkedList<BugInstance>> set = new TreeMap<BugInstance, LinkedList<BugInstance>>(comparator);
+            Update.MatchIndex index = new Update.MatchIndex(comparator);
+            for (BugInstance bug : origCollection.getCollection()) {
+                if (matchedOldBugs.containsKey(bug)) {
+                    continue;
+                }
+                if (useIndex) {
+                    index.add(bug);
+                } else {
+                    LinkedList<BugInstance> q = set.get(bug);
+                    if (q == null) {
+                        q = new LinkedList<BugInstance>();
+                        set.put(bug, q);
+                    }
+                    q.add(bug);
+                }
+            }
+            for (BugInstance bug : newCollection.getCollection()) {
+                if (result.containsKey(bug)) {
+                    continue;
+                }
+                LinkedList<BugInstance> q = useIndex ? index.get(bug) : set.get(bug);
+                if (q == null) {
+                    continue;
+                }
+                BugInstance matchedBug = q.removeFirst();
+                result.put(bug, matchedBug);
+                matchedOldBugs.put(matchedBug, null);
+                if (q.isEmpty()) {
+                    if (useIndex) {
+                        index.remove(bug);
+                    } else {
+                        set.remove(bug);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private void checkSameMatches(List<MatchKeyComparator> comparators) {
+        Map<BugInstance, BugInstance> expected = match(comparators, false);
+        Map<BugInstance, BugInstance> actual = match(comparators, true);
+        assertEquals(expected.size(), actual.size());
+        for (Map.Entry<BugInstance, BugInstance> e : expected.entrySet()) {
+            assertSame(e.getKey().toString(), e.getValue(), actual.get(e.getKey()));
+        }
+    }
+
+    /**
+     * @return the number of new bugs matched with a bug of a moved class
+     */
+    private static int countMoved(Map<BugInstance, BugInstance> matches) {
+        int count = 0;
+        for (BugInstance bug : matches.keySet()) {
+            if (bug.getPrimaryClass().getClassName().startsWith("com.example.moved.")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public void testKeysConsistentWithComparators() {
+        checkKeysConsistentWithComparators();
+        unnamedLocals = true;
+        checkKeysConsistentWithComparators();
+    }
+
+    private void checkKeysConsistentWithComparators() {
+        createCollections();
+        List<BugInstance> bugs = new ArrayList<BugInstance>(origCollection.getCollection());
+        bugs.addAll(newCollection.getCollection());
+        for (MatchKeyComparator comparator : getComparators()) {
+            int numEqual = 0;
+            for (BugInstance lhs : bugs) {
+                Object key = comparator.getMatchKey(lhs);
+                for (BugInstance rhs : bugs) {
+                    if (lhs != rhs && comparator.compare(lhs, rhs) == 0) {
+                        assertEquals(lhs + " and " + rhs, key, comparator.getMatchKey(rhs));
+                        numEqual++;
+                    }
+                }
+            }
+            assertTrue(numEqual > 0);
+        }
+    }
+
+    public void testEachRoundMatchesSamePairs() {
+        createCollections();
+        for (MatchKeyComparator comparator : getComparators()) {
+            checkSameMatches(Collections.singletonList(comparator));
+        }
+    }
+
+    public void testAllRoundsMatchSamePairs() {
+        createCollections();
+        checkSameMatches(getComparators());
+    }
+
+    public void testUnnamedLocalsMatchEqualPairs() {
+        unnamedLocals = true;
+        createCollections();
+        List<MatchKeyComparator> comparators = getComparators();
+        for (MatchKeyComparator comparator : comparators) {
+            checkEqualPairs(comparator, match(Collections.singletonList(comparator), true));
+        }
+        Map<BugInstance, BugInstance> matches = match(comparators, true);
+        assertEquals(matches.size(), invert(matches).size());
+    }
+
+    private static void checkEqualPairs(MatchKeyComparator comparator, Map<BugInstance, BugInstance> matches) {
+        assertFalse(matches.isEmpty());
+        for (Map.Entry<BugInstance, BugInstance> e : matches.entrySet()) {
+            assertEquals(0, comparator.compare(e.getKey(), e.getValue()));
+        }
+        // No old bug is matched twice
+        assertEquals(matches.size(), invert(matches).size());
+    }
+
+    private static Map<BugInstance, BugInstance> invert(Map<BugInstance, BugInstance> map) {
+        Map<BugInstance, BugInstance> result = new IdentityHashMap<BugInstance, BugInstance>();
+        for (Map.Entry<BugInstance, BugInstance> e : map.entrySet()) {
+            result.put(e.getValue(), e.getKey());
+        }
+        return result;
+    }
+
+    public void testMovedAndSloppyMatches() {
+        createCollections();
+        List<MatchKeyComparator> comparators = getComparators();
+        // Version insensitive, sloppy and their moved class variants
+        Map<BugInstance, BugInstance> insensitive = match(comparators.subList(1, 2), true);
+        Map<BugInstance, BugInstance> moved = match(comparators.subList(4, 5), true);
+        Map<BugInstance, BugInstance> sloppy = match(comparators.subList(7, 8), true);
+        Map<BugInstance, BugInstance> movedSloppy = match(comparators.subList(8, 9), true);
+
+        assertEquals(0, countMoved(insensitive));
+        assertTrue(countMoved(moved) > 0);
+        assertEquals(0, countMoved(sloppy));
+        assertTrue(countMoved(movedSloppy) > countMoved(moved));
+        assertTrue(sloppy.size() > insensitive.size());
+    }
+}
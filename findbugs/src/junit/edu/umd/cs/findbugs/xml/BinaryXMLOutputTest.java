@@ -0,0 +1,137 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+import org.xml.sax.helpers.DefaultHandler;
+
+import edu.umd.cs.findbugs.SortedBugCollection;
+
+public class BinaryXMLOutputTest extends TestCase {
+
+    private static final String XML = "<BugCollection version='3.0.1' sequence='0' timestamp='1280333223462' analysisTimestamp='1280333224881' release=''>"
+            + "  <Project projectName='test'><Jar>/tmp/test.jar</Jar></Project>"
+            + "  <BugInstance type='MS_MUTABLE_ARRAY' priority='1' abbrev='MS' category='MALICIOUS_CODE' instanceHash='1acc5c5b9b7ab9efacede805afe1e53a' instanceOccurrenceNum='0' instanceOccurrenceMax='0' rank='16'>"
+            + "    <Class classname='org.apache.bcel.Constants' primary='true'>"
+            + "      <SourceLine classname='org.apache.bcel.Constants' start='210' end='1443' sourcefile='Constants.java' sourcepath='org/apache/bcel/Constants.java'/>"
+            + "    </Class>"
+            + "    <Field classname='org.apache.bcel.Constants' name='ACCESS_NAMES' signature='[Ljava/lang/String;' isStatic='true' primary='true'>"
+            + "      <SourceLine classname='org.apache.bcel.Constants' sourcefile='Constants.java' sourcepath='org/apache/bcel/Constants.java'/>"
+            + "    </Field>"
+            + "    <SourceLine classname='org.apache.bcel.Constants' primary='true' start='210' end='210' startBytecode='89' endBytecode='89' sourcefile='Constants.java' sourcepath='org/apache/bcel/Constants.java'/>"
+            + "    <Int value='-1' role='INT_VALUE'/>"
+            + "    <String value='007' role='STRING_CONSTANT'/>"
+            + "  </BugInstance>"
+            + "  <Errors errors='1' missingClasses='1'>"
+            + "    <Error><ErrorMessage>Something &lt;bad&gt; happened</ErrorMessage></Error>"
+            + "    <MissingClass>org.example.Missing</MissingClass>"
+            + "  </Errors>"
+            + "</BugCollection>";
+
+    public void testRoundTrip() throws Exception {
+        SortedBugCollection original = new SortedBugCollection();
+        original.readXML(new StringReader(XML));
+
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        original.writeBinaryXML(binary);
+        SortedBugCollection copy = new SortedBugCollection();
+        copy.readXML(new ByteArrayInputStream(binary.toByteArray()));
+
+        assertEquals(toXML(original), toXML(copy));
+        assertEquals(1, copy.getCollection().size());
+        assertEquals(1, copy.getErrors().size());
+        ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        original.writeXML(xml);
+        assertTrue(binary.size() < xml.size());
+    }
+
+    private static String toXML(SortedBugCollection bugCollection) throws Exception {
+        StringWriter out = new StringWriter();
+        bugCollection.writeXML(out);
+        // Timings and profiles differ between the two loads
+        return out.toString().replaceAll("(?s)<FindBugsSummary.*</FindBugsSummary>", "");
+    }
+
+    public void testIsNumber() {
+        assertTrue(BinaryXMLOutput.isNumber("0"));
+        assertTrue(BinaryXMLOutput.isNumber("210"));
+        assertTrue(BinaryXMLOutput.isNumber("-1"));
+        assertTrue(BinaryXMLOutput.isNumber("1280333223462"));
+        assertFalse(BinaryXMLOutput.isNumber(""));
+        assertFalse(BinaryXMLOutput.isNumber("-"));
+        assertFalse(BinaryXMLOutput.isNumber("-0"));
+        assertFalse(BinaryXMLOutput.isNumber("007"));
+        assertFalse(BinaryXMLOutput.isNumber("1e3"));
+        assertFalse(BinaryXMLOutput.isNumber("12345678901234567890"));
+    }
+
+    /**
+     * @return the start of a document whose first element name is a new
+     *         string of the given length, encoded as a varint, followed by
+     *         the given number of bytes of the string
+     */
+    private static byte[] documentWithStringLength(long length, int numBytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(BinaryXMLOutput.MAGIC, 0, BinaryXMLOutput.MAGIC.length);
+        out.write(BinaryXMLOutput.VERSION);
+        out.write(BinaryXMLOutput.START_ELEMENT);
+        out.write(BinaryXMLOutput.NEW_STRING);
+        do {
+            int b = (int) (length & 0x7f);
+            length >>>= 7;
+            out.write(length != 0 ? b | 0x80 : b);
+        } while (length != 0);
+        for (int i = 0; i < numBytes; i++) {
+            out.write('a');
+        }
+        return out.toByteArray();
+    }
+
+    private static void checkCorrupt(byte[] document) throws Exception {
+        try {
+            new BinaryXMLReader(new ByteArrayInputStream(document)).parse(new DefaultHandler());
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    public void testCorruptStringLength() throws Exception {
+        // Negative
+        checkCorrupt(documentWithStringLength(-1L, 10));
+        checkCorrupt(documentWithStringLength(Long.MIN_VALUE, 10));
+        // Too long to be a string, or negative when truncated to an int
+        checkCorrupt(documentWithStringLength(BinaryXMLReader.MAX_STRING_LENGTH + 1L, 10));
+        checkCorrupt(documentWithStringLength(0x100000001L, 10));
+        checkCorrupt(documentWithStringLength(0xffffffffL, 10));
+        // Longer than the rest of the document
+        checkCorrupt(documentWithStringLength(BinaryXMLReader.MAX_STRING_LENGTH, 10));
+        checkCorrupt(documentWithStringLength(20000, 10000));
+        checkCorrupt(documentWithStringLength(11, 10));
+        checkCorrupt(documentWithStringLength(1, 0));
+    }
+}
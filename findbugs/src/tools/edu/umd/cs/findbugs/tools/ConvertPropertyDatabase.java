@@ -0,0 +1,87 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs.tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import edu.umd.cs.findbugs.ba.interproc.BinaryPropertyTable;
+import edu.umd.cs.findbugs.ba.interproc.PropertyDatabaseFormatException;
+import edu.umd.cs.findbugs.charsets.UTF8;
+import edu.umd.cs.findbugs.util.Util;
+
+/**
+ * Convert property databases (.db files) between the text and the binary
+ * format, in place. Files already in the requested format are left alone.
+ * The build uses this to ship the bundled databases in the binary format.
+ */
+public class ConvertPropertyDatabase {
+
+    public static void main(String[] args) throws IOException, PropertyDatabaseFormatException {
+        boolean toText = args.length > 0 && "-text".equals(args[0]);
+        if (args.length == (toText ? 1 : 0)) {
+            System.err.println("Usage: " + ConvertPropertyDatabase.class.getName() + " [-text] <db file>...");
+            System.exit(1);
+        }
+        for (int i = toText ? 1 : 0; i < args.length; i++) {
+            File file = new File(args[i]);
+            if (BinaryPropertyTable.isBinary(file) != toText) {
+                continue;
+            }
+            if (toText) {
+                StringWriter text = new StringWriter();
+                BinaryPropertyTable.read(new FileInputStream(file)).writeText(text);
+                Writer writer = UTF8.fileWriter(file.getPath());
+                try {
+                    writer.write(text.toString());
+                } finally {
+                    writer.close();
+                }
+            } else {
+                BinaryPropertyTable.Builder builder = new BinaryPropertyTable.Builder();
+                BufferedReader reader = BinaryPropertyTable.getTextReader(new FileInputStream(file));
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        line = line.trim();
+                        if (line.length() > 0) {
+                            builder.addTextLine(line);
+                        }
+                    }
+                } finally {
+                    Util.closeSilently(reader);
+                }
+                OutputStream out = new FileOutputStream(file);
+                try {
+                    builder.write(out);
+                } finally {
+                    out.close();
+                }
+            }
+        }
+    }
+}
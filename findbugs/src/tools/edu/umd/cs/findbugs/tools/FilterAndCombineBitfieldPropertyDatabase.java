@@ -16,6 +16,7 @@ import javax.annotation.WillClose;
 
 import org.apache.bcel.Constants;
 
+import edu.umd.cs.findbugs.ba.interproc.BinaryPropertyTable;
 import edu.umd.cs.findbugs.internalAnnotations.DottedClassName;
 import edu.umd.cs.findbugs.util.Util;
 
@@ -40,7 +41,8 @@ import edu.umd.cs.findbugs.util.Util;
 
 /**
  * Filter a property database, only passing through the annotations on public or
- * protected methods
+ * protected methods. The input can be in the text or the binary format; the
+ * output is in the text format.
  */
 public class FilterAndCombineBitfieldPropertyDatabase {
 
@@ -107,7 +109,7 @@ public class FilterAndCombineBitfieldPropertyDatabase {
      */
     private static void process(@WillClose InputStream inSource, Map<String, Integer> properties, Map<String, Integer> accessFlags)
             throws UnsupportedEncodingException, IOException {
-        BufferedReader in = new BufferedReader(Util.getReader(inSource));
+        BufferedReader in = BinaryPropertyTable.getTextReader(inSource);
         Pattern p = Pattern.compile("^(([^,]+),.+),([0-9]+)\\|([0-9]+)$");
         try {
             while (true) {
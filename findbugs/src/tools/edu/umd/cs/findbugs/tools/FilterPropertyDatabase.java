@@ -12,6 +12,7 @@ import javax.annotation.WillClose;
 
 import org.apache.bcel.Constants;
 
+import edu.umd.cs.findbugs.ba.interproc.BinaryPropertyTable;
 import edu.umd.cs.findbugs.tools.FilterAndCombineBitfieldPropertyDatabase.Status;
 import edu.umd.cs.findbugs.util.Util;
 
@@ -36,7 +37,8 @@ import edu.umd.cs.findbugs.util.Util;
 
 /**
  * Filter a property database, only passing through the annotations on public or
- * protected methods
+ * protected methods. The input can be in the text or the binary format; the
+ * output is in the text format.
  */
 public class FilterPropertyDatabase {
 
@@ -63,7 +65,7 @@ public class FilterPropertyDatabase {
     private static void process(@WillClose InputStream inSource) throws UnsupportedEncodingException, IOException {
         BufferedReader in = null;
         try {
-            in = new BufferedReader(Util.getReader(inSource));
+            in = BinaryPropertyTable.getTextReader(inSource);
 
             Pattern p = Pattern.compile("^(([^,]+),.+),([0-9]+)\\|(.+)$");
 
@@ -0,0 +1,228 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.BugPattern;
+import edu.umd.cs.findbugs.DetectorFactoryCollection;
+import edu.umd.cs.findbugs.FindBugs;
+import edu.umd.cs.findbugs.FindBugs2;
+import edu.umd.cs.findbugs.NoOpFindBugsProgress;
+import edu.umd.cs.findbugs.PrintingBugReporter;
+import edu.umd.cs.findbugs.Priorities;
+import edu.umd.cs.findbugs.Project;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import edu.umd.cs.findbugs.SystemProperties;
+import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.ba.CFG;
+import edu.umd.cs.findbugs.ba.npe.IsNullValueDataflow;
+import edu.umd.cs.findbugs.ba.type.TypeDataflow;
+import edu.umd.cs.findbugs.ba.vna.ValueNumberDataflow;
+import edu.umd.cs.findbugs.bcel.BCELUtil;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.IClassFactory;
+import edu.umd.cs.findbugs.classfile.IClassPath;
+import edu.umd.cs.findbugs.classfile.IClassPathBuilder;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+import edu.umd.cs.findbugs.classfile.impl.ClassFactory;
+import edu.umd.cs.findbugs.config.AnalysisFeatureSetting;
+
+/**
+ * Sets up an analysis cache and AnalysisContext over a fixed set of classes,
+ * the way FindBugs2 does before running detectors, so that benchmarks can call
+ * the analysis engine directly.
+ * <p>
+ * The classes come from the directory or jar named by the
+ * <code>findbugs.benchmark.classes</code> system property, by default the
+ * compiled findbugsTestCases. <code>findbugs.benchmark.auxclasspath</code> gives
+ * the auxiliary classpath. The first <code>findbugs.benchmark.maxClasses</code>
+ * classes in name order are used, so runs on different commits or JVMs analyze
+ * the same code.
+ * <p>
+ * The cache and context are thread-local, so a fixture must be created on the
+ * thread that uses it, or installed there with {@link #install()}.
+ */
+public class AnalysisFixture {
+
+    public static final String CLASSES = SystemProperties.getProperty("findbugs.benchmark.classes",
+            "../findbugsTestCases/build/classes");
+
+    public static final String AUX_CLASSPATH = SystemProperties.getProperty("findbugs.benchmark.auxclasspath", "");
+
+    public static final int MAX_CLASSES = SystemProperties.getInt("findbugs.benchmark.maxClasses", 250);
+
+    private final IAnalysisCache analysisCache;
+
+    private final AnalysisContext analysisContext;
+
+    private final List<ClassDescriptor> classes;
+
+    private final List<MethodDescriptor> methods = new ArrayList<MethodDescriptor>();
+
+    public AnalysisFixture() throws IOException, InterruptedException, CheckedAnalysisException {
+        if (!new File(CLASSES).exists()) {
+            throw new IOException("Benchmark classes " + CLASSES
+                    + " not found: build findbugsTestCases or set findbugs.benchmark.classes");
+        }
+        DetectorFactoryCollection detectorFactoryCollection = DetectorFactoryCollection.instance();
+        PrintingBugReporter bugReporter = new PrintingBugReporter();
+        IClassFactory classFactory = ClassFactory.instance();
+        IClassPath classPath = classFactory.createClassPath();
+
+        analysisCache = classFactory.createAnalysisCache(classPath, bugReporter);
+        FindBugs2.registerBuiltInAnalysisEngines(analysisCache);
+        FindBugs2.registerPluginAnalysisEngines(detectorFactoryCollection, analysisCache);
+        analysisCache.eagerlyPutDatabase(DetectorFactoryCollection.class, detectorFactoryCollection);
+        Global.setAnalysisCacheForCurrentThread(analysisCache);
+
+        Project project = new Project();
+        project.addFile(CLASSES);
+        IClassPathBuilder builder = classFactory.createClassPathBuilder(bugReporter);
+        builder.addCodeBase(classFactory.createFilesystemCodeBaseLocator(CLASSES), true);
+        for (String path : AUX_CLASSPATH.split(File.pathSeparator)) {
+            if (path.length() > 0) {
+                project.addAuxClasspathEntry(path);
+                builder.addCodeBase(classFactory.createFilesystemCodeBaseLocator(path), false);
+            }
+        }
+
+        FindBugs2.createAnalysisContext(project, Collections.<ClassDescriptor> emptyList(), null);
+        analysisContext = AnalysisContext.currentAnalysisContext();
+        builder.build(classPath, new NoOpFindBugsProgress());
+
+        List<ClassDescriptor> appClasses = new ArrayList<ClassDescriptor>(builder.getAppClassList());
+        Collections.sort(appClasses);
+        classes = Collections.unmodifiableList(new ArrayList<ClassDescriptor>(appClasses.subList(0,
+                Math.min(MAX_CLASSES, appClasses.size()))));
+        FindBugs2.setAppClassList(appClasses);
+        for (AnalysisFeatureSetting setting : FindBugs.DEFAULT_EFFORT) {
+            setting.configure(analysisContext);
+        }
+
+        // Keep the methods all the benchmarked analyses succeed on, and
+        // leave their results in the cache as a full run would
+        for (ClassDescriptor classDescriptor : classes) {
+            JavaClass javaClass = analysisCache.getClassAnalysis(JavaClass.class, classDescriptor);
+            for (Method method : javaClass.getMethods()) {
+                if (method.getCode() == null) {
+                    continue;
+                }
+                MethodDescriptor methodDescriptor = BCELUtil.getMethodDescriptor(javaClass, method);
+                try {
+                    analysisCache.getMethodAnalysis(CFG.class, methodDescriptor);
+                    analysisCache.getMethodAnalysis(ValueNumberDataflow.class, methodDescriptor);
+                    analysisCache.getMethodAnalysis(TypeDataflow.class, methodDescriptor);
+                    analysisCache.getMethodAnalysis(IsNullValueDataflow.class, methodDescriptor);
+                    methods.add(methodDescriptor);
+                } catch (CheckedAnalysisException e) {
+                    // e.g., a method too large to analyze
+                    continue;
+                }
+            }
+        }
+    }
+
+    /**
+     * Make this fixture's analysis cache and context current for the calling
+     * thread.
+     */
+    public void install() {
+        Global.setAnalysisCacheForCurrentThread(analysisCache);
+        AnalysisContext.setCurrentAnalysisContext(analysisContext);
+    }
+
+    public IAnalysisCache getAnalysisCache() {
+        return analysisCache;
+    }
+
+    public AnalysisContext getAnalysisContext() {
+        return analysisContext;
+    }
+
+    /**
+     * @return the classes analyzed, in name order
+     */
+    public List<ClassDescriptor> getClasses() {
+        return classes;
+    }
+
+    /**
+     * @return the methods of the classes which all benchmarked analyses
+     *         succeed on
+     */
+    public List<MethodDescriptor> getMethods() {
+        return Collections.unmodifiableList(methods);
+    }
+
+    /**
+     * Create a bug collection with one warning for every non-synthetic method
+     * of the fixture classes, cycling through the bug patterns of the loaded
+     * plugins and the three priorities.
+     */
+    public SortedBugCollection createBugCollection() throws CheckedAnalysisException {
+        // Patterns which adjust the priority could push it out of range
+        List<BugPattern> patterns = new ArrayList<BugPattern>();
+        for (BugPattern pattern : DetectorFactoryCollection.instance().getBugPatterns()) {
+            if (pattern.getPriorityAdjustment() == 0 && !pattern.isExperimental() && !pattern.isDeprecated()) {
+                patterns.add(pattern);
+            }
+        }
+        SortedBugCollection bugCollection = new SortedBugCollection();
+        int count = 0;
+        for (ClassDescriptor classDescriptor : classes) {
+            JavaClass javaClass = analysisCache.getClassAnalysis(JavaClass.class, classDescriptor);
+            for (Method method : javaClass.getMethods()) {
+                if (BCELUtil.isSynthetic(method)) {
+                    // Warnings in synthetic methods get ignored
+                    continue;
+                }
+                BugPattern pattern = patterns.get(count % patterns.size());
+                int priority = Priorities.HIGH_PRIORITY + count % 3;
+                bugCollection.add(new BugInstance(pattern.getType(), priority).addClassAndMethod(javaClass, method));
+                count++;
+            }
+        }
+        return bugCollection;
+    }
+
+    /**
+     * @return the bugs of {@link #createBugCollection()}, in order
+     */
+    public List<BugInstance> createBugList() throws CheckedAnalysisException {
+        List<BugInstance> result = new ArrayList<BugInstance>();
+        for (Iterator<BugInstance> i = createBugCollection().iterator(); i.hasNext();) {
+            result.add(i.next());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.umd.cs.findbugs.charsets.UTF8;
+
+/**
+ * Compare two JMH result files written with <code>-rf csv</code>, e.g. from
+ * two commits or two JVMs, and report the change in score of each benchmark.
+ * <p>
+ * A benchmark is flagged as a regression if its score got worse by more than
+ * the threshold percentage (default 5) and by more than the combined error
+ * of the two measurements. The exit code is 1 if there was any regression.
+ * <p>
+ * Usage: CompareBenchmarkResults [-threshold percent] baseline.csv
+ * current.csv
+ */
+public class CompareBenchmarkResults {
+
+    static class Result {
+        final String mode;
+
+        final double score;
+
+        /**
+         * The error of the score, or 0 if it is unknown: JMH reports NaN with
+         * too few samples to compute it
+         */
+        final double error;
+
+        final String unit;
+
+        Result(String mode, double score, double error, String unit) {
+            this.mode = mode;
+            this.score = score;
+            this.error = Double.isNaN(error) ? 0 : error;
+            this.unit = unit;
+        }
+
+        /** Throughput modes report operations per time, so bigger is better */
+        boolean higherIsBetter() {
+            return "thrpt".equals(mode);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        double threshold = 5.0;
+        int argCount = 0;
+        if (args.length > 1 && "-threshold".equals(args[0])) {
+            threshold = Double.parseDouble(args[1]);
+            argCount = 2;
+        }
+        if (args.length - argCount != 2) {
+            System.err.println("Usage: " + CompareBenchmarkResults.class.getName()
+                    + " [-threshold percent] baseline.csv current.csv");
+            System.exit(2);
+        }
+        Map<String, Result> baseline = read(args[argCount]);
+        Map<String, Result> current = read(args[argCount + 1]);
+
+        int regressions = 0;
+        System.out.printf("%-70s %12s %12s %8s%n", "Benchmark", "Baseline", "Current", "Change");
+        for (Map.Entry<String, Result> e : current.entrySet()) {
+            String name = e.getKey();
+            Result now = e.getValue();
+            Result before = baseline.get(name);
+            if (before == null) {
+                System.out.printf("%-70s %12s %12.3f %8s  %s%n", name, "-", now.score, "new", now.unit);
+                continue;
+            }
+            if (!before.unit.equals(now.unit)) {
+                System.out.printf("%-70s units differ: %s vs %s%n", name, before.unit, now.unit);
+                continue;
+            }
+            double change = 100.0 * (now.score - before.score) / before.score;
+            double worse = now.higherIsBetter() ? before.score - now.score : now.score - before.score;
+            String flag = "";
+            if (worse > before.error + now.error) {
+                if (100.0 * worse / before.score > threshold) {
+                    flag = "  REGRESSION";
+                    regressions++;
+                }
+            } else if (-worse > before.error + now.error) {
+                flag = "  improved";
+            }
+            System.out.printf("%-70s %12.3f %12.3f %+7.1f%%  %s%s%n", name, before.score, now.score, change, now.unit,
+                    flag);
+        }
+        for (String name : baseline.keySet()) {
+            if (!current.containsKey(name)) {
+                System.out.printf("%-70s missing from %s%n", name, args[argCount + 1]);
+            }
+        }
+        if (regressions > 0) {
+            System.out.println(regressions + " regression(s)");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Read a JMH csv result file, keyed by benchmark name and parameter
+     * values.
+     */
+    static Map<String, Result> read(String fileName) throws IOException {
+        Map<String, Result> results = new LinkedHashMap<String, Result>();
+        BufferedReader in = UTF8.bufferedReader(new FileInputStream(fileName));
+        try {
+            String line = in.readLine();
+            if (line == null) {
+                return results;
+            }
+            List<String> header = split(line);
+            int benchmark = header.indexOf("Benchmark");
+            int mode = header.indexOf("Mode");
+            int score = header.indexOf("Score");
+            int error = header.indexOf("Score Error (99.9%)");
+            int unit = header.indexOf("Unit");
+            if (benchmark < 0 || mode < 0 || score < 0 || error < 0 || unit < 0) {
+                throw new IOException(fileName + " is not a JMH csv result file");
+            }
+            while ((line = in.readLine()) != null) {
+                if (line.length() == 0) {
+                    continue;
+                }
+                List<String> fields = split(line);
+                StringBuilder key = new StringBuilder(fields.get(benchmark));
+                for (int i = 0; i < header.size() && i < fields.size(); i++) {
+                    if (header.get(i).startsWith("Param: ") && fields.get(i).length() > 0) {
+                        key.append(':').append(header.get(i).substring(7)).append('=').append(fields.get(i));
+                    }
+                }
+                results.put(key.toString(), new Result(fields.get(mode), parseNumber(fields.get(score)),
+                        parseNumber(fields.get(error)), fields.get(unit)));
+            }
+        } finally {
+            in.close();
+        }
+        return results;
+    }
+
+    /** JMH writes the scores in the default locale, so accept ',' decimals */
+    private static double parseNumber(String s) {
+        if (s.length() == 0 || "NaN".equals(s)) {
+            return Double.NaN;
+        }
+        return Double.parseDouble(s.replace(',', '.'));
+    }
+
+    /** Split a line of csv, removing the quotes around fields */
+    static List<String> split(String line) {
+        List<String> fields = new ArrayList<String>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
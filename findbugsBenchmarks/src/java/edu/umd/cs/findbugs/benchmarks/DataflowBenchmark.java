@@ -0,0 +1,88 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+import edu.umd.cs.findbugs.classfile.engine.bcel.AnalysisFactory;
+import edu.umd.cs.findbugs.classfile.engine.bcel.IsNullValueDataflowFactory;
+import edu.umd.cs.findbugs.classfile.engine.bcel.TypeDataflowFactory;
+import edu.umd.cs.findbugs.classfile.engine.bcel.ValueNumberDataflowFactory;
+
+/**
+ * Run a dataflow analysis to its fixpoint over the fixture methods. The
+ * analyses it depends on (CFG, depth-first search, and so on) come from the
+ * cache, so only the named dataflow is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(2)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class DataflowBenchmark {
+
+    @Param({ "ValueNumber", "Type", "IsNullValue" })
+    public String analysis;
+
+    private AnalysisFixture fixture;
+
+    private AnalysisFactory<?> factory;
+
+    @Setup
+    public void setUp() throws Exception {
+        fixture = new AnalysisFixture();
+        if ("ValueNumber".equals(analysis)) {
+            factory = new ValueNumberDataflowFactory();
+        } else if ("Type".equals(analysis)) {
+            factory = new TypeDataflowFactory();
+        } else if ("IsNullValue".equals(analysis)) {
+            factory = new IsNullValueDataflowFactory();
+        } else {
+            throw new IllegalArgumentException("Unknown dataflow analysis " + analysis);
+        }
+    }
+
+    @Benchmark
+    public void execute(Blackhole blackhole) throws Exception {
+        fixture.install();
+        IAnalysisCache analysisCache = fixture.getAnalysisCache();
+        List<MethodDescriptor> methods = fixture.getMethods();
+        for (MethodDescriptor methodDescriptor : methods) {
+            blackhole.consume(factory.analyze(analysisCache, methodDescriptor));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.filter.Filter;
+
+/**
+ * Match the warnings of a synthesized bug collection against an exclude
+ * filter that uses the common kinds of clauses.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(2)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class FilterBenchmark {
+
+    static final String FILTER = "<FindBugsFilter>\n"
+            + "  <Match><Bug pattern=\"NP_NULL_ON_SOME_PATH,NP_ALWAYS_NULL\"/></Match>\n"
+            + "  <Match><Bug code=\"SIC,UrF\"/><Priority value=\"3\"/></Match>\n"
+            + "  <Match><Bug category=\"STYLE\"/></Match>\n"
+            + "  <Match><Package name=\"~.*\\.bugIdeas\"/></Match>\n"
+            + "  <Match><Class name=\"~.*Test\"/><Method name=\"~test.*\"/></Match>\n"
+            + "  <Match><Class name=\"Bug1234\"/></Match>\n"
+            + "  <Match><Or><Method name=\"main\"/><Method name=\"equals\" params=\"java.lang.Object\" returns=\"boolean\"/></Or></Match>\n"
+            + "  <Match><And><Class name=\"~sfBugs\\..*\"/><Not><Rank value=\"9\"/></Not></And></Match>\n"
+            + "</FindBugsFilter>\n";
+
+    private Filter filter;
+
+    private List<BugInstance> bugs;
+
+    @Setup
+    public void setUp() throws Exception {
+        AnalysisFixture fixture = new AnalysisFixture();
+        filter = new Filter(new ByteArrayInputStream(FILTER.getBytes("UTF-8")));
+        bugs = fixture.createBugList();
+    }
+
+    @Benchmark
+    public void match(Blackhole blackhole) {
+        int count = 0;
+        for (BugInstance bug : bugs) {
+            if (filter.match(bug)) {
+                count++;
+            }
+        }
+        blackhole.consume(count);
+    }
+}
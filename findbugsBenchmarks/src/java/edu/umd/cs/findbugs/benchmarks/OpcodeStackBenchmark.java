@@ -0,0 +1,86 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.umd.cs.findbugs.ba.ClassContext;
+import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+
+/**
+ * Scan the fixture classes with an OpcodeStackDetector that does nothing
+ * itself, so the time measured is that of the bytecode scan and the
+ * OpcodeStack updates shared by all such detectors.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(2)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class OpcodeStackBenchmark {
+
+    static class StackScanner extends OpcodeStackDetector {
+        int count;
+
+        @Override
+        public void sawOpcode(int seen) {
+            count += stack.getStackDepth();
+        }
+    }
+
+    private AnalysisFixture fixture;
+
+    private List<ClassContext> classContexts;
+
+    @Setup
+    public void setUp() throws Exception {
+        fixture = new AnalysisFixture();
+        classContexts = new ArrayList<ClassContext>();
+        for (ClassDescriptor classDescriptor : fixture.getClasses()) {
+            classContexts.add(fixture.getAnalysisCache().getClassAnalysis(ClassContext.class, classDescriptor));
+        }
+    }
+
+    @Benchmark
+    public void scan(Blackhole blackhole) {
+        fixture.install();
+        StackScanner scanner = new StackScanner();
+        for (ClassContext classContext : classContexts) {
+            scanner.visitClassContext(classContext);
+        }
+        blackhole.consume(scanner.count);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.umd.cs.findbugs.ba.ch.Subtypes2;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+
+/**
+ * Ask Subtypes2 whether each of a set of fixture classes is a subtype of
+ * each of them and of some common library types. Most pairs are unrelated,
+ * as in the queries detectors make.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(2)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class Subtypes2Benchmark {
+
+    static final int MAX_TYPES = 100;
+
+    static final String[] LIBRARY_TYPES = { "java/lang/Object", "java/io/Serializable", "java/lang/Runnable",
+        "java/util/Collection", "java/util/Map", "java/lang/Throwable", "java/lang/Exception",
+        "java/lang/RuntimeException" };
+
+    private AnalysisFixture fixture;
+
+    private List<ClassDescriptor> subtypes;
+
+    private List<ClassDescriptor> supertypes;
+
+    @Setup
+    public void setUp() throws Exception {
+        fixture = new AnalysisFixture();
+        List<ClassDescriptor> classes = fixture.getClasses();
+        subtypes = new ArrayList<ClassDescriptor>(classes.subList(0, Math.min(MAX_TYPES, classes.size())));
+        supertypes = new ArrayList<ClassDescriptor>(subtypes);
+        for (String type : LIBRARY_TYPES) {
+            supertypes.add(DescriptorFactory.createClassDescriptor(type));
+        }
+        // Warm the hierarchy graph, as earlier detectors would have
+        isSubtype();
+    }
+
+    private int isSubtype() throws ClassNotFoundException {
+        Subtypes2 subtypes2 = fixture.getAnalysisContext().getSubtypes2();
+        int count = 0;
+        for (ClassDescriptor subtype : subtypes) {
+            for (ClassDescriptor supertype : supertypes) {
+                if (subtypes2.isSubtype(subtype, supertype)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public void isSubtype(Blackhole blackhole) throws Exception {
+        fixture.install();
+        blackhole.consume(isSubtype());
+    }
+}